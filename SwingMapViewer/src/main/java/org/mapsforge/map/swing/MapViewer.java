@@ -20,6 +20,8 @@ package org.mapsforge.map.swing;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.prefs.Preferences;
@@ -47,6 +49,7 @@ import org.mapsforge.map.model.MapViewPosition;
 import org.mapsforge.map.model.Model;
 import org.mapsforge.map.model.common.PreferencesFacade;
 import org.mapsforge.map.rendertheme.InternalRenderTheme;
+import org.mapsforge.map.swing.benchmark.TraceRecorder;
 import org.mapsforge.map.swing.controller.MapViewComponentListener;
 import org.mapsforge.map.swing.controller.MouseEventListener;
 import org.mapsforge.map.swing.util.JavaUtilPreferences;
@@ -57,6 +60,10 @@ import org.mapsforge.map.swing.view.WindowCloseDialog;
 public final class MapViewer {
 	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
 	private static final boolean SHOW_DEBUG_LAYERS = false;
+	/**
+	 * The system property which names a file into which the map positions are recorded as a trace.
+	 */
+	private static final String TRACE_PROPERTY = "mapsforge.trace";
 
 	/**
 	 * Starts the {@code MapViewer}.
@@ -73,6 +80,11 @@ public final class MapViewer {
 		final Model model = mapView.getModel();
 		model.init(preferencesFacade);
 
+		String traceFile = System.getProperty(TRACE_PROPERTY);
+		if (traceFile != null) {
+			recordTrace(model.mapViewPosition, new File(traceFile));
+		}
+
 		MainFrame mainFrame = new MainFrame();
 		mainFrame.add(mapView);
 		mainFrame.addWindowListener(new WindowCloseDialog(mainFrame, model, preferencesFacade));
@@ -168,6 +180,14 @@ public final class MapViewer {
 		return result;
 	}
 
+	private static void recordTrace(MapViewPosition mapViewPosition, File traceFile) {
+		try {
+			new TraceRecorder(mapViewPosition, new PrintWriter(traceFile, "UTF-8"));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot write trace file: " + traceFile, e);
+		}
+	}
+
 	private MapViewer() {
 		throw new IllegalStateException();
 	}
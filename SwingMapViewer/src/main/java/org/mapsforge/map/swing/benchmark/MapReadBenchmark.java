@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * Reads all tiles of one zoom level of one or more map files and reports the file size and the read throughput, e.g.
+ * to compare a map file with compressed blocks to the same file without.
+ * <p>
+ * The first pass opens the file and reads every tile once, the second pass reads them again from the same
+ * {@link MapDatabase}. For a cold first pass the operating system cache has to be dropped before running the
+ * benchmark.
+ */
+public final class MapReadBenchmark {
+	private static final int PASSES = 2;
+	private static final int TILE_SIZE = 256;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            command line args: expects the zoom level followed by one or more map files.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("usage: <zoomLevel> <mapFile> [<mapFile> ...]");
+		}
+		byte zoomLevel = Byte.parseByte(args[0]);
+		for (int i = 1; i < args.length; ++i) {
+			run(new File(args[i]), zoomLevel, System.out);
+		}
+	}
+
+	/**
+	 * Reads all tiles of the given zoom level which overlap the map file and prints the results.
+	 */
+	public static void run(File mapFile, byte zoomLevel, PrintStream printStream) {
+		long startTime = System.nanoTime();
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IllegalArgumentException(fileOpenResult.getErrorMessage());
+		}
+		long openTime = System.nanoTime() - startTime;
+
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+		printStream.println(mapFile + ": " + mapFile.length() + " bytes, version " + mapFileInfo.fileVersion
+				+ ", compressed blocks: " + mapFileInfo.compressedBlocks);
+
+		BoundingBox boundingBox = mapFileInfo.boundingBox;
+		int tileLeft = MercatorProjection.longitudeToTileX(boundingBox.minLongitude, zoomLevel);
+		int tileRight = MercatorProjection.longitudeToTileX(boundingBox.maxLongitude, zoomLevel);
+		int tileTop = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude, zoomLevel);
+		int tileBottom = MercatorProjection.latitudeToTileY(boundingBox.minLatitude, zoomLevel);
+		int tiles = (tileRight - tileLeft + 1) * (tileBottom - tileTop + 1);
+
+		for (int pass = 1; pass <= PASSES; ++pass) {
+			long elements = 0;
+			startTime = System.nanoTime();
+			for (int tileY = tileTop; tileY <= tileBottom; ++tileY) {
+				for (int tileX = tileLeft; tileX <= tileRight; ++tileX) {
+					MapReadResult mapReadResult = mapDatabase.readMapData(new Tile(tileX, tileY, zoomLevel,
+							TILE_SIZE));
+					if (mapReadResult != null) {
+						elements += mapReadResult.pointOfInterests.size() + mapReadResult.ways.size();
+					}
+				}
+			}
+			long elapsedTime = System.nanoTime() - startTime;
+			if (pass == 1) {
+				elapsedTime += openTime;
+			}
+			double seconds = elapsedTime / 1e9;
+			printStream.println((pass == 1 ? "first" : "warm") + " pass: " + tiles + " tiles, " + elements
+					+ " elements, " + format(elapsedTime / 1e6) + " ms, " + format(tiles / seconds) + " tiles/s");
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	private MapReadBenchmark() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A {@link TileCache} which delegates to another cache and measures its hit rate and how long it takes until a missing
+ * tile is put into the cache.
+ * <p>
+ * Every lookup with {@link #get(Job)} or {@link #getImmediately(Job)} is counted, including the lookups of cached
+ * tiles for placeholders. The latency of a tile is the time between its first unsuccessful lookup and the moment it
+ * is put into the cache.
+ */
+public class MeasuringTileCache implements TileCache {
+	private int hits;
+	private final List<Long> latencies;
+	private int misses;
+	private final Map<Job, Long> missingSince;
+	private final TileCache tileCache;
+
+	public MeasuringTileCache(TileCache tileCache) {
+		this.tileCache = tileCache;
+		this.latencies = new ArrayList<>();
+		this.missingSince = new HashMap<>();
+	}
+
+	@Override
+	public boolean containsKey(Job key) {
+		return this.tileCache.containsKey(key);
+	}
+
+	@Override
+	public void destroy() {
+		this.tileCache.destroy();
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		return count(key, this.tileCache.get(key));
+	}
+
+	@Override
+	public int getCapacity() {
+		return this.tileCache.getCapacity();
+	}
+
+	@Override
+	public int getCapacityFirstLevel() {
+		return this.tileCache.getCapacityFirstLevel();
+	}
+
+	/**
+	 * @return the number of lookups which found a tile.
+	 */
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	@Override
+	public TileBitmap getImmediately(Job key) {
+		return count(key, this.tileCache.getImmediately(key));
+	}
+
+	/**
+	 * @return the latencies in nanoseconds of all tiles which have been missing and are now cached.
+	 */
+	public synchronized long[] getLatencies() {
+		long[] result = new long[this.latencies.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = this.latencies.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of lookups which found no tile.
+	 */
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return the number of tiles which have been missing and are still not cached.
+	 */
+	public synchronized int getPending() {
+		return this.missingSince.size();
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		this.tileCache.put(key, bitmap);
+		synchronized (this) {
+			Long since = this.missingSince.remove(key);
+			if (since != null) {
+				this.latencies.add(System.nanoTime() - since);
+			}
+		}
+	}
+
+	@Override
+	public void setWorkingSet(Set<Job> workingSet) {
+		this.tileCache.setWorkingSet(workingSet);
+	}
+
+	private synchronized TileBitmap count(Job key, TileBitmap bitmap) {
+		if (bitmap != null) {
+			++this.hits;
+		} else {
+			++this.misses;
+			if (!this.missingSince.containsKey(key)) {
+				this.missingSince.put(key, System.nanoTime());
+			}
+		}
+		return bitmap;
+	}
+}
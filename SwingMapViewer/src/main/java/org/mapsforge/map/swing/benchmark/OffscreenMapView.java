@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.mapsforge.core.model.Dimension;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.map.swing.view.MapView;
+
+/**
+ * A {@link MapView} which is never shown but paints every finished frame into an image, so that it can be driven
+ * without a display, e.g. with {@code java.awt.headless=true}.
+ */
+public class OffscreenMapView extends MapView {
+	private static final long serialVersionUID = 1L;
+
+	private final BufferedImage image;
+	private long lastFrameTime;
+	private int numberOfFrames;
+
+	public OffscreenMapView(int width, int height) {
+		super();
+		setSize(width, height);
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		getModel().mapViewDimension.setDimension(new Dimension(width, height));
+	}
+
+	/**
+	 * Waits until a frame for the given position has been finished after the given number of frames.
+	 *
+	 * @param mapPosition
+	 *            the position the frame must show.
+	 * @param afterFrames
+	 *            the number of frames which had been finished before the position was requested.
+	 * @param timeoutMillis
+	 *            the maximum time to wait in milliseconds.
+	 * @return the time in nanoseconds at which the frame was finished, or -1 if no such frame was finished in time.
+	 */
+	public synchronized long awaitFrame(MapPosition mapPosition, int afterFrames, long timeoutMillis)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (this.numberOfFrames <= afterFrames
+				|| !mapPosition.equals(getModel().frameBufferModel.getMapPosition())) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return -1;
+			}
+			wait(remaining);
+		}
+		return this.lastFrameTime;
+	}
+
+	/**
+	 * @return the image the last finished frame has been painted into.
+	 */
+	public BufferedImage getImage() {
+		return this.image;
+	}
+
+	/**
+	 * @return the number of finished frames.
+	 */
+	public synchronized int getNumberOfFrames() {
+		return this.numberOfFrames;
+	}
+
+	@Override
+	public void repaint() {
+		// the map view controller calls this method on every change of the model, only the calls of the layer manager
+		// mean that a frame has been finished
+		if (Thread.currentThread() != getLayerManager()) {
+			return;
+		}
+
+		Graphics2D graphics = this.image.createGraphics();
+		try {
+			paint(graphics);
+		} finally {
+			graphics.dispose();
+		}
+		synchronized (this) {
+			this.lastFrameTime = System.nanoTime();
+			++this.numberOfFrames;
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+import org.mapsforge.map.awt.ImageEncoder;
+import org.mapsforge.map.awt.ImageIOEncoder;
+import org.mapsforge.map.awt.PngEncoder;
+import org.mapsforge.map.awt.SyntheticTile;
+
+/**
+ * Encodes tile images with the ImageIO PNG writer and with {@link PngEncoder} and reports the time per tile and the
+ * size of the encoded tile for each encoder.
+ * <p>
+ * Without arguments a synthetic anti-aliased tile is encoded, otherwise each given image file, e.g. tiles saved from
+ * the file system tile cache.
+ */
+public final class PngEncoderBenchmark {
+	private static final int ITERATIONS = 50;
+	private static final int WARM_UP_ITERATIONS = 20;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            command line args: optional image files to encode.
+	 * @throws IOException
+	 *             if an image file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			run("synthetic tile", SyntheticTile.create(BufferedImage.TYPE_INT_ARGB, true), System.out);
+		}
+		for (String fileName : args) {
+			BufferedImage bufferedImage = ImageIO.read(new File(fileName));
+			if (bufferedImage == null) {
+				throw new IllegalArgumentException("not an image file: " + fileName);
+			}
+			run(fileName, bufferedImage, System.out);
+		}
+	}
+
+	/**
+	 * Encodes the given image with each encoder and prints the results.
+	 */
+	public static void run(String name, BufferedImage bufferedImage, PrintStream printStream) throws IOException {
+		printStream.println(name + ": " + bufferedImage.getWidth() + "x" + bufferedImage.getHeight());
+		ImageEncoder[] imageEncoders = { new ImageIOEncoder("png"), new PngEncoder(),
+				new PngEncoder(PngEncoder.DEFAULT_COMPRESSION_LEVEL, PngEncoder.Filter.ADAPTIVE, true) };
+		String[] encoderNames = { "ImageIO", "PngEncoder", "PngEncoder with palette" };
+		for (int i = 0; i < imageEncoders.length; ++i) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			for (int j = 0; j < WARM_UP_ITERATIONS; ++j) {
+				outputStream.reset();
+				imageEncoders[i].encode(bufferedImage, outputStream);
+			}
+			long startTime = System.nanoTime();
+			for (int j = 0; j < ITERATIONS; ++j) {
+				outputStream.reset();
+				imageEncoders[i].encode(bufferedImage, outputStream);
+			}
+			long elapsedTime = (System.nanoTime() - startTime) / ITERATIONS;
+			printStream.println(encoderNames[i] + ": " + String.format(Locale.ROOT, "%.2f", elapsedTime / 1e6)
+					+ " ms per tile, " + outputStream.size() + " bytes");
+		}
+	}
+
+	private PngEncoderBenchmark() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.map.model.MapViewPosition;
+
+/**
+ * A recorded sequence of pans and zooms which can be replayed on a {@link MapViewPosition}.
+ * <p>
+ * A trace is a text file with one step per line, empty lines and lines starting with {@code #} are ignored:
+ * <ul>
+ * <li>{@code center <latitude> <longitude> <zoomLevel>} sets the map position.</li>
+ * <li>{@code move <pixelsX> <pixelsY>} moves the map center by the given amount of pixels.</li>
+ * <li>{@code zoom <zoomLevelDiff>} changes the zoom level with an animation.</li>
+ * </ul>
+ */
+public final class Trace {
+	public enum Action {
+		CENTER, MOVE, ZOOM;
+	}
+
+	/**
+	 * A single step of a trace.
+	 */
+	public static final class Step {
+		public static Step center(MapPosition mapPosition) {
+			return new Step(Action.CENTER, mapPosition, 0, 0, (byte) 0);
+		}
+
+		public static Step move(double moveHorizontal, double moveVertical) {
+			return new Step(Action.MOVE, null, moveHorizontal, moveVertical, (byte) 0);
+		}
+
+		public static Step zoom(byte zoomLevelDiff) {
+			return new Step(Action.ZOOM, null, 0, 0, zoomLevelDiff);
+		}
+
+		public final Action action;
+		public final MapPosition mapPosition;
+		public final double moveHorizontal;
+		public final double moveVertical;
+		public final byte zoomLevelDiff;
+
+		private Step(Action action, MapPosition mapPosition, double moveHorizontal, double moveVertical,
+				byte zoomLevelDiff) {
+			this.action = action;
+			this.mapPosition = mapPosition;
+			this.moveHorizontal = moveHorizontal;
+			this.moveVertical = moveVertical;
+			this.zoomLevelDiff = zoomLevelDiff;
+		}
+
+		/**
+		 * Applies this step to the given position.
+		 */
+		public void apply(MapViewPosition mapViewPosition) {
+			switch (this.action) {
+				case CENTER:
+					mapViewPosition.setMapPosition(this.mapPosition);
+					return;
+				case MOVE:
+					mapViewPosition.moveCenter(this.moveHorizontal, this.moveVertical);
+					return;
+				case ZOOM:
+					mapViewPosition.zoom(this.zoomLevelDiff);
+					return;
+			}
+			throw new IllegalStateException("unknown action: " + this.action);
+		}
+
+		@Override
+		public String toString() {
+			switch (this.action) {
+				case CENTER:
+					return "center " + this.mapPosition.latLong.latitude + ' ' + this.mapPosition.latLong.longitude
+							+ ' ' + this.mapPosition.zoomLevel;
+				case MOVE:
+					return "move " + this.moveHorizontal + ' ' + this.moveVertical;
+				case ZOOM:
+					return "zoom " + this.zoomLevelDiff;
+			}
+			throw new IllegalStateException("unknown action: " + this.action);
+		}
+	}
+
+	/**
+	 * Reads a trace, the reader is not closed.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a line is not a valid step.
+	 */
+	public static Trace read(Reader reader) throws IOException {
+		BufferedReader bufferedReader = new BufferedReader(reader);
+		List<Step> steps = new ArrayList<>();
+		String line;
+		int lineNumber = 0;
+		while ((line = bufferedReader.readLine()) != null) {
+			++lineNumber;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			try {
+				steps.add(parseStep(line.split("\\s+")));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("invalid step in line " + lineNumber + ": " + line, e);
+			}
+		}
+		return new Trace(steps);
+	}
+
+	private static void checkArguments(String[] tokens, int numberOfArguments) {
+		if (tokens.length != numberOfArguments + 1) {
+			throw new IllegalArgumentException("expected " + numberOfArguments + " arguments: " + tokens[0]);
+		}
+	}
+
+	private static Step parseStep(String[] tokens) {
+		Action action = Action.valueOf(tokens[0].toUpperCase());
+		switch (action) {
+			case CENTER:
+				checkArguments(tokens, 3);
+				LatLong latLong = new LatLong(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+				return Step.center(new MapPosition(latLong, Byte.parseByte(tokens[3])));
+			case MOVE:
+				checkArguments(tokens, 2);
+				return Step.move(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+			case ZOOM:
+				checkArguments(tokens, 1);
+				return Step.zoom(Byte.parseByte(tokens[1]));
+		}
+		throw new IllegalArgumentException("unknown action: " + action);
+	}
+
+	private final List<Step> steps;
+
+	public Trace(List<Step> steps) {
+		this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+	}
+
+	/**
+	 * @return the steps of this trace in the order in which they are replayed.
+	 */
+	public List<Step> getSteps() {
+		return this.steps;
+	}
+}
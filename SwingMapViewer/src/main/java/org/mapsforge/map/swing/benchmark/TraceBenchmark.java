@@ -0,0 +1,269 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.util.LatLongUtils;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.layer.renderer.TileRendererLayer;
+import org.mapsforge.map.model.MapViewPosition;
+import org.mapsforge.map.model.Model;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+
+/**
+ * Replays a {@link Trace} of pans and zooms on an {@link OffscreenMapView} which renders a map file, and reports frame
+ * times, tile latencies, the tile cache hit rate and the allocation rate.
+ * <p>
+ * No display is needed, the benchmark runs with {@code java.awt.headless=true} unless this property is set otherwise.
+ * The steps are replayed as fast as the map view finishes frames: the frame time of a step is the time from applying
+ * it until a frame for the new position has been finished. A step which does not change the map position, like a
+ * zoom at the maximum zoom level, does not trigger a frame: it is counted as a step without effect instead of waiting
+ * for the frame timeout. After the last step the benchmark waits until the remaining tiles have been rendered.
+ */
+public final class TraceBenchmark {
+	/**
+	 * The counters of a benchmark run.
+	 */
+	public static final class Result {
+		public final int frames;
+		public final int frameTimeouts;
+		public final int steps;
+		public final int stepsWithoutEffect;
+		public final int tilesPending;
+		public final int tilesRendered;
+
+		Result(int steps, int stepsWithoutEffect, int frames, int frameTimeouts, int tilesRendered, int tilesPending) {
+			this.steps = steps;
+			this.stepsWithoutEffect = stepsWithoutEffect;
+			this.frames = frames;
+			this.frameTimeouts = frameTimeouts;
+			this.tilesRendered = tilesRendered;
+			this.tilesPending = tilesPending;
+		}
+	}
+
+	private static final int DEFAULT_HEIGHT = 768;
+	private static final int DEFAULT_WIDTH = 1024;
+	private static final long FRAME_TIMEOUT = 5000;
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final long IDLE_TIMEOUT = 2000;
+	private static final double[] PERCENTILES = { 50, 90, 99, 100 };
+	private static final int TILE_CACHE_CAPACITY = 64;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            command line args: expects the map file, the trace file and optionally the width and height of the map
+	 *            view.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 2 && args.length != 4) {
+			throw new IllegalArgumentException("usage: <mapFile> <traceFile> [<width> <height>]");
+		}
+		File mapFile = getFile(args[0]);
+		Trace trace;
+		try (Reader reader = new InputStreamReader(new FileInputStream(getFile(args[1])), "UTF-8")) {
+			trace = Trace.read(reader);
+		}
+		int width = args.length == 4 ? Integer.parseInt(args[2]) : DEFAULT_WIDTH;
+		int height = args.length == 4 ? Integer.parseInt(args[3]) : DEFAULT_HEIGHT;
+
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		run(mapFile, trace, width, height, System.out);
+	}
+
+	/**
+	 * Replays the given trace and prints the results.
+	 *
+	 * @return the counters of the run.
+	 */
+	public static Result run(File mapFile, Trace trace, int width, int height, PrintStream printStream)
+			throws InterruptedException {
+		MeasuringTileCache tileCache = new MeasuringTileCache(new InMemoryTileCache(TILE_CACHE_CAPACITY));
+		OffscreenMapView mapView = new OffscreenMapView(width, height);
+		Model model = mapView.getModel();
+		MapViewPosition mapViewPosition = model.mapViewPosition;
+		TileRendererLayer tileRendererLayer = new TileRendererLayer(tileCache, mapViewPosition, true, true,
+				GRAPHIC_FACTORY);
+		tileRendererLayer.setMapFile(mapFile);
+		tileRendererLayer.setXmlRenderTheme(InternalRenderTheme.OSMARENDER);
+
+		List<Trace.Step> steps = new ArrayList<>(trace.getSteps());
+		if (steps.isEmpty() || steps.get(0).action != Trace.Action.CENTER) {
+			BoundingBox boundingBox = tileRendererLayer.getMapDatabase().getMapFileInfo().boundingBox;
+			byte zoomLevel = LatLongUtils.zoomForBounds(model.mapViewDimension.getDimension(), boundingBox,
+					model.displayModel.getTileSize());
+			steps.add(0, Trace.Step.center(new MapPosition(boundingBox.getCenterPoint(), zoomLevel)));
+		}
+
+		long startAllocatedBytes = getAllocatedBytes();
+		long startTime = System.nanoTime();
+		mapView.getLayerManager().getLayers().add(tileRendererLayer);
+
+		long[] frameTimes = new long[steps.size()];
+		int numberOfFrameTimes = 0;
+		int timeouts = 0;
+		int stepsWithoutEffect = 0;
+		for (Trace.Step step : steps) {
+			int numberOfFrames = mapView.getNumberOfFrames();
+			MapPosition mapPosition = mapViewPosition.getMapPosition();
+			long stepTime = System.nanoTime();
+			step.apply(mapViewPosition);
+			if (mapPosition.equals(mapViewPosition.getMapPosition())) {
+				// no new frame is painted for an unchanged position, waiting would always end in a timeout
+				++stepsWithoutEffect;
+				continue;
+			}
+			long frameTime = mapView.awaitFrame(mapViewPosition.getMapPosition(), numberOfFrames, FRAME_TIMEOUT);
+			if (frameTime < 0) {
+				++timeouts;
+			} else {
+				frameTimes[numberOfFrameTimes++] = frameTime - stepTime;
+			}
+		}
+		awaitTiles(tileCache);
+
+		long elapsedTime = System.nanoTime() - startTime;
+		long allocatedBytes = getAllocatedBytes() - startAllocatedBytes;
+
+		mapView.getLayerManager().getLayers().remove(tileRendererLayer);
+		tileRendererLayer.onDestroy();
+		mapView.destroy();
+		mapViewPosition.destroy();
+		tileCache.destroy();
+
+		Result result = new Result(steps.size(), stepsWithoutEffect, mapView.getNumberOfFrames(), timeouts,
+				tileCache.getLatencies().length, tileCache.getPending());
+		printStream.println("steps: " + result.steps);
+		printStream.println("steps without effect: " + result.stepsWithoutEffect);
+		printStream.println("frames: " + result.frames);
+		printStream.println("frame timeouts: " + result.frameTimeouts);
+		printStream.println("frame time (ms): " + formatPercentiles(Arrays.copyOf(frameTimes, numberOfFrameTimes)));
+		printStream.println("tiles rendered: " + result.tilesRendered);
+		printStream.println("tiles pending: " + result.tilesPending);
+		printStream.println("tile latency (ms): " + formatPercentiles(tileCache.getLatencies()));
+		int lookups = tileCache.getHits() + tileCache.getMisses();
+		printStream.println("tile cache: hits=" + tileCache.getHits() + " misses=" + tileCache.getMisses()
+				+ " hit rate=" + format(lookups == 0 ? 0 : 100.0 * tileCache.getHits() / lookups) + '%');
+		if (allocatedBytes >= 0) {
+			double seconds = elapsedTime / (double) TimeUnit.SECONDS.toNanos(1);
+			printStream.println("allocated (MB): " + format(allocatedBytes / 1e6) + " rate (MB/s): "
+					+ format(allocatedBytes / 1e6 / seconds));
+		} else {
+			printStream.println("allocated (MB): not supported by this JVM");
+		}
+		printStream.println("total time (ms): " + format(elapsedTime / 1e6));
+		return result;
+	}
+
+	/**
+	 * Waits until no tile is missing any more or no tile has been rendered for {@link #IDLE_TIMEOUT} milliseconds.
+	 */
+	private static void awaitTiles(MeasuringTileCache tileCache) throws InterruptedException {
+		long lastChange = System.currentTimeMillis();
+		int pending = tileCache.getPending();
+		while (pending > 0 && System.currentTimeMillis() - lastChange < IDLE_TIMEOUT) {
+			Thread.sleep(50);
+			int newPending = tileCache.getPending();
+			if (newPending != pending) {
+				pending = newPending;
+				lastChange = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	private static String formatPercentiles(long[] nanos) {
+		if (nanos.length == 0) {
+			return "none";
+		}
+		Arrays.sort(nanos);
+		StringBuilder stringBuilder = new StringBuilder();
+		for (double percentile : PERCENTILES) {
+			if (stringBuilder.length() > 0) {
+				stringBuilder.append(' ');
+			}
+			stringBuilder.append(percentile == 100 ? "max" : "p" + (int) percentile).append('=');
+			stringBuilder.append(format(getPercentile(nanos, percentile) / 1e6));
+		}
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * @return the number of bytes allocated by all live threads, or -1 if the JVM cannot measure it.
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!sunThreadMXBean.isThreadAllocatedMemorySupported() || !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long result = 0;
+		for (long allocatedBytes : sunThreadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+			if (allocatedBytes > 0) {
+				result += allocatedBytes;
+			}
+		}
+		return result;
+	}
+
+	private static File getFile(String path) {
+		File file = new File(path);
+		if (!file.isFile()) {
+			throw new IllegalArgumentException("not a file: " + file);
+		} else if (!file.canRead()) {
+			throw new IllegalArgumentException("cannot read file: " + file);
+		}
+		return file;
+	}
+
+	/**
+	 * @return the value at the given percentile of the sorted values, using the nearest rank.
+	 */
+	private static long getPercentile(long[] sortedValues, double percentile) {
+		int rank = (int) Math.ceil(percentile / 100 * sortedValues.length);
+		return sortedValues[Math.max(0, rank - 1)];
+	}
+
+	private TraceBenchmark() {
+		throw new IllegalStateException();
+	}
+}
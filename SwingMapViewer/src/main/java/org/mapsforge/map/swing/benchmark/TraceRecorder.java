@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.PrintWriter;
+
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.map.model.MapViewPosition;
+import org.mapsforge.map.model.common.Observer;
+
+/**
+ * Records the positions of a {@link MapViewPosition} as a {@link Trace}, one {@code center} step for each change of
+ * the position that the observers are notified of.
+ */
+public class TraceRecorder implements Observer {
+	private MapPosition lastMapPosition;
+	private final MapViewPosition mapViewPosition;
+	private final PrintWriter printWriter;
+
+	public TraceRecorder(MapViewPosition mapViewPosition, PrintWriter printWriter) {
+		this.mapViewPosition = mapViewPosition;
+		this.printWriter = printWriter;
+		this.mapViewPosition.addObserver(this);
+	}
+
+	/**
+	 * Stops recording and closes the writer.
+	 */
+	public void destroy() {
+		this.mapViewPosition.removeObserver(this);
+		this.printWriter.close();
+	}
+
+	@Override
+	public synchronized void onChange() {
+		MapPosition mapPosition = this.mapViewPosition.getMapPosition();
+		if (!mapPosition.equals(this.lastMapPosition)) {
+			this.lastMapPosition = mapPosition;
+			this.printWriter.println(Trace.Step.center(mapPosition));
+			this.printWriter.flush();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceBenchmarkTest {
+	private static final File MAP_FILE = new File("../mapsforge-map-reader/src/test/resources/with_data/output.map");
+
+	@Test
+	public void runTest() throws IOException, InterruptedException {
+		Trace trace;
+		try (Reader reader = new InputStreamReader(TraceBenchmarkTest.class.getResourceAsStream("/with_data.trace"),
+				"UTF-8")) {
+			trace = Trace.read(reader);
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		TraceBenchmark.Result result = TraceBenchmark.run(MAP_FILE, trace, 256, 256, new PrintStream(outputStream,
+				true, "UTF-8"));
+
+		Assert.assertEquals(trace.getSteps().size(), result.steps);
+		Assert.assertEquals(1, result.stepsWithoutEffect);
+		Assert.assertEquals(0, result.frameTimeouts);
+		Assert.assertTrue(result.frames >= result.steps - result.stepsWithoutEffect);
+		Assert.assertTrue(result.tilesRendered > 0);
+		Assert.assertTrue(outputStream.toString("UTF-8").contains("steps without effect: 1"));
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.swing.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+
+public class TraceTest {
+	private static void verifyInvalidTrace(String trace) throws IOException {
+		try {
+			Trace.read(new StringReader(trace));
+			Assert.fail(trace);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void readTest() throws IOException {
+		String trace = "# comment\ncenter 52.5 13.4 14\n\nmove 10.5 -3\nzoom -1\n";
+		List<Trace.Step> steps = Trace.read(new StringReader(trace)).getSteps();
+		Assert.assertEquals(3, steps.size());
+
+		Assert.assertEquals(Trace.Action.CENTER, steps.get(0).action);
+		Assert.assertEquals(new MapPosition(new LatLong(52.5, 13.4), (byte) 14), steps.get(0).mapPosition);
+		Assert.assertEquals(Trace.Action.MOVE, steps.get(1).action);
+		Assert.assertEquals(10.5, steps.get(1).moveHorizontal, 0);
+		Assert.assertEquals(-3, steps.get(1).moveVertical, 0);
+		Assert.assertEquals(Trace.Action.ZOOM, steps.get(2).action);
+		Assert.assertEquals(-1, steps.get(2).zoomLevelDiff);
+
+		// steps are written in the format they are read from
+		StringBuilder stringBuilder = new StringBuilder();
+		for (Trace.Step step : steps) {
+			stringBuilder.append(step).append('\n');
+		}
+		List<Trace.Step> readSteps = Trace.read(new StringReader(stringBuilder.toString())).getSteps();
+		Assert.assertEquals(steps.get(0).mapPosition, readSteps.get(0).mapPosition);
+		Assert.assertEquals(steps.get(1).moveHorizontal, readSteps.get(1).moveHorizontal, 0);
+		Assert.assertEquals(steps.get(2).zoomLevelDiff, readSteps.get(2).zoomLevelDiff);
+
+		verifyInvalidTrace("jump 1 2");
+		verifyInvalidTrace("move 1");
+		verifyInvalidTrace("zoom x");
+		verifyInvalidTrace("center 1 2");
+	}
+}
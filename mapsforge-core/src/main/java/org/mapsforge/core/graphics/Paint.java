@@ -16,10 +16,20 @@
 package org.mapsforge.core.graphics;
 
 public interface Paint {
+	/**
+	 * @return the width of the stroke in pixels, zero for a hairline.
+	 */
+	float getStrokeWidth();
+
 	int getTextHeight(String text);
 
 	int getTextWidth(String text);
 
+	/**
+	 * @return true if a dash path effect has been set, the rendering then depends on the full length of a path.
+	 */
+	boolean isDashed();
+
 	boolean isTransparent();
 
 	void setBitmapShader(Bitmap bitmap);
@@ -138,6 +138,17 @@ public class Tile implements Serializable {
 		return new Rectangle(getOrigin().x, getOrigin().y, getOrigin().x + tileSize, getOrigin().y + tileSize);
 	}
 
+	/**
+	 * @return the geographical area covered by this tile.
+	 */
+	public BoundingBox getBoundingBox() {
+		double minLatitude = MercatorProjection.tileYToLatitude(this.tileY + 1, this.zoomLevel);
+		double minLongitude = MercatorProjection.tileXToLongitude(this.tileX, this.zoomLevel);
+		double maxLatitude = MercatorProjection.tileYToLatitude(this.tileY, this.zoomLevel);
+		double maxLongitude = MercatorProjection.tileXToLongitude(this.tileX + 1, this.zoomLevel);
+		return new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+	}
+
 	/**
 	 * Returns the top-left point of this tile in absolute coordinates.
 	 * @return the top-left point
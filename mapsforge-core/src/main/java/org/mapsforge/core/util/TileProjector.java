@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+
+/**
+ * Projects geographic coordinates to pixel coordinates relative to a fixed origin at a fixed zoom level, typically the
+ * upper left corner of a tile that is rendered. The map size and the scale constants of the {@link MercatorProjection}
+ * are computed once, so that whole coordinate arrays can be projected in a tight loop without creating objects.
+ * <p>
+ * Optionally, latitudes in and around the tile are projected by linear interpolation in a lookup table, which avoids
+ * the logarithm and sine of the exact formula. The table is only used where its error is below
+ * {@link #MAX_INTERPOLATION_ERROR}, which excludes low zoom levels; everything else is projected exactly.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class TileProjector {
+	/**
+	 * The maximum difference in pixels between an interpolated and an exact pixel Y coordinate.
+	 */
+	public static final double MAX_INTERPOLATION_ERROR = 0.01;
+
+	private static final double DEGREES_TO_RADIANS = Math.PI / 180;
+	private static final double INVERSE_FOUR_PI = 1 / (4 * Math.PI);
+	private static final int TABLE_INTERVALS = 256;
+
+	private final double latitudeTableMin;
+	private final double latitudeTableScale;
+	private final double mapSize;
+	private final double originX;
+	private final double originY;
+	private final double pixelXScale;
+	private final double[] pixelYTable;
+
+	/**
+	 * Projects relative to the upper left corner of the given tile without interpolation.
+	 */
+	public TileProjector(Tile tile) {
+		this(tile, false);
+	}
+
+	/**
+	 * Projects relative to the upper left corner of the given tile.
+	 *
+	 * @param tile
+	 *            the tile that defines the zoom level, tile size and origin.
+	 * @param interpolateLatitudes
+	 *            true if latitudes around the tile should be projected with a lookup table.
+	 */
+	public TileProjector(Tile tile, boolean interpolateLatitudes) {
+		this(tile.zoomLevel, tile.tileSize, MercatorProjection.tileToPixel(tile.tileX, tile.tileSize),
+				MercatorProjection.tileToPixel(tile.tileY, tile.tileSize), tile.tileSize, interpolateLatitudes);
+	}
+
+	/**
+	 * @param zoomLevel
+	 *            the zoom level at which the coordinates should be projected.
+	 * @param tileSize
+	 *            the tile size.
+	 * @param originX
+	 *            the absolute pixel X coordinate that is subtracted from all projected coordinates.
+	 * @param originY
+	 *            the absolute pixel Y coordinate that is subtracted from all projected coordinates.
+	 * @param height
+	 *            the height in pixels of the projected area below the origin, e.g. the tile size.
+	 * @param interpolateLatitudes
+	 *            true if latitudes within the projected area and a margin of one tile size should be projected with a
+	 *            lookup table.
+	 */
+	public TileProjector(byte zoomLevel, int tileSize, double originX, double originY, int height,
+			boolean interpolateLatitudes) {
+		this.mapSize = MercatorProjection.getMapSize(zoomLevel, tileSize);
+		this.originX = originX;
+		this.originY = originY;
+		this.pixelXScale = this.mapSize / 360;
+
+		if (interpolateLatitudes) {
+			double minPixelY = Math.max(0, originY - tileSize);
+			double maxPixelY = Math.min(this.mapSize, originY + height + tileSize);
+			// the pixel Y axis points south
+			double latitudeMin = MercatorProjection.pixelYToLatitude(maxPixelY, zoomLevel, tileSize);
+			double latitudeMax = MercatorProjection.pixelYToLatitude(minPixelY, zoomLevel, tileSize);
+			this.pixelYTable = createPixelYTable(latitudeMin, latitudeMax);
+			this.latitudeTableMin = latitudeMin;
+			this.latitudeTableScale = TABLE_INTERVALS / (latitudeMax - latitudeMin);
+		} else {
+			this.pixelYTable = null;
+			this.latitudeTableMin = 0;
+			this.latitudeTableScale = 0;
+		}
+	}
+
+	/**
+	 * @return the absolute pixel X coordinate of the origin.
+	 */
+	public double getOriginX() {
+		return this.originX;
+	}
+
+	/**
+	 * @return the absolute pixel Y coordinate of the origin.
+	 */
+	public double getOriginY() {
+		return this.originY;
+	}
+
+	/**
+	 * @return true if latitudes around the origin are projected with a lookup table.
+	 */
+	public boolean isInterpolating() {
+		return this.pixelYTable != null;
+	}
+
+	/**
+	 * @param latitude
+	 *            the latitude coordinate that should be converted.
+	 * @return the pixel Y coordinate of the latitude value relative to the origin.
+	 */
+	public double latitudeToPixelY(double latitude) {
+		if (this.pixelYTable != null) {
+			double position = (latitude - this.latitudeTableMin) * this.latitudeTableScale;
+			// also false for NaN
+			if (position >= 0 && position < TABLE_INTERVALS) {
+				int index = (int) position;
+				double y0 = this.pixelYTable[index];
+				return y0 + (position - index) * (this.pixelYTable[index + 1] - y0);
+			}
+		}
+		return exactPixelY(latitude);
+	}
+
+	/**
+	 * @param longitude
+	 *            the longitude coordinate that should be converted.
+	 * @return the pixel X coordinate of the longitude value relative to the origin.
+	 */
+	public double longitudeToPixelX(double longitude) {
+		return (longitude + 180) * this.pixelXScale - this.originX;
+	}
+
+	/**
+	 * Projects the given coordinates relative to the origin.
+	 *
+	 * @param latLongs
+	 *            the coordinates that should be projected.
+	 * @param pixels
+	 *            receives the pixel coordinates as alternating X and Y values, must be at least twice as long as the
+	 *            coordinates.
+	 */
+	public void project(LatLong[] latLongs, double[] pixels) {
+		for (int i = 0, j = 0; i < latLongs.length; ++i) {
+			LatLong latLong = latLongs[i];
+			pixels[j++] = longitudeToPixelX(latLong.longitude);
+			pixels[j++] = latitudeToPixelY(latLong.latitude);
+		}
+	}
+
+	/**
+	 * Projects the given coordinates relative to the origin.
+	 *
+	 * @param latLongs
+	 *            the coordinates that should be projected.
+	 * @param pixels
+	 *            receives the pixel coordinates as alternating X and Y values, must be at least twice as long as the
+	 *            coordinates.
+	 */
+	public void project(LatLong[] latLongs, float[] pixels) {
+		for (int i = 0, j = 0; i < latLongs.length; ++i) {
+			LatLong latLong = latLongs[i];
+			pixels[j++] = (float) longitudeToPixelX(latLong.longitude);
+			pixels[j++] = (float) latitudeToPixelY(latLong.latitude);
+		}
+	}
+
+	private double[] createPixelYTable(double latitudeMin, double latitudeMax) {
+		double step = (latitudeMax - latitudeMin) / TABLE_INTERVALS;
+		if (!(step > 0)) {
+			return null;
+		}
+
+		double[] table = new double[TABLE_INTERVALS + 1];
+		for (int i = 0; i <= TABLE_INTERVALS; ++i) {
+			table[i] = exactPixelY(latitudeMin + i * step);
+		}
+
+		// the error of the linear interpolation is largest near the middle of an interval
+		for (int i = 0; i < TABLE_INTERVALS; ++i) {
+			double interpolated = (table[i] + table[i + 1]) / 2;
+			if (Math.abs(exactPixelY(latitudeMin + (i + 0.5) * step) - interpolated) > MAX_INTERPOLATION_ERROR) {
+				return null;
+			}
+		}
+		return table;
+	}
+
+	private double exactPixelY(double latitude) {
+		double sinLatitude = Math.sin(latitude * DEGREES_TO_RADIANS);
+		double pixelY = (0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) * INVERSE_FOUR_PI) * this.mapSize;
+		return Math.min(Math.max(0, pixelY), this.mapSize) - this.originY;
+	}
+}
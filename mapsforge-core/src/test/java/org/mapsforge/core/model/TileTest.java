@@ -76,6 +76,21 @@ public class TileTest {
 		TestUtils.notEqualsTest(tile1, null);
 	}
 
+	@Test
+	public void getBoundingBoxTest() {
+		BoundingBox boundingBox = new Tile(0, 0, (byte) 0, TILE_SIZE).getBoundingBox();
+		Assert.assertEquals(-180, boundingBox.minLongitude, 0);
+		Assert.assertEquals(180, boundingBox.maxLongitude, 0);
+		Assert.assertEquals(-85.051, boundingBox.minLatitude, 0.001);
+		Assert.assertEquals(85.051, boundingBox.maxLatitude, 0.001);
+
+		boundingBox = new Tile(2, 1, (byte) 2, TILE_SIZE).getBoundingBox();
+		Assert.assertEquals(0, boundingBox.minLongitude, 0);
+		Assert.assertEquals(90, boundingBox.maxLongitude, 0);
+		Assert.assertEquals(0, boundingBox.minLatitude, 1e-9);
+		Assert.assertEquals(66.513, boundingBox.maxLatitude, 0.001);
+	}
+
 	@Test
 	public void getMaxTileNumberTest() {
 		Assert.assertEquals(0, Tile.getMaxTileNumber((byte) 0));
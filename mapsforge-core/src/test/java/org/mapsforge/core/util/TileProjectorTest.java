@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tile;
+
+public class TileProjectorTest {
+	private static final double DELTA = 1e-6;
+	private static final int TILE_SIZE = 256;
+
+	private static LatLong[] createLatLongs(Tile tile) {
+		// a grid that covers the tile and its neighbours, beyond the range of the latitude table
+		double north = MercatorProjection.tileYToLatitude(tile.tileY - 2, tile.zoomLevel);
+		double south = MercatorProjection.tileYToLatitude(tile.tileY + 3, tile.zoomLevel);
+		double west = MercatorProjection.tileXToLongitude(tile.tileX - 2, tile.zoomLevel);
+		double east = MercatorProjection.tileXToLongitude(tile.tileX + 3, tile.zoomLevel);
+		int steps = 50;
+		LatLong[] latLongs = new LatLong[steps * steps];
+		for (int i = 0; i < steps; ++i) {
+			for (int j = 0; j < steps; ++j) {
+				double latitude = south + (north - south) * i / (steps - 1);
+				double longitude = west + (east - west) * j / (steps - 1);
+				latLongs[i * steps + j] = new LatLong(latitude, longitude);
+			}
+		}
+		return latLongs;
+	}
+
+	private static void verifyProjection(Tile tile, boolean interpolateLatitudes, double delta) {
+		TileProjector tileProjector = new TileProjector(tile, interpolateLatitudes);
+		LatLong[] latLongs = createLatLongs(tile);
+		double[] pixels = new double[latLongs.length * 2];
+		float[] floatPixels = new float[latLongs.length * 2];
+		tileProjector.project(latLongs, pixels);
+		tileProjector.project(latLongs, floatPixels);
+
+		for (int i = 0; i < latLongs.length; ++i) {
+			Point expected = MercatorProjection.getPixelRelativeToTile(latLongs[i], tile);
+			Assert.assertEquals(expected.x, pixels[2 * i], DELTA);
+			Assert.assertEquals(expected.y, pixels[2 * i + 1], delta);
+			Assert.assertEquals(pixels[2 * i], floatPixels[2 * i], 0.001);
+			Assert.assertEquals(pixels[2 * i + 1], floatPixels[2 * i + 1], 0.001);
+		}
+	}
+
+	@Test
+	public void interpolationTest() {
+		Tile tile = new Tile(8800, 5373, (byte) 14, TILE_SIZE);
+		Assert.assertTrue(new TileProjector(tile, true).isInterpolating());
+		verifyProjection(tile, true, TileProjector.MAX_INTERPOLATION_ERROR);
+
+		// the latitude table would be too inaccurate for the whole world
+		tile = new Tile(0, 0, (byte) 0, TILE_SIZE);
+		TileProjector tileProjector = new TileProjector(tile, true);
+		Assert.assertFalse(tileProjector.isInterpolating());
+		for (double latitude = -80; latitude <= 80; latitude += 10) {
+			double expected = MercatorProjection.latitudeToPixelY(latitude, tile.zoomLevel, tile.tileSize);
+			Assert.assertEquals(expected, tileProjector.latitudeToPixelY(latitude), DELTA);
+		}
+	}
+
+	@Test
+	public void originTest() {
+		Tile tile = new Tile(3, 5, (byte) 4, TILE_SIZE);
+		TileProjector tileProjector = new TileProjector(tile);
+		Assert.assertEquals(tile.getOrigin().x, tileProjector.getOriginX(), 0);
+		Assert.assertEquals(tile.getOrigin().y, tileProjector.getOriginY(), 0);
+
+		LatLong latLong = new LatLong(52.5, 13.4);
+		Point absolute = MercatorProjection.getPixelAbsolute(latLong, tile.zoomLevel, tile.tileSize);
+		TileProjector absoluteProjector = new TileProjector(tile.zoomLevel, tile.tileSize, 0, 0, tile.tileSize, false);
+		Assert.assertEquals(absolute.x, absoluteProjector.longitudeToPixelX(latLong.longitude), DELTA);
+		Assert.assertEquals(absolute.y, absoluteProjector.latitudeToPixelY(latLong.latitude), DELTA);
+	}
+
+	@Test
+	public void projectTest() {
+		for (byte zoomLevel = 5; zoomLevel <= 20; zoomLevel += 3) {
+			int tileNumber = (Tile.getMaxTileNumber(zoomLevel) + 1) / 3;
+			Tile tile = new Tile(tileNumber, tileNumber, zoomLevel, TILE_SIZE);
+			Assert.assertFalse(new TileProjector(tile).isInterpolating());
+			verifyProjection(tile, false, DELTA);
+		}
+	}
+}
@@ -123,6 +123,11 @@ class AndroidPaint implements Paint {
 		this.paint.setStyle(getAndroidStyle(Style.FILL));
 	}
 
+	@Override
+	public float getStrokeWidth() {
+		return this.paint.getStrokeWidth();
+	}
+
 	@Override
 	public int getTextHeight(String text) {
 		Rect rect = new Rect();
@@ -137,6 +142,11 @@ class AndroidPaint implements Paint {
 		return rect.width();
 	}
 
+	@Override
+	public boolean isDashed() {
+		return this.paint.getPathEffect() != null;
+	}
+
 	@Override
 	public boolean isTransparent() {
 		return this.paint.getShader() == null && this.paint.getAlpha() == 0;
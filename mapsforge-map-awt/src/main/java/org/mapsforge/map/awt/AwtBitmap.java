@@ -19,6 +19,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
@@ -26,6 +27,7 @@ import org.mapsforge.core.graphics.Bitmap;
 
 public class AwtBitmap implements Bitmap {
 	final BufferedImage bufferedImage;
+	private final AtomicInteger refCount = new AtomicInteger();
 
 	AwtBitmap(InputStream inputStream) throws IOException {
 		this.bufferedImage = ImageIO.read(inputStream);
@@ -48,12 +50,14 @@ public class AwtBitmap implements Bitmap {
 
 	@Override
 	public void compress(OutputStream outputStream) throws IOException {
-		ImageIO.write(this.bufferedImage, "png", outputStream);
+		AwtGraphicFactory.getImageEncoder().encode(this.bufferedImage, outputStream);
 	}
 
 	@Override
 	public void decrementRefCount() {
-		// no-op
+		if (this.refCount.decrementAndGet() < 0) {
+			destroy();
+		}
 	}
 
 	@Override
@@ -68,7 +72,7 @@ public class AwtBitmap implements Bitmap {
 
 	@Override
 	public void incrementRefCount() {
-		// no-op
+		this.refCount.incrementAndGet();
 	}
 
 	@Override
@@ -81,4 +85,10 @@ public class AwtBitmap implements Bitmap {
 		// TODO implement
 	}
 
+	/**
+	 * Called when the last reference to this bitmap has been released, the image must not be used afterwards.
+	 */
+	protected void destroy() {
+		// the image is reclaimed by the garbage collector
+	}
 }
@@ -138,7 +138,8 @@ class AwtCanvas implements Canvas {
 			this.graphics2D.drawString(text, x, y);
 		} else {
 			setColorAndStroke(awtPaint);
-			TextLayout textLayout = new TextLayout(text, awtPaint.font, this.graphics2D.getFontRenderContext());
+			TextLayout textLayout = AwtTextMetrics.getTextLayout(awtPaint.font, text,
+					this.graphics2D.getFontRenderContext());
 			AffineTransform affineTransform = new AffineTransform();
 			affineTransform.translate(x, y);
 			this.graphics2D.draw(textLayout.getOutline(affineTransform));
@@ -42,11 +42,16 @@ import org.mapsforge.core.model.Point;
 public class AwtGraphicFactory implements GraphicFactory {
 	public static final GraphicFactory INSTANCE = new AwtGraphicFactory();
 	private static final java.awt.Color TRANSPARENT = new java.awt.Color(0, 0, 0, 0);
+	private static volatile ImageEncoder imageEncoder = new PngEncoder();
 
 	public static GraphicContext createGraphicContext(Graphics graphics) {
 		return new AwtCanvas((Graphics2D) graphics);
 	}
 
+	static ImageEncoder getImageEncoder() {
+		return imageEncoder;
+	}
+
 	static AffineTransform getAffineTransform(Matrix matrix) {
 		return ((AwtMatrix) matrix).affineTransform;
 	}
@@ -63,6 +68,17 @@ public class AwtGraphicFactory implements GraphicFactory {
 		return ((AwtBitmap) bitmap).bufferedImage;
 	}
 
+	/**
+	 * Sets the encoder that writes bitmaps in {@link Bitmap#compress}, e.g. for the file system tile cache. The default
+	 * is a lossless {@link PngEncoder}.
+	 *
+	 * @param imageEncoder
+	 *            the encoder for all bitmaps
+	 */
+	public static void setImageEncoder(ImageEncoder imageEncoder) {
+		AwtGraphicFactory.imageEncoder = imageEncoder;
+	}
+
 	static java.awt.Color getColor(Color color) {
 		switch (color) {
 			case BLACK:
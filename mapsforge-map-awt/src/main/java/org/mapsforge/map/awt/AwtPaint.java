@@ -18,11 +18,9 @@ package org.mapsforge.map.awt;
 
 import java.awt.BasicStroke;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.TexturePaint;
-import java.awt.image.BufferedImage;
 
 import org.mapsforge.core.graphics.Align;
 import org.mapsforge.core.graphics.Bitmap;
@@ -111,18 +109,24 @@ public class AwtPaint implements Paint {
 		this.join = getJoin(Join.ROUND);
 	}
 
+	@Override
+	public float getStrokeWidth() {
+		return this.strokeWidth;
+	}
+
 	@Override
 	public int getTextHeight(String text) {
-		BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-		FontMetrics fontMetrics = bufferedImage.getGraphics().getFontMetrics(this.font);
-		return (int) this.font.createGlyphVector(fontMetrics.getFontRenderContext(), text).getVisualBounds().getHeight();
+		return (int) AwtTextMetrics.getBounds(this.font, text).getHeight();
 	}
 
 	@Override
 	public int getTextWidth(String text) {
-		BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-		FontMetrics fontMetrics = bufferedImage.getGraphics().getFontMetrics(this.font);
-		return (int) this.font.createGlyphVector(fontMetrics.getFontRenderContext(), text).getVisualBounds().getWidth();
+		return (int) AwtTextMetrics.getBounds(this.font, text).getWidth();
+	}
+
+	@Override
+	public boolean isDashed() {
+		return this.strokeDasharray != null;
 	}
 
 	@Override
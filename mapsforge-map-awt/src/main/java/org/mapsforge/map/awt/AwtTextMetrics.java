@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
+
+import org.mapsforge.core.util.LRUCache;
+
+/**
+ * Measures and lays out text with bounded caches that are shared by all paints, canvases and render threads. The same
+ * captions appear on many neighbouring tiles, so most measurements are answered without creating a glyph vector.
+ */
+final class AwtTextMetrics {
+	private static final class Key {
+		private final Font font;
+		private final FontRenderContext fontRenderContext;
+		private final int hashCode;
+		private final String text;
+
+		Key(Font font, FontRenderContext fontRenderContext, String text) {
+			this.font = font;
+			this.fontRenderContext = fontRenderContext;
+			this.text = text;
+			this.hashCode = calculateHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.text.equals(other.text) && this.font.equals(other.font)
+					&& this.fontRenderContext.equals(other.fontRenderContext);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		private int calculateHashCode() {
+			int result = 7;
+			result = 31 * result + this.font.hashCode();
+			result = 31 * result + this.fontRenderContext.hashCode();
+			result = 31 * result + this.text.hashCode();
+			return result;
+		}
+	}
+
+	static final int BOUNDS_CACHE_SIZE = 2048;
+
+	/**
+	 * Identity transform without anti-aliasing and fractional metrics, the same context that the graphics of an
+	 * offscreen image uses by default.
+	 */
+	static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, false);
+
+	static final int LAYOUT_CACHE_SIZE = 512;
+
+	private static final LRUCache<Key, Rectangle2D> BOUNDS_CACHE = new LRUCache<Key, Rectangle2D>(BOUNDS_CACHE_SIZE);
+	private static final LRUCache<Key, TextLayout> LAYOUT_CACHE = new LRUCache<Key, TextLayout>(LAYOUT_CACHE_SIZE);
+
+	/**
+	 * Removes all cached measurements and layouts.
+	 */
+	static void clear() {
+		synchronized (BOUNDS_CACHE) {
+			BOUNDS_CACHE.clear();
+		}
+		synchronized (LAYOUT_CACHE) {
+			LAYOUT_CACHE.clear();
+		}
+	}
+
+	/**
+	 * @param font
+	 *            the font of the text
+	 * @param text
+	 *            the text
+	 * @return the visual bounds of the text, must not be modified
+	 */
+	static Rectangle2D getBounds(Font font, String text) {
+		Key key = new Key(font, FONT_RENDER_CONTEXT, text);
+		Rectangle2D bounds;
+		synchronized (BOUNDS_CACHE) {
+			bounds = BOUNDS_CACHE.get(key);
+		}
+		if (bounds == null) {
+			// measured outside of the lock, a concurrent duplicate computation yields the same result
+			bounds = font.createGlyphVector(FONT_RENDER_CONTEXT, text).getVisualBounds();
+			synchronized (BOUNDS_CACHE) {
+				BOUNDS_CACHE.put(key, bounds);
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * @param font
+	 *            the font of the text
+	 * @param text
+	 *            the text
+	 * @param fontRenderContext
+	 *            the font render context of the graphics the text is drawn on
+	 * @return the immutable layout of the text
+	 */
+	static TextLayout getTextLayout(Font font, String text, FontRenderContext fontRenderContext) {
+		Key key = new Key(font, fontRenderContext, text);
+		TextLayout textLayout;
+		synchronized (LAYOUT_CACHE) {
+			textLayout = LAYOUT_CACHE.get(key);
+		}
+		if (textLayout == null) {
+			textLayout = new TextLayout(text, font, fontRenderContext);
+			synchronized (LAYOUT_CACHE) {
+				LAYOUT_CACHE.put(key, textLayout);
+			}
+		}
+		return textLayout;
+	}
+
+	static int size() {
+		synchronized (BOUNDS_CACHE) {
+			return BOUNDS_CACHE.size();
+		}
+	}
+
+	private AwtTextMetrics() {
+		throw new IllegalStateException();
+	}
+}
@@ -15,27 +15,105 @@
  */
 package org.mapsforge.map.awt;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.mapsforge.core.graphics.TileBitmap;
 
+/**
+ * The images of tiles that are rendered are recycled: once the last reference to a tile bitmap is released, its image
+ * is kept as a SoftReference in a pool for its tile size and alpha setting and handed to the next tile bitmap of the
+ * same kind, so that steady-state rendering does not allocate new rasters. The GC may still reclaim pooled images if
+ * memory gets tight.
+ */
 public class AwtTileBitmap extends AwtBitmap implements TileBitmap {
+	private static final Map<Integer, Deque<SoftReference<BufferedImage>>> REUSABLE_IMAGES =
+			new HashMap<Integer, Deque<SoftReference<BufferedImage>>>();
+
+	private static int composeHash(int tileSize, boolean hasAlpha) {
+		if (hasAlpha) {
+			return tileSize + 0x10000000;
+		}
+		return tileSize;
+	}
+
+	private static BufferedImage getTileImage(int tileSize, boolean hasAlpha) {
+		BufferedImage bufferedImage = getTileImageFromReusableSet(tileSize, hasAlpha);
+		if (bufferedImage == null) {
+			return new BufferedImage(tileSize, tileSize, hasAlpha ? BufferedImage.TYPE_INT_ARGB
+					: BufferedImage.TYPE_INT_RGB);
+		}
+
+		// a recycled image must look like a new one: transparent or black
+		Graphics2D graphics2D = bufferedImage.createGraphics();
+		graphics2D.setComposite(AlphaComposite.Clear);
+		graphics2D.fillRect(0, 0, tileSize, tileSize);
+		graphics2D.dispose();
+		return bufferedImage;
+	}
+
+	private static BufferedImage getTileImageFromReusableSet(int tileSize, boolean hasAlpha) {
+		synchronized (REUSABLE_IMAGES) {
+			Deque<SoftReference<BufferedImage>> images = REUSABLE_IMAGES.get(composeHash(tileSize, hasAlpha));
+			if (images == null) {
+				return null;
+			}
+			while (!images.isEmpty()) {
+				BufferedImage candidate = images.pop().get();
+				// references cleared by the GC are simply dropped
+				if (candidate != null) {
+					return candidate;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final AtomicBoolean recyclable;
 
 	AwtTileBitmap(InputStream inputStream) throws IOException {
 		super(inputStream);
+		this.recyclable = new AtomicBoolean(false);
 	}
 
 	AwtTileBitmap(int tileSize) {
-		super(tileSize, tileSize);
+		this(tileSize, true);
 	}
 
 	public AwtTileBitmap(int tileSize, boolean hasAlpha) {
-		super(tileSize, tileSize, hasAlpha);
+		super(getTileImage(tileSize, hasAlpha));
+		this.recyclable = new AtomicBoolean(true);
 	}
 
 	public AwtTileBitmap(BufferedImage bufferedImage) {
+		// the image belongs to the caller and is never recycled
 		super(bufferedImage);
+		this.recyclable = new AtomicBoolean(false);
+	}
+
+	@Override
+	protected void destroy() {
+		// guards against a second release putting the same image into the pool twice
+		if (!this.recyclable.compareAndSet(true, false)) {
+			return;
+		}
+		int hash = composeHash(this.bufferedImage.getWidth(), this.bufferedImage.getColorModel().hasAlpha());
+		synchronized (REUSABLE_IMAGES) {
+			Deque<SoftReference<BufferedImage>> images = REUSABLE_IMAGES.get(hash);
+			if (images == null) {
+				images = new ArrayDeque<SoftReference<BufferedImage>>();
+				REUSABLE_IMAGES.put(hash, images);
+			}
+			images.push(new SoftReference<BufferedImage>(this.bufferedImage));
+		}
 	}
 }
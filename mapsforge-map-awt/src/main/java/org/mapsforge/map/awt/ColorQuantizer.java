@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reduces the colors of an image to an 8-bit palette. Images with at most 256 distinct colors, which is common for map
+ * tiles rendered without anti-aliasing, are converted losslessly. Otherwise the colors are grouped into buckets of 4
+ * bits per channel and the most frequent buckets form the palette (popularity algorithm). Each bucket is represented by
+ * its majority color, which keeps the large uniform areas of map tiles exact and approximates the anti-aliased edges.
+ * <p>
+ * Instances keep their work arrays between calls and are not thread-safe.
+ */
+final class ColorQuantizer {
+	static final int MAX_COLORS = 256;
+
+	private static final int BUCKETS = 1 << 16;
+
+	private static int bucket(int argb) {
+		return (argb >>> 28) << 12 | (argb >>> 20 & 0xf) << 8 | (argb >>> 12 & 0xf) << 4 | (argb >>> 4 & 0xf);
+	}
+
+	private static int[] exactPalette(int[] pixels, byte[] indices) {
+		Map<Integer, Integer> colors = new HashMap<Integer, Integer>();
+		int previousPixel = 0;
+		int previousIndex = -1;
+		for (int i = 0; i < pixels.length; i++) {
+			// map tiles consist of long runs of the same color
+			if (pixels[i] != previousPixel || previousIndex < 0) {
+				Integer index = colors.get(pixels[i]);
+				if (index == null) {
+					if (colors.size() == MAX_COLORS) {
+						return null;
+					}
+					index = Integer.valueOf(colors.size());
+					colors.put(pixels[i], index);
+				}
+				previousPixel = pixels[i];
+				previousIndex = index.intValue();
+			}
+			indices[i] = (byte) previousIndex;
+		}
+
+		int[] palette = new int[colors.size()];
+		for (Map.Entry<Integer, Integer> entry : colors.entrySet()) {
+			palette[entry.getValue().intValue()] = entry.getKey().intValue();
+		}
+		return palette;
+	}
+
+	private static int nearest(int[] palette, int paletteSize, int argb) {
+		int best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < paletteSize; i++) {
+			int da = (palette[i] >>> 24) - (argb >>> 24);
+			int dr = (palette[i] >>> 16 & 0xff) - (argb >>> 16 & 0xff);
+			int dg = (palette[i] >>> 8 & 0xff) - (argb >>> 8 & 0xff);
+			int db = (palette[i] & 0xff) - (argb & 0xff);
+			int distance = da * da + dr * dr + dg * dg + db * db;
+			if (distance < bestDistance) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+
+	private final int[] bucketColors = new int[BUCKETS];
+	private final int[] counts = new int[BUCKETS];
+	private final int[] occupied = new int[BUCKETS];
+	private final int[] votes = new int[BUCKETS];
+
+	/**
+	 * @param pixels
+	 *            the non-premultiplied ARGB pixels of the image
+	 * @param indices
+	 *            receives the palette index of each pixel, at least as long as the pixels
+	 * @return the ARGB palette
+	 */
+	int[] quantize(int[] pixels, byte[] indices) {
+		int[] palette = exactPalette(pixels, indices);
+		if (palette != null) {
+			return palette;
+		}
+
+		int occupiedBuckets = 0;
+		for (int pixel : pixels) {
+			int bucket = bucket(pixel);
+			if (this.counts[bucket]++ == 0) {
+				this.occupied[occupiedBuckets++] = bucket;
+			}
+			// Boyer-Moore majority vote, finds the color of the bucket that occurs in more than half of its pixels
+			if (this.votes[bucket] == 0) {
+				this.bucketColors[bucket] = pixel;
+				this.votes[bucket] = 1;
+			} else if (this.bucketColors[bucket] == pixel) {
+				++this.votes[bucket];
+			} else {
+				--this.votes[bucket];
+			}
+		}
+
+		// sort the occupied buckets by descending count, the count is stored in the upper bits
+		long[] byCount = new long[occupiedBuckets];
+		for (int i = 0; i < occupiedBuckets; i++) {
+			int bucket = this.occupied[i];
+			byCount[i] = (long) -this.counts[bucket] << 32 | bucket;
+		}
+		Arrays.sort(byCount);
+
+		int paletteSize = Math.min(MAX_COLORS, occupiedBuckets);
+		palette = new int[paletteSize];
+		for (int i = 0; i < paletteSize; i++) {
+			palette[i] = this.bucketColors[(int) byCount[i]];
+		}
+
+		// the counts are reused as the palette index of each bucket, offset by one to distinguish unmapped buckets
+		for (int i = 0; i < occupiedBuckets; i++) {
+			int bucket = (int) byCount[i];
+			int index = i < paletteSize ? i : nearest(palette, paletteSize, this.bucketColors[bucket]);
+			this.counts[bucket] = index + 1;
+		}
+		for (int i = 0; i < pixels.length; i++) {
+			indices[i] = (byte) (this.counts[bucket(pixels[i])] - 1);
+		}
+
+		for (int i = 0; i < occupiedBuckets; i++) {
+			int bucket = this.occupied[i];
+			this.counts[bucket] = 0;
+			this.votes[bucket] = 0;
+		}
+		return palette;
+	}
+}
@@ -12,21 +12,24 @@
  * You should have received a copy of the GNU Lesser General Public License along with
  * this program. If not, see <http://www.gnu.org/licenses/>.
  */
-package org.mapsforge.map.layer.renderer;
+package org.mapsforge.map.awt;
 
-import org.mapsforge.core.model.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 
-class CircleContainer implements ShapeContainer {
-	final Point point;
-	final float radius;
-
-	CircleContainer(Point point, float radius) {
-		this.point = point;
-		this.radius = radius;
-	}
-
-	@Override
-	public ShapeType getShapeType() {
-		return ShapeType.CIRCLE;
-	}
+/**
+ * Writes the image of a bitmap to a stream, used by {@link AwtBitmap#compress(OutputStream)}. Implementations must be
+ * thread-safe as tiles are compressed concurrently.
+ */
+public interface ImageEncoder {
+	/**
+	 * @param bufferedImage
+	 *            the image to encode, must not be modified
+	 * @param outputStream
+	 *            the stream to write the encoded image to, it is not closed
+	 * @throws IOException
+	 *             if the image cannot be written
+	 */
+	void encode(BufferedImage bufferedImage, OutputStream outputStream) throws IOException;
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes images with the {@link ImageIO} writer for the given format.
+ */
+public class ImageIOEncoder implements ImageEncoder {
+	private final String formatName;
+
+	/**
+	 * @param formatName
+	 *            the informal name of the format, e.g. "png"
+	 */
+	public ImageIOEncoder(String formatName) {
+		this.formatName = formatName;
+	}
+
+	@Override
+	public void encode(BufferedImage bufferedImage, OutputStream outputStream) throws IOException {
+		if (!ImageIO.write(bufferedImage, this.formatName, outputStream)) {
+			throw new IOException("no ImageIO writer for format " + this.formatName);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A PNG writer that reads the pixels directly from the raster of the image and deflates them without the service
+ * lookup and metadata handling of {@link javax.imageio.ImageIO}. The deflate level and the row filter can be
+ * configured, optionally the image is reduced to an 8-bit palette which typically halves the size of map tiles.
+ */
+public class PngEncoder implements ImageEncoder {
+	/**
+	 * The PNG row filters, see the PNG specification section 9.
+	 */
+	public enum Filter {
+		/**
+		 * Chooses the filter with the smallest sum of absolute differences for each row.
+		 */
+		ADAPTIVE,
+
+		/**
+		 * Predicts a byte from the average of the left and the upper byte.
+		 */
+		AVERAGE,
+
+		/**
+		 * Writes the bytes unfiltered.
+		 */
+		NONE,
+
+		/**
+		 * Predicts a byte from the left, upper or upper left byte, whichever is closest to their gradient.
+		 */
+		PAETH,
+
+		/**
+		 * Predicts a byte from the left byte.
+		 */
+		SUB,
+
+		/**
+		 * Predicts a byte from the upper byte.
+		 */
+		UP;
+	}
+
+	/**
+	 * Deflate level that compresses nearly as well as the maximum level at a fraction of the time.
+	 */
+	public static final int DEFAULT_COMPRESSION_LEVEL = 4;
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int COLOR_TYPE_INDEXED = 3;
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int COLOR_TYPE_RGBA = 6;
+	private static final Charset CHARSET_ASCII = Charset.forName("US-ASCII");
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+	private static final ThreadLocal<ColorQuantizer> QUANTIZER = new ThreadLocal<ColorQuantizer>() {
+		@Override
+		protected ColorQuantizer initialValue() {
+			return new ColorQuantizer();
+		}
+	};
+
+	private static void filterRow(Filter filter, byte[] row, byte[] previousRow, int bytesPerPixel, byte[] out) {
+		int length = row.length;
+		switch (filter) {
+			case NONE:
+				System.arraycopy(row, 0, out, 1, length);
+				break;
+			case SUB:
+				for (int i = 0; i < length; i++) {
+					int left = i >= bytesPerPixel ? row[i - bytesPerPixel] : 0;
+					out[i + 1] = (byte) (row[i] - left);
+				}
+				break;
+			case UP:
+				for (int i = 0; i < length; i++) {
+					out[i + 1] = (byte) (row[i] - previousRow[i]);
+				}
+				break;
+			case AVERAGE:
+				for (int i = 0; i < length; i++) {
+					int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+					out[i + 1] = (byte) (row[i] - ((left + (previousRow[i] & 0xff)) >>> 1));
+				}
+				break;
+			case PAETH:
+				for (int i = 0; i < length; i++) {
+					int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+					int upperLeft = i >= bytesPerPixel ? previousRow[i - bytesPerPixel] & 0xff : 0;
+					out[i + 1] = (byte) (row[i] - paeth(left, previousRow[i] & 0xff, upperLeft));
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("not a single filter: " + filter);
+		}
+		out[0] = (byte) filterType(filter);
+	}
+
+	private static int filterType(Filter filter) {
+		switch (filter) {
+			case NONE:
+				return 0;
+			case SUB:
+				return 1;
+			case UP:
+				return 2;
+			case AVERAGE:
+				return 3;
+			case PAETH:
+				return 4;
+			default:
+				throw new IllegalArgumentException("not a single filter: " + filter);
+		}
+	}
+
+	private static int paeth(int left, int up, int upperLeft) {
+		int estimate = left + up - upperLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpperLeft = Math.abs(estimate - upperLeft);
+		if (distanceLeft <= distanceUp && distanceLeft <= distanceUpperLeft) {
+			return left;
+		} else if (distanceUp <= distanceUpperLeft) {
+			return up;
+		}
+		return upperLeft;
+	}
+
+	private static void readRow(BufferedImage bufferedImage, int y, int[] pixels) {
+		int width = bufferedImage.getWidth();
+		int type = bufferedImage.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+			// straight from the raster without the color model conversion of getRGB, alpha is undefined for RGB
+			bufferedImage.getRaster().getDataElements(0, y, width, 1, pixels);
+		} else {
+			bufferedImage.getRGB(0, y, width, 1, pixels, 0, width);
+		}
+	}
+
+	private static int sumOfAbsolutes(byte[] filtered) {
+		int sum = 0;
+		for (int i = 1; i < filtered.length; i++) {
+			// the filtered bytes are interpreted as signed, small differences in both directions count little
+			sum += Math.abs(filtered[i]);
+		}
+		return sum;
+	}
+
+	private static void writeChunk(OutputStream outputStream, String type, byte[] data, int length)
+			throws IOException {
+		byte[] typeBytes = type.getBytes(CHARSET_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		writeInt(outputStream, length);
+		outputStream.write(typeBytes);
+		outputStream.write(data, 0, length);
+		writeInt(outputStream, (int) crc.getValue());
+	}
+
+	private static void writeInt(OutputStream outputStream, int value) throws IOException {
+		outputStream.write(value >>> 24);
+		outputStream.write(value >>> 16);
+		outputStream.write(value >>> 8);
+		outputStream.write(value);
+	}
+
+	private final int compressionLevel;
+	private final Filter filter;
+	private final boolean palette;
+
+	/**
+	 * Creates a lossless encoder with the {@link #DEFAULT_COMPRESSION_LEVEL} and without filtering. The large uniform
+	 * areas and hard edges of map tiles deflate better unfiltered than with any of the predictors.
+	 */
+	public PngEncoder() {
+		this(DEFAULT_COMPRESSION_LEVEL, Filter.NONE, false);
+	}
+
+	/**
+	 * @param compressionLevel
+	 *            the deflate level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+	 * @param filter
+	 *            the row filter for true color images, palette images are never filtered
+	 * @param palette
+	 *            true to reduce the image to at most 256 colors, which is lossy if it contains more colors
+	 * @throws IllegalArgumentException
+	 *             if the compression level is invalid
+	 */
+	public PngEncoder(int compressionLevel, Filter filter, boolean palette) {
+		if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+		}
+		this.compressionLevel = compressionLevel;
+		this.filter = filter;
+		this.palette = palette;
+	}
+
+	@Override
+	public void encode(BufferedImage bufferedImage, OutputStream outputStream) throws IOException {
+		int width = bufferedImage.getWidth();
+		int height = bufferedImage.getHeight();
+		boolean hasAlpha = bufferedImage.getColorModel().hasAlpha();
+
+		int[] pixels = new int[width * height];
+		int[] rowPixels = new int[width];
+		for (int y = 0; y < height; y++) {
+			readRow(bufferedImage, y, rowPixels);
+			System.arraycopy(rowPixels, 0, pixels, y * width, width);
+		}
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		writeInt(header, width);
+		writeInt(header, height);
+		header.write(8);
+
+		ByteArrayOutputStream imageData = new ByteArrayOutputStream(BUFFER_SIZE);
+		Deflater deflater = new Deflater(this.compressionLevel);
+		try {
+			DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(imageData, deflater, BUFFER_SIZE);
+			byte[] paletteBytes = null;
+			byte[] transparencyBytes = null;
+			if (this.palette) {
+				header.write(COLOR_TYPE_INDEXED);
+				byte[] indices = new byte[pixels.length];
+				int[] colors = QUANTIZER.get().quantize(pixels, indices);
+				paletteBytes = new byte[colors.length * 3];
+				transparencyBytes = hasAlpha ? new byte[colors.length] : null;
+				for (int i = 0; i < colors.length; i++) {
+					paletteBytes[i * 3] = (byte) (colors[i] >>> 16);
+					paletteBytes[i * 3 + 1] = (byte) (colors[i] >>> 8);
+					paletteBytes[i * 3 + 2] = (byte) colors[i];
+					if (hasAlpha) {
+						transparencyBytes[i] = (byte) (colors[i] >>> 24);
+					}
+				}
+				for (int y = 0; y < height; y++) {
+					deflaterOutputStream.write(0);
+					deflaterOutputStream.write(indices, y * width, width);
+				}
+			} else {
+				header.write(hasAlpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB);
+				writeTrueColorRows(pixels, width, height, hasAlpha ? 4 : 3, deflaterOutputStream);
+			}
+			deflaterOutputStream.finish();
+
+			// compression, filter and interlace method
+			header.write(0);
+			header.write(0);
+			header.write(0);
+
+			outputStream.write(SIGNATURE);
+			writeChunk(outputStream, "IHDR", header.toByteArray(), header.size());
+			if (paletteBytes != null) {
+				writeChunk(outputStream, "PLTE", paletteBytes, paletteBytes.length);
+				if (transparencyBytes != null) {
+					writeChunk(outputStream, "tRNS", transparencyBytes, transparencyBytes.length);
+				}
+			}
+			writeChunk(outputStream, "IDAT", imageData.toByteArray(), imageData.size());
+			writeChunk(outputStream, "IEND", new byte[0], 0);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private void writeTrueColorRows(int[] pixels, int width, int height, int bytesPerPixel,
+			OutputStream outputStream) throws IOException {
+		int rowLength = width * bytesPerPixel;
+		byte[] row = new byte[rowLength];
+		byte[] previousRow = new byte[rowLength];
+		byte[] filtered = new byte[rowLength + 1];
+		byte[] candidate = new byte[rowLength + 1];
+
+		for (int y = 0; y < height; y++) {
+			int offset = y * width;
+			for (int x = 0, i = 0; x < width; x++) {
+				int pixel = pixels[offset + x];
+				row[i++] = (byte) (pixel >>> 16);
+				row[i++] = (byte) (pixel >>> 8);
+				row[i++] = (byte) pixel;
+				if (bytesPerPixel == 4) {
+					row[i++] = (byte) (pixel >>> 24);
+				}
+			}
+
+			if (this.filter == Filter.ADAPTIVE) {
+				filterRow(Filter.NONE, row, previousRow, bytesPerPixel, filtered);
+				int bestSum = sumOfAbsolutes(filtered);
+				for (Filter singleFilter : new Filter[] { Filter.SUB, Filter.UP, Filter.AVERAGE, Filter.PAETH }) {
+					filterRow(singleFilter, row, previousRow, bytesPerPixel, candidate);
+					int sum = sumOfAbsolutes(candidate);
+					if (sum < bestSum) {
+						bestSum = sum;
+						byte[] swap = filtered;
+						filtered = candidate;
+						candidate = swap;
+					}
+				}
+			} else {
+				filterRow(this.filter, row, previousRow, bytesPerPixel, filtered);
+			}
+			outputStream.write(filtered);
+
+			byte[] swap = previousRow;
+			previousRow = row;
+			row = swap;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws a tile with typical map content: a land area, a translucent water area, a road and a label. It is the common
+ * input of the tests and benchmarks of the image encoders.
+ */
+public final class SyntheticTile {
+	/**
+	 * The width and height of the tile in pixels.
+	 */
+	public static final int TILE_SIZE = 256;
+
+	/**
+	 * @param imageType
+	 *            the type of the image, e.g. {@link BufferedImage#TYPE_INT_ARGB}.
+	 * @param antiAliasing
+	 *            true if the shapes are drawn with anti-aliasing, which adds many intermediate colors.
+	 * @return a new image with the synthetic tile.
+	 */
+	public static BufferedImage create(int imageType, boolean antiAliasing) {
+		BufferedImage bufferedImage = new BufferedImage(TILE_SIZE, TILE_SIZE, imageType);
+		Graphics2D graphics2D = bufferedImage.createGraphics();
+		if (antiAliasing) {
+			graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		}
+		graphics2D.setColor(new Color(0xf8, 0xf4, 0xf0));
+		graphics2D.fillRect(0, 0, TILE_SIZE, TILE_SIZE / 2);
+		graphics2D.setColor(new Color(0xb5, 0xd0, 0xd0, 0x80));
+		graphics2D.fillOval(30, 100, 150, 120);
+		graphics2D.setStroke(new BasicStroke(6));
+		graphics2D.setColor(new Color(0xe8, 0x92, 0xa2));
+		graphics2D.drawLine(0, 20, TILE_SIZE, 230);
+		graphics2D.setColor(Color.BLACK);
+		graphics2D.drawString("Hauptstraße", 60, 60);
+		graphics2D.dispose();
+		return bufferedImage;
+	}
+
+	private SyntheticTile() {
+		throw new IllegalStateException();
+	}
+}
@@ -18,6 +18,8 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.graphics.Color;
+import org.mapsforge.core.graphics.FontFamily;
+import org.mapsforge.core.graphics.FontStyle;
 import org.mapsforge.core.graphics.Paint;
 
 public class AwtPaintTest {
@@ -33,4 +35,32 @@ public class AwtPaintTest {
 		paint.setBitmapShader(bitmap);
 		Assert.assertFalse(paint.isTransparent());
 	}
+
+	@Test
+	public void textMetricsTest() {
+		AwtTextMetrics.clear();
+		Paint paint = new AwtPaint();
+		paint.setTypeface(FontFamily.SANS_SERIF, FontStyle.BOLD);
+		paint.setTextSize(12);
+
+		int textWidth = paint.getTextWidth("Hauptstraße");
+		Assert.assertTrue(textWidth > 0);
+		Assert.assertTrue(paint.getTextHeight("Hauptstraße") > 0);
+		Assert.assertEquals(1, AwtTextMetrics.size());
+
+		Paint otherPaint = new AwtPaint();
+		otherPaint.setTypeface(FontFamily.SANS_SERIF, FontStyle.BOLD);
+		otherPaint.setTextSize(12);
+		Assert.assertEquals(textWidth, otherPaint.getTextWidth("Hauptstraße"));
+		Assert.assertEquals(1, AwtTextMetrics.size());
+
+		otherPaint.setTextSize(24);
+		Assert.assertTrue(otherPaint.getTextWidth("Hauptstraße") > textWidth);
+		Assert.assertEquals(2, AwtTextMetrics.size());
+
+		for (int i = 0; i < AwtTextMetrics.BOUNDS_CACHE_SIZE * 2; i++) {
+			paint.getTextWidth(String.valueOf(i));
+		}
+		Assert.assertEquals(AwtTextMetrics.BOUNDS_CACHE_SIZE, AwtTextMetrics.size());
+	}
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.TileBitmap;
+
+public class AwtTileBitmapTest {
+	private static final int TILE_SIZE = 7;
+
+	@Test
+	public void recycleTest() {
+		TileBitmap tileBitmap = AwtGraphicFactory.INSTANCE.createTileBitmap(TILE_SIZE, true);
+		BufferedImage bufferedImage = AwtGraphicFactory.getBufferedImage(tileBitmap);
+		bufferedImage.setRGB(3, 3, 0xff00ff00);
+
+		// still referenced by a cache
+		tileBitmap.incrementRefCount();
+		tileBitmap.decrementRefCount();
+		TileBitmap otherTileBitmap = AwtGraphicFactory.INSTANCE.createTileBitmap(TILE_SIZE, true);
+		Assert.assertNotSame(bufferedImage, AwtGraphicFactory.getBufferedImage(otherTileBitmap));
+
+		tileBitmap.decrementRefCount();
+		tileBitmap.decrementRefCount();
+		Assert.assertNotSame(bufferedImage, AwtGraphicFactory.getBufferedImage(
+				AwtGraphicFactory.INSTANCE.createTileBitmap(TILE_SIZE, false)));
+
+		TileBitmap recycledTileBitmap = AwtGraphicFactory.INSTANCE.createTileBitmap(TILE_SIZE, true);
+		Assert.assertSame(bufferedImage, AwtGraphicFactory.getBufferedImage(recycledTileBitmap));
+		Assert.assertEquals(0, bufferedImage.getRGB(3, 3));
+
+		// released twice above, but must only be handed out once
+		Assert.assertNotSame(bufferedImage, AwtGraphicFactory.getBufferedImage(
+				AwtGraphicFactory.INSTANCE.createTileBitmap(TILE_SIZE, true)));
+	}
+}
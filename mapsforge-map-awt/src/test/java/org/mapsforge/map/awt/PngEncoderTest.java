@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PngEncoderTest {
+	private static BufferedImage encodeAndDecode(ImageEncoder imageEncoder, BufferedImage bufferedImage)
+			throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		imageEncoder.encode(bufferedImage, outputStream);
+		return ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+	}
+
+	private static void verifyEqual(BufferedImage expected, BufferedImage actual) {
+		Assert.assertEquals(expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(expected.getHeight(), actual.getHeight());
+		boolean hasAlpha = expected.getColorModel().hasAlpha();
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int expectedPixel = expected.getRGB(x, y);
+				int actualPixel = actual.getRGB(x, y);
+				if (!hasAlpha || (expectedPixel >>> 24) != 0) {
+					Assert.assertEquals("pixel " + x + "," + y, expectedPixel, actualPixel);
+				} else {
+					Assert.assertEquals(0, actualPixel >>> 24);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void filterTest() throws IOException {
+		BufferedImage bufferedImage = SyntheticTile.create(BufferedImage.TYPE_INT_ARGB, true);
+		for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+			verifyEqual(bufferedImage, encodeAndDecode(new PngEncoder(6, filter, false), bufferedImage));
+		}
+	}
+
+	@Test
+	public void imageTypeTest() throws IOException {
+		BufferedImage bufferedImage = SyntheticTile.create(BufferedImage.TYPE_INT_RGB, true);
+		verifyEqual(bufferedImage, encodeAndDecode(new PngEncoder(), bufferedImage));
+
+		bufferedImage = SyntheticTile.create(BufferedImage.TYPE_4BYTE_ABGR, true);
+		verifyEqual(bufferedImage, encodeAndDecode(new PngEncoder(), bufferedImage));
+	}
+
+	@Test
+	public void paletteTest() throws IOException {
+		// without anti-aliasing the tile has few colors and is converted losslessly
+		BufferedImage bufferedImage = SyntheticTile.create(BufferedImage.TYPE_INT_ARGB, false);
+		verifyEqual(bufferedImage, encodeAndDecode(new PngEncoder(6, PngEncoder.Filter.NONE, true), bufferedImage));
+
+		bufferedImage = SyntheticTile.create(BufferedImage.TYPE_INT_ARGB, true);
+		BufferedImage decoded = encodeAndDecode(new PngEncoder(6, PngEncoder.Filter.NONE, true), bufferedImage);
+		Assert.assertEquals(bufferedImage.getRGB(10, 10), decoded.getRGB(10, 10));
+		Assert.assertEquals(bufferedImage.getRGB(100, 160), decoded.getRGB(100, 160));
+	}
+}
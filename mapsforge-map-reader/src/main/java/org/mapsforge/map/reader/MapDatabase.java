@@ -18,10 +18,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
@@ -169,6 +172,11 @@ public class MapDatabase {
 	 */
 	private static final int WAY_FEATURE_LABEL_POSITION = 0x10;
 
+	/**
+	 * Bitmask for the optional way levels of detail.
+	 */
+	private static final int WAY_FEATURE_LEVELS_OF_DETAIL = 0x02;
+
 	/**
 	 * Bitmask for the optional way feature "name".
 	 */
@@ -199,6 +207,7 @@ public class MapDatabase {
 	private RandomAccessFile inputFile;
 	private MapFileHeader mapFileHeader;
 	private ReadBuffer readBuffer;
+	private SearchIndex searchIndex;
 	private String signatureBlock;
 	private String signaturePoi;
 	private String signatureWay;
@@ -211,6 +220,7 @@ public class MapDatabase {
 	public void closeFile() {
 		try {
 			this.mapFileHeader = null;
+			this.searchIndex = null;
 
 			if (this.databaseIndexCache != null) {
 				this.databaseIndexCache.destroy();
@@ -222,7 +232,10 @@ public class MapDatabase {
 				this.inputFile = null;
 			}
 
-			this.readBuffer = null;
+			if (this.readBuffer != null) {
+				this.readBuffer.close();
+				this.readBuffer = null;
+			}
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 		}
@@ -303,10 +316,35 @@ public class MapDatabase {
 	 * @return the read map data.
 	 */
 	public MapReadResult readMapData(Tile tile) {
+		return readMapData(tile, tile);
+	}
+
+	/**
+	 * Reads all map data for the rectangular area covered by a block of tiles at the tile zoom level in one pass, so
+	 * that the data of the blocks shared by the tiles is read and decoded only once. If the area consists of more than
+	 * one tile, elements that are stored in several blocks of the map file are returned only once.
+	 * 
+	 * @param upperLeft
+	 *            the upper left tile of the area.
+	 * @param lowerRight
+	 *            the lower right tile of the area, must have the same zoom level as the upper left tile.
+	 * @return the read map data.
+	 * @throws IllegalArgumentException
+	 *             if the tiles do not define a valid area.
+	 */
+	public MapReadResult readMapData(Tile upperLeft, Tile lowerRight) {
+		if (upperLeft.zoomLevel != lowerRight.zoomLevel) {
+			throw new IllegalArgumentException("tiles must have the same zoom level: " + upperLeft + ", " + lowerRight);
+		} else if (upperLeft.tileX > lowerRight.tileX || upperLeft.tileY > lowerRight.tileY) {
+			throw new IllegalArgumentException("invalid area: " + upperLeft + ", " + lowerRight);
+		}
+
 		try {
 			prepareExecution();
 			QueryParameters queryParameters = new QueryParameters();
-			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(upperLeft.zoomLevel);
+			// a single tile is drawn as before, duplicates are only removed for the labels of a metatile
+			queryParameters.deduplicate = !upperLeft.equals(lowerRight);
 
 			// get and check the sub-file for the query zoom level
 			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
@@ -315,7 +353,7 @@ public class MapDatabase {
 				return null;
 			}
 
-			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+			QueryCalculations.calculateBaseTiles(queryParameters, upperLeft, lowerRight, subFileParameter);
 			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
 
 			return processBlocks(queryParameters, subFileParameter);
@@ -325,6 +363,61 @@ public class MapDatabase {
 		}
 	}
 
+	/**
+	 * Searches the POIs within the given area whose name starts with the given prefix, ignoring case. Only the blocks
+	 * which contain such POIs according to the search index of the map file are read.
+	 * 
+	 * @param namePrefix
+	 *            the prefix of the names.
+	 * @param boundingBox
+	 *            the area to search.
+	 * @return the matching POIs, or null if the map file has no search index or an error occurred.
+	 * @see MapFileInfo#searchIndex
+	 */
+	public List<PointOfInterest> searchPointOfInterests(String namePrefix, BoundingBox boundingBox) {
+		try {
+			SearchIndex index = readSearchIndex();
+			if (index == null) {
+				return null;
+			}
+			String normalizedPrefix = SearchIndex.normalizeName(namePrefix);
+			int[] blockNumbers = index.getBlocksByNamePrefix(normalizedPrefix);
+			return searchBlocks(index.zoomLevel, blockNumbers, boundingBox, normalizedPrefix, null);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Searches the POIs within the given area which have the given tag. Only the blocks which contain such POIs
+	 * according to the search index of the map file are read. The name, house number and elevation of a POI are not
+	 * indexed as tags, only the tags in {@link MapFileInfo#poiTags}.
+	 * 
+	 * @param tag
+	 *            the tag of the POIs.
+	 * @param boundingBox
+	 *            the area to search.
+	 * @return the matching POIs, or null if the map file has no search index or an error occurred.
+	 * @see MapFileInfo#searchIndex
+	 */
+	public List<PointOfInterest> searchPointOfInterests(Tag tag, BoundingBox boundingBox) {
+		try {
+			SearchIndex index = readSearchIndex();
+			if (index == null) {
+				return null;
+			}
+			int tagId = Arrays.asList(this.mapFileHeader.getMapFileInfo().poiTags).indexOf(tag);
+			if (tagId < 0) {
+				return new ArrayList<>();
+			}
+			return searchBlocks(index.zoomLevel, index.getBlocksByTagId(tagId), boundingBox, null, tag);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		}
+	}
+
 	private void decodeWayNodesDoubleDelta(LatLong[] waySegment) {
 		// get the first way node latitude offset (VBE-S)
 		double wayNodeLatitude = this.tileLatitude
@@ -383,6 +476,18 @@ public class MapDatabase {
 		}
 	}
 
+	/**
+	 * @return true if the name of the given POI starts with the given normalized prefix, false otherwise.
+	 */
+	private boolean hasNamePrefix(PointOfInterest pointOfInterest, String namePrefix) {
+		for (Tag tag : pointOfInterest.tags) {
+			if (TAG_KEY_NAME.equals(tag.key) && SearchIndex.normalizeName(tag.value).startsWith(namePrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Logs the debug signatures of the current way and block.
 	 */
@@ -432,6 +537,8 @@ public class MapDatabase {
 		List<PointOfInterest> pois = processPOIs(poisOnQueryZoomLevel);
 		if (pois == null) {
 			return null;
+		} else if (queryParameters.poisOnly) {
+			return new PoiWayBundle(pois, Collections.<Way> emptyList());
 		}
 
 		// finished reading POIs, check if the current buffer position is valid
@@ -460,6 +567,10 @@ public class MapDatabase {
 		boolean queryReadWaterInfo = false;
 
 		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		// elements crossing block boundaries are stored in each of these blocks
+		boolean deduplicate = queryParameters.deduplicate
+				&& (queryParameters.fromBlockX != queryParameters.toBlockX
+				|| queryParameters.fromBlockY != queryParameters.toBlockY);
 
 		// read and process all blocks from top to bottom and from left to right
 		for (int row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
@@ -522,7 +633,13 @@ public class MapDatabase {
 				this.inputFile.seek(subFileParameter.startAddress + currentBlockPointer);
 
 				// read the current block into the buffer
-				if (!this.readBuffer.readFromFile(currentBlockSize)) {
+				boolean blockRead;
+				if (this.mapFileHeader.getMapFileInfo().compressedBlocks) {
+					blockRead = this.readBuffer.readCompressedBlockFromFile(currentBlockSize);
+				} else {
+					blockRead = this.readBuffer.readFromFile(currentBlockSize);
+				}
+				if (!blockRead) {
 					// skip the current block
 					LOGGER.warning("reading current block has failed: " + currentBlockSize);
 					return null;
@@ -537,7 +654,7 @@ public class MapDatabase {
 				try {
 					PoiWayBundle poiWayBundle = processBlock(queryParameters, subFileParameter);
 					if (poiWayBundle != null) {
-						mapReadResultBuilder.add(poiWayBundle);
+						mapReadResultBuilder.add(poiWayBundle, deduplicate);
 					}
 				} catch (ArrayIndexOutOfBoundsException e) {
 					LOGGER.log(Level.SEVERE, null, e);
@@ -705,6 +822,7 @@ public class MapDatabase {
 				}
 				return null;
 			}
+			int wayDataEnd = this.readBuffer.getBufferPosition() + wayDataSize;
 
 			if (queryParameters.useTileBitmask) {
 				// get the way tile bitmask (2 bytes)
@@ -743,13 +861,14 @@ public class MapDatabase {
 			// get the feature bitmask (1 byte)
 			byte featureByte = this.readBuffer.readByte();
 
-			// bit 1-6 enable optional features
+			// bit 1-7 enable optional features
 			boolean featureName = (featureByte & WAY_FEATURE_NAME) != 0;
 			boolean featureHouseNumber = (featureByte & WAY_FEATURE_HOUSE_NUMBER) != 0;
 			boolean featureRef = (featureByte & WAY_FEATURE_REF) != 0;
 			boolean featureLabelPosition = (featureByte & WAY_FEATURE_LABEL_POSITION) != 0;
 			boolean featureWayDataBlocksByte = (featureByte & WAY_FEATURE_DATA_BLOCKS_BYTE) != 0;
 			boolean featureWayDoubleDeltaEncoding = (featureByte & WAY_FEATURE_DOUBLE_DELTA_ENCODING) != 0;
+			boolean featureLevelsOfDetail = (featureByte & WAY_FEATURE_LEVELS_OF_DETAIL) != 0;
 
 			// check if the way has a name
 			if (featureName) {
@@ -768,7 +887,14 @@ public class MapDatabase {
 
 			LatLong labelPosition = readOptionalLabelPosition(featureLabelPosition);
 
-			int wayDataBlocks = readOptionalWayDataBlocksByte(featureWayDataBlocksByte);
+			int wayDataBlocks;
+			boolean levelOfDetail = featureLevelsOfDetail && seekLevelOfDetail(queryParameters.queryZoomLevel);
+			if (levelOfDetail) {
+				// get the number of way data blocks of the level of detail (VBE-U)
+				wayDataBlocks = this.readBuffer.readUnsignedInt();
+			} else {
+				wayDataBlocks = readOptionalWayDataBlocksByte(featureWayDataBlocksByte);
+			}
 			if (wayDataBlocks < 1) {
 				LOGGER.warning("invalid number of way data blocks: " + wayDataBlocks);
 				logDebugSignatures();
@@ -781,6 +907,11 @@ public class MapDatabase {
 					ways.add(new Way(layer, tags, wayNodes, labelPosition));
 				}
 			}
+
+			if (levelOfDetail) {
+				// skip the remaining levels of detail and the full way data blocks
+				this.readBuffer.setBufferPosition(wayDataEnd);
+			}
 		}
 
 		return ways;
@@ -809,6 +940,107 @@ public class MapDatabase {
 		return 1;
 	}
 
+	/**
+	 * Reads the POIs of the given blocks of the sub-file for the given zoom level which lie within the given area and
+	 * either have a name with the given normalized prefix or the given tag.
+	 */
+	private List<PointOfInterest> searchBlocks(byte zoomLevel, int[] blockNumbers, BoundingBox boundingBox,
+			String namePrefix, Tag tag) throws IOException {
+		prepareExecution();
+		QueryParameters queryParameters = new QueryParameters();
+		queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(zoomLevel);
+		queryParameters.poisOnly = true;
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+		if (subFileParameter == null) {
+			LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+			return null;
+		}
+
+		// only the blocks which intersect the area are read
+		queryParameters.fromBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.minLongitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.fromBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.toBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.maxLongitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.toBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.minLatitude,
+				subFileParameter.baseZoomLevel);
+		QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+		int fromBlockX = queryParameters.fromBlockX;
+		int fromBlockY = queryParameters.fromBlockY;
+		long toBlockX = queryParameters.toBlockX;
+		long toBlockY = queryParameters.toBlockY;
+
+		List<PointOfInterest> pointOfInterests = new ArrayList<>();
+		for (int blockNumber : blockNumbers) {
+			int column = (int) (blockNumber % subFileParameter.blocksWidth);
+			int row = (int) (blockNumber / subFileParameter.blocksWidth);
+			if (column < fromBlockX || column > toBlockX || row < fromBlockY || row > toBlockY) {
+				continue;
+			}
+
+			queryParameters.fromBlockX = column;
+			queryParameters.fromBlockY = row;
+			queryParameters.toBlockX = column;
+			queryParameters.toBlockY = row;
+			MapReadResult mapReadResult = processBlocks(queryParameters, subFileParameter);
+			if (mapReadResult == null) {
+				continue;
+			}
+
+			for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
+				if (boundingBox.contains(pointOfInterest.position)
+						&& (tag == null || pointOfInterest.tags.contains(tag))
+						&& (namePrefix == null || hasNamePrefix(pointOfInterest, namePrefix))) {
+					pointOfInterests.add(pointOfInterest);
+				}
+			}
+		}
+		return pointOfInterests;
+	}
+
+	/**
+	 * Reads the table of the levels of detail of a way and moves the buffer position to the first level whose
+	 * maximum zoom level is not lower than the given zoom level. If there is no such level, the buffer position is
+	 * moved behind all levels to the full way data blocks.
+	 * 
+	 * @return true if a level of detail has been found, false otherwise.
+	 */
+	private boolean seekLevelOfDetail(int zoomLevel) {
+		// get the number of levels of detail (VBE-U)
+		int numberOfLevels = this.readBuffer.readUnsignedInt();
+
+		int skippedBytes = 0;
+		boolean found = false;
+		for (int level = 0; level < numberOfLevels; ++level) {
+			// get the maximum zoom level (1 byte) and the size of the level (VBE-U)
+			byte zoomLevelMax = this.readBuffer.readByte();
+			int levelSize = this.readBuffer.readUnsignedInt();
+			if (!found) {
+				if (zoomLevel <= zoomLevelMax) {
+					found = true;
+				} else {
+					skippedBytes += levelSize;
+				}
+			}
+		}
+
+		this.readBuffer.skipBytes(skippedBytes);
+		return found;
+	}
+
+	/**
+	 * @return the search index of the map file, or null if it has none or it is invalid.
+	 */
+	private SearchIndex readSearchIndex() throws IOException {
+		if (!getMapFileInfo().searchIndex) {
+			return null;
+		} else if (this.searchIndex == null) {
+			this.searchIndex = SearchIndex.read(this.inputFile, this.fileSize);
+		}
+		return this.searchIndex;
+	}
+
 	private int[][] readZoomTable(SubFileParameter subFileParameter) {
 		int rows = subFileParameter.zoomLevelMax - subFileParameter.zoomLevelMin + 1;
 		int[][] zoomTable = new int[rows][2];
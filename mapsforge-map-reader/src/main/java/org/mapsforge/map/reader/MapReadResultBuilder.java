@@ -15,12 +15,16 @@
 package org.mapsforge.map.reader;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 class MapReadResultBuilder {
 	boolean isWater;
 	final List<PointOfInterest> pointOfInterests;
 	final List<Way> ways;
+	private Set<PointOfInterest> poiIndex;
+	private Set<Way> wayIndex;
 
 	MapReadResultBuilder() {
 		this.pointOfInterests = new ArrayList<PointOfInterest>();
@@ -28,8 +32,35 @@ class MapReadResultBuilder {
 	}
 
 	void add(PoiWayBundle poiWayBundle) {
-		this.pointOfInterests.addAll(poiWayBundle.pois);
-		this.ways.addAll(poiWayBundle.ways);
+		add(poiWayBundle, false);
+	}
+
+	/**
+	 * @param deduplicate
+	 *            true if elements already added should be skipped, the map writer stores elements that cross the
+	 *            boundary of a base tile in every block they intersect.
+	 */
+	void add(PoiWayBundle poiWayBundle, boolean deduplicate) {
+		if (!deduplicate) {
+			this.pointOfInterests.addAll(poiWayBundle.pois);
+			this.ways.addAll(poiWayBundle.ways);
+			return;
+		}
+
+		if (this.wayIndex == null) {
+			this.poiIndex = new HashSet<PointOfInterest>(this.pointOfInterests);
+			this.wayIndex = new HashSet<Way>(this.ways);
+		}
+		for (PointOfInterest pointOfInterest : poiWayBundle.pois) {
+			if (this.poiIndex.add(pointOfInterest)) {
+				this.pointOfInterests.add(pointOfInterest);
+			}
+		}
+		for (Way way : poiWayBundle.ways) {
+			if (this.wayIndex.add(way)) {
+				this.ways.add(way);
+			}
+		}
 	}
 
 	MapReadResult build() {
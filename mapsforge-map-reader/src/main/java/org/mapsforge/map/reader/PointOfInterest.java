@@ -43,4 +43,25 @@ public class PointOfInterest {
 		this.tags = tags;
 		this.position = position;
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof PointOfInterest)) {
+			return false;
+		}
+		PointOfInterest other = (PointOfInterest) obj;
+		return this.layer == other.layer && this.position.equals(other.position) && this.tags.equals(other.tags);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + this.layer;
+		result = prime * result + this.position.hashCode();
+		result = prime * result + this.tags.hashCode();
+		return result;
+	}
 }
@@ -19,29 +19,48 @@ import org.mapsforge.map.reader.header.SubFileParameter;
 
 final class QueryCalculations {
 	static void calculateBaseTiles(QueryParameters queryParameters, Tile tile, SubFileParameter subFileParameter) {
-		if (tile.zoomLevel < subFileParameter.baseZoomLevel) {
+		calculateBaseTiles(queryParameters, tile, tile, subFileParameter);
+	}
+
+	/**
+	 * Calculates the base tiles for the rectangular area from the upper left to the lower right tile, both tiles must
+	 * have the same zoom level.
+	 */
+	static void calculateBaseTiles(QueryParameters queryParameters, Tile upperLeft, Tile lowerRight,
+			SubFileParameter subFileParameter) {
+		if (upperLeft.zoomLevel < subFileParameter.baseZoomLevel) {
 			// calculate the XY numbers of the upper left and lower right sub-tiles
-			int zoomLevelDifference = subFileParameter.baseZoomLevel - tile.zoomLevel;
-			queryParameters.fromBaseTileX = tile.tileX << zoomLevelDifference;
-			queryParameters.fromBaseTileY = tile.tileY << zoomLevelDifference;
-			queryParameters.toBaseTileX = queryParameters.fromBaseTileX + (1 << zoomLevelDifference) - 1;
-			queryParameters.toBaseTileY = queryParameters.fromBaseTileY + (1 << zoomLevelDifference) - 1;
+			int zoomLevelDifference = subFileParameter.baseZoomLevel - upperLeft.zoomLevel;
+			queryParameters.fromBaseTileX = upperLeft.tileX << zoomLevelDifference;
+			queryParameters.fromBaseTileY = upperLeft.tileY << zoomLevelDifference;
+			queryParameters.toBaseTileX = ((lowerRight.tileX + 1) << zoomLevelDifference) - 1;
+			queryParameters.toBaseTileY = ((lowerRight.tileY + 1) << zoomLevelDifference) - 1;
 			queryParameters.useTileBitmask = false;
-		} else if (tile.zoomLevel > subFileParameter.baseZoomLevel) {
-			// calculate the XY numbers of the parent base tile
-			int zoomLevelDifference = tile.zoomLevel - subFileParameter.baseZoomLevel;
-			queryParameters.fromBaseTileX = tile.tileX >>> zoomLevelDifference;
-			queryParameters.fromBaseTileY = tile.tileY >>> zoomLevelDifference;
-			queryParameters.toBaseTileX = queryParameters.fromBaseTileX;
-			queryParameters.toBaseTileY = queryParameters.fromBaseTileY;
-			queryParameters.useTileBitmask = true;
-			queryParameters.queryTileBitmask = calculateTileBitmask(tile, zoomLevelDifference);
+		} else if (upperLeft.zoomLevel > subFileParameter.baseZoomLevel) {
+			// calculate the XY numbers of the parent base tiles
+			int zoomLevelDifference = upperLeft.zoomLevel - subFileParameter.baseZoomLevel;
+			queryParameters.fromBaseTileX = upperLeft.tileX >>> zoomLevelDifference;
+			queryParameters.fromBaseTileY = upperLeft.tileY >>> zoomLevelDifference;
+			queryParameters.toBaseTileX = lowerRight.tileX >>> zoomLevelDifference;
+			queryParameters.toBaseTileY = lowerRight.tileY >>> zoomLevelDifference;
+			// the bitmask is relative to a single base tile, an area spanning several base tiles reads all sub-tiles
+			queryParameters.useTileBitmask = queryParameters.fromBaseTileX == queryParameters.toBaseTileX
+					&& queryParameters.fromBaseTileY == queryParameters.toBaseTileY;
+			if (queryParameters.useTileBitmask) {
+				queryParameters.queryTileBitmask = 0;
+				for (int tileY = upperLeft.tileY; tileY <= lowerRight.tileY; ++tileY) {
+					for (int tileX = upperLeft.tileX; tileX <= lowerRight.tileX; ++tileX) {
+						Tile tile = new Tile(tileX, tileY, upperLeft.zoomLevel, upperLeft.tileSize);
+						queryParameters.queryTileBitmask |= calculateTileBitmask(tile, zoomLevelDifference);
+					}
+				}
+			}
 		} else {
-			// use the tile XY numbers of the requested tile
-			queryParameters.fromBaseTileX = tile.tileX;
-			queryParameters.fromBaseTileY = tile.tileY;
-			queryParameters.toBaseTileX = queryParameters.fromBaseTileX;
-			queryParameters.toBaseTileY = queryParameters.fromBaseTileY;
+			// use the tile XY numbers of the requested tiles
+			queryParameters.fromBaseTileX = upperLeft.tileX;
+			queryParameters.fromBaseTileY = upperLeft.tileY;
+			queryParameters.toBaseTileX = lowerRight.tileX;
+			queryParameters.toBaseTileY = lowerRight.tileY;
 			queryParameters.useTileBitmask = false;
 		}
 	}
@@ -15,10 +15,12 @@
 package org.mapsforge.map.reader;
 
 class QueryParameters {
+	boolean deduplicate;
 	int fromBaseTileX;
 	int fromBaseTileY;
 	int fromBlockX;
 	int fromBlockY;
+	boolean poisOnly;
 	int queryTileBitmask;
 	int queryZoomLevel;
 	long toBaseTileX;
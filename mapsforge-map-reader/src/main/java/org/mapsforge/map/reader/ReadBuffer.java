@@ -18,11 +18,23 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Reads from a {@link RandomAccessFile} into a buffer and decodes the data.
  */
 public class ReadBuffer {
+	/**
+	 * Marks a block which is compressed with the Deflate algorithm without zlib header.
+	 */
+	static final byte BLOCK_COMPRESSION_DEFLATE = 1;
+
+	/**
+	 * Marks a block which is stored uncompressed.
+	 */
+	static final byte BLOCK_COMPRESSION_NONE = 0;
+
 	/**
 	 * Maximum buffer size which is supported by this implementation.
 	 */
@@ -32,7 +44,21 @@ public class ReadBuffer {
 
 	private byte[] bufferData;
 	private int bufferPosition;
+	private Inflater inflater;
 	private final RandomAccessFile inputFile;
+	// holds the compressed data of the last block, swapped with the read buffer to avoid allocations
+	private byte[] spareBufferData;
+
+	/**
+	 * Creates a read buffer which decodes the given data, which has been read from the file already.
+	 * 
+	 * @param bufferData
+	 *            the data to decode.
+	 */
+	ReadBuffer(byte[] bufferData) {
+		this.bufferData = bufferData;
+		this.inputFile = null;
+	}
 
 	ReadBuffer(RandomAccessFile inputFile) {
 		this.inputFile = inputFile;
@@ -47,6 +73,67 @@ public class ReadBuffer {
 		return this.bufferData[this.bufferPosition++];
 	}
 
+	/**
+	 * Reads a block of the given stored length from the file into the read buffer, which starts with a byte for the
+	 * compression of the block. A compressed block is inflated, so that the read buffer holds the uncompressed data
+	 * and the buffer position is at its beginning. The buffers are reused for subsequent blocks.
+	 * 
+	 * @param length
+	 *            the amount of bytes to read from the file.
+	 * @return true if the whole block was read and inflated successfully, false otherwise.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	public boolean readCompressedBlockFromFile(int length) throws IOException {
+		if (!readFromFile(length)) {
+			return false;
+		}
+
+		byte compression = readByte();
+		if (compression == BLOCK_COMPRESSION_NONE) {
+			return true;
+		} else if (compression != BLOCK_COMPRESSION_DEFLATE) {
+			LOGGER.warning("invalid block compression: " + compression);
+			return false;
+		}
+
+		int uncompressedLength = readUnsignedInt();
+		if (uncompressedLength < 0 || uncompressedLength > MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("invalid uncompressed block length: " + uncompressedLength);
+			return false;
+		}
+
+		byte[] compressedData = this.bufferData;
+		int compressedOffset = this.bufferPosition;
+		if (compressedOffset > length) {
+			LOGGER.warning("invalid compressed block length: " + length);
+			return false;
+		}
+		this.bufferData = this.spareBufferData;
+		this.spareBufferData = compressedData;
+		if (this.bufferData == null || this.bufferData.length < uncompressedLength) {
+			this.bufferData = new byte[uncompressedLength];
+		}
+		this.bufferPosition = 0;
+
+		if (this.inflater == null) {
+			this.inflater = new Inflater(true);
+		}
+		this.inflater.reset();
+		this.inflater.setInput(compressedData, compressedOffset, length - compressedOffset);
+		try {
+			int inflatedLength = this.inflater.inflate(this.bufferData, 0, uncompressedLength);
+			if (inflatedLength != uncompressedLength) {
+				LOGGER.warning("invalid inflated block length: " + inflatedLength);
+				return false;
+			}
+		} catch (DataFormatException e) {
+			LOGGER.warning("invalid compressed block: " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Reads the given amount of bytes from the file into the read buffer and resets the internal buffer position. If
 	 * the capacity of the read buffer is too small, a larger one is created automatically.
@@ -186,6 +273,16 @@ public class ReadBuffer {
 		return null;
 	}
 
+	/**
+	 * Releases the native resources of the decompressor.
+	 */
+	void close() {
+		if (this.inflater != null) {
+			this.inflater.end();
+			this.inflater = null;
+		}
+	}
+
 	/**
 	 * @return the current buffer position.
 	 */
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * The index of the names and tags of the POIs at the end of a map file. The dictionary is read when the index is
+ * opened, the posting lists with the numbers of the blocks which contain matching POIs are read on demand.
+ * <p>
+ * The last eight bytes of the file contain the position of the index. The index starts with the maximum zoom level of
+ * the indexed sub-file (1 byte) and the size of the dictionary in bytes (4 bytes). The dictionary contains the number
+ * of names followed by each name in lower case with the size of its posting list, sorted by name, and the number of
+ * tags followed by each POI tag ID with the size of its posting list, sorted by tag ID. The posting lists follow in the
+ * same order, each one contains the number of blocks and the difference of each block number to the previous one.
+ */
+final class SearchIndex {
+	/**
+	 * Size of the fixed part of the index: the zoom level and the dictionary size.
+	 */
+	private static final int HEADER_SIZE = 5;
+
+	private static final Logger LOGGER = Logger.getLogger(SearchIndex.class.getName());
+
+	/**
+	 * Size of the position of the index at the end of the file.
+	 */
+	private static final int TRAILER_SIZE = 8;
+
+	/**
+	 * @return the name as it is stored in the search index.
+	 */
+	static String normalizeName(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Reads the search index of the given map file.
+	 * 
+	 * @param inputFile
+	 *            the map file.
+	 * @param fileSize
+	 *            the size of the map file in bytes.
+	 * @return the search index, or null if it is invalid.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	static SearchIndex read(RandomAccessFile inputFile, long fileSize) throws IOException {
+		if (fileSize < HEADER_SIZE + TRAILER_SIZE) {
+			LOGGER.warning("file too small for a search index: " + fileSize);
+			return null;
+		}
+		inputFile.seek(fileSize - TRAILER_SIZE);
+		long indexStart = inputFile.readLong();
+		if (indexStart < 0 || indexStart > fileSize - TRAILER_SIZE - HEADER_SIZE) {
+			LOGGER.warning("invalid search index position: " + indexStart);
+			return null;
+		}
+
+		inputFile.seek(indexStart);
+		byte zoomLevel = inputFile.readByte();
+		int dictionarySize = inputFile.readInt();
+		long postingListsStart = indexStart + HEADER_SIZE + dictionarySize;
+		if (dictionarySize < 0 || postingListsStart > fileSize - TRAILER_SIZE) {
+			LOGGER.warning("invalid search index dictionary size: " + dictionarySize);
+			return null;
+		}
+		byte[] dictionary = new byte[dictionarySize];
+		inputFile.readFully(dictionary);
+
+		try {
+			return new SearchIndex(inputFile, zoomLevel, new ReadBuffer(dictionary), postingListsStart, fileSize
+					- TRAILER_SIZE);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			LOGGER.warning("invalid search index dictionary");
+			return null;
+		}
+	}
+
+	/**
+	 * @return the sorted block numbers of the posting list at the given offset of the buffer.
+	 */
+	private static int[] readBlockNumbers(ReadBuffer readBuffer, int offset) {
+		readBuffer.setBufferPosition(offset);
+		int[] blockNumbers = new int[readBuffer.readUnsignedInt()];
+		int blockNumber = 0;
+		for (int i = 0; i < blockNumbers.length; ++i) {
+			blockNumber += readBuffer.readUnsignedInt();
+			blockNumbers[i] = blockNumber;
+		}
+		return blockNumbers;
+	}
+
+	/**
+	 * Sorts the given block numbers and removes duplicates.
+	 * 
+	 * @return the number of distinct block numbers at the start of the array.
+	 */
+	private static int sortDistinct(int[] blockNumbers, int size) {
+		Arrays.sort(blockNumbers, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; ++i) {
+			if (distinct == 0 || blockNumbers[distinct - 1] != blockNumbers[i]) {
+				blockNumbers[distinct++] = blockNumbers[i];
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * The maximum zoom level of the indexed sub-file, at which all POIs of a block are read.
+	 */
+	final byte zoomLevel;
+
+	private final RandomAccessFile inputFile;
+	private final String[] names;
+	private final long[] namePostingLists;
+	private final long postingListsEnd;
+	private final int[] tagIds;
+	private final long[] tagPostingLists;
+
+	private SearchIndex(RandomAccessFile inputFile, byte zoomLevel, ReadBuffer dictionary, long postingListsStart,
+			long postingListsEnd) {
+		this.inputFile = inputFile;
+		this.zoomLevel = zoomLevel;
+		this.postingListsEnd = postingListsEnd;
+
+		// each posting list is stored as its position followed by its size
+		long position = postingListsStart;
+		int numberOfNames = dictionary.readUnsignedInt();
+		this.names = new String[numberOfNames];
+		this.namePostingLists = new long[numberOfNames * 2];
+		for (int i = 0; i < numberOfNames; ++i) {
+			this.names[i] = dictionary.readUTF8EncodedString();
+			this.namePostingLists[i * 2] = position;
+			this.namePostingLists[i * 2 + 1] = dictionary.readUnsignedInt();
+			position += this.namePostingLists[i * 2 + 1];
+		}
+
+		int numberOfTags = dictionary.readUnsignedInt();
+		this.tagIds = new int[numberOfTags];
+		this.tagPostingLists = new long[numberOfTags * 2];
+		for (int i = 0; i < numberOfTags; ++i) {
+			this.tagIds[i] = dictionary.readUnsignedInt();
+			this.tagPostingLists[i * 2] = position;
+			this.tagPostingLists[i * 2 + 1] = dictionary.readUnsignedInt();
+			position += this.tagPostingLists[i * 2 + 1];
+		}
+	}
+
+	/**
+	 * @param namePrefix
+	 *            the normalized prefix of the names.
+	 * @return the sorted numbers of the blocks which contain POIs whose name starts with the given prefix.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	int[] getBlocksByNamePrefix(String namePrefix) throws IOException {
+		int from = Arrays.binarySearch(this.names, namePrefix);
+		if (from < 0) {
+			from = -from - 1;
+		}
+		int to = from;
+		while (to < this.names.length && this.names[to].startsWith(namePrefix)) {
+			++to;
+		}
+		if (from == to) {
+			return new int[0];
+		} else if (to - from == 1) {
+			return readBlockNumbers(readPostingLists(this.namePostingLists, from, to), 0);
+		}
+
+		// the posting lists of the matching names are adjacent, they are read at once and merged by a single sort
+		ReadBuffer readBuffer = readPostingLists(this.namePostingLists, from, to);
+		long start = this.namePostingLists[from * 2];
+		int[] result = new int[0];
+		int size = 0;
+		for (int index = from; index < to; ++index) {
+			int[] blockNumbers = readBlockNumbers(readBuffer, (int) (this.namePostingLists[index * 2] - start));
+			if (size + blockNumbers.length > result.length) {
+				result = Arrays.copyOf(result, Math.max(result.length * 2, size + blockNumbers.length));
+			}
+			System.arraycopy(blockNumbers, 0, result, size, blockNumbers.length);
+			size += blockNumbers.length;
+		}
+		return Arrays.copyOf(result, sortDistinct(result, size));
+	}
+
+	/**
+	 * @param tagId
+	 *            the ID of the POI tag in the map file.
+	 * @return the sorted numbers of the blocks which contain POIs with the given tag.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	int[] getBlocksByTagId(int tagId) throws IOException {
+		int index = Arrays.binarySearch(this.tagIds, tagId);
+		if (index < 0) {
+			return new int[0];
+		}
+		return readBlockNumbers(readPostingLists(this.tagPostingLists, index, index + 1), 0);
+	}
+
+	/**
+	 * Reads the adjacent posting lists from the first to the last given index with a single seek.
+	 */
+	private ReadBuffer readPostingLists(long[] postingLists, int from, int to) throws IOException {
+		long position = postingLists[from * 2];
+		long end = postingLists[(to - 1) * 2] + postingLists[(to - 1) * 2 + 1];
+		if (end > this.postingListsEnd) {
+			throw new IOException("invalid posting lists: " + position + ", " + end);
+		}
+
+		byte[] data = new byte[(int) (end - position)];
+		this.inputFile.seek(position);
+		this.inputFile.readFully(data);
+		return new ReadBuffer(data);
+	}
+}
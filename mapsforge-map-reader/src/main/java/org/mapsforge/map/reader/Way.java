@@ -14,6 +14,7 @@
  */
 package org.mapsforge.map.reader;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.mapsforge.core.model.LatLong;
@@ -49,4 +50,35 @@ public class Way {
 		this.latLongs = latLongs;
 		this.labelPosition = labelPosition;
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof Way)) {
+			return false;
+		}
+		Way other = (Way) obj;
+		if (this.layer != other.layer) {
+			return false;
+		} else if (this.labelPosition == null) {
+			if (other.labelPosition != null) {
+				return false;
+			}
+		} else if (!this.labelPosition.equals(other.labelPosition)) {
+			return false;
+		}
+		return this.tags.equals(other.tags) && Arrays.deepEquals(this.latLongs, other.latLongs);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + this.layer;
+		result = prime * result + ((this.labelPosition == null) ? 0 : this.labelPosition.hashCode());
+		result = prime * result + this.tags.hashCode();
+		result = prime * result + Arrays.deepHashCode(this.latLongs);
+		return result;
+	}
 }
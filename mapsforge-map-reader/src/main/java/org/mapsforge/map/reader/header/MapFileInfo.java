@@ -35,6 +35,12 @@ public class MapFileInfo {
 	 */
 	public final String comment;
 
+	/**
+	 * True if each block of the map file starts with a byte for its compression, false if all blocks are stored
+	 * uncompressed.
+	 */
+	public final boolean compressedBlocks;
+
 	/**
 	 * The created by field of the map file (may be null).
 	 */
@@ -80,6 +86,14 @@ public class MapFileInfo {
 	 */
 	public final String projectionName;
 
+	/**
+	 * True if the map file ends with an index of the names and tags of its POIs, false otherwise.
+	 * 
+	 * @see MapDatabase#searchPointOfInterests(String, BoundingBox)
+	 * @see MapDatabase#searchPointOfInterests(Tag, BoundingBox)
+	 */
+	public final boolean searchIndex;
+
 	/**
 	 * The map start position from the file header (may be null).
 	 */
@@ -102,6 +116,7 @@ public class MapFileInfo {
 
 	MapFileInfo(MapFileInfoBuilder mapFileInfoBuilder) {
 		this.comment = mapFileInfoBuilder.optionalFields.comment;
+		this.compressedBlocks = mapFileInfoBuilder.optionalFields.hasCompressedBlocks;
 		this.createdBy = mapFileInfoBuilder.optionalFields.createdBy;
 		this.debugFile = mapFileInfoBuilder.optionalFields.isDebugFile;
 		this.fileSize = mapFileInfoBuilder.fileSize;
@@ -112,6 +127,7 @@ public class MapFileInfo {
 		this.numberOfSubFiles = mapFileInfoBuilder.numberOfSubFiles;
 		this.poiTags = mapFileInfoBuilder.poiTags;
 		this.projectionName = mapFileInfoBuilder.projectionName;
+		this.searchIndex = mapFileInfoBuilder.optionalFields.hasSearchIndex;
 		this.startPosition = mapFileInfoBuilder.optionalFields.startPosition;
 		this.startZoomLevel = mapFileInfoBuilder.optionalFields.startZoomLevel;
 		this.tilePixelSize = mapFileInfoBuilder.tilePixelSize;
@@ -24,6 +24,11 @@ final class OptionalFields {
 	 */
 	private static final int HEADER_BITMASK_COMMENT = 0x08;
 
+	/**
+	 * Bitmask for the compressed blocks flag in the file header.
+	 */
+	private static final int HEADER_BITMASK_COMPRESSED_BLOCKS = 0x02;
+
 	/**
 	 * Bitmask for the created by field in the file header.
 	 */
@@ -39,6 +44,11 @@ final class OptionalFields {
 	 */
 	private static final int HEADER_BITMASK_LANGUAGE_PREFERENCE = 0x10;
 
+	/**
+	 * Bitmask for the search index flag in the file header.
+	 */
+	private static final int HEADER_BITMASK_SEARCH_INDEX = 0x01;
+
 	/**
 	 * Bitmask for the start position field in the file header.
 	 */
@@ -73,8 +83,10 @@ final class OptionalFields {
 	String comment;
 	String createdBy;
 	final boolean hasComment;
+	final boolean hasCompressedBlocks;
 	final boolean hasCreatedBy;
 	final boolean hasLanguagePreference;
+	final boolean hasSearchIndex;
 	final boolean hasStartPosition;
 	final boolean hasStartZoomLevel;
 	final boolean isDebugFile;
@@ -89,6 +101,8 @@ final class OptionalFields {
 		this.hasLanguagePreference = (flags & HEADER_BITMASK_LANGUAGE_PREFERENCE) != 0;
 		this.hasComment = (flags & HEADER_BITMASK_COMMENT) != 0;
 		this.hasCreatedBy = (flags & HEADER_BITMASK_CREATED_BY) != 0;
+		this.hasCompressedBlocks = (flags & HEADER_BITMASK_COMPRESSED_BLOCKS) != 0;
+		this.hasSearchIndex = (flags & HEADER_BITMASK_SEARCH_INDEX) != 0;
 	}
 
 	private FileOpenResult readLanguagePreference(ReadBuffer readBuffer) {
@@ -43,9 +43,15 @@ final class RequiredFields {
 	private static final String MERCATOR = "Mercator";
 
 	/**
-	 * Version of the map file format which is supported by this implementation.
+	 * Highest version of the map file format which is supported by this implementation. Version 4 files may use the
+	 * optional features which older readers cannot skip, such as compressed blocks.
 	 */
-	private static final int SUPPORTED_FILE_VERSION = 3;
+	private static final int SUPPORTED_FILE_VERSION_MAX = 4;
+
+	/**
+	 * Lowest version of the map file format which is supported by this implementation.
+	 */
+	private static final int SUPPORTED_FILE_VERSION_MIN = 3;
 
 	static FileOpenResult readBoundingBox(ReadBuffer readBuffer, MapFileInfoBuilder mapFileInfoBuilder) {
 		double minLatitude = LatLongUtils.microdegreesToDegrees(readBuffer.readInt());
@@ -74,7 +80,7 @@ final class RequiredFields {
 	static FileOpenResult readFileVersion(ReadBuffer readBuffer, MapFileInfoBuilder mapFileInfoBuilder) {
 		// get and check the file version (4 bytes)
 		int fileVersion = readBuffer.readInt();
-		if (fileVersion != SUPPORTED_FILE_VERSION) {
+		if (fileVersion < SUPPORTED_FILE_VERSION_MIN || fileVersion > SUPPORTED_FILE_VERSION_MAX) {
 			return new FileOpenResult("unsupported file version: " + fileVersion);
 		}
 		mapFileInfoBuilder.fileVersion = fileVersion;
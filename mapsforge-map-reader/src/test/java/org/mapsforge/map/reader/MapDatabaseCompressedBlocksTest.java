@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+public class MapDatabaseCompressedBlocksTest {
+	private static final File MAP_FILE = new File("src/test/resources/compressed_blocks/output.map");
+	private static final File MAP_FILE_UNCOMPRESSED = new File("src/test/resources/with_data/output.map");
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	@Test
+	public void executeQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+		Assert.assertTrue(mapFileInfo.compressedBlocks);
+		Assert.assertEquals(4, mapFileInfo.fileVersion);
+		Assert.assertTrue(MAP_FILE.length() < MAP_FILE_UNCOMPRESSED.length());
+
+		MapDatabase mapDatabaseUncompressed = new MapDatabase();
+		fileOpenResult = mapDatabaseUncompressed.openFile(MAP_FILE_UNCOMPRESSED);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertFalse(mapDatabaseUncompressed.getMapFileInfo().compressedBlocks);
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			int tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			int tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel, 256);
+
+			// the compressed file contains the same data as the uncompressed one
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			MapReadResult mapReadResultUncompressed = mapDatabaseUncompressed.readMapData(tile);
+
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			Assert.assertEquals(mapReadResultUncompressed.pointOfInterests, mapReadResult.pointOfInterests);
+			Assert.assertEquals(mapReadResultUncompressed.ways, mapReadResult.ways);
+		}
+
+		mapDatabaseUncompressed.closeFile();
+		mapDatabase.closeFile();
+		Assert.assertFalse(mapDatabase.hasOpenFile());
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseLevelsOfDetailTest {
+	private static final File MAP_FILE = new File("src/test/resources/levels_of_detail/output.map");
+	private static final File MAP_FILE_WITHOUT_LEVELS = new File("src/test/resources/with_data/output.map");
+	// the way has a level of detail with its first and last way node up to zoom level 6 in the first sub-file and up
+	// to zoom level 9 in the second one
+	private static final int[] NUMBER_OF_WAY_NODES = { 2, 3, 2, 2, 3, 3 };
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	@Test
+	public void executeQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertEquals(4, mapDatabase.getMapFileInfo().fileVersion);
+
+		MapDatabase mapDatabaseWithoutLevels = new MapDatabase();
+		fileOpenResult = mapDatabaseWithoutLevels.openFile(MAP_FILE_WITHOUT_LEVELS);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			int tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			int tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel, 256);
+
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			MapReadResult mapReadResultWithoutLevels = mapDatabaseWithoutLevels.readMapData(tile);
+
+			Assert.assertEquals(mapReadResultWithoutLevels.pointOfInterests, mapReadResult.pointOfInterests);
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			Way way = mapReadResult.ways.get(0);
+			Way wayWithoutLevels = mapReadResultWithoutLevels.ways.get(0);
+			Assert.assertEquals(wayWithoutLevels.layer, way.layer);
+			Assert.assertEquals(wayWithoutLevels.tags, way.tags);
+
+			LatLong[] wayNodes = way.latLongs[0];
+			LatLong[] wayNodesWithoutLevels = wayWithoutLevels.latLongs[0];
+			Assert.assertEquals(1, way.latLongs.length);
+			Assert.assertEquals(NUMBER_OF_WAY_NODES[zoomLevel - ZOOM_LEVEL_MIN], wayNodes.length);
+			Assert.assertEquals(wayNodesWithoutLevels[0], wayNodes[0]);
+			Assert.assertEquals(wayNodesWithoutLevels[wayNodesWithoutLevels.length - 1], wayNodes[wayNodes.length - 1]);
+		}
+
+		mapDatabaseWithoutLevels.closeFile();
+		mapDatabase.closeFile();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseSearchIndexTest {
+	private static final BoundingBox BOUNDING_BOX = new BoundingBox(0, 0, 0.1, 0.1);
+	private static final BoundingBox BOUNDING_BOX_WITHOUT_POI = new BoundingBox(0, 0, 0.02, 0.02);
+	private static final File MAP_FILE = new File("src/test/resources/search_index/output.map");
+	private static final File MAP_FILE_WITHOUT_INDEX = new File("src/test/resources/with_data/output.map");
+
+	private static void assertPointOfInterest(MapDatabase mapDatabase, List<PointOfInterest> pointOfInterests) {
+		Tile tile = new Tile(MercatorProjection.longitudeToTileX(0.08, (byte) 14), MercatorProjection.latitudeToTileY(
+				0.04, (byte) 14), (byte) 14, 256);
+		Assert.assertEquals(1, pointOfInterests.size());
+		Assert.assertEquals(mapDatabase.readMapData(tile).pointOfInterests, pointOfInterests);
+	}
+
+	@Test
+	public void searchPointOfInterestsTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertTrue(mapDatabase.getMapFileInfo().searchIndex);
+		Assert.assertEquals(4, mapDatabase.getMapFileInfo().fileVersion);
+
+		// names are matched by prefix, ignoring case
+		assertPointOfInterest(mapDatabase, mapDatabase.searchPointOfInterests("АБВГДЕЖЗ", BOUNDING_BOX));
+		assertPointOfInterest(mapDatabase, mapDatabase.searchPointOfInterests("абв", BOUNDING_BOX));
+		assertPointOfInterest(mapDatabase, mapDatabase.searchPointOfInterests("", BOUNDING_BOX));
+		Assert.assertTrue(mapDatabase.searchPointOfInterests("абвг ", BOUNDING_BOX).isEmpty());
+		Assert.assertTrue(mapDatabase.searchPointOfInterests("бв", BOUNDING_BOX).isEmpty());
+		Assert.assertTrue(mapDatabase.searchPointOfInterests("абв", BOUNDING_BOX_WITHOUT_POI).isEmpty());
+
+		assertPointOfInterest(mapDatabase, mapDatabase.searchPointOfInterests(new Tag("place=country"), BOUNDING_BOX));
+		Assert.assertTrue(mapDatabase.searchPointOfInterests(new Tag("place=city"), BOUNDING_BOX).isEmpty());
+		Assert.assertTrue(mapDatabase.searchPointOfInterests(new Tag("place=country"), BOUNDING_BOX_WITHOUT_POI)
+				.isEmpty());
+
+		MapDatabase mapDatabaseWithoutIndex = new MapDatabase();
+		fileOpenResult = mapDatabaseWithoutIndex.openFile(MAP_FILE_WITHOUT_INDEX);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertFalse(mapDatabaseWithoutIndex.getMapFileInfo().searchIndex);
+		Assert.assertNull(mapDatabaseWithoutIndex.searchPointOfInterests("абв", BOUNDING_BOX));
+
+		// the map data is not affected by the search index
+		for (byte zoomLevel = 6; zoomLevel <= 14; ++zoomLevel) {
+			Tile tile = new Tile(MercatorProjection.longitudeToTileX(0.04, zoomLevel),
+					MercatorProjection.latitudeToTileY(0.04, zoomLevel), zoomLevel, 256);
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			MapReadResult mapReadResultWithoutIndex = mapDatabaseWithoutIndex.readMapData(tile);
+			Assert.assertEquals(mapReadResultWithoutIndex.pointOfInterests, mapReadResult.pointOfInterests);
+			Assert.assertEquals(mapReadResultWithoutIndex.ways, mapReadResult.ways);
+		}
+
+		mapDatabaseWithoutIndex.closeFile();
+		mapDatabase.closeFile();
+	}
+}
@@ -15,6 +15,7 @@
 package org.mapsforge.map.reader;
 
 import java.io.File;
+import java.util.HashSet;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -100,4 +101,30 @@ public class MapDatabaseWithDataTest {
 		mapDatabase.closeFile();
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	@Test
+	public void readAreaTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			int tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			int tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel, 256);
+			Tile upperLeft = new Tile(tileX - 1, tileY - 1, zoomLevel, 256);
+			Tile lowerRight = new Tile(tileX + 1, tileY + 1, zoomLevel, 256);
+
+			MapReadResult tileResult = mapDatabase.readMapData(tile);
+			MapReadResult areaResult = mapDatabase.readMapData(upperLeft, lowerRight);
+
+			// the area contains the data of the tile exactly once
+			Assert.assertEquals(1, areaResult.pointOfInterests.size());
+			checkPointOfInterest(areaResult.pointOfInterests.get(0));
+			Assert.assertTrue(areaResult.ways.containsAll(tileResult.ways));
+			Assert.assertEquals(areaResult.ways.size(), new HashSet<Way>(areaResult.ways).size());
+		}
+
+		mapDatabase.closeFile();
+	}
 }
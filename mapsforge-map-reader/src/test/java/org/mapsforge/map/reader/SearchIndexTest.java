@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchIndexTest {
+	private static byte[] postingList(int... blockNumbers) {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		writeUnsignedInt(outputStream, blockNumbers.length);
+		int previous = 0;
+		for (int blockNumber : blockNumbers) {
+			writeUnsignedInt(outputStream, blockNumber - previous);
+			previous = blockNumber;
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static void writeUnsignedInt(ByteArrayOutputStream outputStream, int value) {
+		int remaining = value;
+		while (remaining > 0x7f) {
+			outputStream.write((remaining & 0x7f) | 0x80);
+			remaining >>>= 7;
+		}
+		outputStream.write(remaining);
+	}
+
+	/**
+	 * Writes a search index with the given names and posting lists and one tag behind some unrelated bytes.
+	 */
+	private static File writeSearchIndex(String[] names, byte[][] namePostingLists, int tagId, byte[] tagPostingList)
+			throws IOException {
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+		writeUnsignedInt(dictionary, names.length);
+		for (int i = 0; i < names.length; ++i) {
+			byte[] name = names[i].getBytes("UTF-8");
+			writeUnsignedInt(dictionary, name.length);
+			dictionary.write(name);
+			writeUnsignedInt(dictionary, namePostingLists[i].length);
+		}
+		writeUnsignedInt(dictionary, 1);
+		writeUnsignedInt(dictionary, tagId);
+		writeUnsignedInt(dictionary, tagPostingList.length);
+
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		DataOutputStream dataOutputStream = new DataOutputStream(index);
+		dataOutputStream.write(new byte[100]);
+		dataOutputStream.writeByte(14);
+		dataOutputStream.writeInt(dictionary.size());
+		dataOutputStream.write(dictionary.toByteArray());
+		for (byte[] postingList : namePostingLists) {
+			dataOutputStream.write(postingList);
+		}
+		dataOutputStream.write(tagPostingList);
+		dataOutputStream.writeLong(100);
+
+		File file = File.createTempFile("mapsforge", ".map");
+		file.deleteOnExit();
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.write(index.toByteArray());
+		}
+		return file;
+	}
+
+	@Test
+	public void getBlocksTest() throws IOException {
+		String[] names = { "ab", "abc", "abd", "b" };
+		byte[][] namePostingLists = { postingList(1, 5, 9), postingList(2, 5, 300), postingList(9, 20),
+				postingList(3) };
+		File file = writeSearchIndex(names, namePostingLists, 7, postingList(4, 6));
+
+		try (RandomAccessFile inputFile = new RandomAccessFile(file, "r")) {
+			SearchIndex searchIndex = SearchIndex.read(inputFile, inputFile.length());
+			Assert.assertNotNull(searchIndex);
+			Assert.assertEquals(14, searchIndex.zoomLevel);
+
+			// the posting lists of all names with the prefix are merged without duplicates
+			Assert.assertArrayEquals(new int[] { 1, 2, 5, 9, 20, 300 }, searchIndex.getBlocksByNamePrefix("ab"));
+			Assert.assertArrayEquals(new int[] { 1, 2, 3, 5, 9, 20, 300 }, searchIndex.getBlocksByNamePrefix(""));
+			Assert.assertArrayEquals(new int[] { 2, 5, 300 }, searchIndex.getBlocksByNamePrefix("abc"));
+			Assert.assertArrayEquals(new int[] { 3 }, searchIndex.getBlocksByNamePrefix("b"));
+			Assert.assertArrayEquals(new int[0], searchIndex.getBlocksByNamePrefix("c"));
+			Assert.assertArrayEquals(new int[0], searchIndex.getBlocksByNamePrefix("aa"));
+
+			Assert.assertArrayEquals(new int[] { 4, 6 }, searchIndex.getBlocksByTagId(7));
+			Assert.assertArrayEquals(new int[0], searchIndex.getBlocksByTagId(8));
+		}
+	}
+}
@@ -0,0 +1,2 @@
+#!/bin/bash
+osmosis --rx file=../with_data/input.xml --mw file=output.map bbox=0,0,0.08,0.08 debug-file=true block-compression=true
@@ -1,8 +1,14 @@
 #!/bin/bash
-cd empty/
+cd compressed_blocks/
+./generate.sh
+cd ../empty/
 ./generate.sh
 cd ../file_header/
 ./generate.sh
+cd ../levels_of_detail/
+./generate.sh
+cd ../search_index/
+./generate.sh
 cd ../single_delta_encoding/
 ./generate.sh
 cd ../double_delta_encoding/
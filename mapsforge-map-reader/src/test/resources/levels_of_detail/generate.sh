@@ -0,0 +1,12 @@
+#!/bin/bash
+# output.map cannot be generated with osmosis: the way of ../with_data/input.xml is too short for the simplifier to
+# reduce, so the writer would not store any level of detail for it.
+#
+# The file was instead derived by hand from ../with_data/output.map:
+# - the file version was set to 4;
+# - in each sub-file, the way got the feature bit 0x02 and, after its label position, one level of detail with its
+#   first and last way node for the zoom levels up to 6, 9 and 13 in the first, second and third sub-file;
+# - the way sizes, the tile index entries, the sub-file positions and sizes and the file size were adjusted.
+#
+# MapDatabaseLevelsOfDetailTest relies on these levels. The writer side of the format is covered by MapFileWriterTest.
+echo "levels_of_detail/output.map is derived by hand from with_data/output.map, see generate.sh"
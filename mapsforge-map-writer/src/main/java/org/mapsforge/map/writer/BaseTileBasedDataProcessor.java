@@ -14,6 +14,7 @@
  */
 package org.mapsforge.map.writer;
 
+import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.map.hash.TShortIntHashMap;
@@ -22,18 +23,23 @@ import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.util.LatLongUtils;
 import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.writer.model.ChangeSet;
 import org.mapsforge.map.writer.model.MapWriterConfiguration;
 import org.mapsforge.map.writer.model.NodeResolver;
 import org.mapsforge.map.writer.model.TDNode;
@@ -46,62 +52,208 @@ import org.mapsforge.map.writer.model.TileGridLayout;
 import org.mapsforge.map.writer.model.WayResolver;
 import org.mapsforge.map.writer.model.ZoomIntervalConfiguration;
 import org.mapsforge.map.writer.util.GeoUtils;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 
 import com.vividsolutions.jts.geom.TopologyException;
 
 abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, NodeResolver, WayResolver {
+	/**
+	 * Assembles the multipolygons of relations.
+	 * <p>
+	 * Relations are collected in batches. The expensive parts, merging the member ways to rings and relating the
+	 * rings to each other with JTS, and mapping newly constructed outer ways to tiles, are done for all relations of a
+	 * batch in parallel on a fork/join pool. In between, the ids of the newly constructed ways are assigned on the
+	 * calling thread in the order in which the relations were handed in, and the results are finally registered with
+	 * the data processor (inner way mapping, tile index) in the same order, so the output does not depend on the
+	 * number of threads.
+	 * <p>
+	 * {@link #complete()} must be called after the last relation has been handed in.
+	 */
 	protected class RelationHandler implements TObjectProcedure<TDRelation> {
-		private List<Deque<TDWay>> extractedPolygons;
+		private final List<TDRelation> batch = new ArrayList<>();
+		private final ForkJoinPool pool;
+
+		public RelationHandler() {
+			if (BaseTileBasedDataProcessor.this.threads > 1) {
+				this.pool = new ForkJoinPool(BaseTileBasedDataProcessor.this.threads);
+			} else {
+				this.pool = null;
+			}
+		}
 
-		private List<Integer> inner;
-		private Map<Integer, List<Integer>> outerToInner;
-		private final WayPolygonizer polygonizer = new WayPolygonizer();
+		/**
+		 * Processes all relations that are still pending and releases the threads used for processing.
+		 */
+		public void complete() {
+			try {
+				processBatch();
+			} finally {
+				if (this.pool != null) {
+					this.pool.shutdown();
+				}
+			}
+		}
 
 		@Override
 		public boolean execute(TDRelation relation) {
 			if (relation == null) {
 				return false;
 			}
+			this.batch.add(relation);
+			if (this.batch.size() >= RELATION_BATCH_SIZE) {
+				processBatch();
+			}
+			return true;
+		}
 
-			this.extractedPolygons = null;
-			this.outerToInner = null;
+		private void addInnerWays(TDWay outer, PolygonizedRelation polygonized, List<Integer> inner) {
+			if (inner != null && !inner.isEmpty()) {
+				TLongArrayList innerList = BaseTileBasedDataProcessor.this.outerToInnerMapping.get(outer.getId());
+				if (innerList == null) {
+					innerList = new TLongArrayList();
+					BaseTileBasedDataProcessor.this.outerToInnerMapping.put(outer.getId(), innerList);
+				}
 
-			TDWay[] members = relation.getMemberWays();
-			try {
-				this.polygonizer.polygonizeAndRelate(members);
-			} catch (TopologyException e) {
-				LOGGER.log(Level.FINE,
-						"cannot relate extracted polygons to each other for relation: " + relation.getId(), e);
+				for (Integer innerIndex : inner) {
+					Deque<TDWay> innerSegments = polygonized.polygons.get(innerIndex.intValue());
+					TDWay innerWay = null;
+
+					if (innerSegments.size() == 1) {
+						innerWay = innerSegments.getFirst();
+						if (innerWay.hasTags() && outer.hasTags()) {
+							short[] iTags = innerWay.getTags();
+							short[] oTags = outer.getTags();
+							int contained = 0;
+							for (short iTagID : iTags) {
+								for (short oTagID : oTags) {
+									if (iTagID == oTagID) {
+										contained++;
+									}
+								}
+							}
+							if (contained == iTags.length) {
+								BaseTileBasedDataProcessor.this.innerWaysWithoutAdditionalTags.add(innerWay.getId());
+							}
+						}
+					} else {
+						innerWay = polygonized.constructedWays[innerIndex.intValue()];
+						handleVirtualInnerWay(innerWay);
+						// does not need to be added to corresponding tiles
+						// virtual inner ways do not have any tags, they are holes in the outer polygon
+					}
+					innerList.add(innerWay.getId());
+				}
+			}
+		}
+
+		/**
+		 * Creates the outer and inner ways that are merged from several member ways, with ids assigned in the order in
+		 * which {@link #register(PolygonizedRelation)} uses them.
+		 */
+		private void constructWays(PolygonizedRelation polygonized) {
+			TDRelation relation = polygonized.relation;
+			if (BaseTileBasedDataProcessor.this.skipInvalidRelations
+					&& (!polygonized.dangling.isEmpty() || !polygonized.illegal.isEmpty())) {
+				// relation will be skipped on registration
+				return;
+			}
+
+			for (Entry<Integer, List<Integer>> entry : polygonized.outerToInner.entrySet()) {
+				int outerIndex = entry.getKey().intValue();
+				List<Integer> inner = entry.getValue();
+				if (polygonized.polygons.get(outerIndex).size() > 1) {
+					if (!relation.isRenderRelevant()) {
+						continue;
+					}
+					byte shape = inner != null && !inner.isEmpty() ? TDWay.MULTI_POLYGON : TDWay.SIMPLE_POLYGON;
+					// create new virtual way which represents the outer way
+					// use maxWayID counter to create unique id
+					polygonized.constructedWays[outerIndex] = new TDWay(++BaseTileBasedDataProcessor.this.maxWayID,
+							relation.getLayer(), relation.getName(), relation.getHouseNumber(), relation.getRef(),
+							relation.getTags(), shape, polygonized.mergedWayNodes[outerIndex]);
+				}
+
+				if (inner != null) {
+					for (Integer innerIndex : inner) {
+						if (polygonized.polygons.get(innerIndex.intValue()).size() > 1) {
+							// TODO which layer?
+							polygonized.constructedWays[innerIndex.intValue()] = new TDWay(
+									++BaseTileBasedDataProcessor.this.maxWayID, (byte) 0, null, null, null,
+									polygonized.mergedWayNodes[innerIndex.intValue()]);
+						}
+					}
+				}
+			}
+		}
+
+		private void invoke(PolygonizeTask task) {
+			if (this.pool != null) {
+				this.pool.invoke(task);
+			} else {
+				task.computeAll();
+			}
+		}
+
+		private void processBatch() {
+			if (this.batch.isEmpty()) {
+				return;
+			}
+
+			TDRelation[] relations = this.batch.toArray(new TDRelation[this.batch.size()]);
+			this.batch.clear();
+
+			PolygonizedRelation[] results = new PolygonizedRelation[relations.length];
+			invoke(new PolygonizeTask(relations, results, 0, relations.length, false));
+			for (PolygonizedRelation polygonized : results) {
+				constructWays(polygonized);
+			}
+			invoke(new PolygonizeTask(relations, results, 0, relations.length, true));
+
+			for (PolygonizedRelation polygonized : results) {
+				register(polygonized);
+			}
+		}
+
+		private void register(PolygonizedRelation polygonized) {
+			TDRelation relation = polygonized.relation;
+
+			// the orientation of member ways is also used when the geometry of a member way is built later on,
+			// so it is applied here in relation order, exactly as a sequential merge would have left it
+			for (TDWay member : relation.getMemberWays()) {
+				member.setReversedInRelation(polygonized.reversed.contains(member));
 			}
 
 			// skip invalid relations
-			if (!this.polygonizer.getDangling().isEmpty()) {
+			if (!polygonized.dangling.isEmpty()) {
 				if (BaseTileBasedDataProcessor.this.skipInvalidRelations) {
 					LOGGER.fine("skipping relation that contains dangling ways which could not be merged to polygons: "
 							+ relation.getId());
-					return true;
+					return;
 				}
 				LOGGER.fine("relation contains dangling ways which could not be merged to polygons: "
 						+ relation.getId());
-			} else if (!this.polygonizer.getIllegal().isEmpty()) {
+			} else if (!polygonized.illegal.isEmpty()) {
 				if (BaseTileBasedDataProcessor.this.skipInvalidRelations) {
 					LOGGER.fine("skipping relation contains illegal closed ways with fewer than 4 nodes: "
 							+ relation.getId());
-					return true;
+					return;
 				}
 				LOGGER.fine("relation contains illegal closed ways with fewer than 4 nodes: " + relation.getId());
 			}
 
-			this.extractedPolygons = this.polygonizer.getPolygons();
-			this.outerToInner = this.polygonizer.getOuterToInner();
-
-			for (Entry<Integer, List<Integer>> entry : this.outerToInner.entrySet()) {
-				Deque<TDWay> outerPolygon = this.extractedPolygons.get(entry.getKey().intValue());
-				this.inner = null;
-				this.inner = entry.getValue();
+			for (Entry<Integer, List<Integer>> entry : polygonized.outerToInner.entrySet()) {
+				int outerIndex = entry.getKey().intValue();
+				Deque<TDWay> outerPolygon = polygonized.polygons.get(outerIndex);
+				List<Integer> inner = entry.getValue();
 				byte shape = TDWay.SIMPLE_POLYGON;
 				// does it contain inner ways?
-				if (this.inner != null && !this.inner.isEmpty()) {
+				if (inner != null && !inner.isEmpty()) {
 					shape = TDWay.MULTI_POLYGON;
 				}
 
@@ -115,29 +267,15 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 						LOGGER.fine("constructed outer polygon in relation has no known tags: " + relation.getId());
 						continue;
 					}
-					// merge way nodes from outer way segments
-					List<TDNode> waynodeList = new ArrayList<>();
-					for (TDWay outerSegment : outerPolygon) {
-						if (outerSegment.isReversedInRelation()) {
-							for (int i = outerSegment.getWayNodes().length - 1; i >= 0; i--) {
-								waynodeList.add(outerSegment.getWayNodes()[i]);
-							}
-						} else {
-							for (TDNode tdNode : outerSegment.getWayNodes()) {
-								waynodeList.add(tdNode);
-							}
-						}
-					}
-					TDNode[] waynodes = waynodeList.toArray(new TDNode[waynodeList.size()]);
 
-					// create new virtual way which represents the outer way
-					// use maxWayID counter to create unique id
-					outerWay = new TDWay(++BaseTileBasedDataProcessor.this.maxWayID, relation.getLayer(),
-							relation.getName(), relation.getHouseNumber(), relation.getRef(), relation.getTags(),
-							shape, waynodes);
+					// the virtual way which represents the outer way, it has been mapped to tiles already
+					outerWay = polygonized.constructedWays[outerIndex];
 
-					// add the newly created way to matching tiles
-					addWayToTiles(outerWay, BaseTileBasedDataProcessor.this.bboxEnlargement);
+					// add the newly created way to the tiles matched during polygonization
+					addWayToTiles(outerWay, polygonized.matchedTiles[outerIndex]);
+					if (isChanged(relation)) {
+						addChangedTiles(polygonized.matchedTiles[outerIndex]);
+					}
 					handleVirtualOuterWay(outerWay);
 					// adjust tag statistics, cannot be omitted!!!
 					countWayTags(relation.getTags());
@@ -164,70 +302,141 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 					if (outerWay.isRenderRelevant()) {
 						// handle relation tags
 						handleAdditionalRelationTags(outerWay, relation);
-						addWayToTiles(outerWay, BaseTileBasedDataProcessor.this.bboxEnlargement);
+						List<Set<TileCoordinate>> matchedTiles = mapWayToTiles(outerWay,
+								BaseTileBasedDataProcessor.this.bboxEnlargement);
+						addWayToTiles(outerWay, matchedTiles);
+						if (isChanged(relation)) {
+							addChangedTiles(matchedTiles);
+						}
 						countWayTags(outerWay.getTags());
 					}
 				}
 
 				// relate inner ways to outer way
-				addInnerWays(outerWay);
+				addInnerWays(outerWay, polygonized, inner);
 			}
-			return true;
 		}
+	}
 
-		private void addInnerWays(TDWay outer) {
-			if (this.inner != null && !this.inner.isEmpty()) {
-				TLongArrayList innerList = BaseTileBasedDataProcessor.this.outerToInnerMapping.get(outer.getId());
-				if (innerList == null) {
-					innerList = new TLongArrayList();
-					BaseTileBasedDataProcessor.this.outerToInnerMapping.put(outer.getId(), innerList);
+	/**
+	 * Polygonizes a range of relations or maps the ways constructed for them to tiles, splitting the range until it is
+	 * small enough to be handled by one thread.
+	 */
+	private class PolygonizeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final boolean mapToTiles;
+		private final TDRelation[] relations;
+		private final PolygonizedRelation[] results;
+		private final int to;
+
+		PolygonizeTask(TDRelation[] relations, PolygonizedRelation[] results, int from, int to, boolean mapToTiles) {
+			super();
+			this.relations = relations;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.mapToTiles = mapToTiles;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= RELATIONS_PER_TASK) {
+				computeAll();
+			} else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new PolygonizeTask(this.relations, this.results, this.from, middle, this.mapToTiles),
+						new PolygonizeTask(this.relations, this.results, middle, this.to, this.mapToTiles));
+			}
+		}
+
+		void computeAll() {
+			if (this.mapToTiles) {
+				for (int i = this.from; i < this.to; i++) {
+					mapToTiles(this.results[i]);
 				}
+			} else {
+				WayPolygonizer polygonizer = new WayPolygonizer();
+				for (int i = this.from; i < this.to; i++) {
+					this.results[i] = polygonize(this.relations[i], polygonizer);
+				}
+			}
+		}
 
-				for (Integer innerIndex : this.inner) {
-					Deque<TDWay> innerSegments = this.extractedPolygons.get(innerIndex.intValue());
-					TDWay innerWay = null;
+		private void mapToTiles(PolygonizedRelation polygonized) {
+			for (Integer outerIndex : polygonized.outerToInner.keySet()) {
+				TDWay outerWay = polygonized.constructedWays[outerIndex.intValue()];
+				if (outerWay != null) {
+					polygonized.matchedTiles[outerIndex.intValue()] = mapWayToTiles(outerWay,
+							BaseTileBasedDataProcessor.this.bboxEnlargement);
+				}
+			}
+		}
 
-					if (innerSegments.size() == 1) {
-						innerWay = innerSegments.getFirst();
-						if (innerWay.hasTags() && outer.hasTags()) {
-							short[] iTags = innerWay.getTags();
-							short[] oTags = outer.getTags();
-							int contained = 0;
-							for (short iTagID : iTags) {
-								for (short oTagID : oTags) {
-									if (iTagID == oTagID) {
-										contained++;
-									}
-								}
-							}
-							if (contained == iTags.length) {
-								BaseTileBasedDataProcessor.this.innerWaysWithoutAdditionalTags.add(innerWay.getId());
-							}
-						}
-					} else {
-						List<TDNode> waynodeList = new ArrayList<>();
-						for (TDWay innerSegment : innerSegments) {
-							if (innerSegment.isReversedInRelation()) {
-								for (int i = innerSegment.getWayNodes().length - 1; i >= 0; i--) {
-									waynodeList.add(innerSegment.getWayNodes()[i]);
-								}
-							} else {
-								for (TDNode tdNode : innerSegment.getWayNodes()) {
-									waynodeList.add(tdNode);
-								}
-							}
+		private PolygonizedRelation polygonize(TDRelation relation, WayPolygonizer polygonizer) {
+			try {
+				polygonizer.polygonizeAndRelate(relation.getMemberWays());
+			} catch (TopologyException e) {
+				LOGGER.log(Level.FINE,
+						"cannot relate extracted polygons to each other for relation: " + relation.getId(), e);
+			}
+
+			PolygonizedRelation polygonized = new PolygonizedRelation(relation, polygonizer);
+			if (BaseTileBasedDataProcessor.this.skipInvalidRelations
+					&& (!polygonized.dangling.isEmpty() || !polygonized.illegal.isEmpty())) {
+				// relation will be skipped on registration
+				return polygonized;
+			}
+
+			for (Entry<Integer, List<Integer>> entry : polygonized.outerToInner.entrySet()) {
+				int outerIndex = entry.getKey().intValue();
+				Deque<TDWay> outerPolygon = polygonized.polygons.get(outerIndex);
+				if (outerPolygon.size() > 1 && relation.isRenderRelevant()) {
+					polygonized.mergedWayNodes[outerIndex] = polygonizer.mergeWayNodes(outerPolygon);
+				}
+
+				if (entry.getValue() != null) {
+					for (Integer innerIndex : entry.getValue()) {
+						Deque<TDWay> innerSegments = polygonized.polygons.get(innerIndex.intValue());
+						if (innerSegments.size() > 1) {
+							polygonized.mergedWayNodes[innerIndex.intValue()] = polygonizer
+									.mergeWayNodes(innerSegments);
 						}
-						TDNode[] waynodes = waynodeList.toArray(new TDNode[waynodeList.size()]);
-						// TODO which layer?
-						innerWay = new TDWay(++BaseTileBasedDataProcessor.this.maxWayID, (byte) 0, null, null, null,
-								waynodes);
-						handleVirtualInnerWay(innerWay);
-						// does not need to be added to corresponding tiles
-						// virtual inner ways do not have any tags, they are holes in the outer polygon
 					}
-					innerList.add(innerWay.getId());
 				}
 			}
+			return polygonized;
+		}
+	}
+
+	/**
+	 * The result of polygonizing a single relation, computed in parallel and registered sequentially.
+	 */
+	private static final class PolygonizedRelation {
+		final TDWay[] constructedWays;
+		final List<TDWay> dangling;
+		final List<TDWay> illegal;
+		final List<Set<TileCoordinate>>[] matchedTiles;
+		final TDNode[][] mergedWayNodes;
+		final Map<Integer, List<Integer>> outerToInner;
+		final List<Deque<TDWay>> polygons;
+		final TDRelation relation;
+		final Set<TDWay> reversed;
+
+		@SuppressWarnings("unchecked")
+		PolygonizedRelation(TDRelation relation, WayPolygonizer polygonizer) {
+			this.relation = relation;
+			// the polygonizer creates new collections on every run, so they can be referenced safely
+			this.polygons = polygonizer.getPolygons();
+			this.dangling = polygonizer.getDangling();
+			this.illegal = polygonizer.getIllegal();
+			this.reversed = polygonizer.getReversed();
+			this.outerToInner = polygonizer.getOuterToInner() != null ? polygonizer.getOuterToInner() : Collections
+					.<Integer, List<Integer>> emptyMap();
+			this.constructedWays = new TDWay[this.polygons.size()];
+			this.mergedWayNodes = new TDNode[this.polygons.size()][];
+			this.matchedTiles = new List[this.polygons.size()];
 		}
 	}
 
@@ -244,6 +453,10 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 			if (way.isRenderRelevant() && !BaseTileBasedDataProcessor.this.outerToInnerMapping.contains(way.getId())
 					&& !BaseTileBasedDataProcessor.this.innerWaysWithoutAdditionalTags.contains(way.getId())) {
 				addWayToTiles(way, BaseTileBasedDataProcessor.this.bboxEnlargement);
+			} else if (BaseTileBasedDataProcessor.this.changeSet != null
+					&& BaseTileBasedDataProcessor.this.changeSet.containsWay(way.getId())) {
+				// the way may have been shown before the change, e.g. if its tags were removed
+				addChangedTiles(way);
 			}
 
 			return true;
@@ -251,8 +464,17 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 	}
 
 	protected static final Logger LOGGER = Logger.getLogger(BaseTileBasedDataProcessor.class.getName());
+	// parameters of the 64 bit FNV-1a hash used for the fingerprint of the input data
+	private static final long FINGERPRINT_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+	// number of relations that are polygonized before the results are registered
+	private static final int RELATION_BATCH_SIZE = 10000;
+	// number of relations below which a polygonize task is not split any further
+	private static final int RELATIONS_PER_TASK = 16;
+
 	protected final int bboxEnlargement;
 	protected final org.mapsforge.core.model.BoundingBox boundingbox;
+	protected final ChangeSet changeSet;
 	// accounting
 	protected float[] countWays;
 	protected float[] countWayTileFactor;
@@ -260,12 +482,14 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 	protected final TShortIntHashMap histogramPoiTags;
 	protected final TShortIntHashMap histogramWayTags;
 	protected final TLongSet innerWaysWithoutAdditionalTags;
+	private long inputFingerprint = FINGERPRINT_OFFSET_BASIS;
 
 	protected long maxWayID = Long.MIN_VALUE;
 	protected final TLongObjectHashMap<TLongArrayList> outerToInnerMapping;
 
 	protected final String preferredLanguage;
 	protected final boolean skipInvalidRelations;
+	protected final int threads;
 	protected TileGridLayout[] tileGridLayouts;
 
 	// public BaseTileBasedDataProcessor(double minLat, double maxLat, double minLon, double maxLon,
@@ -287,6 +511,8 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 		this.bboxEnlargement = configuration.getBboxEnlargement();
 		this.preferredLanguage = configuration.getPreferredLanguage();
 		this.skipInvalidRelations = configuration.isSkipInvalidRelations();
+		this.threads = configuration.getThreads();
+		this.changeSet = configuration.getChangeSet();
 
 		this.outerToInnerMapping = new TLongObjectHashMap<>();
 		this.innerWaysWithoutAdditionalTags = new TLongHashSet();
@@ -309,6 +535,18 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 			this.tileGridLayouts[i] = new TileGridLayout(upperLeft, computeNumberOfHorizontalTiles(i),
 					computeNumberOfVerticalTiles(i));
 		}
+
+		// positions of changed nodes before and after the change, which also cover deleted nodes
+		if (this.changeSet != null) {
+			for (LatLong position : this.changeSet.getNodePositions()) {
+				for (int i = 0; i < this.zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
+					byte baseZoom = this.zoomIntervalConfiguration.getBaseZoom(i);
+					this.changeSet.addChangedTile(new TileCoordinate((int) MercatorProjection.longitudeToTileX(
+							position.longitude, baseZoom), (int) MercatorProjection.latitudeToTileY(position.latitude,
+							baseZoom), baseZoom));
+				}
+			}
+		}
 	}
 
 	@Override
@@ -326,6 +564,11 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 		return this.boundingbox;
 	}
 
+	@Override
+	public long getInputFingerprint() {
+		return this.inputFingerprint;
+	}
+
 	@Override
 	public TileGridLayout getTileGridLayout(int zoomIntervalIndex) {
 		return this.tileGridLayouts[zoomIntervalIndex];
@@ -355,33 +598,53 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 				if (tileData != null) {
 					tileData.addPOI(poi);
 					countPoiTags(poi);
+					if (this.changeSet != null && this.changeSet.containsNode(poi.getId())) {
+						this.changeSet.addChangedTile(new TileCoordinate((int) tileCoordinateX,
+								(int) tileCoordinateY, this.zoomIntervalConfiguration.getBaseZoom(i)));
+					}
 				}
 			}
 		}
 	}
 
 	protected void addWayToTiles(TDWay way, int enlargement) {
-		int bboxEnlargementLocal = enlargement;
-		byte minZoomLevel = way.getMinimumZoomLevel();
+		addWayToTiles(way, mapWayToTiles(way, enlargement));
+	}
+
+	/**
+	 * Adds a way to tiles that have already been matched by {@link #mapWayToTiles(TDWay, int)}.
+	 * 
+	 * @param way
+	 *            the way
+	 * @param matchedTiles
+	 *            the matched tiles for each zoom interval, null for zoom intervals in which the way is not seen
+	 */
+	protected void addWayToTiles(TDWay way, List<Set<TileCoordinate>> matchedTiles) {
+		if (this.changeSet != null && this.changeSet.affects(way)) {
+			addChangedTiles(matchedTiles);
+			// the tiles of the geometry before nodes of the way were moved
+			TDNode[] formerWayNodes = getFormerWayNodes(way);
+			if (formerWayNodes != null) {
+				addChangedTiles(new TDWay(way.getId(), (byte) 0, null, null, null, formerWayNodes));
+			}
+		}
 		for (int i = 0; i < this.zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
-			// is way seen in a zoom interval?
-			if (minZoomLevel <= this.zoomIntervalConfiguration.getMaxZoom(i)) {
-				Set<TileCoordinate> matchedTiles = GeoUtils.mapWayToTiles(way,
-						this.zoomIntervalConfiguration.getBaseZoom(i), bboxEnlargementLocal);
-				boolean added = false;
-				for (TileCoordinate matchedTile : matchedTiles) {
-					TileData td = getTileImpl(i, matchedTile.getX(), matchedTile.getY());
-					if (td != null) {
-						countWayTags(way);
-						this.countWayTileFactor[i]++;
-						added = true;
-						td.addWay(way);
-					}
-				}
-				if (added) {
-					this.countWays[i]++;
+			if (matchedTiles.get(i) == null) {
+				continue;
+			}
+			boolean added = false;
+			for (TileCoordinate matchedTile : matchedTiles.get(i)) {
+				TileData td = getTileImpl(i, matchedTile.getX(), matchedTile.getY());
+				if (td != null) {
+					countWayTags(way);
+					this.countWayTileFactor[i]++;
+					added = true;
+					td.addWay(way);
 				}
 			}
+			if (added) {
+				this.countWays[i]++;
+			}
 		}
 	}
 
@@ -410,12 +673,190 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 
 	protected abstract TileData getTileImpl(int zoom, int tileX, int tileY);
 
+	/**
+	 * Computes the tiles a way needs to be added to. This method does not modify the state of the data processor
+	 * and may be called concurrently.
+	 * 
+	 * @param way
+	 *            the way
+	 * @param enlargement
+	 *            the bounding box enlargement
+	 * @return the matched tiles for each zoom interval, null for zoom intervals in which the way is not seen
+	 */
+	protected List<Set<TileCoordinate>> mapWayToTiles(TDWay way, int enlargement) {
+		byte minZoomLevel = way.getMinimumZoomLevel();
+		List<Set<TileCoordinate>> matchedTiles = new ArrayList<>(
+				this.zoomIntervalConfiguration.getNumberOfZoomIntervals());
+		for (int i = 0; i < this.zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
+			// is way seen in a zoom interval?
+			if (minZoomLevel <= this.zoomIntervalConfiguration.getMaxZoom(i)) {
+				matchedTiles.add(GeoUtils.mapWayToTiles(way, this.zoomIntervalConfiguration.getBaseZoom(i),
+						enlargement));
+			} else {
+				matchedTiles.add(null);
+			}
+		}
+		return matchedTiles;
+	}
+
 	protected abstract void handleAdditionalRelationTags(TDWay virtualWay, TDRelation relation);
 
+	/**
+	 * Marks the tiles which contained ways or relations modified or deleted by the change set in incremental mode. The
+	 * former geometry of a way is built from its node references before the change, which are resolved with the former
+	 * positions of changed nodes in the diff or the remaining nodes. As the former members of a relation may have
+	 * formed a multipolygon, all tiles within the bounding box of their current and former geometry are marked. Must
+	 * be called when all nodes and ways have been added.
+	 * 
+	 * @throws IllegalStateException
+	 *             if a node of a former way is neither in the diff nor in the input data
+	 */
+	protected void handleFormerElements() {
+		if (this.changeSet == null) {
+			return;
+		}
+
+		TLongObjectIterator<long[]> formerWays = this.changeSet.getFormerWays().iterator();
+		while (formerWays.hasNext()) {
+			formerWays.advance();
+			addChangedTiles(createFormerWay(formerWays.key(), formerWays.value()));
+		}
+
+		TLongObjectIterator<long[]> formerRelations = this.changeSet.getFormerRelations().iterator();
+		while (formerRelations.hasNext()) {
+			formerRelations.advance();
+			List<TDNode> memberNodes = new ArrayList<>();
+			for (long wayId : formerRelations.value()) {
+				long[] formerNodeIds = this.changeSet.getFormerWays().get(wayId);
+				if (formerNodeIds != null) {
+					Collections.addAll(memberNodes, createFormerWay(wayId, formerNodeIds).getWayNodes());
+				}
+				// members that are missing otherwise are outside of the map
+				TDWay member = getWay(wayId);
+				if (member != null && member.getWayNodes() != null) {
+					addChangedTiles(member);
+					Collections.addAll(memberNodes, member.getWayNodes());
+					TDNode[] formerWayNodes = getFormerWayNodes(member);
+					if (formerWayNodes != null) {
+						Collections.addAll(memberNodes, formerWayNodes);
+					}
+				}
+			}
+			addChangedTilesInBoundingBox(memberNodes);
+		}
+	}
+
 	protected abstract void handleVirtualInnerWay(TDWay virtualWay);
 
 	protected abstract void handleVirtualOuterWay(TDWay virtualWay);
 
+	/**
+	 * @param relation
+	 *            the relation
+	 * @return true if the relation or one of its member ways has been changed in incremental mode
+	 */
+	protected boolean isChanged(TDRelation relation) {
+		if (this.changeSet == null) {
+			return false;
+		}
+		if (this.changeSet.containsRelation(relation.getId())) {
+			return true;
+		}
+		for (TDWay member : relation.getMemberWays()) {
+			if (this.changeSet.affects(member)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds an entity to the fingerprint of the input data: its type, id, version, timestamp and tags, the position of
+	 * a node, the way node ids of a way and the members of a relation. Must be called for every entity that is added,
+	 * in the order in which they are added.
+	 * 
+	 * @param entity
+	 *            the node, way or relation
+	 */
+	protected void updateInputFingerprint(Entity entity) {
+		mixInputFingerprint(entity.getType().ordinal());
+		mixInputFingerprint(entity.getId());
+		mixInputFingerprint(entity.getVersion());
+		if (entity.getTimestamp() != null) {
+			mixInputFingerprint(entity.getTimestamp().getTime());
+		}
+		for (Tag tag : entity.getTags()) {
+			mixInputFingerprint(tag.getKey().hashCode());
+			mixInputFingerprint(tag.getValue().hashCode());
+		}
+
+		if (entity instanceof Node) {
+			mixInputFingerprint(Double.doubleToLongBits(((Node) entity).getLatitude()));
+			mixInputFingerprint(Double.doubleToLongBits(((Node) entity).getLongitude()));
+		} else if (entity instanceof Way) {
+			for (WayNode wayNode : ((Way) entity).getWayNodes()) {
+				mixInputFingerprint(wayNode.getNodeId());
+			}
+		} else if (entity instanceof Relation) {
+			for (RelationMember member : ((Relation) entity).getMembers()) {
+				mixInputFingerprint(member.getMemberId());
+				mixInputFingerprint(member.getMemberType().ordinal());
+				mixInputFingerprint(member.getMemberRole().hashCode());
+			}
+		}
+	}
+
+	private void addChangedTiles(List<Set<TileCoordinate>> matchedTiles) {
+		for (Set<TileCoordinate> tiles : matchedTiles) {
+			if (tiles != null) {
+				this.changeSet.addChangedTiles(tiles);
+			}
+		}
+	}
+
+	private void addChangedTiles(TDWay way) {
+		for (int i = 0; i < this.zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
+			this.changeSet.addChangedTiles(GeoUtils.mapWayToTiles(way, this.zoomIntervalConfiguration.getBaseZoom(i),
+					this.bboxEnlargement));
+		}
+	}
+
+	/**
+	 * Marks all tiles of the map within the bounding box of the given nodes.
+	 */
+	private void addChangedTilesInBoundingBox(List<TDNode> nodes) {
+		int minLatitude = Integer.MAX_VALUE;
+		int minLongitude = Integer.MAX_VALUE;
+		int maxLatitude = Integer.MIN_VALUE;
+		int maxLongitude = Integer.MIN_VALUE;
+		for (TDNode node : nodes) {
+			minLatitude = Math.min(minLatitude, node.getLatitude());
+			minLongitude = Math.min(minLongitude, node.getLongitude());
+			maxLatitude = Math.max(maxLatitude, node.getLatitude());
+			maxLongitude = Math.max(maxLongitude, node.getLongitude());
+		}
+		double south = Math.max(LatLongUtils.microdegreesToDegrees(minLatitude), this.boundingbox.minLatitude);
+		double west = Math.max(LatLongUtils.microdegreesToDegrees(minLongitude), this.boundingbox.minLongitude);
+		double north = Math.min(LatLongUtils.microdegreesToDegrees(maxLatitude), this.boundingbox.maxLatitude);
+		double east = Math.min(LatLongUtils.microdegreesToDegrees(maxLongitude), this.boundingbox.maxLongitude);
+		if (nodes.isEmpty() || south > north || west > east) {
+			return;
+		}
+
+		for (int i = 0; i < this.zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
+			byte baseZoom = this.zoomIntervalConfiguration.getBaseZoom(i);
+			long left = MercatorProjection.longitudeToTileX(west, baseZoom);
+			long right = MercatorProjection.longitudeToTileX(east, baseZoom);
+			long top = MercatorProjection.latitudeToTileY(north, baseZoom);
+			long bottom = MercatorProjection.latitudeToTileY(south, baseZoom);
+			for (long x = left; x <= right; x++) {
+				for (long y = top; y <= bottom; y++) {
+					this.changeSet.addChangedTile(new TileCoordinate((int) x, (int) y, baseZoom));
+				}
+			}
+		}
+	}
+
 	private int computeNumberOfHorizontalTiles(int zoomIntervalIndex) {
 		long tileCoordinateLeft = MercatorProjection.longitudeToTileX(this.boundingbox.minLongitude,
 				this.zoomIntervalConfiguration.getBaseZoom(zoomIntervalIndex));
@@ -448,4 +889,44 @@ abstract class BaseTileBasedDataProcessor implements TileBasedDataProcessor, Nod
 
 		return (int) (tileCoordinateBottom - tileCoordinateTop + 1);
 	}
+
+	private TDNode createFormerNode(long id, LatLong position) {
+		return new TDNode(id, LatLongUtils.degreesToMicrodegrees(position.latitude),
+				LatLongUtils.degreesToMicrodegrees(position.longitude), (short) 0, (byte) 0, null, null);
+	}
+
+	private TDWay createFormerWay(long id, long[] nodeIds) {
+		TDNode[] wayNodes = new TDNode[nodeIds.length];
+		for (int i = 0; i < nodeIds.length; i++) {
+			LatLong position = this.changeSet.getFormerNodePosition(nodeIds[i]);
+			wayNodes[i] = position != null ? createFormerNode(nodeIds[i], position) : getNode(nodeIds[i]);
+			if (wayNodes[i] == null) {
+				throw new IllegalStateException("node " + nodeIds[i] + " of the former way " + id
+						+ " is neither in the diff nor in the input data");
+			}
+		}
+		return new TDWay(id, (byte) 0, null, null, null, wayNodes);
+	}
+
+	/**
+	 * @return the way nodes with the nodes that have been moved by the change set at their former positions, null if
+	 *         no node of the way has been moved
+	 */
+	private TDNode[] getFormerWayNodes(TDWay way) {
+		TDNode[] formerWayNodes = null;
+		for (int i = 0; i < way.getWayNodes().length; i++) {
+			LatLong position = this.changeSet.getFormerNodePosition(way.getWayNodes()[i].getId());
+			if (position != null) {
+				if (formerWayNodes == null) {
+					formerWayNodes = way.getWayNodes().clone();
+				}
+				formerWayNodes[i] = createFormerNode(way.getWayNodes()[i].getId(), position);
+			}
+		}
+		return formerWayNodes;
+	}
+
+	private void mixInputFingerprint(long value) {
+		this.inputFingerprint = (this.inputFingerprint ^ value) * FINGERPRINT_PRIME;
+	}
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the blocks of a map file with block compression enabled.
+ * <p>
+ * A non-empty block starts with a compression byte. It is either {@link #BLOCK_COMPRESSION_NONE} followed by the
+ * uncompressed block or {@link #BLOCK_COMPRESSION_DEFLATE} followed by the uncompressed length as unsigned variable
+ * byte number and the raw deflate stream, whichever is smaller. Empty blocks stay empty. Deflate runs at the fastest
+ * level, the blocks are small and decompression speed on the device matters more than the last few percent of size.
+ */
+final class BlockCompressor {
+	static final byte BLOCK_COMPRESSION_DEFLATE = 1;
+	static final byte BLOCK_COMPRESSION_NONE = 0;
+
+	private byte[] compressedData;
+	private final Deflater deflater;
+
+	BlockCompressor() {
+		this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+		this.compressedData = new byte[0];
+	}
+
+	/**
+	 * Compresses the block in the given buffer in place. The block starts at index zero and ends at the current
+	 * position of the buffer, which is set to the end of the compressed block afterwards.
+	 *
+	 * @param tileBuffer
+	 *            the buffer which contains the block.
+	 */
+	void compress(ByteBuffer tileBuffer) {
+		int length = tileBuffer.position();
+		if (length == 0) {
+			return;
+		}
+		if (length == tileBuffer.capacity()) {
+			throw new IllegalArgumentException("no space left in the tile buffer for the compression byte");
+		}
+
+		byte[] uncompressedLength = Serializer.getVariableByteUnsigned(length);
+		// the compressed block is only used if it is smaller than the uncompressed one
+		int maximumCompressedLength = length - uncompressedLength.length;
+		int compressedLength = deflate(tileBuffer.array(), length, maximumCompressedLength);
+
+		if (compressedLength < 0) {
+			System.arraycopy(tileBuffer.array(), 0, tileBuffer.array(), 1, length);
+			tileBuffer.put(0, BLOCK_COMPRESSION_NONE);
+			tileBuffer.position(length + 1);
+		} else {
+			tileBuffer.clear();
+			tileBuffer.put(BLOCK_COMPRESSION_DEFLATE);
+			tileBuffer.put(uncompressedLength);
+			tileBuffer.put(this.compressedData, 0, compressedLength);
+		}
+	}
+
+	/**
+	 * Releases the native resources of the compressor.
+	 */
+	void destroy() {
+		this.deflater.end();
+	}
+
+	/**
+	 * @return the length of the deflated data, or -1 if it would not be shorter than the given maximum.
+	 */
+	private int deflate(byte[] data, int length, int maximumCompressedLength) {
+		if (maximumCompressedLength <= 0) {
+			return -1;
+		}
+		if (this.compressedData.length < maximumCompressedLength) {
+			this.compressedData = new byte[maximumCompressedLength];
+		}
+
+		this.deflater.reset();
+		this.deflater.setInput(data, 0, length);
+		this.deflater.finish();
+		int compressedLength = 0;
+		while (!this.deflater.finished()) {
+			if (compressedLength == maximumCompressedLength) {
+				return -1;
+			}
+			compressedLength += this.deflater.deflate(this.compressedData, compressedLength, maximumCompressedLength
+					- compressedLength);
+		}
+		return compressedLength < maximumCompressedLength ? compressedLength : -1;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Records the sub-files of a map file that have been written completely, so that an interrupted conversion can
+ * resume at the first unfinished zoom interval. A checkpoint is only reused if its fingerprint matches the
+ * fingerprint of the current run, i.e. the same configuration and the same processed data.
+ */
+final class Checkpoint {
+	private static final Logger LOGGER = Logger.getLogger(Checkpoint.class.getName());
+
+	/**
+	 * Opens the checkpoint stored in the given file. If the file does not exist, cannot be read or was created for a
+	 * different fingerprint, an empty checkpoint is returned.
+	 *
+	 * @param file
+	 *            the checkpoint file
+	 * @param fingerprint
+	 *            the fingerprint of the current run
+	 * @return the checkpoint
+	 */
+	static Checkpoint open(File file, long fingerprint) {
+		Checkpoint checkpoint = new Checkpoint(file, fingerprint);
+		if (!file.exists()) {
+			return checkpoint;
+		}
+
+		DataInputStream inputStream = null;
+		try {
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (inputStream.readLong() != fingerprint) {
+				LOGGER.info("ignoring checkpoint of a different conversion: " + file);
+				return checkpoint;
+			}
+			int completedSubfiles = inputStream.readInt();
+			for (int i = 0; i < completedSubfiles; i++) {
+				checkpoint.subfiles.add(new long[] { inputStream.readLong(), inputStream.readLong() });
+			}
+			LOGGER.info("resuming after " + completedSubfiles + " completed sub files");
+		} catch (IOException e) {
+			LOGGER.warning("ignoring unreadable checkpoint " + file + ": " + e.getMessage());
+			checkpoint.subfiles.clear();
+		} finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+		return checkpoint;
+	}
+
+	private final File file;
+	private final long fingerprint;
+	private final List<long[]> subfiles;
+
+	private Checkpoint(File file, long fingerprint) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.subfiles = new ArrayList<>();
+	}
+
+	/**
+	 * Deletes the checkpoint file, to be called once the map file is complete.
+	 */
+	void delete() {
+		if (this.file.exists() && !this.file.delete()) {
+			LOGGER.warning("could not delete checkpoint file: " + this.file);
+		}
+	}
+
+	/**
+	 * Forgets the sub files from the given index on, e.g. because they have to be written again.
+	 *
+	 * @param zoomIntervalIndex
+	 *            the index of the first sub file to forget
+	 */
+	void discardSubfiles(int zoomIntervalIndex) {
+		while (this.subfiles.size() > zoomIntervalIndex) {
+			this.subfiles.remove(this.subfiles.size() - 1);
+		}
+	}
+
+	/**
+	 * @return the number of sub files that have been written completely
+	 */
+	int getCompletedSubfiles() {
+		return this.subfiles.size();
+	}
+
+	/**
+	 * @param zoomIntervalIndex
+	 *            the index of a completed sub file
+	 * @return the size of the sub file in bytes
+	 */
+	long getSubfileSize(int zoomIntervalIndex) {
+		return this.subfiles.get(zoomIntervalIndex)[1];
+	}
+
+	/**
+	 * @param zoomIntervalIndex
+	 *            the index of a completed sub file
+	 * @return the position of the sub file in the map file
+	 */
+	long getSubfileStart(int zoomIntervalIndex) {
+		return this.subfiles.get(zoomIntervalIndex)[0];
+	}
+
+	/**
+	 * Records the next sub file as completed and persists the checkpoint. The map file must have been synced to disk
+	 * before.
+	 *
+	 * @param start
+	 *            the position of the sub file in the map file
+	 * @param size
+	 *            the size of the sub file in bytes
+	 * @throws IOException
+	 *             if the checkpoint cannot be written
+	 */
+	void subfileCompleted(long start, long size) throws IOException {
+		this.subfiles.add(new long[] { start, size });
+
+		// write to a temporary file first so that a crash never leaves a truncated checkpoint behind
+		File temporaryFile = new File(this.file.getPath() + ".tmp");
+		FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+		DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+		try {
+			outputStream.writeLong(this.fingerprint);
+			outputStream.writeInt(this.subfiles.size());
+			for (long[] subfile : this.subfiles) {
+				outputStream.writeLong(subfile[0]);
+				outputStream.writeLong(subfile[1]);
+			}
+			outputStream.flush();
+			fileOutputStream.getFD().sync();
+		} finally {
+			outputStream.close();
+		}
+
+		Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -33,6 +33,7 @@ import org.mapsforge.map.writer.model.TDWay;
 import org.mapsforge.map.writer.model.TileCoordinate;
 import org.mapsforge.map.writer.model.TileData;
 import org.mapsforge.map.writer.model.TileInfo;
+import org.mapsforge.map.writer.util.Profiler;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
@@ -94,6 +95,7 @@ public final class HDTileBasedDataProcessor extends BaseTileBasedDataProcessor {
 
 	@Override
 	public void addNode(Node node) {
+		updateInputFingerprint(node);
 		this.indexedNodeStore.add(node.getId(), node);
 		TDNode tdNode = TDNode.fromNode(node, this.preferredLanguage);
 		addPOI(tdNode);
@@ -101,11 +103,13 @@ public final class HDTileBasedDataProcessor extends BaseTileBasedDataProcessor {
 
 	@Override
 	public void addRelation(Relation relation) {
+		updateInputFingerprint(relation);
 		this.relationStore.add(relation);
 	}
 
 	@Override
 	public void addWay(Way way) {
+		updateInputFingerprint(way);
 		this.wayStore.add(way);
 		this.indexedWayStore.add(way.getId(), way);
 		this.maxWayID = Math.max(way.getId(), this.maxWayID);
@@ -114,11 +118,13 @@ public final class HDTileBasedDataProcessor extends BaseTileBasedDataProcessor {
 	// TODO add accounting of average number of tiles per way
 	@Override
 	public void complete() {
+		Profiler.getInstance().startPhase("relation handling");
 		this.indexedNodeStore.complete();
 		this.nodeIndexReader = this.indexedNodeStore.createReader();
 
 		this.indexedWayStore.complete();
 		this.wayIndexReader = this.indexedWayStore.createReader();
+		handleFormerElements();
 
 		// handle relations
 		ReleasableIterator<Relation> relationReader = this.relationStore.iterate();
@@ -128,8 +134,10 @@ public final class HDTileBasedDataProcessor extends BaseTileBasedDataProcessor {
 			TDRelation tdRelation = TDRelation.fromRelation(entry, this, this.preferredLanguage);
 			relationHandler.execute(tdRelation);
 		}
+		relationHandler.complete();
 
 		// handle ways
+		Profiler.getInstance().startPhase("tile mapping");
 		ReleasableIterator<Way> wayReader = this.wayStore.iterate();
 		WayHandler wayHandler = new WayHandler();
 		while (wayReader.hasNext()) {
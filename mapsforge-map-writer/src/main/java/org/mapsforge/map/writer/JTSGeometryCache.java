@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.map.writer.model.TDWay;
+import org.mapsforge.map.writer.model.TileBasedDataProcessor;
+import org.mapsforge.map.writer.util.JTSUtils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Concurrent cache for the JTS geometries of ways, bounded by the total number of coordinates held in memory instead
+ * of the number of entries. Large geometries that get evicted are written to a temporary file and read back from
+ * there the next time they are requested, which is much cheaper than rebuilding huge multipolygons.
+ */
+final class JTSGeometryCache {
+	/**
+	 * Append-only temporary file storing geometries in WKB format, indexed by way id.
+	 * <p>
+	 * Only the index and the end of the file are guarded by the lock of the store. Geometries are serialized and
+	 * written or read with positional I/O outside of it, so that concurrent cache misses do not wait for each other.
+	 */
+	static final class DiskStore {
+		private static final int BYTES_INT = 4;
+
+		private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new EOFException("unexpected end of geometry cache file at " + position);
+				}
+			}
+		}
+
+		private FileChannel channel;
+		private final File file;
+		private long length;
+		private final TLongLongHashMap offsets;
+
+		DiskStore(File file) {
+			this.file = file;
+			this.offsets = new TLongLongHashMap();
+		}
+
+		synchronized void close() throws IOException {
+			if (this.channel != null) {
+				this.channel.close();
+				this.channel = null;
+			}
+			this.offsets.clear();
+			this.length = 0;
+			if (this.file.exists() && !this.file.delete()) {
+				LOGGER.warning("could not delete geometry cache file: " + this.file);
+			}
+		}
+
+		synchronized boolean contains(long id) {
+			return this.offsets.containsKey(id);
+		}
+
+		Geometry get(long id) throws IOException {
+			FileChannel fileChannel;
+			long offset;
+			synchronized (this) {
+				if (!this.offsets.containsKey(id)) {
+					return null;
+				}
+				fileChannel = this.channel;
+				offset = this.offsets.get(id);
+			}
+
+			ByteBuffer size = ByteBuffer.allocate(BYTES_INT);
+			read(fileChannel, size, offset);
+			ByteBuffer wkb = ByteBuffer.allocate(size.getInt(0));
+			read(fileChannel, wkb, offset + BYTES_INT);
+			try {
+				return new WKBReader().read(wkb.array());
+			} catch (ParseException e) {
+				throw new IOException("cannot parse spilled geometry of way " + id, e);
+			}
+		}
+
+		synchronized long length() {
+			return this.length;
+		}
+
+		void put(long id, Geometry geometry) throws IOException {
+			if (contains(id)) {
+				return;
+			}
+			byte[] wkb = new WKBWriter().write(geometry);
+			ByteBuffer buffer = ByteBuffer.allocate(BYTES_INT + wkb.length);
+			buffer.putInt(wkb.length).put(wkb);
+			buffer.flip();
+
+			// reserve the space at the end of the file, the geometry is indexed once it has been written
+			FileChannel fileChannel;
+			long offset;
+			synchronized (this) {
+				if (this.channel == null) {
+					this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+							StandardOpenOption.READ, StandardOpenOption.WRITE);
+				}
+				fileChannel = this.channel;
+				offset = this.length;
+				this.length += buffer.remaining();
+			}
+
+			while (buffer.hasRemaining()) {
+				fileChannel.write(buffer, offset + buffer.position());
+			}
+
+			synchronized (this) {
+				this.offsets.put(id, offset);
+			}
+		}
+
+		synchronized int size() {
+			return this.offsets.size();
+		}
+	}
+
+	private final class GeometryLoader extends CacheLoader<TDWay, Geometry> {
+		GeometryLoader() {
+			super();
+		}
+
+		@Override
+		public Geometry load(TDWay way) throws Exception {
+			if (way.isInvalid()) {
+				throw new Exception("way is known to be invalid: " + way.getId());
+			}
+
+			Geometry geometry = JTSGeometryCache.this.diskStore.get(way.getId());
+			if (geometry != null) {
+				JTSGeometryCache.this.diskHits.incrementAndGet();
+				return geometry;
+			}
+
+			List<TDWay> innerWaysOfMultipolygon = JTSGeometryCache.this.dataProcessor.getInnerWaysOfMultipolygon(way
+					.getId());
+			geometry = JTSUtils.toJtsGeometry(way, innerWaysOfMultipolygon);
+			if (geometry == null) {
+				way.setInvalid(true);
+				throw new Exception("cannot create geometry for way with id: " + way.getId());
+			}
+			return geometry;
+		}
+	}
+
+	private final class SpillListener implements RemovalListener<TDWay, Geometry> {
+		SpillListener() {
+			// do nothing
+		}
+
+		@Override
+		public void onRemoval(RemovalNotification<TDWay, Geometry> notification) {
+			Geometry geometry = notification.getValue();
+			TDWay way = notification.getKey();
+			if (!notification.wasEvicted() || geometry == null || way == null
+					|| geometry.getNumPoints() < JTSGeometryCache.this.spillThreshold) {
+				return;
+			}
+
+			try {
+				JTSGeometryCache.this.diskStore.put(way.getId(), geometry);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "cannot spill geometry of way " + way.getId(), e);
+			}
+		}
+	}
+
+	static final class CoordinateWeigher implements Weigher<TDWay, Geometry> {
+		CoordinateWeigher() {
+			// do nothing
+		}
+
+		@Override
+		public int weigh(TDWay way, Geometry geometry) {
+			return geometry.getNumPoints() + 1;
+		}
+	}
+
+	/**
+	 * Approximate heap usage of one cached coordinate, including the array slot.
+	 */
+	private static final int BYTES_PER_COORDINATE = 48;
+
+	/**
+	 * Share of the maximum heap used for cached geometries.
+	 */
+	private static final double HEAP_SHARE = 0.2;
+
+	private static final Logger LOGGER = Logger.getLogger(JTSGeometryCache.class.getName());
+
+	/**
+	 * Geometries with at least this many coordinates are written to disk on eviction.
+	 */
+	private static final int SPILL_THRESHOLD = 10000;
+
+	/**
+	 * @param dataProcessor
+	 *            the data processor providing the inner ways of multipolygons
+	 * @return a new cache sized according to the maximum heap of this VM
+	 * @throws IOException
+	 *             if the temporary file for spilled geometries cannot be created
+	 */
+	static JTSGeometryCache newInstance(TileBasedDataProcessor dataProcessor) throws IOException {
+		long maximumCoordinates = (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE) / BYTES_PER_COORDINATE;
+		File file = File.createTempFile("mapsforge-geometries", ".wkb");
+		file.deleteOnExit();
+		return new JTSGeometryCache(dataProcessor, maximumCoordinates, SPILL_THRESHOLD, file);
+	}
+
+	final AtomicLong diskHits;
+	final DiskStore diskStore;
+	final int spillThreshold;
+	private final LoadingCache<TDWay, Geometry> cache;
+	private final TileBasedDataProcessor dataProcessor;
+	private long lastDiskHits;
+	private CacheStats lastStats;
+	private final long maximumCoordinates;
+
+	JTSGeometryCache(TileBasedDataProcessor dataProcessor, long maximumCoordinates, int spillThreshold, File file) {
+		this.dataProcessor = dataProcessor;
+		this.maximumCoordinates = maximumCoordinates;
+		this.spillThreshold = spillThreshold;
+		this.diskHits = new AtomicLong();
+		this.diskStore = new DiskStore(file);
+		this.cache = CacheBuilder.newBuilder().maximumWeight(maximumCoordinates).weigher(new CoordinateWeigher())
+				.removalListener(new SpillListener()).recordStats()
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2).build(new GeometryLoader());
+		this.lastStats = this.cache.stats();
+	}
+
+	/**
+	 * Releases the in-memory entries and deletes the temporary file.
+	 *
+	 * @throws IOException
+	 *             if the temporary file cannot be closed
+	 */
+	void close() throws IOException {
+		this.cache.invalidateAll();
+		this.diskStore.close();
+	}
+
+	/**
+	 * @param way
+	 *            the way
+	 * @return the JTS geometry of the given way
+	 * @throws ExecutionException
+	 *             if no valid geometry can be created for the way
+	 */
+	Geometry get(TDWay way) throws ExecutionException {
+		return this.cache.get(way);
+	}
+
+	/**
+	 * Logs the cache statistics accumulated since the previous call.
+	 *
+	 * @param zoomIntervalIndex
+	 *            the zoom interval that has just been written
+	 */
+	void logStatistics(int zoomIntervalIndex) {
+		CacheStats stats = this.cache.stats();
+		CacheStats delta = stats.minus(this.lastStats);
+		long diskHitsTotal = this.diskHits.get();
+		long length = this.diskStore.length();
+
+		LOGGER.info("JTS geometry cache for zoom interval " + zoomIntervalIndex + ": hit rate " + delta.hitRate()
+				+ ", loads " + delta.loadCount() + ", evictions " + delta.evictionCount() + ", load time "
+				+ delta.totalLoadTime() / 1000000 + "ms, disk hits " + (diskHitsTotal - this.lastDiskHits)
+				+ ", size " + this.cache.size() + " entries (max " + this.maximumCoordinates
+				+ " coordinates), spilled " + this.diskStore.size() + " geometries (" + length + " bytes)");
+
+		this.lastStats = stats;
+		this.lastDiskHits = diskHitsTotal;
+	}
+
+	/**
+	 * @return the statistics of the in-memory cache
+	 */
+	CacheStats stats() {
+		return this.cache.stats();
+	}
+}
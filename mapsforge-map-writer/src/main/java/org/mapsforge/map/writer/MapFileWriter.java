@@ -14,11 +14,14 @@
  */
 package org.mapsforge.map.writer;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.util.LatLongUtils;
@@ -46,12 +50,9 @@ import org.mapsforge.map.writer.model.WayDataBlock;
 import org.mapsforge.map.writer.model.ZoomIntervalConfiguration;
 import org.mapsforge.map.writer.util.Constants;
 import org.mapsforge.map.writer.util.GeoUtils;
-import org.mapsforge.map.writer.util.JTSUtils;
+import org.mapsforge.map.writer.util.Profiler;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
-import com.google.common.cache.LoadingCache;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.MultiLineString;
@@ -62,33 +63,24 @@ import com.vividsolutions.jts.geom.Polygon;
  * Writes the binary file format for mapsforge maps.
  */
 public final class MapFileWriter {
-	private static class JTSGeometryCacheLoader extends CacheLoader<TDWay, Geometry> {
-		private final TileBasedDataProcessor datastore;
-
-		JTSGeometryCacheLoader(TileBasedDataProcessor datastore) {
-			super();
-			this.datastore = datastore;
-		}
+	/**
+	 * A simplified variant of the geometry of a way for the zoom levels up to a maximum zoom level.
+	 */
+	static class WayLevelOfDetail {
+		final List<WayDataBlock> wayDataBlocks;
+		final byte zoomLevelMax;
 
-		@Override
-		public Geometry load(TDWay way) throws Exception {
-			if (way.isInvalid()) {
-				throw new Exception("way is known to be invalid: " + way.getId());
-			}
-			List<TDWay> innerWaysOfMultipolygon = this.datastore.getInnerWaysOfMultipolygon(way.getId());
-			Geometry geometry = JTSUtils.toJtsGeometry(way, innerWaysOfMultipolygon);
-			if (geometry == null) {
-				way.setInvalid(true);
-				throw new Exception("cannot create geometry for way with id: " + way.getId());
-			}
-			return geometry;
+		WayLevelOfDetail(byte zoomLevelMax, List<WayDataBlock> wayDataBlocks) {
+			this.zoomLevelMax = zoomLevelMax;
+			this.wayDataBlocks = wayDataBlocks;
 		}
 	}
 
 	private static class WayPreprocessingCallable implements Callable<WayPreprocessingResult> {
 		private final MapWriterConfiguration configuration;
-		private final LoadingCache<TDWay, Geometry> jtsGeometryCache;
+		private final JTSGeometryCache jtsGeometryCache;
 		private final byte maxZoomInterval;
+		private final byte minZoomLevel;
 		private final TileCoordinate tile;
 		private final TDWay way;
 
@@ -97,18 +89,21 @@ public final class MapFileWriter {
 		 *            the {@link TDWay}
 		 * @param tile
 		 *            the {@link TileCoordinate}
+		 * @param minZoomLevel
+		 *            the minimum zoom level the way is written for
 		 * @param maxZoomInterval
 		 *            the maximum zoom
 		 * @param jtsGeometryCache
-		 *            the {@link LoadingCache} for {@link Geometry} objects
+		 *            the {@link JTSGeometryCache} for {@link Geometry} objects
 		 * @param configuration
 		 *            the {@link MapWriterConfiguration}
 		 */
-		WayPreprocessingCallable(TDWay way, TileCoordinate tile, byte maxZoomInterval,
-				LoadingCache<TDWay, Geometry> jtsGeometryCache, MapWriterConfiguration configuration) {
+		WayPreprocessingCallable(TDWay way, TileCoordinate tile, byte minZoomLevel, byte maxZoomInterval,
+				JTSGeometryCache jtsGeometryCache, MapWriterConfiguration configuration) {
 			super();
 			this.way = way;
 			this.tile = tile;
+			this.minZoomLevel = minZoomLevel;
 			this.maxZoomInterval = maxZoomInterval;
 			this.jtsGeometryCache = jtsGeometryCache;
 			this.configuration = configuration;
@@ -150,8 +145,10 @@ public final class MapFileWriter {
 			}
 
 			// TODO is this the right place to simplify, or is it better before clipping?
-			if (this.configuration.getSimplification() > 0
-					&& this.tile.getZoomlevel() <= Constants.MAX_SIMPLIFICATION_BASE_ZOOM) {
+			Geometry unsimplifiedGeometry = processedGeometry;
+			boolean simplify = this.configuration.getSimplification() > 0
+					&& this.tile.getZoomlevel() <= Constants.MAX_SIMPLIFICATION_BASE_ZOOM;
+			if (simplify) {
 				processedGeometry = GeoUtils.simplifyGeometry(this.way, processedGeometry, this.maxZoomInterval,
 						tileSize, this.configuration.getSimplification());
 				if (processedGeometry == null) {
@@ -206,20 +203,58 @@ public final class MapFileWriter {
 					break;
 			}
 
-			return new WayPreprocessingResult(this.way, blocks, centroidCoordinate, subtileMask);
+			List<WayLevelOfDetail> levelsOfDetail = Collections.emptyList();
+			if (simplify && this.configuration.isLevelsOfDetail()) {
+				levelsOfDetail = computeLevelsOfDetail(unsimplifiedGeometry, blocks);
+			}
+
+			return new WayPreprocessingResult(this.way, blocks, levelsOfDetail, centroidCoordinate, subtileMask);
+		}
+
+		/**
+		 * Simplifies the geometry for each zoom level below the maximum zoom level of the zoom interval, from the
+		 * highest to the lowest, and keeps the variants selected by {@link #selectLevelsOfDetail(List, int)}.
+		 *
+		 * @return the levels of detail in ascending order of their zoom levels.
+		 */
+		private List<WayLevelOfDetail> computeLevelsOfDetail(Geometry geometry, List<WayDataBlock> blocks) {
+			List<WayLevelOfDetail> variants = new ArrayList<>();
+			for (byte zoomlevel = (byte) (this.maxZoomInterval - 1); zoomlevel >= this.minZoomLevel; zoomlevel--) {
+				Geometry simplifiedGeometry = GeoUtils.simplifyGeometryForLevelOfDetail(geometry, zoomlevel,
+						tileSize, this.configuration.getSimplification());
+				if (simplifiedGeometry == null) {
+					break;
+				}
+				List<WayDataBlock> levelBlocks = GeoUtils.toWayDataBlockList(simplifiedGeometry);
+				if (levelBlocks == null || levelBlocks.isEmpty()) {
+					break;
+				}
+				variants.add(new WayLevelOfDetail(zoomlevel, levelBlocks));
+			}
+
+			List<WayLevelOfDetail> levelsOfDetail = new ArrayList<>();
+			Encoding encoding = blocks.get(0).getEncoding();
+			for (WayLevelOfDetail levelOfDetail : selectLevelsOfDetail(variants, countWayNodes(blocks))) {
+				levelsOfDetail.add(new WayLevelOfDetail(levelOfDetail.zoomLevelMax, DeltaEncoder.encode(
+						levelOfDetail.wayDataBlocks, encoding)));
+			}
+			return levelsOfDetail;
 		}
 	}
 
 	private static class WayPreprocessingResult {
 		final LatLong labelPosition;
+		final List<WayLevelOfDetail> levelsOfDetail;
 		final short subtileMask;
 		final TDWay way;
 		final List<WayDataBlock> wayDataBlocks;
 
-		WayPreprocessingResult(TDWay way, List<WayDataBlock> wayDataBlocks, LatLong labelPosition, short subtileMask) {
+		WayPreprocessingResult(TDWay way, List<WayDataBlock> wayDataBlocks, List<WayLevelOfDetail> levelsOfDetail,
+				LatLong labelPosition, short subtileMask) {
 			super();
 			this.way = way;
 			this.wayDataBlocks = wayDataBlocks;
+			this.levelsOfDetail = levelsOfDetail;
 			this.labelPosition = labelPosition;
 			this.subtileMask = subtileMask;
 		}
@@ -228,6 +263,10 @@ public final class MapFileWriter {
 			return this.labelPosition;
 		}
 
+		List<WayLevelOfDetail> getLevelsOfDetail() {
+			return this.levelsOfDetail;
+		}
+
 		short getSubtileMask() {
 			return this.subtileMask;
 		}
@@ -264,6 +303,7 @@ public final class MapFileWriter {
 	// CoastlineHandler();
 
 	private static final short BITMAP_COMMENT = 8;
+	private static final short BITMAP_COMPRESSED_BLOCKS = 2;
 	private static final short BITMAP_CREATED_WITH = 4;
 	// bitmap flags for file features
 	private static final short BITMAP_DEBUG = 128;
@@ -274,6 +314,7 @@ public final class MapFileWriter {
 
 	private static final int BITMAP_INDEX_ENTRY_WATER = 0x80;
 	private static final short BITMAP_LABEL = 16;
+	private static final short BITMAP_LEVELS_OF_DETAIL = 2;
 
 	private static final short BITMAP_MAP_START_POSITION = 64;
 
@@ -285,6 +326,7 @@ public final class MapFileWriter {
 
 	// bitmap flags for ways
 	private static final short BITMAP_REF = 32;
+	private static final short BITMAP_SEARCH_INDEX = 1;
 	private static final int BYTE_AMOUNT_SUBFILE_INDEX_PER_TILE = 5;
 	private static final int BYTES_INT = 4;
 	private static final int DEBUG_BLOCK_SIZE = 32;
@@ -302,14 +344,20 @@ public final class MapFileWriter {
 
 	private static final String DEBUG_STRING_WAY_TAIL = "---";
 
+	private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+
 	private static final int DUMMY_INT = 0xf0f0f0f0;
 
 	private static final long DUMMY_LONG = 0xf0f0f0f0f0f0f0f0L;
 
 	private static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(Runtime.getRuntime()
 			.availableProcessors());
-	private static final int JTS_GEOMETRY_CACHE_SIZE = 50000;
+	// files which use optional features that older readers do not know have this version
+	private static final int FILE_VERSION_OPTIONAL_FEATURES = 4;
+	// a level of detail is only written if it reduces the number of way nodes at least to this ratio
+	private static final double LEVEL_OF_DETAIL_MAX_NODES_RATIO = 0.75;
 	private static final String MAGIC_BYTE = "mapsforge binary OSM";
+	private static final int OFFSET_DATE = 36;
 	private static final int OFFSET_FILE_SIZE = 28;
 	private static final float PROGRESS_PERCENT_STEP = 10f;
 	private static final String PROJECTION = "Mercator";
@@ -321,6 +369,15 @@ public final class MapFileWriter {
 
 	private static final Charset UTF8_CHARSET = Charset.forName("utf8");
 
+	/**
+	 * @param configuration
+	 *            the configuration
+	 * @return the file in which the sub files written completely are recorded if checkpoints are enabled
+	 */
+	public static File getCheckpointFile(MapWriterConfiguration configuration) {
+		return new File(configuration.getOutputFile().getPath() + CHECKPOINT_FILE_SUFFIX);
+	}
+
 	/**
 	 * Writes the map file according to the given configuration using the given data processor.
 	 * 
@@ -337,46 +394,169 @@ public final class MapFileWriter {
 
 		int amountOfZoomIntervals = dataProcessor.getZoomIntervalConfiguration().getNumberOfZoomIntervals();
 		ByteBuffer containerHeaderBuffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+
+		// INCREMENTAL MODE: tiles not affected by the change set are copied from the previous file, which requires
+		// the tag ids of the previous file
+		PreviousMapFile previousMapFile = null;
+		if (configuration.getPreviousFile() != null) {
+			previousMapFile = new PreviousMapFile(configuration.getPreviousFile());
+			previousMapFile.checkCompatibility(getFileVersion(configuration), configuration.isDebugStrings(),
+					configuration.isBlockCompression(), dataProcessor);
+			configuration.getTagMapping().retainPoiOrdering(previousMapFile.getPoiTags());
+			configuration.getTagMapping().retainWayOrdering(previousMapFile.getWayTags());
+			LOGGER.info("number of tiles affected by changes: "
+					+ configuration.getChangeSet().getNumberOfChangedTiles());
+		}
+
 		// CONTAINER HEADER
 		int totalHeaderSize = writeHeaderBuffer(configuration, dataProcessor, containerHeaderBuffer);
 
 		// set to mark where zoomIntervalConfig starts
 		containerHeaderBuffer.reset();
 
-		final LoadingCache<TDWay, Geometry> jtsGeometryCache = CacheBuilder.newBuilder()
-				.maximumSize(JTS_GEOMETRY_CACHE_SIZE).concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
-				.build(new JTSGeometryCacheLoader(dataProcessor));
+		final JTSGeometryCache jtsGeometryCache = JTSGeometryCache.newInstance(dataProcessor);
 
-		// SUB FILES
-		// for each zoom interval write a sub file
-		long currentFileSize = totalHeaderSize;
-		for (int i = 0; i < amountOfZoomIntervals; i++) {
-			// SUB FILE INDEX AND DATA
-			long subfileSize = writeSubfile(currentFileSize, i, dataProcessor, jtsGeometryCache, randomAccessFile,
-					configuration);
-			// SUB FILE META DATA IN CONTAINER HEADER
-			writeSubfileMetaDataToContainerHeader(dataProcessor.getZoomIntervalConfiguration(), i, currentFileSize,
-					subfileSize, containerHeaderBuffer);
-			currentFileSize += subfileSize;
-		}
+		try {
+			Checkpoint checkpoint = null;
+			if (configuration.isCheckpoint()) {
+				checkpoint = Checkpoint.open(getCheckpointFile(configuration),
+						checkpointFingerprint(configuration, dataProcessor, containerHeaderBuffer, totalHeaderSize));
+			}
 
-		randomAccessFile.seek(0);
-		randomAccessFile.write(containerHeaderBuffer.array(), 0, totalHeaderSize);
+			// the search index is collected while its sub file is written
+			int searchIndexZoomIntervalIndex = -1;
+			SearchIndexWriter searchIndexWriter = null;
+			if (configuration.isSearchIndex()) {
+				searchIndexZoomIntervalIndex = getSearchIndexZoomIntervalIndex(dataProcessor
+						.getZoomIntervalConfiguration());
+				searchIndexWriter = new SearchIndexWriter(dataProcessor.getZoomIntervalConfiguration().getMaxZoom(
+						searchIndexZoomIntervalIndex));
+			}
 
-		// WRITE FILE SIZE TO HEADER
-		long fileSize = randomAccessFile.length();
-		randomAccessFile.seek(OFFSET_FILE_SIZE);
-		randomAccessFile.writeLong(fileSize);
+			// SUB FILES
+			// for each zoom interval write a sub file
+			long currentFileSize = totalHeaderSize;
+			for (int i = 0; i < amountOfZoomIntervals; i++) {
+				Profiler.getInstance().startPhase("write zoom interval " + i);
+				long subfileSize;
+				if (checkpoint != null && i < checkpoint.getCompletedSubfiles()
+						&& checkpoint.getSubfileStart(i) == currentFileSize
+						&& currentFileSize + checkpoint.getSubfileSize(i) <= randomAccessFile.length()) {
+					// SUB FILE ALREADY WRITTEN BY AN INTERRUPTED RUN
+					LOGGER.info("skipping completed sub file for zoom interval index " + i);
+					subfileSize = checkpoint.getSubfileSize(i);
+					if (i == searchIndexZoomIntervalIndex) {
+						addSearchIndexEntries(i, dataProcessor, searchIndexWriter);
+					}
+				} else {
+					if (checkpoint != null) {
+						// discard anything an interrupted run has written after the last completed sub file
+						checkpoint.discardSubfiles(i);
+						randomAccessFile.setLength(Math.min(currentFileSize, randomAccessFile.length()));
+					}
+					// SUB FILE INDEX AND DATA
+					subfileSize = writeSubfile(currentFileSize, i, dataProcessor, jtsGeometryCache, previousMapFile,
+							randomAccessFile, configuration, i == searchIndexZoomIntervalIndex ? searchIndexWriter
+									: null);
+					if (checkpoint != null) {
+						randomAccessFile.getFD().sync();
+						checkpoint.subfileCompleted(currentFileSize, subfileSize);
+					}
+				}
+				// SUB FILE META DATA IN CONTAINER HEADER
+				writeSubfileMetaDataToContainerHeader(dataProcessor.getZoomIntervalConfiguration(), i, currentFileSize,
+						subfileSize, containerHeaderBuffer);
+				currentFileSize += subfileSize;
+				jtsGeometryCache.logStatistics(i);
+			}
+			Profiler.getInstance().endPhase();
+
+			// SEARCH INDEX
+			if (searchIndexWriter != null) {
+				writeSearchIndex(currentFileSize, searchIndexWriter, randomAccessFile);
+			}
+
+			randomAccessFile.seek(0);
+			randomAccessFile.write(containerHeaderBuffer.array(), 0, totalHeaderSize);
+
+			// WRITE FILE SIZE TO HEADER
+			long fileSize = randomAccessFile.length();
+			randomAccessFile.seek(OFFSET_FILE_SIZE);
+			randomAccessFile.writeLong(fileSize);
 
-		randomAccessFile.close();
+			randomAccessFile.close();
+
+			if (checkpoint != null) {
+				checkpoint.delete();
+			}
+			if (previousMapFile != null) {
+				previousMapFile.close();
+			}
 
-		CacheStats stats = jtsGeometryCache.stats();
-		LOGGER.info("JTS Geometry cache hit rate: " + stats.hitRate());
-		LOGGER.info("JTS Geometry total load time: " + stats.totalLoadTime() / 1000);
+			CacheStats stats = jtsGeometryCache.stats();
+			LOGGER.info("JTS Geometry cache hit rate: " + stats.hitRate());
+			LOGGER.info("JTS Geometry total load time: " + stats.totalLoadTime() / 1000);
+		} finally {
+			// the geometries spilled to disk are deleted in any case
+			jtsGeometryCache.close();
+		}
 
 		LOGGER.info("Finished writing file.");
 	}
 
+	/**
+	 * Computes a fingerprint of everything that determines the content of the sub files: the container header except
+	 * for the date of creation, the options that are not stored in the header, the number of tiles created by the
+	 * data processor, the fingerprint of the input data it has read and, in incremental mode, the previous file and
+	 * the change set.
+	 */
+	static long checkpointFingerprint(MapWriterConfiguration configuration, TileBasedDataProcessor dataProcessor,
+			ByteBuffer containerHeaderBuffer, int totalHeaderSize) {
+		CRC32 crc = new CRC32();
+		crc.update(containerHeaderBuffer.array(), 0, OFFSET_DATE);
+		crc.update(containerHeaderBuffer.array(), OFFSET_DATE + 8, totalHeaderSize - OFFSET_DATE - 8);
+
+		ByteBuffer options = ByteBuffer.allocate(48);
+		options.putLong(dataProcessor.cumulatedNumberOfTiles());
+		options.putLong(dataProcessor.getInputFingerprint());
+		options.putDouble(configuration.getSimplification());
+		options.putInt(configuration.getBboxEnlargement());
+		options.put((byte) configuration.getEncodingChoice().ordinal());
+		options.put((byte) (configuration.isPolygonClipping() ? 1 : 0));
+		options.put((byte) (configuration.isWayClipping() ? 1 : 0));
+		options.put((byte) (configuration.isSkipInvalidRelations() ? 1 : 0));
+		options.put((byte) (configuration.isLevelsOfDetail() ? 1 : 0));
+		options.put((byte) (configuration.isBlockCompression() ? 1 : 0));
+		options.put((byte) (configuration.isSearchIndex() ? 1 : 0));
+		crc.update(options.array(), 0, options.position());
+
+		File previousFile = configuration.getPreviousFile();
+		if (previousFile != null) {
+			crc.update(previousFile.getAbsolutePath().getBytes(UTF8_CHARSET));
+			options.clear();
+			options.putLong(previousFile.length());
+			options.putLong(previousFile.lastModified());
+			crc.update(options.array(), 0, options.position());
+		}
+		if (configuration.getChangeSet() != null) {
+			options.clear();
+			options.putLong(configuration.getChangeSet().fingerprint());
+			crc.update(options.array(), 0, options.position());
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * @return the version of the file written with the given configuration, it is only raised if the file uses a
+	 *         feature which older readers do not support.
+	 */
+	static int getFileVersion(MapWriterConfiguration configuration) {
+		if (configuration.isBlockCompression() || configuration.isLevelsOfDetail() || configuration.isSearchIndex()) {
+			return Math.max(FILE_VERSION_OPTIONAL_FEATURES, configuration.getFileSpecificationVersion());
+		}
+		return configuration.getFileSpecificationVersion();
+	}
+
 	static byte infoByteOptmizationParams(MapWriterConfiguration configuration) {
 		byte infoByte = 0;
 
@@ -396,6 +576,13 @@ public final class MapFileWriter {
 			infoByte |= BITMAP_COMMENT;
 		}
 
+		if (configuration.isBlockCompression()) {
+			infoByte |= BITMAP_COMPRESSED_BLOCKS;
+		}
+		if (configuration.isSearchIndex()) {
+			infoByte |= BITMAP_SEARCH_INDEX;
+		}
+
 		infoByte |= BITMAP_CREATED_WITH;
 
 		return infoByte;
@@ -443,6 +630,9 @@ public final class MapFileWriter {
 		if (wpr.getWayDataBlocks().size() > 1) {
 			infoByte |= BITMAP_MULTIPLE_WAY_BLOCKS;
 		}
+		if (!wpr.getLevelsOfDetail().isEmpty()) {
+			infoByte |= BITMAP_LEVELS_OF_DETAIL;
+		}
 
 		if (!wpr.getWayDataBlocks().isEmpty()) {
 			WayDataBlock wayDataBlock = wpr.getWayDataBlocks().get(0);
@@ -483,8 +673,7 @@ public final class MapFileWriter {
 		// write tag ids to the file
 		if (poi.getTags() != null) {
 			for (short tagID : poi.getTags()) {
-				poiBuffer.put(Serializer.getVariableByteUnsigned(OSMTagMapping.getInstance().getOptimizedPoiIds()
-						.get(Short.valueOf(tagID)).intValue()));
+				poiBuffer.put(Serializer.getVariableByteUnsigned(OSMTagMapping.getInstance().getOptimizedPoiId(tagID)));
 			}
 		}
 
@@ -552,6 +741,10 @@ public final class MapFileWriter {
 							- firstWayStartLon));
 		}
 
+		if (!wpr.getLevelsOfDetail().isEmpty()) {
+			writeLevelsOfDetail(wpr.getLevelsOfDetail(), currentTileLat, currentTileLon, wayBuffer);
+		}
+
 		if (wpr.getWayDataBlocks().size() > 1) {
 			// write the amount of way data blocks
 			wayBuffer.put(Serializer.getVariableByteUnsigned(wpr.getWayDataBlocks().size()));
@@ -565,30 +758,30 @@ public final class MapFileWriter {
 		// case 2: multi polygon --> the way consists of
 		// exactly one outer way and
 		// one or more inner ways
-		for (WayDataBlock wayDataBlock : wpr.getWayDataBlocks()) {
-			// write the amount of coordinate blocks
-			// we have at least one block (potentially
-			// interpreted as outer way) and
-			// possible blocks for inner ways
-			if (wayDataBlock.getInnerWays() != null && !wayDataBlock.getInnerWays().isEmpty()) {
-				// multi polygon: outer way + number of
-				// inner ways
-				wayBuffer.put(Serializer.getVariableByteUnsigned(1 + wayDataBlock.getInnerWays().size()));
-			} else {
-				// simply a single way (not a multi polygon)
-				wayBuffer.put(Serializer.getVariableByteUnsigned(1));
-			}
-
-			// write block for (outer/simple) way
-			writeWay(wayDataBlock.getOuterWay(), currentTileLat, currentTileLon, wayBuffer);
+		writeWayDataBlocks(wpr.getWayDataBlocks(), currentTileLat, currentTileLon, wayBuffer);
+	}
 
-			// write blocks for inner ways
-			if (wayDataBlock.getInnerWays() != null && !wayDataBlock.getInnerWays().isEmpty()) {
-				for (List<Integer> innerWayCoordinates : wayDataBlock.getInnerWays()) {
-					writeWay(innerWayCoordinates, currentTileLat, currentTileLon, wayBuffer);
-				}
+	/**
+	 * Selects the levels of detail that are worth storing. A variant is only kept if it has at most 75% of the way
+	 * nodes of the next more detailed variant that is kept, starting with the full geometry.
+	 *
+	 * @param variants
+	 *            the simplified variants of a way in descending order of their zoom levels.
+	 * @param numberOfWayNodes
+	 *            the number of way nodes of the full geometry.
+	 * @return the kept variants in ascending order of their zoom levels.
+	 */
+	static List<WayLevelOfDetail> selectLevelsOfDetail(List<WayLevelOfDetail> variants, int numberOfWayNodes) {
+		List<WayLevelOfDetail> levelsOfDetail = new ArrayList<>();
+		int moreDetailedNumberOfWayNodes = numberOfWayNodes;
+		for (WayLevelOfDetail variant : variants) {
+			int variantNumberOfWayNodes = countWayNodes(variant.wayDataBlocks);
+			if (variantNumberOfWayNodes <= moreDetailedNumberOfWayNodes * LEVEL_OF_DETAIL_MAX_NODES_RATIO) {
+				levelsOfDetail.add(0, variant);
+				moreDetailedNumberOfWayNodes = variantNumberOfWayNodes;
 			}
 		}
+		return levelsOfDetail;
 	}
 
 	static int writeHeaderBuffer(final MapWriterConfiguration configuration,
@@ -607,7 +800,7 @@ public final class MapFileWriter {
 		containerHeaderBuffer.putInt(DUMMY_INT);
 
 		// FILE VERSION
-		containerHeaderBuffer.putInt(configuration.getFileSpecificationVersion());
+		containerHeaderBuffer.putInt(getFileVersion(configuration));
 
 		// FILE SIZE: Write dummy pattern as file size. It will be replaced
 		// later in time
@@ -693,6 +886,32 @@ public final class MapFileWriter {
 		return containerHeaderBuffer.position();
 	}
 
+	/**
+	 * Writes the levels of detail of a way: their number, the maximum zoom level and size in bytes of each level and
+	 * then the way data blocks of each level, so that the reader can skip the levels it does not need.
+	 */
+	static void writeLevelsOfDetail(List<WayLevelOfDetail> levelsOfDetail, int currentTileLat,
+			int currentTileLon, ByteBuffer buffer) {
+		int start = buffer.position();
+		int[] sizes = new int[levelsOfDetail.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			int levelStart = buffer.position();
+			List<WayDataBlock> wayDataBlocks = levelsOfDetail.get(i).wayDataBlocks;
+			buffer.put(Serializer.getVariableByteUnsigned(wayDataBlocks.size()));
+			writeWayDataBlocks(wayDataBlocks, currentTileLat, currentTileLon, buffer);
+			sizes[i] = buffer.position() - levelStart;
+		}
+		byte[] levelData = Arrays.copyOfRange(buffer.array(), start, buffer.position());
+
+		buffer.position(start);
+		buffer.put(Serializer.getVariableByteUnsigned(sizes.length));
+		for (int i = 0; i < sizes.length; i++) {
+			buffer.put(levelsOfDetail.get(i).zoomLevelMax);
+			buffer.put(Serializer.getVariableByteUnsigned(sizes[i]));
+		}
+		buffer.put(levelData);
+	}
+
 	static void writeWayNodes(List<Integer> waynodes, int currentTileLat, int currentTileLon, ByteBuffer buffer) {
 		if (!waynodes.isEmpty() && waynodes.size() % 2 == 0) {
 			Iterator<Integer> waynodeIterator = waynodes.iterator();
@@ -714,14 +933,89 @@ public final class MapFileWriter {
 		}
 	}
 
+	/**
+	 * Adds the POIs of the given tile at the zoom levels of the given zoom interval to the search index.
+	 */
+	private static void addSearchIndexEntries(int blockNumber, TileData tileData,
+			ZoomIntervalConfiguration zoomIntervalConfiguration, int zoomIntervalIndex,
+			SearchIndexWriter searchIndexWriter) {
+		if (tileData == null) {
+			return;
+		}
+		byte minZoom = zoomIntervalConfiguration.getMinZoom(zoomIntervalIndex);
+		byte maxZoom = zoomIntervalConfiguration.getMaxZoom(zoomIntervalIndex);
+		for (List<TDNode> pois : tileData.poisByZoomlevel(minZoom, maxZoom).values()) {
+			for (TDNode poi : pois) {
+				searchIndexWriter.add(blockNumber, poi.getName(), mappedPoiTagIDs(poi.getTags()));
+			}
+		}
+	}
+
+	/**
+	 * Adds the POIs of all tiles of the given zoom interval to the search index, in the order in which
+	 * {@link #writeSubfile} writes the blocks. Only needed if the sub file itself is not written again.
+	 */
+	private static void addSearchIndexEntries(int zoomIntervalIndex, TileBasedDataProcessor dataProcessor,
+			SearchIndexWriter searchIndexWriter) {
+		final TileCoordinate upperLeft = dataProcessor.getTileGridLayout(zoomIntervalIndex).getUpperLeft();
+		final int lengthX = dataProcessor.getTileGridLayout(zoomIntervalIndex).getAmountTilesHorizontal();
+		final int lengthY = dataProcessor.getTileGridLayout(zoomIntervalIndex).getAmountTilesVertical();
+
+		int blockNumber = 0;
+		for (int tileY = upperLeft.getY(); tileY < upperLeft.getY() + lengthY; tileY++) {
+			for (int tileX = upperLeft.getX(); tileX < upperLeft.getX() + lengthX; tileX++) {
+				addSearchIndexEntries(blockNumber++, dataProcessor.getTile(zoomIntervalIndex, tileX, tileY),
+						dataProcessor.getZoomIntervalConfiguration(), zoomIntervalIndex, searchIndexWriter);
+			}
+		}
+	}
+
 	private static void appendWhitespace(int amount, ByteBuffer buffer) {
 		for (int i = 0; i < amount; i++) {
 			buffer.put((byte) ' ');
 		}
 	}
 
+	private static int countWayNodes(List<WayDataBlock> wayDataBlocks) {
+		int numberOfCoordinates = 0;
+		for (WayDataBlock wayDataBlock : wayDataBlocks) {
+			numberOfCoordinates += wayDataBlock.getOuterWay().size();
+			if (wayDataBlock.getInnerWays() != null) {
+				for (List<Integer> innerWay : wayDataBlock.getInnerWays()) {
+					numberOfCoordinates += innerWay.size();
+				}
+			}
+		}
+		return numberOfCoordinates / 2;
+	}
+
+	/**
+	 * @return the index of the zoom interval with the highest zoom levels, whose sub file contains all POIs and is
+	 *         covered by the search index.
+	 */
+	private static int getSearchIndexZoomIntervalIndex(ZoomIntervalConfiguration zoomIntervalConfiguration) {
+		int zoomIntervalIndex = 0;
+		for (int i = 1; i < zoomIntervalConfiguration.getNumberOfZoomIntervals(); i++) {
+			if (zoomIntervalConfiguration.getMaxZoom(i) > zoomIntervalConfiguration.getMaxZoom(zoomIntervalIndex)) {
+				zoomIntervalIndex = i;
+			}
+		}
+		return zoomIntervalIndex;
+	}
+
+	private static int[] mappedPoiTagIDs(short[] original) {
+		if (original == null) {
+			return null;
+		}
+		int[] result = new int[original.length];
+		for (int i = 0; i < original.length; i++) {
+			result[i] = OSMTagMapping.getInstance().getOptimizedPoiId(original[i]);
+		}
+		return result;
+	}
+
 	private static int mappedWayTagID(short original) {
-		return OSMTagMapping.getInstance().getOptimizedWayIds().get(Short.valueOf(original)).intValue();
+		return OSMTagMapping.getInstance().getOptimizedWayId(original);
 	}
 
 	private static void processIndexEntry(TileCoordinate tileCoordinate, ByteBuffer indexBuffer,
@@ -733,8 +1027,8 @@ public final class MapFileWriter {
 		indexBuffer.put(indexBytes);
 	}
 
-	private static void processTile(MapWriterConfiguration configuration, TileCoordinate tileCoordinate,
-			TileBasedDataProcessor dataProcessor, LoadingCache<TDWay, Geometry> jtsGeometryCache,
+	private static int processTile(MapWriterConfiguration configuration, TileCoordinate tileCoordinate,
+			TileData currentTile, TileBasedDataProcessor dataProcessor, JTSGeometryCache jtsGeometryCache,
 			int zoomIntervalIndex, ByteBuffer tileBuffer, ByteBuffer poiDataBuffer, ByteBuffer wayDataBuffer,
 			ByteBuffer wayBuffer) {
 		tileBuffer.clear();
@@ -742,8 +1036,7 @@ public final class MapFileWriter {
 		wayDataBuffer.clear();
 		wayBuffer.clear();
 
-		final TileData currentTile = dataProcessor.getTile(zoomIntervalIndex, tileCoordinate.getX(),
-				tileCoordinate.getY());
+		int amountWays = 0;
 
 		final int currentTileLat = LatLongUtils.degreesToMicrodegrees(MercatorProjection.tileYToLatitude(
 				tileCoordinate.getY(), tileCoordinate.getZoomlevel()));
@@ -789,8 +1082,8 @@ public final class MapFileWriter {
 					List<WayPreprocessingCallable> callables = new ArrayList<>();
 					for (TDWay way : ways) {
 						if (!way.isInvalid()) {
-							callables.add(new WayPreprocessingCallable(way, tileCoordinate, maxZoomCurrentInterval,
-									jtsGeometryCache, configuration));
+							callables.add(new WayPreprocessingCallable(way, tileCoordinate, zoomlevel,
+									maxZoomCurrentInterval, jtsGeometryCache, configuration));
 						}
 					}
 					try {
@@ -807,6 +1100,7 @@ public final class MapFileWriter {
 								wayBuffer.clear();
 								// increment count of ways on this zoom level
 								entitiesPerZoomLevel[indexEntitiesPerZoomLevelTable][1]++;
+								amountWays++;
 								if (configuration.isDebugStrings()) {
 									writeWaySignature(wpr.getWay(), wayDataBuffer);
 								}
@@ -832,6 +1126,7 @@ public final class MapFileWriter {
 			// write way data to buffer
 			tileBuffer.put(wayDataBuffer.array(), 0, wayDataBuffer.position());
 		}
+		return amountWays;
 	}
 
 	private static void writeIndex(ByteBuffer indexBuffer, long startPositionSubfile, long subFileSize,
@@ -841,9 +1136,24 @@ public final class MapFileWriter {
 		randomAccessFile.seek(subFileSize);
 	}
 
+	/**
+	 * Writes the given search index at the given position followed by the position as trailer at the end of the file.
+	 */
+	private static void writeSearchIndex(long position, SearchIndexWriter searchIndexWriter,
+			RandomAccessFile randomAccessFile) throws IOException {
+		byte[] searchIndex = searchIndexWriter.serialize();
+		randomAccessFile.seek(position);
+		randomAccessFile.write(searchIndex);
+		randomAccessFile.writeLong(position);
+		// discard anything a previous or interrupted run has written after the search index
+		randomAccessFile.setLength(position + searchIndex.length + 8);
+		LOGGER.info("search index size: " + searchIndex.length + " bytes");
+	}
+
 	private static long writeSubfile(final long startPositionSubfile, final int zoomIntervalIndex,
-			final TileBasedDataProcessor dataStore, final LoadingCache<TDWay, Geometry> jtsGeometryCache,
-			final RandomAccessFile randomAccessFile, final MapWriterConfiguration configuration) throws IOException {
+			final TileBasedDataProcessor dataStore, final JTSGeometryCache jtsGeometryCache,
+			final PreviousMapFile previousMapFile, final RandomAccessFile randomAccessFile,
+			final MapWriterConfiguration configuration, final SearchIndexWriter searchIndexWriter) throws IOException {
 		LOGGER.fine("writing data for zoom interval " + zoomIntervalIndex + ", number of tiles: "
 				+ dataStore.getTileGridLayout(zoomIntervalIndex).getAmountTilesHorizontal()
 				* dataStore.getTileGridLayout(zoomIntervalIndex).getAmountTilesVertical());
@@ -874,6 +1184,7 @@ public final class MapFileWriter {
 		final ByteBuffer poiDataBuffer = ByteBuffer.allocate(POI_DATA_BUFFER_SIZE);
 
 		final ByteBuffer multipleTilesBuffer = ByteBuffer.allocate(TILES_BUFFER_SIZE);
+		final BlockCompressor blockCompressor = configuration.isBlockCompression() ? new BlockCompressor() : null;
 
 		// write debug strings for tile index segment if necessary
 		if (configuration.isDebugStrings()) {
@@ -888,9 +1199,31 @@ public final class MapFileWriter {
 				TileCoordinate tileCoordinate = new TileCoordinate(tileX, tileY, baseZoomCurrentInterval);
 
 				processIndexEntry(tileCoordinate, indexBuffer, currentSubfileOffset);
-				processTile(configuration, tileCoordinate, dataStore, jtsGeometryCache, zoomIntervalIndex, tileBuffer,
-						poiDataBuffer, wayDataBuffer, wayBuffer);
+				TileData tileData = null;
+				if (previousMapFile != null && !configuration.getChangeSet().isChanged(tileCoordinate)) {
+					previousMapFile.readTile(zoomIntervalIndex, dataStore.getTileGridLayout(zoomIntervalIndex), tileX,
+							tileY, tileBuffer);
+					if (searchIndexWriter != null) {
+						tileData = dataStore.getTile(zoomIntervalIndex, tileX, tileY);
+					}
+				} else {
+					long start = System.nanoTime();
+					tileData = dataStore.getTile(zoomIntervalIndex, tileX, tileY);
+					int amountWays = processTile(configuration, tileCoordinate, tileData, dataStore,
+							jtsGeometryCache, zoomIntervalIndex, tileBuffer, poiDataBuffer, wayDataBuffer, wayBuffer);
+					Profiler.getInstance().tileWritten(tileCoordinate, System.nanoTime() - start,
+							tileBuffer.position(), amountWays);
+					if (blockCompressor != null) {
+						// tiles of the previous file are copied as they are, they have been compressed already
+						blockCompressor.compress(tileBuffer);
+					}
+				}
 				currentSubfileOffset += tileBuffer.position();
+				if (searchIndexWriter != null) {
+					// the blocks are numbered in the order in which they are written
+					addSearchIndexEntries(processedTiles, tileData, dataStore.getZoomIntervalConfiguration(),
+							zoomIntervalIndex, searchIndexWriter);
+				}
 
 				writeTile(multipleTilesBuffer, tileBuffer, randomAccessFile);
 
@@ -913,6 +1246,10 @@ public final class MapFileWriter {
 			randomAccessFile.write(multipleTilesBuffer.array(), 0, multipleTilesBuffer.position());
 		}
 
+		if (blockCompressor != null) {
+			blockCompressor.destroy();
+		}
+
 		writeIndex(indexBuffer, startPositionSubfile, currentSubfileOffset, randomAccessFile);
 
 		// return size of sub file in bytes
@@ -972,6 +1309,34 @@ public final class MapFileWriter {
 		writeWayNodes(wayNodes, currentTileLat, currentTileLon, buffer);
 	}
 
+	private static void writeWayDataBlocks(List<WayDataBlock> wayDataBlocks, int currentTileLat, int currentTileLon,
+			ByteBuffer buffer) {
+		for (WayDataBlock wayDataBlock : wayDataBlocks) {
+			// write the amount of coordinate blocks
+			// we have at least one block (potentially
+			// interpreted as outer way) and
+			// possible blocks for inner ways
+			if (wayDataBlock.getInnerWays() != null && !wayDataBlock.getInnerWays().isEmpty()) {
+				// multi polygon: outer way + number of
+				// inner ways
+				buffer.put(Serializer.getVariableByteUnsigned(1 + wayDataBlock.getInnerWays().size()));
+			} else {
+				// simply a single way (not a multi polygon)
+				buffer.put(Serializer.getVariableByteUnsigned(1));
+			}
+
+			// write block for (outer/simple) way
+			writeWay(wayDataBlock.getOuterWay(), currentTileLat, currentTileLon, buffer);
+
+			// write blocks for inner ways
+			if (wayDataBlock.getInnerWays() != null && !wayDataBlock.getInnerWays().isEmpty()) {
+				for (List<Integer> innerWayCoordinates : wayDataBlock.getInnerWays()) {
+					writeWay(innerWayCoordinates, currentTileLat, currentTileLon, buffer);
+				}
+			}
+		}
+	}
+
 	private static void writeWaySignature(TDWay way, ByteBuffer tileBuffer) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(DEBUG_STRING_WAY_HEAD).append(way.getId()).append(DEBUG_STRING_WAY_TAIL);
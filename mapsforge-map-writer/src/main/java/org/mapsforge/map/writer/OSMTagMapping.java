@@ -16,13 +16,18 @@ package org.mapsforge.map.writer;
 
 import gnu.trove.map.hash.TShortIntHashMap;
 import gnu.trove.procedure.TShortIntProcedure;
-import gnu.trove.set.hash.TShortHashSet;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -40,6 +45,7 @@ import javax.xml.xpath.XPathFactory;
 
 import org.mapsforge.map.writer.model.OSMTag;
 import org.mapsforge.map.writer.osmosis.MapFileWriterTask;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -51,6 +57,11 @@ import org.xml.sax.SAXParseException;
 /**
  * Reorders and maps tag ids according to their frequency in the input data. Ids are remapped so that the most frequent
  * entities receive the lowest ids.
+ * <p>
+ * After parsing, the configuration is compiled into arrays indexed by tag id, so that the per entity queries
+ * {@link #getZoomAppearPOI(short[])}, {@link #getZoomAppearWay(short[])}, {@link #getKnownPoiTags(Collection)},
+ * {@link #getKnownWayTags(Collection)}, {@link #getOptimizedPoiId(short)} and {@link #getOptimizedWayId(short)} do
+ * not box ids or allocate temporary collections.
  */
 public final class OSMTagMapping {
 	private class HistogramEntry implements Comparable<HistogramEntry> {
@@ -125,6 +136,7 @@ public final class OSMTagMapping {
 	private static final Logger LOGGER = Logger.getLogger(OSMTagMapping.class.getName());
 
 	private static OSMTagMapping mapping;
+	private static String mappingConfiguration;
 	private static final String XPATH_EXPRESSION_DEFAULT_ZOOM = "/tag-mapping/@default-zoom-appear";
 
 	private static final String XPATH_EXPRESSION_POIS = "//pois/osm-tag["
@@ -134,6 +146,133 @@ public final class OSMTagMapping {
 			+ "(../@enabled='true' or not(../@enabled)) and (./@enabled='true' or not(./@enabled)) "
 			+ "or (../@enabled='false' and ./@enabled='true')]";
 
+	private static BitSet[] compileZoomOverrides(Map<Short, Set<String>> tmpZoomOverrides,
+			Map<String, OSMTag> stringToTag, int numberOfTags) {
+		BitSet[] zoomOverrides = new BitSet[numberOfTags];
+		for (Entry<Short, Set<String>> entry : tmpZoomOverrides.entrySet()) {
+			BitSet overriddenTags = new BitSet(numberOfTags);
+			for (String tagString : entry.getValue()) {
+				OSMTag tag = stringToTag.get(tagString);
+				if (tag != null) {
+					overriddenTags.set(tag.getId());
+				}
+			}
+			if (!overriddenTags.isEmpty()) {
+				zoomOverrides[entry.getKey().shortValue()] = overriddenTags;
+			}
+		}
+		return zoomOverrides;
+	}
+
+	/**
+	 * Tags that are not renderable do not contribute to the zoom level of an entity, their entry is
+	 * {@link Byte#MAX_VALUE}.
+	 */
+	private static byte[] compileZoomAppear(OSMTag[] tags) {
+		byte[] zoomAppear = new byte[tags.length];
+		for (int i = 0; i < tags.length; ++i) {
+			zoomAppear[i] = tags[i].isRenderable() ? tags[i].getZoomAppear() : Byte.MAX_VALUE;
+		}
+		return zoomAppear;
+	}
+
+	private static short[] compileOptimizedIds(Map<Short, Short> optimizedIds, int numberOfTags) {
+		short[] optimizedIdTable = new short[numberOfTags];
+		Arrays.fill(optimizedIdTable, (short) -1);
+		for (Entry<Short, Short> entry : optimizedIds.entrySet()) {
+			optimizedIdTable[entry.getKey().shortValue()] = entry.getValue().shortValue();
+		}
+		return optimizedIdTable;
+	}
+
+	private static short[] getKnownTags(Collection<Tag> tags, Map<String, Map<String, OSMTag>> keyToTags) {
+		if (tags == null || tags.isEmpty()) {
+			return new short[0];
+		}
+
+		short[] knownTags = new short[tags.size()];
+		int numberOfKnownTags = 0;
+		for (Tag tag : tags) {
+			OSMTag osmTag = getTag(keyToTags, tag.getKey(), tag.getValue());
+			if (osmTag != null) {
+				knownTags[numberOfKnownTags++] = osmTag.getId();
+			}
+		}
+		return numberOfKnownTags == knownTags.length ? knownTags : Arrays.copyOf(knownTags, numberOfKnownTags);
+	}
+
+	private static int getOptimizedId(short[] optimizedIdTable, short id) {
+		short optimizedId = id >= 0 && id < optimizedIdTable.length ? optimizedIdTable[id] : -1;
+		if (optimizedId < 0) {
+			throw new IllegalArgumentException("tag id has no optimized id: " + id);
+		}
+		return optimizedId;
+	}
+
+	private static OSMTag getTag(Map<String, Map<String, OSMTag>> keyToTags, String key, String value) {
+		Map<String, OSMTag> valueToTag = keyToTags.get(key);
+		if (valueToTag == null) {
+			return null;
+		}
+		return valueToTag.get(value);
+	}
+
+	private static OSMTag getTag(OSMTag[] tags, short id) {
+		if (id < 0 || id >= tags.length) {
+			return null;
+		}
+		return tags[id];
+	}
+
+	private static byte getZoomAppear(short[] tagSet, OSMTag[] tags, byte[] zoomAppearTable, BitSet[] zoomOverrides) {
+		if (tagSet == null || tagSet.length == 0) {
+			return Byte.MAX_VALUE;
+		}
+
+		byte zoomAppear = Byte.MAX_VALUE;
+		boolean allOverridden = true;
+		for (short s : tagSet) {
+			if (isOverridden(s, tagSet, zoomOverrides)) {
+				continue;
+			}
+			allOverridden = false;
+			zoomAppear = (byte) Math.min(zoomAppear, zoomAppearTable[s]);
+		}
+
+		if (allOverridden) {
+			StringBuilder sb = new StringBuilder();
+			for (short s : tagSet) {
+				sb.append(tags[s].tagKey() + "; ");
+			}
+			LOGGER.severe("ERROR: You have a cycle in your zoom-override definitions. Look for these tags: "
+					+ sb.toString());
+		}
+
+		return zoomAppear;
+	}
+
+	/**
+	 * @return true if another tag of the tag set (or the tag itself) overrides the zoom level of the given tag
+	 */
+	private static boolean isOverridden(short tag, short[] tagSet, BitSet[] zoomOverrides) {
+		for (short s : tagSet) {
+			BitSet overriddenTags = zoomOverrides[s];
+			if (overriddenTags != null && overriddenTags.get(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void putTag(Map<String, Map<String, OSMTag>> keyToTags, String key, String value, OSMTag tag) {
+		Map<String, OSMTag> valueToTag = keyToTags.get(key);
+		if (valueToTag == null) {
+			valueToTag = new HashMap<>();
+			keyToTags.put(key, valueToTag);
+		}
+		valueToTag.put(value, tag);
+	}
+
 	/**
 	 * @return a new instance
 	 */
@@ -148,26 +287,38 @@ public final class OSMTagMapping {
 	/**
 	 * @param tagConf
 	 *            the {@link URL} to a file that contains a tag configuration
-	 * @return a new instance
+	 * @return a new instance or the existing one if it has been initialized from the same configuration
+	 * @throws IllegalStateException
+	 *             if the mapping has already been initialized from a different configuration
 	 */
-	public static OSMTagMapping getInstance(URL tagConf) {
+	public static synchronized OSMTagMapping getInstance(URL tagConf) {
 		if (mapping != null) {
+			if (mappingConfiguration.equals(tagConf.toExternalForm())) {
+				return mapping;
+			}
 			throw new IllegalStateException("mapping already initialized");
 		}
 
 		mapping = new OSMTagMapping(tagConf);
+		mappingConfiguration = tagConf.toExternalForm();
 		return mapping;
 	}
 
-	private final Map<Short, OSMTag> idToPoiTag = new LinkedHashMap<>();
-	private final Map<Short, OSMTag> idToWayTag = new LinkedHashMap<>();
+	// lookup of tags by key and value without concatenating both to a tag key
+	private final Map<String, Map<String, OSMTag>> keyToPoiTags = new HashMap<>();
+	private final Map<String, Map<String, OSMTag>> keyToWayTags = new HashMap<>();
 
 	private final Map<Short, Short> optimizedPoiIds = new LinkedHashMap<>();
+	private short[] optimizedPoiIdTable;
 	private final Map<Short, Short> optimizedWayIds = new LinkedHashMap<>();
+	private short[] optimizedWayIdTable;
 
 	private short poiID = 0;
 
-	private final Map<Short, Set<OSMTag>> poiZoomOverrides = new LinkedHashMap<>();
+	// the tables below are indexed by tag id
+	private OSMTag[] poiTags;
+	private byte[] poiZoomAppear;
+	private BitSet[] poiZoomOverrides;
 
 	// we use LinkedHashMaps as they guarantee to uphold the
 	// insertion order when iterating over the key or value "set"
@@ -177,9 +328,11 @@ public final class OSMTagMapping {
 
 	private short wayID = 0;
 
-	private final Map<Short, Set<OSMTag>> wayZoomOverrides = new LinkedHashMap<>();
+	private OSMTag[] wayTags;
+	private byte[] wayZoomAppear;
+	private BitSet[] wayZoomOverrides;
 
-	private OSMTagMapping(URL tagConf) {
+	OSMTagMapping(URL tagConf) {
 		try {
 			byte defaultZoomAppear;
 
@@ -195,6 +348,8 @@ public final class OSMTagMapping {
 
 			final HashMap<Short, Set<String>> tmpPoiZoomOverrides = new HashMap<>();
 			final HashMap<Short, Set<String>> tmpWayZoomOverrides = new HashMap<>();
+			final List<OSMTag> tmpPoiTags = new ArrayList<>();
+			final List<OSMTag> tmpWayTags = new ArrayList<>();
 
 			// ---- Get list of poi nodes ----
 			xe = xpath.compile(XPATH_EXPRESSION_POIS);
@@ -226,12 +381,14 @@ public final class OSMTagMapping {
 				}
 				LOGGER.finest("adding poi: " + osmTag);
 				this.stringToPoiTag.put(osmTag.tagKey(), osmTag);
+				putTag(this.keyToPoiTags, key, value, osmTag);
 				if (equivalentValues != null) {
 					for (String equivalentValue : equivalentValues) {
 						this.stringToPoiTag.put(OSMTag.tagKey(key, equivalentValue), osmTag);
+						putTag(this.keyToPoiTags, key, equivalentValue, osmTag);
 					}
 				}
-				this.idToPoiTag.put(Short.valueOf(this.poiID), osmTag);
+				tmpPoiTags.add(osmTag);
 
 				// also fill optimization mapping with identity
 				this.optimizedPoiIds.put(Short.valueOf(this.poiID), Short.valueOf(this.poiID));
@@ -285,12 +442,14 @@ public final class OSMTagMapping {
 				}
 				LOGGER.finest("adding way: " + osmTag);
 				this.stringToWayTag.put(osmTag.tagKey(), osmTag);
+				putTag(this.keyToWayTags, key, value, osmTag);
 				if (equivalentValues != null) {
 					for (String equivalentValue : equivalentValues) {
 						this.stringToWayTag.put(OSMTag.tagKey(key, equivalentValue), osmTag);
+						putTag(this.keyToWayTags, key, equivalentValue, osmTag);
 					}
 				}
-				this.idToWayTag.put(Short.valueOf(this.wayID), osmTag);
+				tmpWayTags.add(osmTag);
 
 				// also fill optimization mapping with identity
 				this.optimizedWayIds.put(Short.valueOf(this.wayID), Short.valueOf(this.wayID));
@@ -314,32 +473,18 @@ public final class OSMTagMapping {
 				this.wayID++;
 			}
 
-			// copy temporary values from zoom-override data sets
-			for (Entry<Short, Set<String>> entry : tmpPoiZoomOverrides.entrySet()) {
-				Set<OSMTag> overriddenTags = new HashSet<>();
-				for (String tagString : entry.getValue()) {
-					OSMTag tag = this.stringToPoiTag.get(tagString);
-					if (tag != null) {
-						overriddenTags.add(tag);
-					}
-				}
-				if (!overriddenTags.isEmpty()) {
-					this.poiZoomOverrides.put(entry.getKey(), overriddenTags);
-				}
-			}
+			// ---- Compile the tables indexed by tag id ----
+			this.poiTags = tmpPoiTags.toArray(new OSMTag[tmpPoiTags.size()]);
+			this.poiZoomAppear = compileZoomAppear(this.poiTags);
+			this.poiZoomOverrides = compileZoomOverrides(tmpPoiZoomOverrides, this.stringToPoiTag,
+					this.poiTags.length);
+			this.optimizedPoiIdTable = compileOptimizedIds(this.optimizedPoiIds, this.poiTags.length);
 
-			for (Entry<Short, Set<String>> entry : tmpWayZoomOverrides.entrySet()) {
-				Set<OSMTag> overriddenTags = new HashSet<>();
-				for (String tagString : entry.getValue()) {
-					OSMTag tag = this.stringToWayTag.get(tagString);
-					if (tag != null) {
-						overriddenTags.add(tag);
-					}
-				}
-				if (!overriddenTags.isEmpty()) {
-					this.wayZoomOverrides.put(entry.getKey(), overriddenTags);
-				}
-			}
+			this.wayTags = tmpWayTags.toArray(new OSMTag[tmpWayTags.size()]);
+			this.wayZoomAppear = compileZoomAppear(this.wayTags);
+			this.wayZoomOverrides = compileZoomOverrides(tmpWayZoomOverrides, this.stringToWayTag,
+					this.wayTags.length);
+			this.optimizedWayIdTable = compileOptimizedIds(this.optimizedWayIds, this.wayTags.length);
 
 			// ---- Error handling ----
 		} catch (SAXParseException spe) {
@@ -357,17 +502,57 @@ public final class OSMTagMapping {
 	}
 
 	/**
-	 * @return a mapping that maps original tag ids to the optimized ones
+	 * @param tags
+	 *            the tags of an entity, may be null
+	 * @return the ids of the known poi tags
+	 */
+	public short[] getKnownPoiTags(Collection<Tag> tags) {
+		return getKnownTags(tags, this.keyToPoiTags);
+	}
+
+	/**
+	 * @param tags
+	 *            the tags of an entity, may be null
+	 * @return the ids of the known way tags
+	 */
+	public short[] getKnownWayTags(Collection<Tag> tags) {
+		return getKnownTags(tags, this.keyToWayTags);
+	}
+
+	/**
+	 * @param id
+	 *            the original tag id
+	 * @return the optimized tag id
+	 * @throws IllegalArgumentException
+	 *             if the tag has no optimized id
+	 */
+	public int getOptimizedPoiId(short id) {
+		return getOptimizedId(this.optimizedPoiIdTable, id);
+	}
+
+	/**
+	 * @return a read-only mapping that maps original tag ids to the optimized ones
 	 */
 	public Map<Short, Short> getOptimizedPoiIds() {
-		return this.optimizedPoiIds;
+		return Collections.unmodifiableMap(this.optimizedPoiIds);
+	}
+
+	/**
+	 * @param id
+	 *            the original tag id
+	 * @return the optimized tag id
+	 * @throws IllegalArgumentException
+	 *             if the tag has no optimized id
+	 */
+	public int getOptimizedWayId(short id) {
+		return getOptimizedId(this.optimizedWayIdTable, id);
 	}
 
 	/**
-	 * @return a mapping that maps original tag ids to the optimized ones
+	 * @return a read-only mapping that maps original tag ids to the optimized ones
 	 */
 	public Map<Short, Short> getOptimizedWayIds() {
-		return this.optimizedWayIds;
+		return Collections.unmodifiableMap(this.optimizedWayIds);
 	}
 
 	/**
@@ -376,7 +561,7 @@ public final class OSMTagMapping {
 	 * @return the corresponding {@link OSMTag}
 	 */
 	public OSMTag getPoiTag(short id) {
-		return this.idToPoiTag.get(Short.valueOf(id));
+		return getTag(this.poiTags, id);
 	}
 
 	/**
@@ -387,7 +572,7 @@ public final class OSMTagMapping {
 	 * @return the corresponding {@link OSMTag}
 	 */
 	public OSMTag getPoiTag(String key, String value) {
-		return this.stringToPoiTag.get(OSMTag.tagKey(key, value));
+		return getTag(this.keyToPoiTags, key, value);
 	}
 
 	/**
@@ -396,7 +581,7 @@ public final class OSMTagMapping {
 	 * @return the corresponding {@link OSMTag}
 	 */
 	public OSMTag getWayTag(short id) {
-		return this.idToWayTag.get(Short.valueOf(id));
+		return getTag(this.wayTags, id);
 	}
 
 	// /**
@@ -422,7 +607,7 @@ public final class OSMTagMapping {
 	 * @return the corresponding {@link OSMTag}
 	 */
 	public OSMTag getWayTag(String key, String value) {
-		return this.stringToWayTag.get(OSMTag.tagKey(key, value));
+		return getTag(this.keyToWayTags, key, value);
 	}
 
 	/**
@@ -431,41 +616,7 @@ public final class OSMTagMapping {
 	 * @return the minimum zoom level of all tags in the tag set
 	 */
 	public byte getZoomAppearPOI(short[] tagSet) {
-		if (tagSet == null || tagSet.length == 0) {
-			return Byte.MAX_VALUE;
-		}
-
-		TShortHashSet tmp = new TShortHashSet(tagSet);
-
-		if (!this.poiZoomOverrides.isEmpty()) {
-			for (short s : tagSet) {
-				Set<OSMTag> overriddenTags = this.poiZoomOverrides.get(Short.valueOf(s));
-				if (overriddenTags != null) {
-					for (OSMTag osmTag : overriddenTags) {
-						tmp.remove(osmTag.getId());
-					}
-				}
-			}
-
-			if (tmp.isEmpty()) {
-				StringBuilder sb = new StringBuilder();
-				for (short s : tagSet) {
-					sb.append(this.idToPoiTag.get(Short.valueOf(s)).tagKey() + "; ");
-				}
-				LOGGER.severe("ERROR: You have a cycle in your zoom-override definitions. Look for these tags: "
-						+ sb.toString());
-			}
-		}
-
-		byte zoomAppear = Byte.MAX_VALUE;
-		for (short s : tmp.toArray()) {
-			OSMTag tag = this.idToPoiTag.get(Short.valueOf(s));
-			if (tag.isRenderable()) {
-				zoomAppear = (byte) Math.min(zoomAppear, tag.getZoomAppear());
-			}
-		}
-
-		return zoomAppear;
+		return getZoomAppear(tagSet, this.poiTags, this.poiZoomAppear, this.poiZoomOverrides);
 	}
 
 	/**
@@ -474,40 +625,7 @@ public final class OSMTagMapping {
 	 * @return the minimum zoom level of all the tags in the set
 	 */
 	public byte getZoomAppearWay(short[] tagSet) {
-		if (tagSet == null || tagSet.length == 0) {
-			return Byte.MAX_VALUE;
-		}
-
-		TShortHashSet tmp = new TShortHashSet(tagSet);
-
-		if (!this.wayZoomOverrides.isEmpty()) {
-			for (short s : tagSet) {
-				Set<OSMTag> overriddenTags = this.wayZoomOverrides.get(Short.valueOf(s));
-				if (overriddenTags != null) {
-					for (OSMTag osmTag : overriddenTags) {
-						tmp.remove(osmTag.getId());
-					}
-				}
-			}
-
-			if (tmp.isEmpty()) {
-				StringBuilder sb = new StringBuilder();
-				for (short s : tagSet) {
-					sb.append(this.idToWayTag.get(Short.valueOf(s)).tagKey() + "; ");
-				}
-				LOGGER.severe("ERROR: You have a cycle in your zoom-override definitions. Look for these tags: "
-						+ sb.toString());
-			}
-		}
-		byte zoomAppear = Byte.MAX_VALUE;
-		for (short s : tmp.toArray()) {
-			OSMTag tag = this.idToWayTag.get(Short.valueOf(s));
-			if (tag.isRenderable()) {
-				zoomAppear = (byte) Math.min(zoomAppear, tag.getZoomAppear());
-			}
-		}
-
-		return zoomAppear;
+		return getZoomAppear(tagSet, this.wayTags, this.wayZoomAppear, this.wayZoomOverrides);
 	}
 
 	/**
@@ -530,12 +648,13 @@ public final class OSMTagMapping {
 
 		OSMTag currentTag = null;
 		for (HistogramEntry histogramEntry : poiOrdering.descendingSet()) {
-			currentTag = this.idToPoiTag.get(Short.valueOf(histogramEntry.id));
+			currentTag = this.poiTags[histogramEntry.id];
 			this.optimizedPoiIds.put(Short.valueOf(histogramEntry.id), Short.valueOf(tmpPoiID));
 			LOGGER.finer("adding poi tag: " + currentTag.tagKey() + " id:" + tmpPoiID + " amount: "
 					+ histogramEntry.amount);
 			tmpPoiID++;
 		}
+		this.optimizedPoiIdTable = compileOptimizedIds(this.optimizedPoiIds, this.poiTags.length);
 	}
 
 	/**
@@ -557,11 +676,56 @@ public final class OSMTagMapping {
 
 		OSMTag currentTag = null;
 		for (HistogramEntry histogramEntry : wayOrdering.descendingSet()) {
-			currentTag = this.idToWayTag.get(Short.valueOf(histogramEntry.id));
+			currentTag = this.wayTags[histogramEntry.id];
 			this.optimizedWayIds.put(Short.valueOf(histogramEntry.id), Short.valueOf(tmpWayID));
 			LOGGER.finer("adding way tag: " + currentTag.tagKey() + " id:" + tmpWayID + " amount: "
 					+ histogramEntry.amount);
 			tmpWayID++;
 		}
+		this.optimizedWayIdTable = compileOptimizedIds(this.optimizedWayIds, this.wayTags.length);
+	}
+
+	/**
+	 * Replaces the optimized poi ordering by the ordering of a previously written map file, so that tiles of that
+	 * file remain valid. Tags that do not occur in the previous file are appended.
+	 * 
+	 * @param previousTags
+	 *            the poi tags of the previous map file in the order of their ids
+	 */
+	public void retainPoiOrdering(List<String> previousTags) {
+		retainOrdering(this.optimizedPoiIds, this.stringToPoiTag, previousTags);
+		this.optimizedPoiIdTable = compileOptimizedIds(this.optimizedPoiIds, this.poiTags.length);
+	}
+
+	/**
+	 * Replaces the optimized way ordering by the ordering of a previously written map file, so that tiles of that
+	 * file remain valid. Tags that do not occur in the previous file are appended.
+	 * 
+	 * @param previousTags
+	 *            the way tags of the previous map file in the order of their ids
+	 */
+	public void retainWayOrdering(List<String> previousTags) {
+		retainOrdering(this.optimizedWayIds, this.stringToWayTag, previousTags);
+		this.optimizedWayIdTable = compileOptimizedIds(this.optimizedWayIds, this.wayTags.length);
+	}
+
+	private static void retainOrdering(Map<Short, Short> optimizedIds, Map<String, OSMTag> stringToTag,
+			List<String> previousTags) {
+		List<Short> currentIds = new ArrayList<>(optimizedIds.keySet());
+		optimizedIds.clear();
+
+		short tmpID = 0;
+		for (String tagKey : previousTags) {
+			OSMTag tag = stringToTag.get(tagKey);
+			if (tag == null) {
+				throw new IllegalArgumentException("tag of previous map file is unknown to the tag mapping: " + tagKey);
+			}
+			optimizedIds.put(Short.valueOf(tag.getId()), Short.valueOf(tmpID++));
+		}
+		for (Short id : currentIds) {
+			if (!optimizedIds.containsKey(id)) {
+				optimizedIds.put(id, Short.valueOf(tmpID++));
+			}
+		}
 	}
 }
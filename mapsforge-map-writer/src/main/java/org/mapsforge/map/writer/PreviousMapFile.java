@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.util.LatLongUtils;
+import org.mapsforge.map.writer.model.TileBasedDataProcessor;
+import org.mapsforge.map.writer.model.TileGridLayout;
+import org.mapsforge.map.writer.model.ZoomIntervalConfiguration;
+
+/**
+ * A map file written by an earlier run, from which the tiles that are not affected by a change set are copied
+ * unmodified in incremental mode.
+ */
+final class PreviousMapFile {
+	private static final int BITMAP_COMMENT = 8;
+	private static final int BITMAP_COMPRESSED_BLOCKS = 2;
+	private static final int BITMAP_CREATED_WITH = 4;
+	private static final int BITMAP_DEBUG = 128;
+	private static final int BITMAP_MAP_START_POSITION = 64;
+	private static final int BITMAP_MAP_START_ZOOM = 32;
+	private static final int BITMAP_PREFERRED_LANGUAGE = 16;
+	private static final int BYTES_PER_INDEX_ENTRY = 5;
+	private static final String DEBUG_INDEX_START_STRING = "+++IndexStart+++";
+	private static final String MAGIC_BYTE = "mapsforge binary OSM";
+	private static final long MASK_INDEX_OFFSET = 0x7FFFFFFFFFL;
+	private static final Charset UTF8_CHARSET = Charset.forName("utf8");
+
+	private static String readUTF8(ByteBuffer buffer) {
+		int length = readVariableByteUnsigned(buffer);
+		String string = new String(buffer.array(), buffer.position(), length, UTF8_CHARSET);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+
+	private static int readVariableByteUnsigned(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = buffer.get();
+			value |= (current & 0x7f) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+		return value;
+	}
+
+	private final int[] boundingBox;
+	private final boolean compressedBlocks;
+	private final boolean debugFile;
+	private final int fileVersion;
+	private long[] index;
+	private int indexZoomInterval = -1;
+	private final List<String> poiTags;
+	private final RandomAccessFile randomAccessFile;
+	private final long[] subfileSizes;
+	private final long[] subfileStarts;
+	private final byte[][] zoomIntervals;
+	private final List<String> wayTags;
+
+	/**
+	 * @param file
+	 *            the map file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a map file
+	 */
+	PreviousMapFile(File file) throws IOException {
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+
+		byte[] magicBytes = MAGIC_BYTE.getBytes(UTF8_CHARSET);
+		byte[] fileMagicBytes = new byte[magicBytes.length];
+		this.randomAccessFile.readFully(fileMagicBytes);
+		if (!MAGIC_BYTE.equals(new String(fileMagicBytes, UTF8_CHARSET))) {
+			this.randomAccessFile.close();
+			throw new IOException("previous file is not a map file: " + file);
+		}
+		ByteBuffer header = ByteBuffer.allocate(this.randomAccessFile.readInt());
+		this.randomAccessFile.readFully(header.array());
+
+		this.fileVersion = header.getInt();
+		// file size, date of creation
+		header.position(header.position() + 8 + 8);
+		this.boundingBox = new int[] { header.getInt(), header.getInt(), header.getInt(), header.getInt() };
+		// tile size and projection
+		header.getShort();
+		readUTF8(header);
+
+		byte flags = header.get();
+		this.debugFile = (flags & BITMAP_DEBUG) != 0;
+		this.compressedBlocks = (flags & BITMAP_COMPRESSED_BLOCKS) != 0;
+		if ((flags & BITMAP_MAP_START_POSITION) != 0) {
+			header.position(header.position() + 8);
+		}
+		if ((flags & BITMAP_MAP_START_ZOOM) != 0) {
+			header.get();
+		}
+		if ((flags & BITMAP_PREFERRED_LANGUAGE) != 0) {
+			readUTF8(header);
+		}
+		if ((flags & BITMAP_COMMENT) != 0) {
+			readUTF8(header);
+		}
+		if ((flags & BITMAP_CREATED_WITH) != 0) {
+			readUTF8(header);
+		}
+
+		this.poiTags = new ArrayList<>();
+		for (int i = header.getShort(); i > 0; i--) {
+			this.poiTags.add(readUTF8(header));
+		}
+		this.wayTags = new ArrayList<>();
+		for (int i = header.getShort(); i > 0; i--) {
+			this.wayTags.add(readUTF8(header));
+		}
+
+		int numberOfZoomIntervals = header.get();
+		this.zoomIntervals = new byte[numberOfZoomIntervals][3];
+		this.subfileStarts = new long[numberOfZoomIntervals];
+		this.subfileSizes = new long[numberOfZoomIntervals];
+		for (int i = 0; i < numberOfZoomIntervals; i++) {
+			header.get(this.zoomIntervals[i]);
+			this.subfileStarts[i] = header.getLong();
+			this.subfileSizes[i] = header.getLong();
+		}
+	}
+
+	/**
+	 * Verifies that the tiles of the previous file can be reused for the file that is written now, i.e. that it
+	 * covers the same bounding box with the same zoom intervals, the same file version and the same debug and
+	 * compression settings. Ways in the copied tiles keep their levels of detail, if any.
+	 *
+	 * @param fileVersion
+	 *            the file version of the new file
+	 * @param debugStrings
+	 *            true if the new file contains debug strings
+	 * @param compressedBlocks
+	 *            true if the blocks of the new file are compressed
+	 * @param dataProcessor
+	 *            the data processor of the new file
+	 * @throws IOException
+	 *             if the previous file is not compatible
+	 */
+	void checkCompatibility(int fileVersion, boolean debugStrings, boolean compressedBlocks,
+			TileBasedDataProcessor dataProcessor) throws IOException {
+		BoundingBox boundingBox = dataProcessor.getBoundingBox();
+		int[] newBoundingBox = new int[] { LatLongUtils.degreesToMicrodegrees(boundingBox.minLatitude),
+				LatLongUtils.degreesToMicrodegrees(boundingBox.minLongitude),
+				LatLongUtils.degreesToMicrodegrees(boundingBox.maxLatitude),
+				LatLongUtils.degreesToMicrodegrees(boundingBox.maxLongitude) };
+		if (!Arrays.equals(newBoundingBox, this.boundingBox)) {
+			throw new IOException("previous map file has a different bounding box: "
+					+ Arrays.toString(this.boundingBox));
+		}
+		if (fileVersion != this.fileVersion) {
+			throw new IOException("previous map file has a different file version: " + this.fileVersion);
+		}
+		if (debugStrings != this.debugFile) {
+			throw new IOException("previous map file has a different debug setting");
+		}
+		if (compressedBlocks != this.compressedBlocks) {
+			throw new IOException("previous map file has a different block compression setting");
+		}
+
+		ZoomIntervalConfiguration zoomIntervalConfiguration = dataProcessor.getZoomIntervalConfiguration();
+		boolean sameZoomIntervals = zoomIntervalConfiguration.getNumberOfZoomIntervals() == this.zoomIntervals.length;
+		for (int i = 0; sameZoomIntervals && i < this.zoomIntervals.length; i++) {
+			sameZoomIntervals = zoomIntervalConfiguration.getBaseZoom(i) == this.zoomIntervals[i][0]
+					&& zoomIntervalConfiguration.getMinZoom(i) == this.zoomIntervals[i][1]
+					&& zoomIntervalConfiguration.getMaxZoom(i) == this.zoomIntervals[i][2];
+		}
+		if (!sameZoomIntervals) {
+			throw new IOException("previous map file has a different zoom interval configuration");
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	void close() throws IOException {
+		this.randomAccessFile.close();
+	}
+
+	/**
+	 * @return the poi tags in the order of their ids
+	 */
+	List<String> getPoiTags() {
+		return this.poiTags;
+	}
+
+	/**
+	 * @return the way tags in the order of their ids
+	 */
+	List<String> getWayTags() {
+		return this.wayTags;
+	}
+
+	/**
+	 * Copies a tile of the previous file to the beginning of the given buffer and sets the position of the buffer to
+	 * the end of the tile.
+	 *
+	 * @param zoomIntervalIndex
+	 *            the zoom interval
+	 * @param tileGridLayout
+	 *            the tile grid layout of the zoom interval
+	 * @param tileX
+	 *            the tile x coordinate
+	 * @param tileY
+	 *            the tile y coordinate
+	 * @param tileBuffer
+	 *            the buffer for the tile
+	 * @throws IOException
+	 *             if the tile cannot be read
+	 */
+	void readTile(int zoomIntervalIndex, TileGridLayout tileGridLayout, int tileX, int tileY, ByteBuffer tileBuffer)
+			throws IOException {
+		if (this.indexZoomInterval != zoomIntervalIndex) {
+			readIndex(zoomIntervalIndex, tileGridLayout);
+		}
+
+		int tileIndex = (tileY - tileGridLayout.getUpperLeft().getY()) * tileGridLayout.getAmountTilesHorizontal()
+				+ tileX - tileGridLayout.getUpperLeft().getX();
+		long tileStart = this.index[tileIndex];
+		long tileEnd = tileIndex + 1 < this.index.length ? this.index[tileIndex + 1]
+				: this.subfileSizes[zoomIntervalIndex];
+
+		tileBuffer.clear();
+		this.randomAccessFile.seek(this.subfileStarts[zoomIntervalIndex] + tileStart);
+		this.randomAccessFile.readFully(tileBuffer.array(), 0, (int) (tileEnd - tileStart));
+		tileBuffer.position((int) (tileEnd - tileStart));
+	}
+
+	private void readIndex(int zoomIntervalIndex, TileGridLayout tileGridLayout) throws IOException {
+		int amountTiles = tileGridLayout.getAmountTilesHorizontal() * tileGridLayout.getAmountTilesVertical();
+		byte[] indexBytes = new byte[amountTiles * BYTES_PER_INDEX_ENTRY];
+
+		long indexStart = this.subfileStarts[zoomIntervalIndex];
+		if (this.debugFile) {
+			indexStart += DEBUG_INDEX_START_STRING.getBytes(UTF8_CHARSET).length;
+		}
+		this.randomAccessFile.seek(indexStart);
+		this.randomAccessFile.readFully(indexBytes);
+
+		this.index = new long[amountTiles];
+		for (int i = 0; i < amountTiles; i++) {
+			long entry = 0;
+			for (int j = i * BYTES_PER_INDEX_ENTRY; j < (i + 1) * BYTES_PER_INDEX_ENTRY; j++) {
+				entry = entry << 8 | (indexBytes[j] & 0xffL);
+			}
+			// the highest bit is the water flag
+			this.index[i] = entry & MASK_INDEX_OFFSET;
+		}
+		this.indexZoomInterval = zoomIntervalIndex;
+	}
+}
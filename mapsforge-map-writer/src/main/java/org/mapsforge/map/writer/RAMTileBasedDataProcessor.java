@@ -35,6 +35,7 @@ import org.mapsforge.map.writer.model.TileData;
 import org.mapsforge.map.writer.model.TileInfo;
 import org.mapsforge.map.writer.model.ZoomIntervalConfiguration;
 import org.mapsforge.map.writer.util.GeoUtils;
+import org.mapsforge.map.writer.util.Profiler;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
@@ -76,6 +77,7 @@ public final class RAMTileBasedDataProcessor extends BaseTileBasedDataProcessor
 
 	@Override
 	public void addNode(Node node) {
+		updateInputFingerprint(node);
 		TDNode tdNode = TDNode.fromNode(node, this.preferredLanguage);
 		this.nodes.put(tdNode.getId(), tdNode);
 		addPOI(tdNode);
@@ -83,6 +85,7 @@ public final class RAMTileBasedDataProcessor extends BaseTileBasedDataProcessor
 
 	@Override
 	public void addRelation(Relation relation) {
+		updateInputFingerprint(relation);
 		TDRelation tdRelation = TDRelation.fromRelation(relation, this, this.preferredLanguage);
 		if (tdRelation != null) {
 			this.multipolygons.put(relation.getId(), tdRelation);
@@ -91,6 +94,7 @@ public final class RAMTileBasedDataProcessor extends BaseTileBasedDataProcessor
 
 	@Override
 	public void addWay(Way way) {
+		updateInputFingerprint(way);
 		TDWay tdWay = TDWay.fromWay(way, this, this.preferredLanguage);
 		if (tdWay == null) {
 			return;
@@ -114,10 +118,15 @@ public final class RAMTileBasedDataProcessor extends BaseTileBasedDataProcessor
 
 	@Override
 	public void complete() {
+		handleFormerElements();
+
 		// Polygonize multipolygon
+		Profiler.getInstance().startPhase("relation handling");
 		RelationHandler relationHandler = new RelationHandler();
 		this.multipolygons.forEachValue(relationHandler);
+		relationHandler.complete();
 
+		Profiler.getInstance().startPhase("tile mapping");
 		WayHandler wayHandler = new WayHandler();
 		this.ways.forEachValue(wayHandler);
 
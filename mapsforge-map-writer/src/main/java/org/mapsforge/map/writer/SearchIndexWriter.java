@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the names and tags of the points of interest of one sub-file and serializes them as search index.
+ * <p>
+ * The search index starts with the maximum zoom level of the indexed sub-file (1 byte) and the size of the dictionary
+ * in bytes (4 bytes). The dictionary contains the number of names followed by each name in lower case with the size
+ * of its posting list, sorted by name, and the number of tags followed by each POI tag ID with the size of its posting
+ * list, sorted by tag ID. The posting lists follow in the same order. A posting list contains the number of blocks
+ * with matching POIs and for each block the difference of its number to the number of the previous block. All numbers
+ * except for the first two are unsigned variable byte numbers.
+ */
+final class SearchIndexWriter {
+	private static final class Postings {
+		private int[] blockNumbers = new int[1];
+		private int size;
+
+		void add(int blockNumber) {
+			// a block is added only once, even if it contains several matching POIs
+			if (this.size > 0 && this.blockNumbers[this.size - 1] == blockNumber) {
+				return;
+			}
+			if (this.size == this.blockNumbers.length) {
+				this.blockNumbers = Arrays.copyOf(this.blockNumbers, this.size * 2);
+			}
+			this.blockNumbers[this.size++] = blockNumber;
+		}
+
+		byte[] serialize() {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			write(outputStream, Serializer.getVariableByteUnsigned(this.size));
+			int previousBlockNumber = 0;
+			for (int i = 0; i < this.size; i++) {
+				write(outputStream, Serializer.getVariableByteUnsigned(this.blockNumbers[i] - previousBlockNumber));
+				previousBlockNumber = this.blockNumbers[i];
+			}
+			return outputStream.toByteArray();
+		}
+	}
+
+	private static final Charset UTF8_CHARSET = Charset.forName("utf8");
+
+	/**
+	 * @return the name as it is stored in the search index.
+	 */
+	static String normalizeName(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	private static void write(ByteArrayOutputStream outputStream, byte[] bytes) {
+		outputStream.write(bytes, 0, bytes.length);
+	}
+
+	private final Map<String, Postings> names;
+	private final Map<Integer, Postings> tags;
+	private final byte zoomLevel;
+
+	/**
+	 * @param zoomLevel
+	 *            the maximum zoom level of the indexed sub-file, at which all POIs of a block are read.
+	 */
+	SearchIndexWriter(byte zoomLevel) {
+		this.zoomLevel = zoomLevel;
+		this.names = new TreeMap<>();
+		this.tags = new TreeMap<>();
+	}
+
+	/**
+	 * Adds a POI to the search index. The POIs must be added in ascending order of their blocks.
+	 *
+	 * @param blockNumber
+	 *            the number of the block in the sub-file which contains the POI
+	 * @param name
+	 *            the name of the POI, may be null
+	 * @param tagIds
+	 *            the POI tag IDs as they are stored in the map file, may be null
+	 */
+	void add(int blockNumber, String name, int[] tagIds) {
+		if (name != null && !name.isEmpty()) {
+			String key = normalizeName(name);
+			Postings postings = this.names.get(key);
+			if (postings == null) {
+				postings = new Postings();
+				this.names.put(key, postings);
+			}
+			postings.add(blockNumber);
+		}
+		if (tagIds != null) {
+			for (int tagId : tagIds) {
+				Postings postings = this.tags.get(Integer.valueOf(tagId));
+				if (postings == null) {
+					postings = new Postings();
+					this.tags.put(Integer.valueOf(tagId), postings);
+				}
+				postings.add(blockNumber);
+			}
+		}
+	}
+
+	/**
+	 * @return the serialized search index.
+	 */
+	byte[] serialize() {
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+		ByteArrayOutputStream postingLists = new ByteArrayOutputStream();
+
+		write(dictionary, Serializer.getVariableByteUnsigned(this.names.size()));
+		for (Map.Entry<String, Postings> entry : this.names.entrySet()) {
+			byte[] name = entry.getKey().getBytes(UTF8_CHARSET);
+			byte[] postings = entry.getValue().serialize();
+			write(dictionary, Serializer.getVariableByteUnsigned(name.length));
+			write(dictionary, name);
+			write(dictionary, Serializer.getVariableByteUnsigned(postings.length));
+			write(postingLists, postings);
+		}
+
+		write(dictionary, Serializer.getVariableByteUnsigned(this.tags.size()));
+		for (Map.Entry<Integer, Postings> entry : this.tags.entrySet()) {
+			byte[] postings = entry.getValue().serialize();
+			write(dictionary, Serializer.getVariableByteUnsigned(entry.getKey().intValue()));
+			write(dictionary, Serializer.getVariableByteUnsigned(postings.length));
+			write(postingLists, postings);
+		}
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(this.zoomLevel);
+		write(result, Serializer.getBytes(dictionary.size()));
+		write(result, dictionary.toByteArray());
+		write(result, postingLists.toByteArray());
+		return result.toByteArray();
+	}
+}
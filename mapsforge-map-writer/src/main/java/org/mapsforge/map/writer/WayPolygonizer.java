@@ -17,12 +17,15 @@ package org.mapsforge.map.writer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.mapsforge.map.writer.model.TDNode;
 import org.mapsforge.map.writer.model.TDWay;
@@ -34,6 +37,13 @@ import com.vividsolutions.jts.geom.Polygon;
 
 //TODO could be implemented more efficiently with graphs: each line string is an edge, use an undirected graph and search for strongly connected components
 
+/**
+ * Merges the member ways of a relation to closed polygons and relates these polygons to each other.
+ * <p>
+ * The orientation of the merged segments is tracked by the polygonizer itself and is not written to the
+ * {@link TDWay} objects, so that relations sharing member ways can be polygonized concurrently by different
+ * instances. An instance itself is not thread-safe.
+ */
 class WayPolygonizer {
 	class PolygonMergeException extends Exception {
 		private static final long serialVersionUID = 1L;
@@ -41,42 +51,11 @@ class WayPolygonizer {
 
 	private static final int MIN_NODES_POLYGON = 4;
 
-	private static boolean isClosedPolygon(Deque<TDWay> currentPolygonSegments) {
-		TDWay c1Start = currentPolygonSegments.getFirst();
-		TDWay c1End = currentPolygonSegments.getLast();
-
-		long startFirst = c1Start.isReversedInRelation() ? c1Start.getWayNodes()[c1Start.getWayNodes().length - 1]
-				.getId() : c1Start.getWayNodes()[0].getId();
-
-		long endLast = c1End.isReversedInRelation() ? c1End.getWayNodes()[0].getId() : c1End.getWayNodes()[c1End
-				.getWayNodes().length - 1].getId();
-
-		return startFirst == endLast;
-	}
-
 	private static boolean isClosedPolygon(TDWay way) {
 		TDNode[] waynodes = way.getWayNodes();
 		return waynodes[0].getId() == waynodes[waynodes.length - 1].getId();
 	}
 
-	private static Coordinate[] toCoordinates(Collection<TDWay> linestrings) {
-		Coordinate[][] temp = new Coordinate[linestrings.size()][];
-		int i = 0;
-		int n = 0;
-		for (TDWay tdWay : linestrings) {
-			temp[i] = JTSUtils.toCoordinates(tdWay);
-			n += temp[i].length;
-			++i;
-		}
-		Coordinate[] res = new Coordinate[n];
-		int pos = 0;
-		for (i = 0; i < temp.length; i++) {
-			System.arraycopy(temp[i], 0, res, pos, temp[i].length);
-			pos += temp[i].length;
-		}
-		return res;
-	}
-
 	private List<TDWay> dangling;
 
 	private final GeometryFactory geometryFactory = new GeometryFactory();
@@ -87,6 +66,8 @@ class WayPolygonizer {
 
 	private List<Deque<TDWay>> polygons;
 
+	private Set<TDWay> reversed;
+
 	List<TDWay> getDangling() {
 		return this.dangling;
 	}
@@ -103,6 +84,22 @@ class WayPolygonizer {
 		return this.polygons;
 	}
 
+	/**
+	 * @return the ways that had to be reversed during the last merge, the set is not modified by subsequent merges
+	 */
+	Set<TDWay> getReversed() {
+		return this.reversed;
+	}
+
+	/**
+	 * @param way
+	 *            a way that was part of the last merge
+	 * @return true if the way had to be reversed to fit into its polygon
+	 */
+	boolean isReversed(TDWay way) {
+		return this.reversed.contains(way);
+	}
+
 	/**
 	 * Tries to merge ways to closed polygons. The ordering of waynodes is preserved during the merge process.
 	 * 
@@ -113,14 +110,13 @@ class WayPolygonizer {
 		this.polygons = new ArrayList<>();
 		this.dangling = new ArrayList<>();
 		this.illegal = new ArrayList<>();
+		// a fresh set for every merge, so that results of earlier merges stay valid
+		this.reversed = Collections.newSetFromMap(new IdentityHashMap<TDWay, Boolean>());
 
 		Deque<TDWay> ungroupedWays = new ArrayDeque<>();
 
 		// initially all ways are ungrouped
 		for (TDWay tdWay : ways) {
-			// reset reversed flag, may already be set when way is part of another relation
-			tdWay.setReversedInRelation(false);
-
 			// first extract all way that are closed polygons in their own right
 			if (isClosedPolygon(tdWay)) {
 				if (tdWay.getWayNodes().length < MIN_NODES_POLYGON) {
@@ -171,11 +167,11 @@ class WayPolygonizer {
 				// last way in current polygon
 				TDWay c1End = currentPolygonSegments.getLast();
 
-				long startFirst = c1Start.isReversedInRelation() ? c1Start.getWayNodes()[c1Start.getWayNodes().length - 1]
-						.getId() : c1Start.getWayNodes()[0].getId();
+				long startFirst = isReversed(c1Start) ? c1Start.getWayNodes()[c1Start.getWayNodes().length - 1].getId()
+						: c1Start.getWayNodes()[0].getId();
 
-				long endLast = c1End.isReversedInRelation() ? c1End.getWayNodes()[0].getId()
-						: c1End.getWayNodes()[c1End.getWayNodes().length - 1].getId();
+				long endLast = isReversed(c1End) ? c1End.getWayNodes()[0].getId() : c1End.getWayNodes()[c1End
+						.getWayNodes().length - 1].getId();
 
 				long currentFirst = current.getWayNodes()[0].getId();
 				long currentLast = current.getWayNodes()[current.getWayNodes().length - 1].getId();
@@ -190,7 +186,7 @@ class WayPolygonizer {
 				// // current way start connects to the start of the current polygon (reversed
 				// direction)
 				else if (startFirst == currentFirst) {
-					current.setReversedInRelation(true);
+					this.reversed.add(current);
 					merge = true;
 					it.remove();
 					currentPolygonSegments.offerFirst(current);
@@ -204,7 +200,7 @@ class WayPolygonizer {
 				}
 				// // current way end connects to the end of the current polygon (reversed direction)
 				else if (endLast == currentLast) {
-					current.setReversedInRelation(true);
+					this.reversed.add(current);
 					merge = true;
 					it.remove();
 					// add way to end of current polygon
@@ -237,6 +233,35 @@ class WayPolygonizer {
 		}
 	}
 
+	/**
+	 * Concatenates the way nodes of the segments of a merged polygon in polygon order, honoring the orientation of
+	 * each segment.
+	 * 
+	 * @param polygon
+	 *            a polygon returned by {@link #getPolygons()} after the last merge
+	 * @return the way nodes of the polygon
+	 */
+	TDNode[] mergeWayNodes(Deque<TDWay> polygon) {
+		int n = 0;
+		for (TDWay segment : polygon) {
+			n += segment.getWayNodes().length;
+		}
+		TDNode[] waynodes = new TDNode[n];
+		int pos = 0;
+		for (TDWay segment : polygon) {
+			TDNode[] segmentNodes = segment.getWayNodes();
+			if (isReversed(segment)) {
+				for (int i = segmentNodes.length - 1; i >= 0; i--) {
+					waynodes[pos++] = segmentNodes[i];
+				}
+			} else {
+				System.arraycopy(segmentNodes, 0, waynodes, pos, segmentNodes.length);
+				pos += segmentNodes.length;
+			}
+		}
+		return waynodes;
+	}
+
 	void polygonizeAndRelate(TDWay[] ways) {
 		mergePolygons(ways);
 		relatePolygons();
@@ -292,4 +317,35 @@ class WayPolygonizer {
 			}
 		}
 	}
+
+	private boolean isClosedPolygon(Deque<TDWay> currentPolygonSegments) {
+		TDWay c1Start = currentPolygonSegments.getFirst();
+		TDWay c1End = currentPolygonSegments.getLast();
+
+		long startFirst = isReversed(c1Start) ? c1Start.getWayNodes()[c1Start.getWayNodes().length - 1].getId()
+				: c1Start.getWayNodes()[0].getId();
+
+		long endLast = isReversed(c1End) ? c1End.getWayNodes()[0].getId() : c1End.getWayNodes()[c1End
+				.getWayNodes().length - 1].getId();
+
+		return startFirst == endLast;
+	}
+
+	private Coordinate[] toCoordinates(Collection<TDWay> linestrings) {
+		Coordinate[][] temp = new Coordinate[linestrings.size()][];
+		int i = 0;
+		int n = 0;
+		for (TDWay tdWay : linestrings) {
+			temp[i] = JTSUtils.toCoordinates(tdWay, isReversed(tdWay));
+			n += temp[i].length;
+			++i;
+		}
+		Coordinate[] res = new Coordinate[n];
+		int pos = 0;
+		for (i = 0; i < temp.length; i++) {
+			System.arraycopy(temp[i], 0, res, pos, temp[i].length);
+			pos += temp[i].length;
+		}
+		return res;
+	}
 }
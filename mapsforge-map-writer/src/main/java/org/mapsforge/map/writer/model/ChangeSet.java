@@ -0,0 +1,400 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.model;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.mapsforge.core.model.LatLong;
+
+/**
+ * The elements touched by an osmChange diff and the tiles that have to be written again because of them. The tiles
+ * that showed an element before the change can only be found if the diff contains the former state of every modified
+ * or deleted element: an augmented diff with an old and a new part for each action, or an osmChange diff which only
+ * creates elements and lists deleted elements with their last version.
+ */
+public class ChangeSet {
+	private static final String ACTION_CREATE = "create";
+	private static final String ACTION_DELETE = "delete";
+	private static final String ACTION_MODIFY = "modify";
+	private static final String ATTRIBUTE_ID = "id";
+	private static final String ATTRIBUTE_LATITUDE = "lat";
+	private static final String ATTRIBUTE_LONGITUDE = "lon";
+	private static final String ATTRIBUTE_REF = "ref";
+	private static final String ATTRIBUTE_TYPE = "type";
+	private static final String ELEMENT_ACTION = "action";
+	private static final String ELEMENT_MEMBER = "member";
+	private static final String ELEMENT_ND = "nd";
+	private static final String ELEMENT_NEW = "new";
+	private static final String ELEMENT_NODE = "node";
+	private static final String ELEMENT_OLD = "old";
+	private static final String ELEMENT_RELATION = "relation";
+	private static final String ELEMENT_WAY = "way";
+
+	/**
+	 * Reads the ids of all created, modified and deleted elements from an osmChange or augmented diff file, which may
+	 * be gzipped.
+	 *
+	 * @param file
+	 *            the diff file
+	 * @return the change set
+	 * @throws IOException
+	 *             if the file cannot be read or parsed or if it does not contain the former state of a modified or
+	 *             deleted element
+	 */
+	public static ChangeSet fromFile(File file) throws IOException {
+		InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+		try {
+			if (file.getName().endsWith(".gz")) {
+				inputStream = new GZIPInputStream(inputStream);
+			}
+			return fromStream(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Reads the ids of all created, modified and deleted elements from an osmChange or augmented diff document. The
+	 * former state of an element is taken from the old part of an augmented diff action or from a deleted element in
+	 * an osmChange document: the position of a node, the node references of a way and the way members of a relation,
+	 * so that the tiles which contained them can be determined.
+	 *
+	 * @param inputStream
+	 *            the diff document
+	 * @return the change set
+	 * @throws IOException
+	 *             if the document cannot be parsed or if it does not contain the former state of a modified or
+	 *             deleted element
+	 */
+	public static ChangeSet fromStream(InputStream inputStream) throws IOException {
+		ChangeSet changeSet = new ChangeSet();
+		// modified and deleted elements, their former state must be in the diff
+		TLongSet changedNodes = new TLongHashSet();
+		TLongSet changedRelations = new TLongHashSet();
+		TLongSet changedWays = new TLongHashSet();
+		try {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+			String action = null;
+			boolean oldPart = false;
+			boolean newPart = false;
+			TLongArrayList references = null;
+			long referencingId = 0;
+			boolean hasMembers = false;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+					if (references != null && ELEMENT_WAY.equals(name)) {
+						if (!references.isEmpty()) {
+							changeSet.formerWays.put(referencingId, references.toArray());
+						}
+						references = null;
+					} else if (references != null && ELEMENT_RELATION.equals(name)) {
+						if (hasMembers) {
+							changeSet.formerRelations.put(referencingId, references.toArray());
+						}
+						references = null;
+					} else if (ELEMENT_OLD.equals(name)) {
+						oldPart = false;
+					} else if (ELEMENT_NEW.equals(name)) {
+						newPart = false;
+					}
+					continue;
+				} else if (event != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+
+				String name = reader.getLocalName();
+				if (ACTION_CREATE.equals(name) || ACTION_DELETE.equals(name) || ACTION_MODIFY.equals(name)) {
+					action = name;
+					continue;
+				} else if (ELEMENT_ACTION.equals(name)) {
+					// action of an augmented diff
+					action = reader.getAttributeValue(null, ATTRIBUTE_TYPE);
+					continue;
+				} else if (ELEMENT_OLD.equals(name)) {
+					oldPart = true;
+					continue;
+				} else if (ELEMENT_NEW.equals(name)) {
+					newPart = true;
+					continue;
+				}
+				if (references != null) {
+					// node references of a former way and way members of a former relation
+					hasMembers |= ELEMENT_MEMBER.equals(name);
+					String ref = reader.getAttributeValue(null, ATTRIBUTE_REF);
+					if (ref != null && (ELEMENT_ND.equals(name) || (ELEMENT_MEMBER.equals(name)
+							&& ELEMENT_WAY.equals(reader.getAttributeValue(null, ATTRIBUTE_TYPE))))) {
+						references.add(Long.parseLong(ref));
+					}
+					continue;
+				}
+
+				String id = reader.getAttributeValue(null, ATTRIBUTE_ID);
+				if (id == null) {
+					continue;
+				}
+				long elementId = Long.parseLong(id);
+				boolean changed = ACTION_DELETE.equals(action) || ACTION_MODIFY.equals(action);
+				// the old part of an augmented diff and a deleted element of an osmChange diff are the former state
+				boolean former = oldPart || (ACTION_DELETE.equals(action) && !newPart);
+				if (ELEMENT_NODE.equals(name)) {
+					changeSet.nodes.add(elementId);
+					if (changed) {
+						changedNodes.add(elementId);
+					}
+					String latitude = reader.getAttributeValue(null, ATTRIBUTE_LATITUDE);
+					String longitude = reader.getAttributeValue(null, ATTRIBUTE_LONGITUDE);
+					if (latitude != null && longitude != null) {
+						LatLong position = new LatLong(Double.parseDouble(latitude), Double.parseDouble(longitude));
+						changeSet.nodePositions.add(position);
+						if (former) {
+							changeSet.formerNodePositions.put(elementId, position);
+						}
+					}
+				} else if (ELEMENT_WAY.equals(name)) {
+					changeSet.ways.add(elementId);
+					if (changed) {
+						changedWays.add(elementId);
+					}
+					if (former) {
+						referencingId = elementId;
+						references = new TLongArrayList();
+					}
+				} else if (ELEMENT_RELATION.equals(name)) {
+					changeSet.relations.add(elementId);
+					if (changed) {
+						changedRelations.add(elementId);
+					}
+					if (former) {
+						referencingId = elementId;
+						references = new TLongArrayList();
+						hasMembers = false;
+					}
+				}
+			}
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("cannot parse osmChange document", e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("invalid element in osmChange document", e);
+		}
+
+		checkFormerState(changedNodes, changeSet.formerNodePositions, "position of node ");
+		checkFormerState(changedWays, changeSet.formerWays, "nodes of way ");
+		checkFormerState(changedRelations, changeSet.formerRelations, "members of relation ");
+		return changeSet;
+	}
+
+	/**
+	 * Rejects a diff without the former state of a changed element, the tiles which showed it could not be found.
+	 */
+	private static void checkFormerState(TLongSet changedElements, TLongObjectMap<?> formerState, String description)
+			throws IOException {
+		TLongIterator iterator = changedElements.iterator();
+		while (iterator.hasNext()) {
+			long id = iterator.next();
+			if (!formerState.containsKey(id)) {
+				throw new IOException("the diff does not contain the former " + description + id
+						+ ": use an augmented diff or write the map file completely");
+			}
+		}
+	}
+
+	private static long fingerprint(long fingerprint, TLongSet ids, long type) {
+		long result = fingerprint * 31 + ids.size();
+		TLongIterator iterator = ids.iterator();
+		while (iterator.hasNext()) {
+			result += mix(iterator.next() * 4 + type);
+		}
+		return result;
+	}
+
+	/**
+	 * Spreads the bits of the given value, so that the sum of mixed values is a good order-independent hash.
+	 */
+	private static long mix(long value) {
+		long result = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+		result = (result ^ (result >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return result ^ (result >>> 33);
+	}
+
+	private final Set<TileCoordinate> changedTiles;
+	private final TLongObjectMap<LatLong> formerNodePositions;
+	private final TLongObjectMap<long[]> formerRelations;
+	private final TLongObjectMap<long[]> formerWays;
+	private final List<LatLong> nodePositions;
+	private final TLongSet nodes;
+	private final TLongSet relations;
+	private final TLongSet ways;
+
+	/**
+	 * Creates an empty change set.
+	 */
+	public ChangeSet() {
+		this.changedTiles = new HashSet<>();
+		this.formerNodePositions = new TLongObjectHashMap<>();
+		this.formerRelations = new TLongObjectHashMap<>();
+		this.formerWays = new TLongObjectHashMap<>();
+		this.nodePositions = new ArrayList<>();
+		this.nodes = new TLongHashSet();
+		this.relations = new TLongHashSet();
+		this.ways = new TLongHashSet();
+	}
+
+	/**
+	 * @param tileCoordinate
+	 *            a tile that has to be written again
+	 */
+	public void addChangedTile(TileCoordinate tileCoordinate) {
+		this.changedTiles.add(tileCoordinate);
+	}
+
+	/**
+	 * @param tileCoordinates
+	 *            tiles that have to be written again
+	 */
+	public void addChangedTiles(Collection<TileCoordinate> tileCoordinates) {
+		this.changedTiles.addAll(tileCoordinates);
+	}
+
+	/**
+	 * @param way
+	 *            the way
+	 * @return true if the way itself or one of its nodes has been changed
+	 */
+	public boolean affects(TDWay way) {
+		if (this.ways.contains(way.getId())) {
+			return true;
+		}
+		if (way.getWayNodes() != null) {
+			for (TDNode node : way.getWayNodes()) {
+				if (this.nodes.contains(node.getId())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param id
+	 *            the node id
+	 * @return true if the node has been changed
+	 */
+	public boolean containsNode(long id) {
+		return this.nodes.contains(id);
+	}
+
+	/**
+	 * @param id
+	 *            the relation id
+	 * @return true if the relation has been changed
+	 */
+	public boolean containsRelation(long id) {
+		return this.relations.contains(id);
+	}
+
+	/**
+	 * @param id
+	 *            the way id
+	 * @return true if the way has been changed
+	 */
+	public boolean containsWay(long id) {
+		return this.ways.contains(id);
+	}
+
+	/**
+	 * @return a hash of the changed elements and the tiles that have to be written again, independent of their order
+	 */
+	public long fingerprint() {
+		long fingerprint = this.changedTiles.size();
+		for (TileCoordinate tileCoordinate : this.changedTiles) {
+			fingerprint += mix(((long) tileCoordinate.getZoomlevel() << 58) ^ ((long) tileCoordinate.getX() << 29)
+					^ tileCoordinate.getY());
+		}
+		fingerprint = fingerprint(fingerprint, this.nodes, 1);
+		fingerprint = fingerprint(fingerprint, this.ways, 2);
+		return fingerprint(fingerprint, this.relations, 3);
+	}
+
+	/**
+	 * @param id
+	 *            the node id
+	 * @return the position of the node before the change, null if the node has been created or has not been changed
+	 */
+	public LatLong getFormerNodePosition(long id) {
+		return this.formerNodePositions.get(id);
+	}
+
+	/**
+	 * @return the ids of the member ways that the modified and deleted relations had before the change by relation id
+	 */
+	public TLongObjectMap<long[]> getFormerRelations() {
+		return this.formerRelations;
+	}
+
+	/**
+	 * @return the ids of the nodes that the modified and deleted ways had before the change by way id
+	 */
+	public TLongObjectMap<long[]> getFormerWays() {
+		return this.formerWays;
+	}
+
+	/**
+	 * @return the positions of all changed nodes given in the diff, before and after the change
+	 */
+	public List<LatLong> getNodePositions() {
+		return this.nodePositions;
+	}
+
+	/**
+	 * @return the number of tiles that have to be written again
+	 */
+	public int getNumberOfChangedTiles() {
+		return this.changedTiles.size();
+	}
+
+	/**
+	 * @param tileCoordinate
+	 *            the tile
+	 * @return true if the tile has to be written again
+	 */
+	public boolean isChanged(TileCoordinate tileCoordinate) {
+		return this.changedTiles.contains(tileCoordinate);
+	}
+}
@@ -15,6 +15,7 @@
 package org.mapsforge.map.writer.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 
 import org.mapsforge.core.model.BoundingBox;
@@ -28,6 +29,9 @@ import org.mapsforge.map.writer.OSMTagMapping;
 public class MapWriterConfiguration {
 	private BoundingBox bboxConfiguration;
 	private int bboxEnlargement;
+	private boolean blockCompression;
+	private ChangeSet changeSet;
+	private boolean checkpoint;
 	private String comment;
 
 	private String dataProcessorType;
@@ -38,17 +42,21 @@ public class MapWriterConfiguration {
 	private int fileSpecificationVersion;
 
 	private boolean labelPosition;
+	private boolean levelsOfDetail;
 	private LatLong mapStartPosition;
 	private int mapStartZoomLevel;
 	private File outputFile;
 	private boolean polygonClipping;
 	private String preferredLanguage;
+	private File previousFile;
+	private boolean searchIndex;
 
 	private double simplification;
 
 	private boolean skipInvalidRelations;
 
 	private OSMTagMapping tagMapping;
+	private int threads = Runtime.getRuntime().availableProcessors();
 	private boolean wayClipping;
 
 	private String writerVersion;
@@ -133,6 +141,23 @@ public class MapWriterConfiguration {
 		}
 	}
 
+	/**
+	 * Convenience method.
+	 * 
+	 * @param file
+	 *            the path to the map file that is updated in incremental mode
+	 */
+	public void addPreviousFile(String file) {
+		if (file != null) {
+			File f = new File(file);
+			if (!f.isFile() || !f.canRead()) {
+				throw new IllegalArgumentException("previous file parameter must point to a readable map file");
+			}
+
+			setPreviousFile(f);
+		}
+	}
+
 	/**
 	 * Convenience method.
 	 * 
@@ -161,6 +186,13 @@ public class MapWriterConfiguration {
 		return this.bboxEnlargement;
 	}
 
+	/**
+	 * @return the changeSet
+	 */
+	public ChangeSet getChangeSet() {
+		return this.changeSet;
+	}
+
 	/**
 	 * @return the comment
 	 */
@@ -224,6 +256,13 @@ public class MapWriterConfiguration {
 		return this.preferredLanguage;
 	}
 
+	/**
+	 * @return the previousFile
+	 */
+	public File getPreviousFile() {
+		return this.previousFile;
+	}
+
 	/**
 	 * @return the simplification
 	 */
@@ -238,6 +277,13 @@ public class MapWriterConfiguration {
 		return this.tagMapping;
 	}
 
+	/**
+	 * @return the number of threads used for parallel processing, by default the number of available processors
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
 	/**
 	 * @return the writerVersion
 	 */
@@ -261,6 +307,20 @@ public class MapWriterConfiguration {
 		return getMapStartZoomLevel() >= 0;
 	}
 
+	/**
+	 * @return the blockCompression
+	 */
+	public boolean isBlockCompression() {
+		return this.blockCompression;
+	}
+
+	/**
+	 * @return the checkpoint
+	 */
+	public boolean isCheckpoint() {
+		return this.checkpoint;
+	}
+
 	/**
 	 * @return the debugStrings
 	 */
@@ -275,6 +335,13 @@ public class MapWriterConfiguration {
 		return this.labelPosition;
 	}
 
+	/**
+	 * @return the levelsOfDetail
+	 */
+	public boolean isLevelsOfDetail() {
+		return this.levelsOfDetail;
+	}
+
 	/**
 	 * @return the polygonClipping
 	 */
@@ -282,6 +349,13 @@ public class MapWriterConfiguration {
 		return this.polygonClipping;
 	}
 
+	/**
+	 * @return the searchIndex
+	 */
+	public boolean isSearchIndex() {
+		return this.searchIndex;
+	}
+
 	/**
 	 * @return the skipInvalidRelations
 	 */
@@ -296,6 +370,28 @@ public class MapWriterConfiguration {
 		return this.wayClipping;
 	}
 
+	/**
+	 * Convenience method.
+	 * 
+	 * @param file
+	 *            the path to an osmChange or augmented diff file, optionally gzipped, that lists the changes since the
+	 *            previous file together with the former state of all modified and deleted elements
+	 */
+	public void loadChangeFile(String file) {
+		if (file != null) {
+			File f = new File(file);
+			if (!f.isFile() || !f.canRead()) {
+				throw new IllegalArgumentException("change file parameter must point to a readable diff file");
+			}
+
+			try {
+				this.changeSet = ChangeSet.fromFile(f);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("cannot read change file: " + e.getMessage(), e);
+			}
+		}
+	}
+
 	/**
 	 * Convenience method.
 	 * 
@@ -341,6 +437,30 @@ public class MapWriterConfiguration {
 		this.bboxEnlargement = bboxEnlargement;
 	}
 
+	/**
+	 * @param blockCompression
+	 *            the blockCompression to set
+	 */
+	public void setBlockCompression(boolean blockCompression) {
+		this.blockCompression = blockCompression;
+	}
+
+	/**
+	 * @param changeSet
+	 *            the changeSet to set
+	 */
+	public void setChangeSet(ChangeSet changeSet) {
+		this.changeSet = changeSet;
+	}
+
+	/**
+	 * @param checkpoint
+	 *            the checkpoint to set
+	 */
+	public void setCheckpoint(boolean checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
 	/**
 	 * @param comment
 	 *            the comment to set
@@ -399,6 +519,14 @@ public class MapWriterConfiguration {
 		this.labelPosition = labelPosition;
 	}
 
+	/**
+	 * @param levelsOfDetail
+	 *            the levelsOfDetail to set
+	 */
+	public void setLevelsOfDetail(boolean levelsOfDetail) {
+		this.levelsOfDetail = levelsOfDetail;
+	}
+
 	/**
 	 * @param mapStartPosition
 	 *            the mapStartPosition to set
@@ -441,6 +569,22 @@ public class MapWriterConfiguration {
 		}
 	}
 
+	/**
+	 * @param previousFile
+	 *            the previousFile to set
+	 */
+	public void setPreviousFile(File previousFile) {
+		this.previousFile = previousFile;
+	}
+
+	/**
+	 * @param searchIndex
+	 *            the searchIndex to set
+	 */
+	public void setSearchIndex(boolean searchIndex) {
+		this.searchIndex = searchIndex;
+	}
+
 	/**
 	 * @param simplification
 	 *            the simplification to set
@@ -461,6 +605,18 @@ public class MapWriterConfiguration {
 		this.skipInvalidRelations = skipInvalidRelations;
 	}
 
+	/**
+	 * @param threads
+	 *            the number of threads used for parallel processing, must be at least 1
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("number of threads must be >= 1: " + threads);
+		}
+
+		this.threads = threads;
+	}
+
 	/**
 	 * @param wayClipping
 	 *            the wayClipping to set
@@ -499,5 +655,13 @@ public class MapWriterConfiguration {
 							+ this.bboxConfiguration.toString() + " - map start position: "
 							+ this.mapStartPosition.toString());
 		}
+		if ((this.previousFile == null) != (this.changeSet == null)) {
+			throw new IllegalArgumentException(
+					"incremental mode requires both a previous map file and an osmChange file");
+		}
+		if (this.previousFile != null && this.outputFile != null
+				&& this.previousFile.getAbsoluteFile().equals(this.outputFile.getAbsoluteFile())) {
+			throw new IllegalArgumentException("previous map file must not be the output file");
+		}
 	}
 }
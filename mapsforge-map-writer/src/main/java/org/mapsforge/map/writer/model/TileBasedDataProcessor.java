@@ -89,6 +89,14 @@ public interface TileBasedDataProcessor {
 	 */
 	List<TDWay> getInnerWaysOfMultipolygon(long outerWayID);
 
+	/**
+	 * Retrieve a fingerprint of the nodes, ways and relations that have been added to the data store. It differs for
+	 * different input data with high probability.
+	 * 
+	 * @return the fingerprint of the input data
+	 */
+	long getInputFingerprint();
+
 	/**
 	 * Retrieves all the data that is associated with a tile.
 	 * 
@@ -27,19 +27,26 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkManager;
 class MapFileWriterFactory extends TaskManagerFactory {
 	private static final String PARAM_BBOX = "bbox";
 	private static final String PARAM_BBOX_ENLARGEMENT = "bbox-enlargement";
+	private static final String PARAM_BLOCK_COMPRESSION = "block-compression";
+	private static final String PARAM_CHANGE_FILE = "change-file";
+	private static final String PARAM_CHECKPOINT = "checkpoint";
 	private static final String PARAM_COMMENT = "comment";
 	private static final String PARAM_DEBUG_INFO = "debug-file";
 	private static final String PARAM_ENCODING = "encoding";
 	private static final String PARAM_LABEL_POSITION = "label-position";
+	private static final String PARAM_LEVELS_OF_DETAIL = "levels-of-detail";
 	private static final String PARAM_MAP_START_POSITION = "map-start-position";
 	private static final String PARAM_MAP_START_ZOOM = "map-start-zoom";
 	private static final String PARAM_OUTFILE = "file";
 	private static final String PARAM_POLYGON_CLIPPING = "polygon-clipping";
 	private static final String PARAM_PREFERRED_LANGUAGE = "preferred-language";
+	private static final String PARAM_PREVIOUS_FILE = "previous-file";
+	private static final String PARAM_SEARCH_INDEX = "search-index";
 	// private static final String PARAM_WAYNODE_COMPRESSION = "waynode-compression";
 	private static final String PARAM_SIMPLIFICATION_FACTOR = "simplification-factor";
 	private static final String PARAM_SKIP_INVALID_RELATIONS = "skip-invalid-relations";
 	private static final String PARAM_TAG_MAPPING_FILE = "tag-conf-file";
+	private static final String PARAM_THREADS = "threads";
 	private static final String PARAM_TYPE = "type";
 	private static final String PARAM_WAY_CLIPPING = "way-clipping";
 	private static final String PARAM_ZOOMINTERVAL_CONFIG = "zoom-interval-conf";
@@ -49,17 +56,23 @@ class MapFileWriterFactory extends TaskManagerFactory {
 		MapWriterConfiguration configuration = new MapWriterConfiguration();
 		configuration.addOutputFile(getStringArgument(taskConfig, PARAM_OUTFILE, Constants.DEFAULT_PARAM_OUTFILE));
 		configuration.loadTagMappingFile(getStringArgument(taskConfig, PARAM_TAG_MAPPING_FILE, null));
+		configuration.addPreviousFile(getStringArgument(taskConfig, PARAM_PREVIOUS_FILE, null));
+		configuration.loadChangeFile(getStringArgument(taskConfig, PARAM_CHANGE_FILE, null));
 
 		configuration.addMapStartPosition(getStringArgument(taskConfig, PARAM_MAP_START_POSITION, null));
 		configuration.addMapStartZoom(getStringArgument(taskConfig, PARAM_MAP_START_ZOOM, null));
 		configuration.addBboxConfiguration(getStringArgument(taskConfig, PARAM_BBOX, null));
 		configuration.addZoomIntervalConfiguration(getStringArgument(taskConfig, PARAM_ZOOMINTERVAL_CONFIG, null));
 
+		configuration.setBlockCompression(getBooleanArgument(taskConfig, PARAM_BLOCK_COMPRESSION, false));
+		configuration.setCheckpoint(getBooleanArgument(taskConfig, PARAM_CHECKPOINT, false));
 		configuration.setComment(getStringArgument(taskConfig, PARAM_COMMENT, null));
 		configuration.setDebugStrings(getBooleanArgument(taskConfig, PARAM_DEBUG_INFO, false));
 		configuration.setPolygonClipping(getBooleanArgument(taskConfig, PARAM_POLYGON_CLIPPING, true));
 		configuration.setWayClipping(getBooleanArgument(taskConfig, PARAM_WAY_CLIPPING, true));
 		configuration.setLabelPosition(getBooleanArgument(taskConfig, PARAM_LABEL_POSITION, false));
+		configuration.setLevelsOfDetail(getBooleanArgument(taskConfig, PARAM_LEVELS_OF_DETAIL, false));
+		configuration.setSearchIndex(getBooleanArgument(taskConfig, PARAM_SEARCH_INDEX, false));
 		// boolean waynodeCompression = getBooleanArgument(taskConfig, PARAM_WAYNODE_COMPRESSION,
 		// true);
 		configuration.setSimplification(getDoubleArgument(taskConfig, PARAM_SIMPLIFICATION_FACTOR,
@@ -69,6 +82,7 @@ class MapFileWriterFactory extends TaskManagerFactory {
 		configuration.setDataProcessorType(getStringArgument(taskConfig, PARAM_TYPE, Constants.DEFAULT_PARAM_TYPE));
 		configuration.setBboxEnlargement(getIntegerArgument(taskConfig, PARAM_BBOX_ENLARGEMENT,
 				Constants.DEFAULT_PARAM_BBOX_ENLARGEMENT));
+		configuration.setThreads(getIntegerArgument(taskConfig, PARAM_THREADS, configuration.getThreads()));
 
 		configuration.setPreferredLanguage(getStringArgument(taskConfig, PARAM_PREFERRED_LANGUAGE, null));
 		configuration
@@ -28,6 +28,7 @@ import org.mapsforge.map.writer.RAMTileBasedDataProcessor;
 import org.mapsforge.map.writer.model.MapWriterConfiguration;
 import org.mapsforge.map.writer.model.TileBasedDataProcessor;
 import org.mapsforge.map.writer.util.Constants;
+import org.mapsforge.map.writer.util.Profiler;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
@@ -93,8 +94,13 @@ public class MapFileWriterTask implements Sink {
 
 		try {
 			if (this.configuration.getOutputFile().exists()) {
-				LOGGER.info("overwriting file " + this.configuration.getOutputFile().getAbsolutePath());
-				this.configuration.getOutputFile().delete();
+				if (this.configuration.isCheckpoint() && MapFileWriter.getCheckpointFile(this.configuration).exists()) {
+					// the sub files recorded in the checkpoint are reused if they match the current conversion
+					LOGGER.info("resuming file " + this.configuration.getOutputFile().getAbsolutePath());
+				} else {
+					LOGGER.info("overwriting file " + this.configuration.getOutputFile().getAbsolutePath());
+					this.configuration.getOutputFile().delete();
+				}
 			}
 			MapFileWriter.writeFile(this.configuration, this.tileBasedGeoObjectStore);
 		} catch (IOException e) {
@@ -109,6 +115,9 @@ public class MapFileWriterTask implements Sink {
 		LOGGER.info("estimated memory consumption: "
 				+ nfMegabyte.format(+((Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / Math
 						.pow(1024, 2))) + "MB");
+
+		Profiler.getInstance().endPhase();
+		LOGGER.info(Profiler.getInstance().report());
 	}
 
 	/*
@@ -117,7 +126,9 @@ public class MapFileWriterTask implements Sink {
 	 */
 	@Override
 	public void initialize(Map<String, Object> metadata) {
-		// nothing to do here
+		// the profiler is shared by all conversions in this JVM
+		Profiler.getInstance().reset();
+		Profiler.getInstance().startPhase("ingest");
 	}
 
 	@Override
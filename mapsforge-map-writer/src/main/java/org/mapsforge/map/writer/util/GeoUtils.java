@@ -29,6 +29,7 @@ import org.mapsforge.map.writer.model.TDNode;
 import org.mapsforge.map.writer.model.TDWay;
 import org.mapsforge.map.writer.model.TileCoordinate;
 import org.mapsforge.map.writer.model.WayDataBlock;
+import org.mapsforge.map.writer.util.Profiler.Operation;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
@@ -93,6 +94,7 @@ public final class GeoUtils {
 
 		// clip the geometry by intersection with the bounding box of the tile
 		// may throw a TopologyException
+		long start = System.nanoTime();
 		try {
 			ret = tileBBJTS.intersection(geometry);
 			// according to Ludwig (see issue332) valid polygons may become invalid by clipping (at least
@@ -111,6 +113,8 @@ public final class GeoUtils {
 			LOGGER.log(Level.WARNING, "JTS cannot clip way, not storing it in data file: " + way.getId(), e);
 			way.setInvalid(true);
 			return null;
+		} finally {
+			Profiler.getInstance().operationCompleted(Operation.CLIP_TO_TILE, start);
 		}
 		return ret;
 	}
@@ -270,6 +274,7 @@ public final class GeoUtils {
 		double latMax = Math.max(Math.abs(bbox.getMaxY()), Math.abs(bbox.getMinY()));
 		double deltaLat = deltaLat(simplificationFactor, latMax, zoomlevel, tileSize);
 
+		long start = System.nanoTime();
 		try {
 			ret = TopologyPreservingSimplifier.simplify(geometry, deltaLat);
 		} catch (TopologyException e) {
@@ -277,11 +282,42 @@ public final class GeoUtils {
 					"JTS cannot simplify way due to an error, not simplifying way with id: " + way.getId(), e);
 			way.setInvalid(true);
 			return geometry;
+		} finally {
+			Profiler.getInstance().operationCompleted(Operation.SIMPLIFY_GEOMETRY, start);
 		}
 
 		return ret;
 	}
 
+	/**
+	 * Simplifies a geometry for a zoom level below the one it has been simplified for already. In contrast to
+	 * {@link #simplifyGeometry(TDWay, Geometry, byte, int, double)} the way is not marked as invalid if the
+	 * simplification fails, as the more detailed geometry can still be used.
+	 *
+	 * @param geometry
+	 *            the geometry
+	 * @param zoomlevel
+	 *            the zoom level
+	 * @param simplificationFactor
+	 *            the simplification factor
+	 * @return the simplified geometry or null if it cannot be simplified
+	 */
+	public static Geometry simplifyGeometryForLevelOfDetail(Geometry geometry, byte zoomlevel, int tileSize,
+			double simplificationFactor) {
+		Envelope bbox = geometry.getEnvelopeInternal();
+		double latMax = Math.max(Math.abs(bbox.getMaxY()), Math.abs(bbox.getMinY()));
+		double deltaLat = deltaLat(simplificationFactor, latMax, zoomlevel, tileSize);
+
+		long start = System.nanoTime();
+		try {
+			return TopologyPreservingSimplifier.simplify(geometry, deltaLat);
+		} catch (TopologyException e) {
+			return null;
+		} finally {
+			Profiler.getInstance().operationCompleted(Operation.SIMPLIFY_GEOMETRY, start);
+		}
+	}
+
 	/**
 	 * Convert a JTS Geometry to a WayDataBlock list.
 	 * 
@@ -21,6 +21,7 @@ import java.util.logging.Logger;
 import org.mapsforge.core.util.LatLongUtils;
 import org.mapsforge.map.writer.model.TDNode;
 import org.mapsforge.map.writer.model.TDWay;
+import org.mapsforge.map.writer.util.Profiler.Operation;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
@@ -54,8 +55,21 @@ public final class JTSUtils {
 	 * @return the array of coordinates
 	 */
 	public static Coordinate[] toCoordinates(TDWay way) {
+		return toCoordinates(way, way.isReversedInRelation());
+	}
+
+	/**
+	 * Translates a {@link TDWay} object to an array of JTS {@link Coordinate} in the given orientation.
+	 * 
+	 * @param way
+	 *            the way
+	 * @param reversed
+	 *            true if the way nodes should be returned in reverse order
+	 * @return the array of coordinates
+	 */
+	public static Coordinate[] toCoordinates(TDWay way, boolean reversed) {
 		Coordinate[] coordinates = new Coordinate[way.getWayNodes().length];
-		if (way.isReversedInRelation()) {
+		if (reversed) {
 			for (int i = 0; i < coordinates.length; i++) {
 				coordinates[coordinates.length - 1 - i] = toCoordinate(way.getWayNodes()[i]);
 			}
@@ -160,7 +174,9 @@ public final class JTSUtils {
 	static Geometry repairInvalidPolygon(Geometry p) {
 		if (p instanceof Polygon || p instanceof MultiPolygon) {
 			// apply zero buffer trick
+			long start = System.nanoTime();
 			Geometry ret = p.buffer(0);
+			Profiler.getInstance().operationCompleted(Operation.REPAIR_INVALID_POLYGON, start);
 			if (ret.getArea() > 0) {
 				return ret;
 			}
@@ -14,15 +14,12 @@
  */
 package org.mapsforge.map.writer.util;
 
-import gnu.trove.list.array.TShortArrayList;
-
 import java.util.Locale;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.mapsforge.map.writer.OSMTagMapping;
-import org.mapsforge.map.writer.model.OSMTag;
 import org.mapsforge.map.writer.model.SpecialTagExtractionResult;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
@@ -45,17 +42,7 @@ public final class OSMUtils {
 	 * @return the ids of the identified tags
 	 */
 	public static short[] extractKnownPOITags(Entity entity) {
-		TShortArrayList currentTags = new TShortArrayList();
-		OSMTagMapping mapping = OSMTagMapping.getInstance();
-		if (entity.getTags() != null) {
-			for (Tag tag : entity.getTags()) {
-				OSMTag wayTag = mapping.getPoiTag(tag.getKey(), tag.getValue());
-				if (wayTag != null) {
-					currentTags.add(wayTag.getId());
-				}
-			}
-		}
-		return currentTags.toArray();
+		return OSMTagMapping.getInstance().getKnownPoiTags(entity.getTags());
 	}
 
 	/**
@@ -66,17 +53,7 @@ public final class OSMUtils {
 	 * @return the ids of the identified tags
 	 */
 	public static short[] extractKnownWayTags(Entity entity) {
-		TShortArrayList currentTags = new TShortArrayList();
-		OSMTagMapping mapping = OSMTagMapping.getInstance();
-		if (entity.getTags() != null) {
-			for (Tag tag : entity.getTags()) {
-				OSMTag wayTag = mapping.getWayTag(tag.getKey(), tag.getValue());
-				if (wayTag != null) {
-					currentTags.add(wayTag.getId());
-				}
-			}
-		}
-		return currentTags.toArray();
+		return OSMTagMapping.getInstance().getKnownWayTags(entity.getTags());
 	}
 
 	/**
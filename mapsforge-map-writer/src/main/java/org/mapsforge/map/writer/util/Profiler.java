@@ -0,0 +1,289 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.mapsforge.map.writer.model.TileCoordinate;
+
+/**
+ * Collects the wall time and heap high-water mark of each conversion phase, the number and duration of expensive JTS
+ * operations and the slowest and largest tiles, and formats them as a report at the end of a run. The peak usage of
+ * the heap pools is never reset, as it is global to the JVM: a phase reports the high-water mark at its end and how
+ * far it has raised it.
+ */
+public final class Profiler {
+	/**
+	 * JTS operations whose invocations are counted.
+	 */
+	public enum Operation {
+		/**
+		 * {@link GeoUtils#clipToTile}.
+		 */
+		CLIP_TO_TILE("clipToTile"),
+
+		/**
+		 * {@link JTSUtils#repairInvalidPolygon}.
+		 */
+		REPAIR_INVALID_POLYGON("repairInvalidPolygon"),
+
+		/**
+		 * {@link GeoUtils#simplifyGeometry}.
+		 */
+		SIMPLIFY_GEOMETRY("simplifyGeometry");
+
+		final String methodName;
+
+		private Operation(String methodName) {
+			this.methodName = methodName;
+		}
+	}
+
+	static final class Phase {
+		final long heapHighWaterMark;
+		final long heapHighWaterMarkIncrease;
+		final String name;
+		final long nanos;
+
+		Phase(String name, long nanos, long heapHighWaterMark, long heapHighWaterMarkIncrease) {
+			this.name = name;
+			this.nanos = nanos;
+			this.heapHighWaterMark = heapHighWaterMark;
+			this.heapHighWaterMarkIncrease = heapHighWaterMarkIncrease;
+		}
+	}
+
+	static final class TileStatistics {
+		final int bytes;
+		final long nanos;
+		final TileCoordinate tileCoordinate;
+		final int ways;
+
+		TileStatistics(TileCoordinate tileCoordinate, long nanos, int bytes, int ways) {
+			this.tileCoordinate = tileCoordinate;
+			this.nanos = nanos;
+			this.bytes = bytes;
+			this.ways = ways;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d/%d/%d: %.1f ms, %d bytes, %d ways",
+					Byte.valueOf(this.tileCoordinate.getZoomlevel()), Integer.valueOf(this.tileCoordinate.getX()),
+					Integer.valueOf(this.tileCoordinate.getY()), Double.valueOf(this.nanos / 1e6),
+					Integer.valueOf(this.bytes), Integer.valueOf(this.ways));
+		}
+	}
+
+	private static final Comparator<TileStatistics> BY_BYTES = new Comparator<TileStatistics>() {
+		@Override
+		public int compare(TileStatistics tile1, TileStatistics tile2) {
+			return Integer.compare(tile1.bytes, tile2.bytes);
+		}
+	};
+
+	private static final Comparator<TileStatistics> BY_NANOS = new Comparator<TileStatistics>() {
+		@Override
+		public int compare(TileStatistics tile1, TileStatistics tile2) {
+			return Long.compare(tile1.nanos, tile2.nanos);
+		}
+	};
+
+	private static final Profiler INSTANCE = new Profiler(10);
+
+	private static final double MEGABYTE = 1024 * 1024;
+
+	/**
+	 * @return the profiler of this conversion
+	 */
+	public static Profiler getInstance() {
+		return INSTANCE;
+	}
+
+	private static long heapHighWaterMark() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				used += pool.getPeakUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	private static List<TileStatistics> sortedDescending(PriorityQueue<TileStatistics> queue,
+			Comparator<TileStatistics> comparator) {
+		List<TileStatistics> tiles = new ArrayList<>(queue);
+		Collections.sort(tiles, Collections.reverseOrder(comparator));
+		return tiles;
+	}
+
+	private String currentPhase;
+	private long currentPhaseHeapHighWaterMark;
+	private long currentPhaseStart;
+	private final PriorityQueue<TileStatistics> largestTiles;
+	private final AtomicLongArray operationCounts;
+	private final AtomicLongArray operationNanos;
+	private final List<Phase> phases;
+	private final PriorityQueue<TileStatistics> slowestTiles;
+	private final int topTiles;
+
+	Profiler(int topTiles) {
+		this.topTiles = topTiles;
+		this.largestTiles = new PriorityQueue<>(topTiles + 1, BY_BYTES);
+		this.slowestTiles = new PriorityQueue<>(topTiles + 1, BY_NANOS);
+		this.operationCounts = new AtomicLongArray(Operation.values().length);
+		this.operationNanos = new AtomicLongArray(Operation.values().length);
+		this.phases = new ArrayList<>();
+	}
+
+	/**
+	 * Ends the current phase, if any.
+	 */
+	public synchronized void endPhase() {
+		if (this.currentPhase == null) {
+			return;
+		}
+		long heapHighWaterMark = heapHighWaterMark();
+		this.phases.add(new Phase(this.currentPhase, System.nanoTime() - this.currentPhaseStart, heapHighWaterMark,
+				heapHighWaterMark - this.currentPhaseHeapHighWaterMark));
+		this.currentPhase = null;
+	}
+
+	/**
+	 * Records one invocation of a JTS operation. May be called concurrently.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param startNanos
+	 *            the value of {@link System#nanoTime()} when the operation was started
+	 */
+	public void operationCompleted(Operation operation, long startNanos) {
+		this.operationCounts.incrementAndGet(operation.ordinal());
+		this.operationNanos.addAndGet(operation.ordinal(), System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return the report of all data collected so far
+	 */
+	public synchronized String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("conversion profile\n");
+		sb.append(String.format(Locale.ROOT, "%-32s %12s %16s %16s%n", "phase", "wall time [s]", "heap peak [MB]",
+				"increase [MB]"));
+		long totalNanos = 0;
+		for (Phase phase : this.phases) {
+			totalNanos += phase.nanos;
+			sb.append(String.format(Locale.ROOT, "%-32s %12.3f %16.1f %16.1f%n", phase.name,
+					Double.valueOf(phase.nanos / 1e9), Double.valueOf(phase.heapHighWaterMark / MEGABYTE),
+					Double.valueOf(phase.heapHighWaterMarkIncrease / MEGABYTE)));
+		}
+		sb.append(String.format(Locale.ROOT, "%-32s %12.3f%n", "total", Double.valueOf(totalNanos / 1e9)));
+
+		sb.append(String.format(Locale.ROOT, "%-32s %12s %16s%n", "JTS operation", "count", "time [s]"));
+		for (Operation operation : Operation.values()) {
+			sb.append(String.format(Locale.ROOT, "%-32s %12d %16.3f%n", operation.methodName,
+					Long.valueOf(this.operationCounts.get(operation.ordinal())),
+					Double.valueOf(this.operationNanos.get(operation.ordinal()) / 1e9)));
+		}
+
+		sb.append("slowest tiles (zoom/x/y)\n");
+		for (TileStatistics tile : getSlowestTiles()) {
+			sb.append("  ").append(tile).append('\n');
+		}
+		sb.append("largest tiles (zoom/x/y)\n");
+		for (TileStatistics tile : getLargestTiles()) {
+			sb.append("  ").append(tile).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Discards all data collected so far.
+	 */
+	public synchronized void reset() {
+		this.currentPhase = null;
+		this.phases.clear();
+		this.largestTiles.clear();
+		this.slowestTiles.clear();
+		for (int i = 0; i < this.operationCounts.length(); i++) {
+			this.operationCounts.set(i, 0);
+			this.operationNanos.set(i, 0);
+		}
+	}
+
+	/**
+	 * Ends the current phase and starts a new one.
+	 *
+	 * @param name
+	 *            the name of the new phase
+	 */
+	public synchronized void startPhase(String name) {
+		endPhase();
+		this.currentPhase = name;
+		this.currentPhaseHeapHighWaterMark = heapHighWaterMark();
+		this.currentPhaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Records a tile that has been serialized.
+	 *
+	 * @param tileCoordinate
+	 *            the tile
+	 * @param nanos
+	 *            the time it took to process the tile
+	 * @param bytes
+	 *            the size of the tile in bytes
+	 * @param ways
+	 *            the number of ways written to the tile
+	 */
+	public synchronized void tileWritten(TileCoordinate tileCoordinate, long nanos, int bytes, int ways) {
+		TileStatistics tile = new TileStatistics(tileCoordinate, nanos, bytes, ways);
+		retainTop(this.largestTiles, tile);
+		retainTop(this.slowestTiles, tile);
+	}
+
+	synchronized List<TileStatistics> getLargestTiles() {
+		return sortedDescending(this.largestTiles, BY_BYTES);
+	}
+
+	long getOperationCount(Operation operation) {
+		return this.operationCounts.get(operation.ordinal());
+	}
+
+	synchronized List<Phase> getPhases() {
+		return new ArrayList<>(this.phases);
+	}
+
+	synchronized List<TileStatistics> getSlowestTiles() {
+		return sortedDescending(this.slowestTiles, BY_NANOS);
+	}
+
+	private void retainTop(PriorityQueue<TileStatistics> queue, TileStatistics tile) {
+		queue.add(tile);
+		if (queue.size() > this.topTiles) {
+			// the head of the queue is the smallest element
+			queue.poll();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockCompressorTest {
+	private static byte[] compress(BlockCompressor blockCompressor, byte[] block) {
+		ByteBuffer tileBuffer = ByteBuffer.allocate(block.length + 1);
+		tileBuffer.put(block);
+		blockCompressor.compress(tileBuffer);
+		return Arrays.copyOf(tileBuffer.array(), tileBuffer.position());
+	}
+
+	private static byte[] inflate(byte[] compressedBlock, int offset, int length) throws DataFormatException {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressedBlock, offset, compressedBlock.length - offset);
+			byte[] result = new byte[length];
+			Assert.assertEquals(length, inflater.inflate(result));
+			return result;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Test
+	public void compressTest() throws DataFormatException {
+		BlockCompressor blockCompressor = new BlockCompressor();
+		try {
+			Assert.assertEquals(0, compress(blockCompressor, new byte[0]).length);
+
+			// repetitive data is deflated, the length is written as unsigned variable byte number
+			byte[] block = new byte[1000];
+			Arrays.fill(block, (byte) 42);
+			byte[] compressedBlock = compress(blockCompressor, block);
+			Assert.assertTrue(compressedBlock.length < block.length);
+			Assert.assertEquals(BlockCompressor.BLOCK_COMPRESSION_DEFLATE, compressedBlock[0]);
+			Assert.assertArrayEquals(Serializer.getVariableByteUnsigned(block.length),
+					Arrays.copyOfRange(compressedBlock, 1, 3));
+			Assert.assertArrayEquals(block, inflate(compressedBlock, 3, block.length));
+
+			// random data does not get smaller and is stored as it is
+			block = new byte[1000];
+			new Random(1).nextBytes(block);
+			compressedBlock = compress(blockCompressor, block);
+			Assert.assertEquals(block.length + 1, compressedBlock.length);
+			Assert.assertEquals(BlockCompressor.BLOCK_COMPRESSION_NONE, compressedBlock[0]);
+			Assert.assertArrayEquals(block, Arrays.copyOfRange(compressedBlock, 1, compressedBlock.length));
+		} finally {
+			blockCompressor.destroy();
+		}
+	}
+}
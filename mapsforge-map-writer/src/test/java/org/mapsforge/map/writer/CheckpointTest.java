@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.map.writer.model.MapWriterConfiguration;
+import org.mapsforge.map.writer.model.TileBasedDataProcessor;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+
+public class CheckpointTest {
+	private static MapWriterConfiguration createConfiguration() {
+		MapWriterConfiguration configuration = new MapWriterConfiguration();
+		configuration.setWriterVersion("test");
+		configuration.loadTagMappingFile("src/test/resources/tag-mapping.xml");
+		configuration.addBboxConfiguration("52,13,53,14");
+		configuration.addZoomIntervalConfiguration("5,0,7,10,8,11,14,12,18");
+		configuration.setDataProcessorType("ram");
+		configuration.addEncodingChoice("auto");
+		configuration.validate();
+		return configuration;
+	}
+
+	/**
+	 * Reads a single node into a new data processor and computes the fingerprint of the conversion.
+	 */
+	private static long fingerprint(MapWriterConfiguration configuration, double latitude, double longitude) {
+		TileBasedDataProcessor dataProcessor = RAMTileBasedDataProcessor.newInstance(configuration);
+		CommonEntityData entityData = new CommonEntityData(1, 1, new Date(0), OsmUser.NONE, 0,
+				Collections.singletonList(new Tag("amenity", "restaurant")));
+		dataProcessor.addNode(new Node(entityData, latitude, longitude));
+		dataProcessor.complete();
+
+		ByteBuffer headerBuffer = ByteBuffer.allocate(MapFileWriter.HEADER_BUFFER_SIZE);
+		int headerLength = MapFileWriter.writeHeaderBuffer(configuration, dataProcessor, headerBuffer);
+		return MapFileWriter.checkpointFingerprint(configuration, dataProcessor, headerBuffer, headerLength);
+	}
+
+	@Test
+	public void testFingerprint() {
+		MapWriterConfiguration configuration = createConfiguration();
+		long fingerprint = fingerprint(configuration, 52.5, 13.4);
+		Assert.assertEquals(fingerprint, fingerprint(configuration, 52.5, 13.4));
+
+		// the same bounding box and options, but the input data differs
+		Assert.assertNotEquals(fingerprint, fingerprint(configuration, 52.6, 13.4));
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		File file = File.createTempFile("mapsforge", ".checkpoint");
+		Assert.assertTrue(file.delete());
+
+		Checkpoint checkpoint = Checkpoint.open(file, 42);
+		Assert.assertEquals(0, checkpoint.getCompletedSubfiles());
+		checkpoint.subfileCompleted(100, 2000);
+		checkpoint.subfileCompleted(2100, 30000);
+
+		checkpoint = Checkpoint.open(file, 42);
+		Assert.assertEquals(2, checkpoint.getCompletedSubfiles());
+		Assert.assertEquals(100, checkpoint.getSubfileStart(0));
+		Assert.assertEquals(2000, checkpoint.getSubfileSize(0));
+		Assert.assertEquals(2100, checkpoint.getSubfileStart(1));
+		Assert.assertEquals(30000, checkpoint.getSubfileSize(1));
+
+		// a sub file which is written again replaces the checkpoint entries from its index on
+		checkpoint.discardSubfiles(1);
+		Assert.assertEquals(1, checkpoint.getCompletedSubfiles());
+		checkpoint.subfileCompleted(2100, 40000);
+		checkpoint = Checkpoint.open(file, 42);
+		Assert.assertEquals(2, checkpoint.getCompletedSubfiles());
+		Assert.assertEquals(40000, checkpoint.getSubfileSize(1));
+
+		// a checkpoint of a different conversion must not be reused
+		Assert.assertEquals(0, Checkpoint.open(file, 43).getCompletedSubfiles());
+
+		checkpoint.delete();
+		Assert.assertFalse(file.exists());
+		Assert.assertEquals(0, Checkpoint.open(file, 42).getCompletedSubfiles());
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.util.LatLongUtils;
+import org.mapsforge.map.writer.model.MapWriterConfiguration;
+import org.mapsforge.map.writer.model.TDNode;
+import org.mapsforge.map.writer.model.TDWay;
+import org.mapsforge.map.writer.util.JTSUtils;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class JTSGeometryCacheTest {
+	private static TDWay createWay(long id, int numberOfWayNodes) {
+		TDNode[] wayNodes = new TDNode[numberOfWayNodes];
+		for (int i = 0; i < numberOfWayNodes; ++i) {
+			wayNodes[i] = new TDNode(id * 100 + i, LatLongUtils.degreesToMicrodegrees(0.1 + i * 0.01),
+					LatLongUtils.degreesToMicrodegrees(0.1 + (i % 2) * 0.01), (short) 0, (byte) 0, null, null);
+		}
+		return new TDWay(id, (byte) 0, null, null, null, wayNodes);
+	}
+
+	@Test
+	public void testDiskStore() throws IOException, ParseException {
+		WKTReader wktReader = new WKTReader(new GeometryFactory());
+		Geometry polygon = wktReader.read("POLYGON ((0 0, 0 10, 10 10, 10 0, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))");
+		Geometry lineString = wktReader.read("LINESTRING (1 1, 2 3, 5 8)");
+
+		File file = File.createTempFile("mapsforge-geometries", ".wkb");
+		JTSGeometryCache.DiskStore diskStore = new JTSGeometryCache.DiskStore(file);
+		Assert.assertNull(diskStore.get(1));
+
+		diskStore.put(1, polygon);
+		diskStore.put(2, lineString);
+		// already stored geometries are not written twice
+		diskStore.put(1, lineString);
+		Assert.assertEquals(2, diskStore.size());
+		Assert.assertTrue(diskStore.contains(2));
+		Assert.assertTrue(polygon.equalsExact(diskStore.get(1)));
+		Assert.assertTrue(lineString.equalsExact(diskStore.get(2)));
+
+		diskStore.close();
+		Assert.assertFalse(file.exists());
+	}
+
+	@Test
+	public void testSpill() throws IOException, ExecutionException {
+		MapWriterConfiguration configuration = new MapWriterConfiguration();
+		configuration.addBboxConfiguration("0,0,1,1");
+		configuration.addZoomIntervalConfiguration("5,0,7");
+		File file = File.createTempFile("mapsforge-geometries", ".wkb");
+		Assert.assertTrue(file.delete());
+
+		// every geometry is heavier than the whole cache and evicted right after it has been loaded, geometries with
+		// at least five coordinates are spilled to disk
+		JTSGeometryCache jtsGeometryCache = new JTSGeometryCache(
+				RAMTileBasedDataProcessor.newInstance(configuration), 1, 5, file);
+		TDWay largeWay = createWay(1, 6);
+		TDWay smallWay = createWay(2, 4);
+
+		Geometry geometry = jtsGeometryCache.get(largeWay);
+		Assert.assertEquals(6, geometry.getNumPoints());
+		Assert.assertTrue(jtsGeometryCache.diskStore.contains(largeWay.getId()));
+		Assert.assertTrue(jtsGeometryCache.stats().evictionCount() > 0);
+
+		jtsGeometryCache.get(smallWay);
+		Assert.assertFalse(jtsGeometryCache.diskStore.contains(smallWay.getId()));
+		Assert.assertEquals(1, jtsGeometryCache.diskStore.size());
+
+		// the spilled geometry is read back instead of being rebuilt
+		Assert.assertTrue(geometry.equalsExact(jtsGeometryCache.get(largeWay)));
+		Assert.assertEquals(1, jtsGeometryCache.diskHits.get());
+
+		jtsGeometryCache.close();
+		Assert.assertFalse(file.exists());
+	}
+
+	@Test
+	public void testWeigher() {
+		TDWay way = createWay(1, 6);
+		Geometry geometry = JTSUtils.toJtsGeometry(way, null);
+		Assert.assertEquals(7, new JTSGeometryCache.CoordinateWeigher().weigh(way, geometry));
+	}
+}
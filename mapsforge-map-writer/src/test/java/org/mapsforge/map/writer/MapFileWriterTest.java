@@ -14,43 +14,169 @@
  */
 package org.mapsforge.map.writer;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mapsforge.map.writer.MapFileWriter.WayLevelOfDetail;
 import org.mapsforge.map.writer.model.MapWriterConfiguration;
 import org.mapsforge.map.writer.model.TileBasedDataProcessor;
+import org.mapsforge.map.writer.model.WayDataBlock;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 
 public class MapFileWriterTest {
+	// the creation date is stored in the eight bytes from this offset of the header
+	private static final int OFFSET_DATE = 36;
+
+	/**
+	 * Adds multipolygon relations whose outer and inner rings are each split into two ways, so that the writer
+	 * constructs new outer and inner ways for them. There are more relations than a single polygonize task handles.
+	 */
+	private static void addMultipolygons(TileBasedDataProcessor dataProcessor) {
+		List<Way> ways = new ArrayList<>();
+		List<Relation> relations = new ArrayList<>();
+		long nodeId = 0;
+		long wayId = 0;
+		for (int i = 0; i < 40; ++i) {
+			double lat = 52.1 + (i / 8) * 0.1;
+			double lon = 13.1 + (i % 8) * 0.1;
+			List<RelationMember> members = new ArrayList<>();
+			for (double size : new double[] { 0.04, 0.02 }) {
+				long first = nodeId;
+				dataProcessor.addNode(new Node(createEntityData(nodeId++), lat - size, lon - size));
+				dataProcessor.addNode(new Node(createEntityData(nodeId++), lat - size, lon + size));
+				dataProcessor.addNode(new Node(createEntityData(nodeId++), lat + size, lon + size));
+				dataProcessor.addNode(new Node(createEntityData(nodeId++), lat + size, lon - size));
+				String role = size > 0.03 ? "outer" : "inner";
+				ways.add(new Way(createEntityData(wayId), Arrays.asList(new WayNode(first), new WayNode(first + 1),
+						new WayNode(first + 2))));
+				members.add(new RelationMember(wayId++, EntityType.Way, role));
+				ways.add(new Way(createEntityData(wayId), Arrays.asList(new WayNode(first + 2), new WayNode(
+						first + 3), new WayNode(first))));
+				members.add(new RelationMember(wayId++, EntityType.Way, role));
+			}
+			relations.add(new Relation(createEntityData(i, new Tag("type", "multipolygon"), new Tag("natural",
+					"beach")), members));
+		}
+
+		for (Way way : ways) {
+			dataProcessor.addWay(way);
+		}
+		for (Relation relation : relations) {
+			dataProcessor.addRelation(relation);
+		}
+		dataProcessor.complete();
+	}
+
+	private static MapWriterConfiguration createConfiguration() {
+		MapWriterConfiguration configuration = new MapWriterConfiguration();
+		// configuration.addOutputFile(getStringArgument(taskConfig, PARAM_OUTFILE,
+		// Constants.DEFAULT_PARAM_OUTFILE));
+		configuration.setWriterVersion("test");
+		configuration.loadTagMappingFile("src/test/resources/tag-mapping.xml");
+		configuration.addMapStartPosition("52.455882,13.297244");
+		configuration.addMapStartZoom("14");
+		configuration.addBboxConfiguration("52,13,53,14");
+		configuration.addZoomIntervalConfiguration("5,0,7,10,8,11,14,12,18");
+		configuration.setComment("i love mapsforge");
+		configuration.setDebugStrings(false);
+		configuration.setPolygonClipping(true);
+		configuration.setWayClipping(true);
+		configuration.setSimplification(0.00001);
+		configuration.setDataProcessorType("ram");
+		configuration.setBboxEnlargement(10);
+		configuration.setPreferredLanguage("de");
+		configuration.addEncodingChoice("auto");
+		configuration.validate();
+		return configuration;
+	}
+
+	private static CommonEntityData createEntityData(long id, Tag... tags) {
+		return new CommonEntityData(id, 1, new Date(0), OsmUser.NONE, 0, Arrays.asList(tags));
+	}
+
+	private static WayLevelOfDetail createLevelOfDetail(int zoomLevelMax, int numberOfWayNodes) {
+		List<Integer> outerWay = new ArrayList<>();
+		for (int i = 0; i < numberOfWayNodes; ++i) {
+			outerWay.add(Integer.valueOf(i));
+			outerWay.add(Integer.valueOf(i));
+		}
+		return new WayLevelOfDetail((byte) zoomLevelMax,
+				Collections.singletonList(new WayDataBlock(outerWay, null)));
+	}
+
 	private MapWriterConfiguration configuration;
 	private TileBasedDataProcessor dataProcessor;
 
 	@Before
 	public void setUp() {
-		this.configuration = new MapWriterConfiguration();
-		// this.configuration.addOutputFile(getStringArgument(taskConfig, PARAM_OUTFILE,
-		// Constants.DEFAULT_PARAM_OUTFILE));
-		this.configuration.setWriterVersion("test");
-		this.configuration.loadTagMappingFile("src/test/resources/tag-mapping.xml");
-		this.configuration.addMapStartPosition("52.455882,13.297244");
-		this.configuration.addMapStartZoom("14");
-		this.configuration.addBboxConfiguration("52,13,53,14");
-		this.configuration.addZoomIntervalConfiguration("5,0,7,10,8,11,14,12,18");
-		this.configuration.setComment("i love mapsforge");
-		this.configuration.setDebugStrings(false);
-		this.configuration.setPolygonClipping(true);
-		this.configuration.setWayClipping(true);
-		this.configuration.setSimplification(0.00001);
-		this.configuration.setDataProcessorType("ram");
-		this.configuration.setBboxEnlargement(10);
-		this.configuration.setPreferredLanguage("de");
-		this.configuration.addEncodingChoice("auto");
-		this.configuration.validate();
-
+		this.configuration = createConfiguration();
 		this.dataProcessor = RAMTileBasedDataProcessor.newInstance(this.configuration);
 	}
 
+	@Test
+	public void testSelectLevelsOfDetail() {
+		// the variants are in descending order of their zoom levels, the full geometry has 8 way nodes
+		List<WayLevelOfDetail> variants = Arrays.asList(createLevelOfDetail(10, 7), createLevelOfDetail(9, 6),
+				createLevelOfDetail(8, 5), createLevelOfDetail(7, 4), createLevelOfDetail(6, 3));
+
+		// a variant is compared with the last kept one: 6 <= 0.75 * 8, 5 > 0.75 * 6, 4 <= 0.75 * 6, 3 <= 0.75 * 4
+		List<WayLevelOfDetail> levelsOfDetail = MapFileWriter.selectLevelsOfDetail(variants, 8);
+		Assert.assertEquals(Arrays.asList(variants.get(4), variants.get(3), variants.get(1)), levelsOfDetail);
+
+		// with 7 way nodes in the full geometry: 5 <= 0.75 * 7, 4 > 0.75 * 5, 3 <= 0.75 * 5
+		levelsOfDetail = MapFileWriter.selectLevelsOfDetail(variants, 7);
+		Assert.assertEquals(Arrays.asList(variants.get(4), variants.get(2)), levelsOfDetail);
+
+		Assert.assertTrue(MapFileWriter.selectLevelsOfDetail(Collections.<WayLevelOfDetail> emptyList(), 8).isEmpty());
+	}
+
+	@Test
+	public void testWriteFileWithThreads() throws IOException {
+		// the relations are polygonized in parallel, the ids and the order of the constructed ways must not depend
+		// on the number of threads, the debug strings contain the way ids
+		byte[][] maps = new byte[2][];
+		int[] threads = { 1, 4 };
+		for (int i = 0; i < threads.length; ++i) {
+			MapWriterConfiguration configuration = createConfiguration();
+			configuration.setDebugStrings(true);
+			configuration.setThreads(threads[i]);
+			File file = File.createTempFile("mapsforge", ".map");
+			file.deleteOnExit();
+			configuration.setOutputFile(file);
+
+			TileBasedDataProcessor dataProcessor = RAMTileBasedDataProcessor.newInstance(configuration);
+			addMultipolygons(dataProcessor);
+			MapFileWriter.writeFile(configuration, dataProcessor);
+			dataProcessor.release();
+
+			maps[i] = Files.readAllBytes(file.toPath());
+			Arrays.fill(maps[i], OFFSET_DATE, OFFSET_DATE + 8, (byte) 0);
+			Assert.assertTrue(file.delete());
+		}
+
+		// the first constructed way follows the 80 ways of the relation members
+		Assert.assertTrue(new String(maps[0], "ISO-8859-1").contains("---WayStart80---"));
+		Assert.assertArrayEquals(maps[0], maps[1]);
+	}
+
 	@Test
 	public void testWriteHeaderBuffer() {
 		ByteBuffer headerBuffer = ByteBuffer.allocate(MapFileWriter.HEADER_BUFFER_SIZE);
@@ -70,6 +196,31 @@ public class MapFileWriterTest {
 		// == 219
 		Assert.assertEquals(219, headerLength);
 	}
+
+	@Test
+	public void testWriteLevelsOfDetail() {
+		WayDataBlock wayDataBlock1 = new WayDataBlock(Arrays.asList(10, 20, 1, 2), null);
+		List<List<Integer>> innerWays = Collections.singletonList(Arrays.asList(5, 6, 1, 1));
+		WayDataBlock wayDataBlock2 = new WayDataBlock(Arrays.asList(10, 20, 1, 2, -1, -2), innerWays);
+		List<WayLevelOfDetail> levelsOfDetail = Arrays.asList(
+				new WayLevelOfDetail((byte) 7, Collections.singletonList(wayDataBlock1)),
+				new WayLevelOfDetail((byte) 9, Collections.singletonList(wayDataBlock2)));
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.put((byte) 42);
+		MapFileWriter.writeLevelsOfDetail(levelsOfDetail, 4, 5, buffer);
+
+		byte[] expected = {
+				42,
+				// number of levels, maximum zoom level and size in bytes of each level
+				2, 7, 7, 9, 14,
+				// first level: one way data block with a way of two nodes, the first relative to the tile
+				1, 1, 2, 6, 15, 1, 2,
+				// second level: one way data block with an outer way of three nodes and an inner way of two nodes
+				1, 2, 3, 6, 15, 1, 2, 0x41, 0x42, 2, 1, 1, 1, 1 };
+		Assert.assertArrayEquals(expected, Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
 	// @Test
 	// public void testProcessPOI() {
 	// fail("Not yet implemented");
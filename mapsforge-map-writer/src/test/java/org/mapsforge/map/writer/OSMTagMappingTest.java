@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import gnu.trove.map.hash.TShortIntHashMap;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+
+/**
+ * Tests the tag mapping of src/test/resources/tag-mapping-overrides.xml: the POI tag amenity=university (id 0, zoom
+ * 17) and the way tags natural=beach (id 0, zoom 14, overrides natural=coastline) and natural=coastline (id 1, zoom 0).
+ */
+public class OSMTagMappingTest {
+	private static final short BEACH = 0;
+	private static final short COASTLINE = 1;
+	private static final short UNIVERSITY = 0;
+
+	private static void verifyNoOptimizedId(OSMTagMapping mapping, short id) {
+		try {
+			mapping.getOptimizedWayId(id);
+			Assert.fail("id: " + id);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private OSMTagMapping mapping;
+
+	@Before
+	public void setUp() throws MalformedURLException {
+		// the constructor is used directly, the singleton is initialized by other tests
+		this.mapping = new OSMTagMapping(new File("src/test/resources/tag-mapping-overrides.xml").toURI().toURL());
+	}
+
+	@Test
+	public void knownTagsTest() {
+		short[] knownTags = this.mapping.getKnownWayTags(Arrays.asList(new Tag("natural", "coastline"), new Tag(
+				"highway", "primary"), new Tag("natural", "beach")));
+		Assert.assertArrayEquals(new short[] { COASTLINE, BEACH }, knownTags);
+
+		Assert.assertArrayEquals(new short[] { UNIVERSITY },
+				this.mapping.getKnownPoiTags(Arrays.asList(new Tag("amenity", "university"))));
+		Assert.assertEquals(0, this.mapping.getKnownPoiTags(Arrays.asList(new Tag("natural", "beach"))).length);
+		Assert.assertEquals(0, this.mapping.getKnownWayTags(Collections.<Tag> emptyList()).length);
+		Assert.assertEquals(0, this.mapping.getKnownWayTags(null).length);
+	}
+
+	@Test
+	public void optimizedIdsTest() {
+		// without a histogram the ids are kept
+		Assert.assertEquals(BEACH, this.mapping.getOptimizedWayId(BEACH));
+		Assert.assertEquals(COASTLINE, this.mapping.getOptimizedWayId(COASTLINE));
+		Assert.assertEquals(UNIVERSITY, this.mapping.getOptimizedPoiId(UNIVERSITY));
+
+		// the most frequent tag gets the smallest id
+		TShortIntHashMap histogram = new TShortIntHashMap();
+		histogram.put(BEACH, 5);
+		histogram.put(COASTLINE, 10);
+		this.mapping.optimizeWayOrdering(histogram);
+		Assert.assertEquals(0, this.mapping.getOptimizedWayId(COASTLINE));
+		Assert.assertEquals(1, this.mapping.getOptimizedWayId(BEACH));
+		Assert.assertEquals(Short.valueOf((short) 1), this.mapping.getOptimizedWayIds().get(Short.valueOf(BEACH)));
+
+		// tags that do not occur in the histogram and unknown tags have no optimized id
+		histogram = new TShortIntHashMap();
+		histogram.put(COASTLINE, 1);
+		this.mapping.optimizeWayOrdering(histogram);
+		Assert.assertEquals(0, this.mapping.getOptimizedWayId(COASTLINE));
+		verifyNoOptimizedId(this.mapping, BEACH);
+		verifyNoOptimizedId(this.mapping, (short) 2);
+		verifyNoOptimizedId(this.mapping, (short) -1);
+
+		// the POI ids are optimized independently
+		Assert.assertEquals(UNIVERSITY, this.mapping.getOptimizedPoiId(UNIVERSITY));
+	}
+
+	@Test
+	public void tagsTest() {
+		Assert.assertEquals(UNIVERSITY, this.mapping.getPoiTag("amenity", "university").getId());
+		Assert.assertEquals("amenity=university", this.mapping.getPoiTag(UNIVERSITY).tagKey());
+		Assert.assertEquals(COASTLINE, this.mapping.getWayTag("natural", "coastline").getId());
+		Assert.assertEquals("natural=beach", this.mapping.getWayTag(BEACH).tagKey());
+
+		Assert.assertNull(this.mapping.getPoiTag("natural", "beach"));
+		Assert.assertNull(this.mapping.getWayTag("natural", "unknown"));
+		Assert.assertNull(this.mapping.getWayTag("unknown", "beach"));
+		Assert.assertNull(this.mapping.getWayTag((short) 2));
+		Assert.assertNull(this.mapping.getPoiTag((short) -1));
+	}
+
+	@Test
+	public void zoomAppearTest() {
+		Assert.assertEquals(17, this.mapping.getZoomAppearPOI(new short[] { UNIVERSITY }));
+		Assert.assertEquals(14, this.mapping.getZoomAppearWay(new short[] { BEACH }));
+		Assert.assertEquals(0, this.mapping.getZoomAppearWay(new short[] { COASTLINE }));
+
+		// natural=beach overrides the zoom level of natural=coastline
+		Assert.assertEquals(14, this.mapping.getZoomAppearWay(new short[] { BEACH, COASTLINE }));
+		Assert.assertEquals(14, this.mapping.getZoomAppearWay(new short[] { COASTLINE, BEACH }));
+
+		// entities without known tags never appear
+		Assert.assertEquals(Byte.MAX_VALUE, this.mapping.getZoomAppearWay(new short[0]));
+		Assert.assertEquals(Byte.MAX_VALUE, this.mapping.getZoomAppearPOI(null));
+	}
+}
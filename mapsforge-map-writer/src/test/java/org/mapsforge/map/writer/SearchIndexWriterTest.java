@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchIndexWriterTest {
+	@Test
+	public void serializeTest() {
+		SearchIndexWriter searchIndexWriter = new SearchIndexWriter((byte) 21);
+		searchIndexWriter.add(3, "Ab", new int[] { 7 });
+		searchIndexWriter.add(3, "aB", new int[] { 7, 7 });
+		searchIndexWriter.add(200, "a", null);
+		searchIndexWriter.add(200, null, new int[] { 2, 7 });
+		searchIndexWriter.add(201, "", new int[] { 2 });
+
+		byte[] expected = {
+				// zoom level and dictionary size
+				21, 0, 0, 0, 13,
+				// names "a" and "ab" with the size of their posting lists
+				2, 1, 'a', 3, 2, 'a', 'b', 2,
+				// tags 2 and 7 with the size of their posting lists
+				2, 2, 4, 7, 4,
+				// posting lists of the names and the tags, the block numbers are stored as differences
+				1, (byte) 0xc8, 1, 1, 3,
+				2, (byte) 0xc8, 1, 1,
+				2, 3, (byte) 0xc5, 1 };
+		Assert.assertArrayEquals(expected, searchIndexWriter.serialize());
+	}
+}
@@ -98,6 +98,32 @@ public class WayPolygonizerTest {
 		Assert.assertTrue(this.polygonizer.getIllegal().size() == 0);
 	}
 
+	@Test
+	public void testReversedSegment() {
+		TDNode[] nReversed = new TDNode[] { new TDNode(5, 52000500, 13000500, (short) 0, (byte) 0, null, "n5"),
+				new TDNode(11, 50001100, 13000500, (short) 0, (byte) 0, null, "n12"),
+				new TDNode(10, 52001100, 13001000, (short) 0, (byte) 0, null, "n11") };
+		TDWay wReversed = new TDWay(6, (byte) 0, "w6", null, null, nReversed);
+
+		TDWay[] testWays = new TDWay[] { this.ways[1], this.ways[2], wReversed };
+		this.polygonizer.mergePolygons(testWays);
+		List<Deque<TDWay>> polygons = this.polygonizer.getPolygons();
+		Assert.assertEquals(1, polygons.size());
+		Assert.assertEquals(3, polygons.get(0).size());
+
+		// orientation is tracked by the polygonizer, the way itself is not modified
+		Assert.assertTrue(this.polygonizer.isReversed(wReversed));
+		Assert.assertFalse(this.polygonizer.isReversed(this.ways[1]));
+		Assert.assertFalse(wReversed.isReversedInRelation());
+
+		TDNode[] waynodes = this.polygonizer.mergeWayNodes(polygons.get(0));
+		Assert.assertEquals(10, waynodes.length);
+		Assert.assertEquals(10, waynodes[0].getId());
+		Assert.assertEquals(11, waynodes[1].getId());
+		Assert.assertEquals(5, waynodes[2].getId());
+		Assert.assertEquals(10, waynodes[9].getId());
+	}
+
 	@Test
 	public void testSingleClosedPolygon() {
 		TDWay[] testWays = new TDWay[] { this.ways[0] };
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChangeSetTest {
+	// an augmented diff with the state before and after each modification and deletion
+	private static final String AUGMENTED_DIFF = "<?xml version='1.0' encoding='UTF-8'?>"
+			+ "<osm version=\"0.6\" generator=\"test\"><action type=\"modify\">"
+			+ "<old><node id=\"1\" version=\"1\" lat=\"52.4\" lon=\"13.3\"/></old>"
+			+ "<new><node id=\"1\" version=\"2\" lat=\"52.5\" lon=\"13.4\"><tag k=\"name\" v=\"x\"/></node></new>"
+			+ "</action><action type=\"modify\"><old><way id=\"10\" version=\"2\"><nd ref=\"1\"/><nd ref=\"4\"/></way>"
+			+ "</old><new><way id=\"10\" version=\"3\"><nd ref=\"1\"/><nd ref=\"2\"/></way></new></action>"
+			+ "<action type=\"create\"><relation id=\"100\" version=\"1\">"
+			+ "<member type=\"way\" ref=\"10\" role=\"outer\"/></relation></action><action type=\"delete\">"
+			+ "<old><node id=\"3\" version=\"3\" lat=\"52.1\" lon=\"13.1\"/></old>"
+			+ "<new><node id=\"3\" version=\"4\" visible=\"false\"/></new></action></osm>";
+
+	private static void assertRejected(String changes) {
+		try {
+			read("<?xml version='1.0' encoding='UTF-8'?><osmChange version=\"0.6\" generator=\"test\">" + changes
+					+ "</osmChange>");
+			Assert.fail(changes);
+		} catch (IOException e) {
+			// the tiles which showed the element before the change cannot be found
+		}
+	}
+
+	private static ChangeSet read(String diff) throws IOException {
+		return ChangeSet.fromStream(new ByteArrayInputStream(diff.getBytes(Charset.forName("UTF-8"))));
+	}
+
+	@Test
+	public void testFromStream() throws IOException {
+		ChangeSet changeSet = read(AUGMENTED_DIFF);
+
+		Assert.assertTrue(changeSet.containsNode(1));
+		Assert.assertFalse(changeSet.containsNode(2));
+		Assert.assertTrue(changeSet.containsNode(3));
+		Assert.assertTrue(changeSet.containsWay(10));
+		Assert.assertFalse(changeSet.containsWay(1));
+		Assert.assertTrue(changeSet.containsRelation(100));
+
+		// the deleted node has no position after the change
+		Assert.assertEquals(3, changeSet.getNodePositions().size());
+		Assert.assertEquals(52.4, changeSet.getNodePositions().get(0).latitude, 0);
+		Assert.assertEquals(13.4, changeSet.getNodePositions().get(1).longitude, 0);
+		Assert.assertEquals(52.1, changeSet.getNodePositions().get(2).latitude, 0);
+
+		Assert.assertEquals(52.4, changeSet.getFormerNodePosition(1).latitude, 0);
+		Assert.assertEquals(13.3, changeSet.getFormerNodePosition(1).longitude, 0);
+		Assert.assertEquals(52.1, changeSet.getFormerNodePosition(3).latitude, 0);
+		Assert.assertNull(changeSet.getFormerNodePosition(2));
+		Assert.assertArrayEquals(new long[] { 1, 4 }, changeSet.getFormerWays().get(10));
+		// the relation has been created
+		Assert.assertTrue(changeSet.getFormerRelations().isEmpty());
+	}
+
+	@Test
+	public void testChangedTiles() {
+		ChangeSet changeSet = new ChangeSet();
+		TileCoordinate tileCoordinate = new TileCoordinate(1, 2, (byte) 14);
+		Assert.assertFalse(changeSet.isChanged(tileCoordinate));
+
+		changeSet.addChangedTile(tileCoordinate);
+		Assert.assertTrue(changeSet.isChanged(new TileCoordinate(1, 2, (byte) 14)));
+		Assert.assertFalse(changeSet.isChanged(new TileCoordinate(1, 2, (byte) 13)));
+		Assert.assertEquals(1, changeSet.getNumberOfChangedTiles());
+	}
+
+	@Test
+	public void testDeletedElements() throws IOException {
+		String osmChange = "<?xml version='1.0' encoding='UTF-8'?><osmChange version=\"0.6\" generator=\"test\">"
+				+ "<create><node id=\"5\" version=\"1\" lat=\"52.2\" lon=\"13.2\"/></create>"
+				+ "<delete><node id=\"3\" version=\"4\" lat=\"52.1\" lon=\"13.1\"/>"
+				+ "<way id=\"10\" version=\"3\"><nd ref=\"1\"/><nd ref=\"3\"/><tag k=\"highway\" v=\"path\"/></way>"
+				+ "<relation id=\"100\" version=\"1\">"
+				+ "<member type=\"node\" ref=\"1\" role=\"\"/><member type=\"way\" ref=\"10\" role=\"outer\"/>"
+				+ "</relation><relation id=\"101\" version=\"2\"><member type=\"node\" ref=\"1\" role=\"\"/>"
+				+ "</relation></delete></osmChange>";
+		ChangeSet changeSet = read(osmChange);
+
+		Assert.assertEquals(1, changeSet.getFormerWays().size());
+		Assert.assertArrayEquals(new long[] { 1, 3 }, changeSet.getFormerWays().get(10));
+
+		Assert.assertEquals(2, changeSet.getFormerRelations().size());
+		Assert.assertArrayEquals(new long[] { 10 }, changeSet.getFormerRelations().get(100));
+		// the relation has no way members
+		Assert.assertArrayEquals(new long[0], changeSet.getFormerRelations().get(101));
+
+		Assert.assertEquals(52.1, changeSet.getFormerNodePosition(3).latitude, 0);
+		Assert.assertEquals(13.1, changeSet.getFormerNodePosition(3).longitude, 0);
+		// created elements have no former state
+		Assert.assertNull(changeSet.getFormerNodePosition(5));
+		Assert.assertTrue(changeSet.containsNode(5));
+		Assert.assertTrue(changeSet.containsRelation(100));
+	}
+
+	@Test
+	public void testIncompleteDiff() {
+		// modified elements of an osmChange diff lack their former state
+		assertRejected("<modify><node id=\"1\" version=\"2\" lat=\"52.5\" lon=\"13.4\"/></modify>");
+		assertRejected("<modify><way id=\"10\" version=\"3\"><nd ref=\"1\"/><nd ref=\"2\"/></way></modify>");
+		assertRejected("<modify><relation id=\"100\" version=\"2\"><member type=\"way\" ref=\"10\" role=\"\"/>"
+				+ "</relation></modify>");
+
+		// deleted elements without their last version
+		assertRejected("<delete><node id=\"3\" version=\"4\"/></delete>");
+		assertRejected("<delete><way id=\"12\" version=\"2\"/></delete>");
+		assertRejected("<delete><relation id=\"101\" version=\"2\"/></delete>");
+	}
+
+	@Test
+	public void testFingerprint() throws IOException {
+		ChangeSet changeSet = read(AUGMENTED_DIFF);
+		ChangeSet sameChangeSet = read(AUGMENTED_DIFF);
+		Assert.assertEquals(changeSet.fingerprint(), sameChangeSet.fingerprint());
+		Assert.assertNotEquals(changeSet.fingerprint(), new ChangeSet().fingerprint());
+
+		// the order in which tiles are marked does not matter, but the tiles do
+		changeSet.addChangedTile(new TileCoordinate(1, 2, (byte) 14));
+		changeSet.addChangedTile(new TileCoordinate(2, 1, (byte) 14));
+		sameChangeSet.addChangedTile(new TileCoordinate(2, 1, (byte) 14));
+		Assert.assertNotEquals(changeSet.fingerprint(), sameChangeSet.fingerprint());
+		sameChangeSet.addChangedTile(new TileCoordinate(1, 2, (byte) 14));
+		Assert.assertEquals(changeSet.fingerprint(), sameChangeSet.fingerprint());
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.util;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.map.writer.model.TileCoordinate;
+import org.mapsforge.map.writer.util.Profiler.Operation;
+
+public class ProfilerTest {
+	@Test
+	public void testPhases() {
+		Profiler profiler = new Profiler(2);
+		profiler.startPhase("first");
+		profiler.startPhase("second");
+		profiler.endPhase();
+		profiler.endPhase();
+
+		List<Profiler.Phase> phases = profiler.getPhases();
+		Assert.assertEquals(2, phases.size());
+		Assert.assertEquals("first", phases.get(0).name);
+		Assert.assertEquals("second", phases.get(1).name);
+		Assert.assertTrue(phases.get(1).heapHighWaterMark > 0);
+		// the peak usage of the heap is not reset between phases
+		Assert.assertTrue(phases.get(1).heapHighWaterMark >= phases.get(0).heapHighWaterMark);
+		Assert.assertTrue(phases.get(1).heapHighWaterMarkIncrease >= 0);
+		Assert.assertTrue(phases.get(1).heapHighWaterMarkIncrease <= phases.get(1).heapHighWaterMark);
+
+		profiler.operationCompleted(Operation.CLIP_TO_TILE, System.nanoTime());
+		profiler.operationCompleted(Operation.CLIP_TO_TILE, System.nanoTime());
+		Assert.assertEquals(2, profiler.getOperationCount(Operation.CLIP_TO_TILE));
+		Assert.assertEquals(0, profiler.getOperationCount(Operation.SIMPLIFY_GEOMETRY));
+		Assert.assertTrue(profiler.report().contains("clipToTile"));
+
+		profiler.reset();
+		Assert.assertTrue(profiler.getPhases().isEmpty());
+		Assert.assertEquals(0, profiler.getOperationCount(Operation.CLIP_TO_TILE));
+	}
+
+	@Test
+	public void testTiles() {
+		Profiler profiler = new Profiler(2);
+		profiler.tileWritten(new TileCoordinate(1, 1, (byte) 14), 300, 10, 1);
+		profiler.tileWritten(new TileCoordinate(2, 1, (byte) 14), 100, 30, 2);
+		profiler.tileWritten(new TileCoordinate(3, 1, (byte) 14), 200, 20, 3);
+
+		List<Profiler.TileStatistics> slowestTiles = profiler.getSlowestTiles();
+		Assert.assertEquals(2, slowestTiles.size());
+		Assert.assertEquals(1, slowestTiles.get(0).tileCoordinate.getX());
+		Assert.assertEquals(3, slowestTiles.get(1).tileCoordinate.getX());
+
+		List<Profiler.TileStatistics> largestTiles = profiler.getLargestTiles();
+		Assert.assertEquals(2, largestTiles.size());
+		Assert.assertEquals(2, largestTiles.get(0).tileCoordinate.getX());
+		Assert.assertEquals(3, largestTiles.get(1).tileCoordinate.getX());
+		Assert.assertEquals(3, largestTiles.get(1).ways);
+	}
+}
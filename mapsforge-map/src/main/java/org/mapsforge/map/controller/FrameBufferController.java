@@ -20,6 +20,7 @@ import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.model.MapViewPositionSnapshot;
 import org.mapsforge.map.model.Model;
 import org.mapsforge.map.model.common.Observer;
 import org.mapsforge.map.view.FrameBuffer;
@@ -95,23 +96,22 @@ public final class FrameBufferController implements Observer {
 			this.lastOverdrawFactor = overdrawFactor;
 		}
 
-		synchronized (this.model.mapViewPosition) {
-			synchronized (this.frameBuffer) {
-				// we need resource ordering here to avoid deadlock
-				MapPosition mapPositionFrameBuffer = this.model.frameBufferModel.getMapPosition();
-				if (mapPositionFrameBuffer != null) {
-					double scaleFactor = this.model.mapViewPosition.getScaleFactor();
-					LatLong pivot = this.model.mapViewPosition.getPivot();
-					adjustFrameBufferMatrix(mapPositionFrameBuffer, mapViewDimension, scaleFactor, pivot);
-				}
+		// the center, scale factor and pivot are taken from one snapshot, so that they fit together
+		MapViewPositionSnapshot snapshot = this.model.mapViewPosition.getSnapshot();
+		synchronized (this.frameBuffer) {
+			MapPosition mapPositionFrameBuffer = this.model.frameBufferModel.getMapPosition();
+			if (mapPositionFrameBuffer != null) {
+				adjustFrameBufferMatrix(mapPositionFrameBuffer, mapViewDimension, snapshot);
 			}
 		}
 	}
 
 	private void adjustFrameBufferMatrix(MapPosition mapPositionFrameBuffer, Dimension mapViewDimension,
-			double scaleFactor, LatLong pivot) {
+			MapViewPositionSnapshot snapshot) {
 
-		MapPosition mapViewPosition = this.model.mapViewPosition.getMapPosition();
+		MapPosition mapViewPosition = snapshot.getMapPosition();
+		double scaleFactor = snapshot.scaleFactor;
+		LatLong pivot = snapshot.pivot;
 
 		Point pointFrameBuffer = MercatorProjection.getPixel(mapPositionFrameBuffer.latLong, mapPositionFrameBuffer.zoomLevel,
 				model.displayModel.getTileSize());
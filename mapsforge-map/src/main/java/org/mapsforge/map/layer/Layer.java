@@ -108,6 +108,19 @@ public abstract class Layer {
 		}
 	}
 
+	/**
+	 * Requests an asynchronous redrawing of all layers in the given area, which must contain everything this layer
+	 * draws differently than before.
+	 *
+	 * @param boundingBox
+	 *            the geographical area whose content has changed.
+	 */
+	public final synchronized void requestRedraw(BoundingBox boundingBox) {
+		if (this.assignedRedrawer != null) {
+			this.assignedRedrawer.redrawLayers(boundingBox);
+		}
+	}
+
 	/**
 	 * The DisplayModel comes from a MapView, so is generally not known when the layer itself is created. Maybe a better
 	 * way would be to have a MapView as a parameter when creating a layer.
@@ -15,6 +15,9 @@
  */
 package org.mapsforge.map.layer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.graphics.Canvas;
 import org.mapsforge.core.graphics.Color;
@@ -23,29 +26,98 @@ import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Dimension;
 import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Rectangle;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.model.MapViewPosition;
+import org.mapsforge.map.model.MapViewPositionSnapshot;
 import org.mapsforge.map.util.MapPositionUtil;
 import org.mapsforge.map.util.PausableThread;
 import org.mapsforge.map.view.FrameBuffer;
 import org.mapsforge.map.view.MapView;
 
+/**
+ * The LayerManager draws all layers into the drawing bitmap of the {@link FrameBuffer}.
+ * <p>
+ * Layers that know which part of the map has changed, e.g. because a tile has arrived, request a redrawing of that
+ * area only. As long as the map position does not change, only the changed areas are cleared and redrawn, clipped to
+ * the area and with a correspondingly smaller bounding box, so that the layers skip everything outside. Since the
+ * frame buffer alternates between two bitmaps, the drawing bitmap still shows the frame before the last one, the
+ * changes of the last frame are therefore redrawn as well.
+ * <p>
+ * When the map has only been moved, the last frame is copied into the drawing bitmap shifted by the number of pixels
+ * the map has moved, and only the newly exposed strips along the edges are redrawn. The position of such a frame is
+ * rounded to whole pixels relative to the last frame, so that the copied and the redrawn parts fit together.
+ */
 public class LayerManager extends PausableThread implements Redrawer {
 	private static final int MILLISECONDS_PER_FRAME = 30;
 
+	/**
+	 * @return the areas of the canvas which are not covered by the last frame after it has been moved by the given
+	 *         offset.
+	 */
+	private static List<Rectangle> getExposedAreas(int scrollX, int scrollY, Dimension canvasDimension) {
+		List<Rectangle> exposedAreas = new ArrayList<Rectangle>(2);
+		int width = canvasDimension.width;
+		int height = canvasDimension.height;
+		if (scrollX > 0) {
+			exposedAreas.add(new Rectangle(0, 0, scrollX, height));
+		} else if (scrollX < 0) {
+			exposedAreas.add(new Rectangle(width + scrollX, 0, width, height));
+		}
+		// the corner is already covered by the strip at the left or right edge
+		int left = Math.max(0, scrollX);
+		int right = Math.min(width, width + scrollX);
+		if (scrollY > 0) {
+			exposedAreas.add(new Rectangle(left, 0, right, scrollY));
+		} else if (scrollY < 0) {
+			exposedAreas.add(new Rectangle(left, height + scrollY, right, height));
+		}
+		return exposedAreas;
+	}
+
+	private static boolean isEmpty(Rectangle rectangle) {
+		return rectangle.getWidth() <= 0 || rectangle.getHeight() <= 0;
+	}
+
+	/**
+	 * @return the smallest rectangle that contains both rectangles, empty rectangles are ignored.
+	 */
+	private static Rectangle union(Rectangle rectangle1, Rectangle rectangle2) {
+		if (isEmpty(rectangle1)) {
+			return rectangle2;
+		} else if (isEmpty(rectangle2)) {
+			return rectangle1;
+		}
+		return new Rectangle(Math.min(rectangle1.left, rectangle2.left), Math.min(rectangle1.top, rectangle2.top),
+				Math.max(rectangle1.right, rectangle2.right), Math.max(rectangle1.bottom, rectangle2.bottom));
+	}
+
+	private final List<BoundingBox> dirtyAreas;
 	private final Canvas drawingCanvas;
+	private Bitmap frameBeforeLastBitmap;
+	private MapPosition frameBeforeLastMapPosition;
+	private boolean fullRedrawNeeded;
+	private Bitmap lastFrameBitmap;
+	/**
+	 * The screen area in which the last frame differs from the frame before, null if it may differ everywhere.
+	 */
+	private Rectangle lastFrameChanges;
+	private MapPosition lastFrameMapPosition;
+	private Point lastFrameTopLeftPoint;
 	private final Layers layers;
 	private final MapView mapView;
 	private final MapViewPosition mapViewPosition;
 	private boolean redrawNeeded;
 
-
 	public LayerManager(MapView mapView, MapViewPosition mapViewPosition, GraphicFactory graphicFactory) {
 		super();
 
 		this.mapView = mapView;
 		this.mapViewPosition = mapViewPosition;
 
+		this.dirtyAreas = new ArrayList<BoundingBox>();
 		this.drawingCanvas = graphicFactory.createCanvas();
+		this.fullRedrawNeeded = true;
 		this.layers = new Layers(this, mapView.getModel().displayModel);
 	}
 
@@ -55,8 +127,21 @@ public class LayerManager extends PausableThread implements Redrawer {
 
 	@Override
 	public void redrawLayers() {
-		this.redrawNeeded = true;
 		synchronized (this) {
+			this.fullRedrawNeeded = true;
+			this.dirtyAreas.clear();
+			this.redrawNeeded = true;
+			notify();
+		}
+	}
+
+	@Override
+	public void redrawLayers(BoundingBox boundingBox) {
+		synchronized (this) {
+			if (!this.fullRedrawNeeded) {
+				this.dirtyAreas.add(boundingBox);
+			}
+			this.redrawNeeded = true;
 			notify();
 		}
 	}
@@ -72,43 +157,114 @@ public class LayerManager extends PausableThread implements Redrawer {
 	@Override
 	protected void doWork() throws InterruptedException {
 		long startTime = System.nanoTime();
-		this.redrawNeeded = false;
+		boolean fullRedraw;
+		List<BoundingBox> frameDirtyAreas;
+		synchronized (this) {
+			this.redrawNeeded = false;
+			fullRedraw = this.fullRedrawNeeded;
+			this.fullRedrawNeeded = false;
+			frameDirtyAreas = new ArrayList<BoundingBox>(this.dirtyAreas);
+			this.dirtyAreas.clear();
+		}
 
 		FrameBuffer frameBuffer = this.mapView.getFrameBuffer();
 		Bitmap bitmap = frameBuffer.getDrawingBitmap();
 		if (bitmap != null) {
 			this.drawingCanvas.setBitmap(bitmap);
-			this.drawingCanvas.fillColor(Color.TRANSPARENT);
 
-			MapPosition mapPosition = this.mapViewPosition.getMapPosition();
+			// the whole frame is drawn for one consistent position, even if the position changes meanwhile
+			MapViewPositionSnapshot position = this.mapViewPosition.getSnapshot();
+			MapPosition mapPosition = position.getMapPosition();
 			Dimension canvasDimension = this.drawingCanvas.getDimension();
 			int tileSize = this.mapView.getModel().displayModel.getTileSize();
-			BoundingBox boundingBox = MapPositionUtil.getBoundingBox(mapPosition, canvasDimension, tileSize);
 			Point topLeftPoint = MapPositionUtil.getTopLeftPoint(mapPosition, canvasDimension, tileSize);
 
-			for (Layer layer : this.layers) {
-				if (layer.isVisible()) {
-					layer.draw(boundingBox, mapPosition.zoomLevel, this.drawingCanvas, topLeftPoint);
+			// the last frame is shown and the drawing bitmap still holds the frame before it
+			boolean lastFrameUsable = !fullRedraw && bitmap == this.frameBeforeLastBitmap
+					&& this.lastFrameMapPosition != null
+					&& mapPosition.zoomLevel == this.lastFrameMapPosition.zoomLevel;
+			boolean scroll = false;
+			int scrollX = 0;
+			int scrollY = 0;
+			if (lastFrameUsable && mapPosition.equals(this.lastFrameMapPosition)) {
+				topLeftPoint = this.lastFrameTopLeftPoint;
+			} else if (lastFrameUsable) {
+				// the last frame is moved by whole pixels, the position of this frame is rounded accordingly
+				scrollX = (int) Math.round(this.lastFrameTopLeftPoint.x - topLeftPoint.x);
+				scrollY = (int) Math.round(this.lastFrameTopLeftPoint.y - topLeftPoint.y);
+				scroll = Math.abs(scrollX) < canvasDimension.width && Math.abs(scrollY) < canvasDimension.height;
+				if (scroll) {
+					topLeftPoint = new Point(this.lastFrameTopLeftPoint.x - scrollX,
+							this.lastFrameTopLeftPoint.y - scrollY);
 				}
 			}
 
-			if (!mapViewPosition.animationInProgress()) {
+			// the area in which this frame differs from the last one
+			Rectangle frameChanges = null;
+			if (!fullRedraw && mapPosition.equals(this.lastFrameMapPosition)
+					&& topLeftPoint.equals(this.lastFrameTopLeftPoint)) {
+				frameChanges = getScreenArea(frameDirtyAreas, mapPosition, topLeftPoint, canvasDimension, tileSize);
+			}
+
+			// the drawing bitmap is up to date except for the changes of the last frame and this frame
+			Rectangle redrawArea = null;
+			if (frameChanges != null && this.lastFrameChanges != null && bitmap == this.frameBeforeLastBitmap
+					&& mapPosition.equals(this.frameBeforeLastMapPosition)) {
+				redrawArea = union(frameChanges, this.lastFrameChanges);
+				if (isEmpty(redrawArea)) {
+					// nothing visible has changed
+					sleepUntilNextFrame(startTime);
+					return;
+				}
+			} else if (frameChanges != null && lastFrameUsable) {
+				// the last frame is copied, only the changes of this frame need to be redrawn
+				scroll = true;
+			}
+
+			if (redrawArea != null) {
+				redrawArea(redrawArea, mapPosition.zoomLevel, topLeftPoint, tileSize);
+			} else if (scroll) {
+				frameBuffer.scrollFrame(scrollX, scrollY);
+				Rectangle dirtyArea = frameChanges;
+				if (dirtyArea == null) {
+					dirtyArea = getScreenArea(frameDirtyAreas, mapPosition, topLeftPoint, canvasDimension, tileSize);
+				}
+				for (Rectangle exposedArea : getExposedAreas(scrollX, scrollY, canvasDimension)) {
+					redrawArea(exposedArea, mapPosition.zoomLevel, topLeftPoint, tileSize);
+				}
+				if (!isEmpty(dirtyArea)) {
+					redrawArea(dirtyArea, mapPosition.zoomLevel, topLeftPoint, tileSize);
+				}
+				// the frame before the last one is no longer contained in this frame
+				frameChanges = null;
+			} else {
+				this.drawingCanvas.fillColor(Color.TRANSPARENT);
+				BoundingBox boundingBox = MapPositionUtil.getBoundingBox(mapPosition, canvasDimension, tileSize);
+				drawLayers(boundingBox, mapPosition.zoomLevel, topLeftPoint);
+			}
+
+			if (!position.animationInProgress()) {
 				// this causes a lot of flickering when an animation
 				// is in progress
 				frameBuffer.frameFinished(mapPosition);
 				this.mapView.repaint();
+
+				this.frameBeforeLastBitmap = this.lastFrameBitmap;
+				this.frameBeforeLastMapPosition = this.lastFrameMapPosition;
+				this.lastFrameBitmap = bitmap;
+				this.lastFrameChanges = frameChanges;
+				this.lastFrameMapPosition = mapPosition;
+				this.lastFrameTopLeftPoint = topLeftPoint;
 			} else {
 				// make sure that we redraw at the end
 				this.redrawNeeded = true;
+				// the drawing bitmap now holds a frame that has not been shown
+				this.frameBeforeLastBitmap = null;
+				this.lastFrameBitmap = null;
 			}
 		}
 
-		long elapsedMilliseconds = (System.nanoTime() - startTime) / 1000000;
-		long timeSleep = MILLISECONDS_PER_FRAME - elapsedMilliseconds;
-
-		if (timeSleep > 1 && !isInterrupted()) {
-			sleep(timeSleep);
-		}
+		sleepUntilNextFrame(startTime);
 	}
 
 	@Override
@@ -120,4 +276,83 @@ public class LayerManager extends PausableThread implements Redrawer {
 	protected boolean hasWork() {
 		return this.redrawNeeded;
 	}
+
+	private void drawLayers(BoundingBox boundingBox, byte zoomLevel, Point topLeftPoint) {
+		for (Layer layer : this.layers) {
+			if (layer.isVisible()) {
+				layer.draw(boundingBox, zoomLevel, this.drawingCanvas, topLeftPoint);
+			}
+		}
+	}
+
+	/**
+	 * @return the geographical area of the given screen area, limited to the map.
+	 */
+	private BoundingBox getBoundingBox(Rectangle screenArea, byte zoomLevel, Point topLeftPoint, int tileSize) {
+		long mapSize = MercatorProjection.getMapSize(zoomLevel, tileSize);
+		double pixelXMin = Math.max(0, topLeftPoint.x + screenArea.left);
+		double pixelYMin = Math.max(0, topLeftPoint.y + screenArea.top);
+		double pixelXMax = Math.min(mapSize, topLeftPoint.x + screenArea.right);
+		double pixelYMax = Math.min(mapSize, topLeftPoint.y + screenArea.bottom);
+
+		double minLatitude = MercatorProjection.pixelYToLatitude(pixelYMax, zoomLevel, tileSize);
+		double minLongitude = MercatorProjection.pixelXToLongitude(pixelXMin, zoomLevel, tileSize);
+		double maxLatitude = MercatorProjection.pixelYToLatitude(pixelYMin, zoomLevel, tileSize);
+		double maxLongitude = MercatorProjection.pixelXToLongitude(pixelXMax, zoomLevel, tileSize);
+		return new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+	}
+
+	/**
+	 * @return the screen area with whole pixel coordinates that covers the given geographical areas and a margin of
+	 *         one tile size for labels and symbols that extend beyond them, limited to the canvas. An empty rectangle
+	 *         if no area is visible.
+	 */
+	private Rectangle getScreenArea(List<BoundingBox> boundingBoxes, MapPosition mapPosition, Point topLeftPoint,
+			Dimension canvasDimension, int tileSize) {
+		double left = canvasDimension.width;
+		double top = canvasDimension.height;
+		double right = 0;
+		double bottom = 0;
+		for (BoundingBox boundingBox : boundingBoxes) {
+			double x1 = MercatorProjection.longitudeToPixelX(boundingBox.minLongitude, mapPosition.zoomLevel, tileSize);
+			double y1 = MercatorProjection.latitudeToPixelY(boundingBox.maxLatitude, mapPosition.zoomLevel, tileSize);
+			double x2 = MercatorProjection.longitudeToPixelX(boundingBox.maxLongitude, mapPosition.zoomLevel, tileSize);
+			double y2 = MercatorProjection.latitudeToPixelY(boundingBox.minLatitude, mapPosition.zoomLevel, tileSize);
+			left = Math.min(left, x1 - topLeftPoint.x - tileSize);
+			top = Math.min(top, y1 - topLeftPoint.y - tileSize);
+			right = Math.max(right, x2 - topLeftPoint.x + tileSize);
+			bottom = Math.max(bottom, y2 - topLeftPoint.y + tileSize);
+		}
+		left = Math.max(0, Math.floor(left));
+		top = Math.max(0, Math.floor(top));
+		right = Math.min(canvasDimension.width, Math.ceil(right));
+		bottom = Math.min(canvasDimension.height, Math.ceil(bottom));
+		if (right <= left || bottom <= top) {
+			return new Rectangle(0, 0, 0, 0);
+		}
+		return new Rectangle(left, top, right, bottom);
+	}
+
+	/**
+	 * Clears the given screen area and draws all layers clipped to it.
+	 */
+	private void redrawArea(Rectangle screenArea, byte zoomLevel, Point topLeftPoint, int tileSize) {
+		int left = (int) screenArea.left;
+		int top = (int) screenArea.top;
+		this.drawingCanvas.setClip(left, top, (int) screenArea.right - left, (int) screenArea.bottom - top);
+		this.drawingCanvas.fillColor(Color.TRANSPARENT);
+		// elements of the neighbouring tiles may reach into the redrawn area
+		BoundingBox boundingBox = getBoundingBox(screenArea.envelope(tileSize), zoomLevel, topLeftPoint, tileSize);
+		drawLayers(boundingBox, zoomLevel, topLeftPoint);
+		this.drawingCanvas.resetClip();
+	}
+
+	private void sleepUntilNextFrame(long startTime) throws InterruptedException {
+		long elapsedMilliseconds = (System.nanoTime() - startTime) / 1000000;
+		long timeSleep = MILLISECONDS_PER_FRAME - elapsedMilliseconds;
+
+		if (timeSleep > 1 && !isInterrupted()) {
+			sleep(timeSleep);
+		}
+	}
 }
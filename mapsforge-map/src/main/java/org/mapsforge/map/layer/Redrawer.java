@@ -14,9 +14,20 @@
  */
 package org.mapsforge.map.layer;
 
+import org.mapsforge.core.model.BoundingBox;
+
 public interface Redrawer {
 	/**
 	 * Requests an asynchronous redrawing of all layers.
 	 */
 	void redrawLayers();
+
+	/**
+	 * Requests an asynchronous redrawing of all layers in the given area, e.g. where a tile has arrived. The
+	 * implementation may redraw more than the given area.
+	 *
+	 * @param boundingBox
+	 *            the geographical area whose content has changed.
+	 */
+	void redrawLayers(BoundingBox boundingBox);
 }
@@ -21,7 +21,7 @@ import java.util.Set;
 
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.graphics.Canvas;
-import org.mapsforge.core.graphics.Matrix;
+import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tile;
@@ -38,13 +38,15 @@ public abstract class TileLayer<T extends Job> extends Layer {
 	protected JobQueue<T> jobQueue;
 	protected final TileCache tileCache;
 	private final MapViewPosition mapViewPosition;
-	private final Matrix matrix;
+	private final TilePlaceholders tilePlaceholders;
 
-	public TileLayer(TileCache tileCache, MapViewPosition mapViewPosition, Matrix matrix, boolean isTransparent) {
-		this(tileCache, mapViewPosition, matrix, isTransparent, true);
+	public TileLayer(TileCache tileCache, MapViewPosition mapViewPosition, GraphicFactory graphicFactory,
+			boolean isTransparent) {
+		this(tileCache, mapViewPosition, graphicFactory, isTransparent, true);
 	}
 
-	public TileLayer(TileCache tileCache, MapViewPosition mapViewPosition, Matrix matrix, boolean isTransparent, boolean hasJobQueue) {
+	public TileLayer(TileCache tileCache, MapViewPosition mapViewPosition, GraphicFactory graphicFactory,
+			boolean isTransparent, boolean hasJobQueue) {
 		super();
 
 		if (tileCache == null) {
@@ -56,8 +58,8 @@ public abstract class TileLayer<T extends Job> extends Layer {
 		this.hasJobQueue = hasJobQueue;
 		this.tileCache = tileCache;
 		this.mapViewPosition = mapViewPosition;
-		this.matrix = matrix;
 		this.isTransparent = isTransparent;
+		this.tilePlaceholders = new TilePlaceholders(this, graphicFactory, isTransparent);
 	}
 
 	@Override
@@ -65,16 +67,8 @@ public abstract class TileLayer<T extends Job> extends Layer {
 		List<TilePosition> tilePositions = LayerUtil.getTilePositions(boundingBox, zoomLevel, topLeftPoint,
 				this.displayModel.getTileSize());
 
-		// In a rotation situation it is possible that drawParentTileBitmap sets the
-		// clipping bounds to portrait, while the device is just being rotated into
-		// landscape: the result is a partially painted screen that only goes away
-		// after zooming (which has the effect of resetting the clip bounds if drawParentTileBitmap
-		// is called again).
-		// Always resetting the clip bounds here seems to avoid the problem,
-		// I assume that this is a pretty cheap operation, otherwise it would be better
-		// to hook this into the onConfigurationChanged call chain.
-		canvas.resetClip();
-
+		// the canvas may be clipped to the area that the layer manager redraws, so the clip must not be reset and
+		// the background is only filled within it
 		if (!isTransparent) {
 			canvas.fillColor(this.displayModel.getBackgroundColor());
 		}
@@ -84,6 +78,7 @@ public abstract class TileLayer<T extends Job> extends Layer {
 			jobs.add(createJob(tilePosition.tile));
 		}
 		this.tileCache.setWorkingSet(jobs);
+		this.tilePlaceholders.setMinimumCapacity(tilePositions.size());
 
 		boolean waitingForCachedTiles = false;
 
@@ -100,8 +95,13 @@ public abstract class TileLayer<T extends Job> extends Layer {
 				} else {
 					waitingForCachedTiles = true;
 				}
-				drawParentTileBitmap(canvas, point, tile);
+				Bitmap placeholder = this.tilePlaceholders.get(job);
+				if (placeholder != null) {
+					canvas.drawBitmap(placeholder, (int) Math.round(point.x), (int) Math.round(point.y));
+					placeholder.decrementRefCount();
+				}
 			} else {
+				this.tilePlaceholders.remove(job);
 				retrieveLabelsOnly(job);
 				canvas.drawBitmap(bitmap, (int) Math.round(point.x), (int) Math.round(point.y));
 				bitmap.decrementRefCount();
@@ -116,6 +116,12 @@ public abstract class TileLayer<T extends Job> extends Layer {
 		}
 	}
 
+	@Override
+	public void onDestroy() {
+		this.tilePlaceholders.clear();
+		super.onDestroy();
+	}
+
 	@Override
 	public synchronized void setDisplayModel(DisplayModel displayModel) {
 		super.setDisplayModel(displayModel);
@@ -128,48 +134,4 @@ public abstract class TileLayer<T extends Job> extends Layer {
 
 	protected abstract T createJob(Tile tile);
 	protected void retrieveLabelsOnly(T job) {}
-
-	private void drawParentTileBitmap(Canvas canvas, Point point, Tile tile) {
-		Tile cachedParentTile = getCachedParentTile(tile, 4);
-		if (cachedParentTile != null) {
-			Bitmap bitmap = this.tileCache.getImmediately(createJob(cachedParentTile));
-			if (bitmap != null) {
-				int tileSize = this.displayModel.getTileSize();
-				long translateX = tile.getShiftX(cachedParentTile) * tileSize;
-				long translateY = tile.getShiftY(cachedParentTile) * tileSize;
-				byte zoomLevelDiff = (byte) (tile.zoomLevel - cachedParentTile.zoomLevel);
-				float scaleFactor = (float) Math.pow(2, zoomLevelDiff);
-
-				int x = (int) Math.round(point.x);
-				int y = (int) Math.round(point.y);
-
-				this.matrix.reset();
-				this.matrix.translate(x - translateX, y - translateY);
-				this.matrix.scale(scaleFactor, scaleFactor);
-
-				canvas.setClip(x, y, this.displayModel.getTileSize(), this.displayModel.getTileSize());
-				canvas.drawBitmap(bitmap, this.matrix);
-				canvas.resetClip();
-				bitmap.decrementRefCount();
-			}
-		}
-	}
-
-	/**
-	 * @return the first parent object of the given object whose tileCacheBitmap is cached (may be null).
-	 */
-	private Tile getCachedParentTile(Tile tile, int level) {
-		if (level == 0) {
-			return null;
-		}
-
-		Tile parentTile = tile.getParent();
-		if (parentTile == null) {
-			return null;
-		} else if (this.tileCache.containsKey(createJob(parentTile))) {
-			return parentTile;
-		}
-
-		return getCachedParentTile(parentTile, level - 1);
-	}
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Matrix;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * Composes placeholders for tiles which are not available yet, from a cached parent tile up to
+ * {@link #MAX_PARENT_LEVELS} zoom levels above or from the four cached child tiles one zoom level below.
+ * <p>
+ * The sources are taken from the tile cache with
+ * {@link org.mapsforge.map.layer.cache.TileCache#getImmediately(Job)}, so only tiles that are in memory are used. The
+ * child tiles are preferred, if one of them is missing the closest parent is used instead.
+ * <p>
+ * The resampled placeholders are kept in a small LRU cache by the job of the missing tile, so that they are not scaled
+ * again in every frame. A placeholder is composed again when a better source becomes available and is dropped once
+ * the real tile arrives. The capacity of the cache grows with the number of visible tiles.
+ */
+final class TilePlaceholders {
+	private static class Placeholder {
+		final Bitmap bitmap;
+		final byte sourceZoomLevel;
+
+		Placeholder(Bitmap bitmap, byte sourceZoomLevel) {
+			this.bitmap = bitmap;
+			this.sourceZoomLevel = sourceZoomLevel;
+		}
+	}
+
+	private static class PlaceholderLRUCache extends LinkedHashMap<Job, Placeholder> {
+		private static final long serialVersionUID = 1L;
+
+		int capacity;
+
+		PlaceholderLRUCache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Job, Placeholder> eldest) {
+			if (size() > this.capacity) {
+				eldest.getValue().bitmap.decrementRefCount();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The maximum number of zoom levels a parent tile may be above the missing tile.
+	 */
+	static final int MAX_PARENT_LEVELS = 4;
+
+	private static final int MIN_CAPACITY = 4;
+
+	/**
+	 * @return the number of zoom levels between the tile and the source, where the child tiles have a distance of 0.
+	 */
+	private static int getDistance(Tile tile, byte sourceZoomLevel) {
+		return Math.max(0, tile.zoomLevel - sourceZoomLevel);
+	}
+
+	private static Tile[] getChildren(Tile tile) {
+		byte zoomLevel = (byte) (tile.zoomLevel + 1);
+		int tileX = tile.tileX * 2;
+		int tileY = tile.tileY * 2;
+		return new Tile[] { new Tile(tileX, tileY, zoomLevel, tile.tileSize),
+				new Tile(tileX + 1, tileY, zoomLevel, tile.tileSize),
+				new Tile(tileX, tileY + 1, zoomLevel, tile.tileSize),
+				new Tile(tileX + 1, tileY + 1, zoomLevel, tile.tileSize) };
+	}
+
+	private final GraphicFactory graphicFactory;
+	private final boolean isTransparent;
+	private final Matrix matrix;
+	private final PlaceholderLRUCache placeholders;
+	private final TileLayer<?> tileLayer;
+
+	TilePlaceholders(TileLayer<?> tileLayer, GraphicFactory graphicFactory, boolean isTransparent) {
+		this.tileLayer = tileLayer;
+		this.graphicFactory = graphicFactory;
+		this.isTransparent = isTransparent;
+		this.matrix = graphicFactory.createMatrix();
+		this.placeholders = new PlaceholderLRUCache(MIN_CAPACITY);
+	}
+
+	/**
+	 * Releases all placeholders.
+	 */
+	synchronized void clear() {
+		for (Placeholder placeholder : this.placeholders.values()) {
+			placeholder.bitmap.decrementRefCount();
+		}
+		this.placeholders.clear();
+	}
+
+	/**
+	 * @return the placeholder for the tile of the given job with an incremented reference count, or null if there is
+	 *         no source to compose one from.
+	 */
+	synchronized Bitmap get(Job job) {
+		Tile tile = job.tile;
+		Placeholder placeholder = this.placeholders.get(job);
+		// only sources that are better than the one of the cached placeholder are tried
+		int maxDistance = placeholder == null ? MAX_PARENT_LEVELS : getDistance(tile, placeholder.sourceZoomLevel) - 1;
+
+		Bitmap bitmap = null;
+		byte sourceZoomLevel = -1;
+		if (maxDistance >= 0 && tile.zoomLevel < Byte.MAX_VALUE) {
+			bitmap = composeFromChildren(tile);
+			sourceZoomLevel = (byte) (tile.zoomLevel + 1);
+		}
+		Tile parent = tile.getParent();
+		for (int distance = 1; bitmap == null && distance <= maxDistance && parent != null; ++distance) {
+			bitmap = composeFromParent(tile, parent);
+			sourceZoomLevel = parent.zoomLevel;
+			parent = parent.getParent();
+		}
+
+		if (bitmap != null) {
+			if (placeholder != null) {
+				placeholder.bitmap.decrementRefCount();
+			}
+			placeholder = new Placeholder(bitmap, sourceZoomLevel);
+			this.placeholders.put(job, placeholder);
+		} else if (placeholder == null) {
+			return null;
+		}
+		placeholder.bitmap.incrementRefCount();
+		return placeholder.bitmap;
+	}
+
+	/**
+	 * Drops the placeholder of the tile of the given job, called when the real tile is available.
+	 */
+	synchronized void remove(Job job) {
+		Placeholder placeholder = this.placeholders.remove(job);
+		if (placeholder != null) {
+			placeholder.bitmap.decrementRefCount();
+		}
+	}
+
+	/**
+	 * Makes sure that the cache can hold at least the given number of placeholders.
+	 */
+	synchronized void setMinimumCapacity(int capacity) {
+		this.placeholders.capacity = Math.max(this.placeholders.capacity, capacity);
+	}
+
+	/**
+	 * @return the number of cached placeholders.
+	 */
+	synchronized int size() {
+		return this.placeholders.size();
+	}
+
+	/**
+	 * @return a placeholder composed from the four child tiles, or null if one of them is not in memory.
+	 */
+	private Bitmap composeFromChildren(Tile tile) {
+		Tile[] children = getChildren(tile);
+		Bitmap[] bitmaps = new Bitmap[children.length];
+		try {
+			for (int i = 0; i < children.length; ++i) {
+				bitmaps[i] = getCachedBitmap(children[i]);
+				if (bitmaps[i] == null) {
+					return null;
+				}
+			}
+			Bitmap placeholder = this.graphicFactory.createTileBitmap(tile.tileSize, this.isTransparent);
+			Canvas canvas = createCanvas(placeholder);
+			float halfTileSize = tile.tileSize / 2f;
+			for (int i = 0; i < children.length; ++i) {
+				this.matrix.reset();
+				this.matrix.translate((i % 2) * halfTileSize, (i / 2) * halfTileSize);
+				this.matrix.scale(0.5f, 0.5f);
+				canvas.drawBitmap(bitmaps[i], this.matrix);
+			}
+			canvas.destroy();
+			return placeholder;
+		} finally {
+			for (Bitmap bitmap : bitmaps) {
+				if (bitmap != null) {
+					bitmap.decrementRefCount();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a placeholder scaled from the given parent tile, or null if it is not in memory.
+	 */
+	private Bitmap composeFromParent(Tile tile, Tile parent) {
+		Bitmap bitmap = getCachedBitmap(parent);
+		if (bitmap == null) {
+			return null;
+		}
+		try {
+			Bitmap placeholder = this.graphicFactory.createTileBitmap(tile.tileSize, this.isTransparent);
+			Canvas canvas = createCanvas(placeholder);
+			long translateX = tile.getShiftX(parent) * (long) tile.tileSize;
+			long translateY = tile.getShiftY(parent) * (long) tile.tileSize;
+			float scaleFactor = (float) Math.pow(2, tile.zoomLevel - parent.zoomLevel);
+			this.matrix.reset();
+			this.matrix.translate(-translateX, -translateY);
+			this.matrix.scale(scaleFactor, scaleFactor);
+			canvas.drawBitmap(bitmap, this.matrix);
+			canvas.destroy();
+			return placeholder;
+		} finally {
+			bitmap.decrementRefCount();
+		}
+	}
+
+	private Canvas createCanvas(Bitmap bitmap) {
+		Canvas canvas = this.graphicFactory.createCanvas();
+		canvas.setBitmap(bitmap);
+		// tile bitmaps may be recycled, so the previous content is always cleared
+		if (this.isTransparent) {
+			canvas.fillColor(Color.TRANSPARENT);
+		} else {
+			canvas.fillColor(this.tileLayer.displayModel.getBackgroundColor());
+		}
+		return canvas;
+	}
+
+	private Bitmap getCachedBitmap(Tile tile) {
+		return this.tileLayer.tileCache.getImmediately(this.tileLayer.createJob(tile));
+	}
+}
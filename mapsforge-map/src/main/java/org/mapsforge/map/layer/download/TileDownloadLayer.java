@@ -37,7 +37,7 @@ public class TileDownloadLayer extends TileLayer<DownloadJob> {
 
 	public TileDownloadLayer(TileCache tileCache, MapViewPosition mapViewPosition, TileSource tileSource,
 			GraphicFactory graphicFactory) {
-		super(tileCache, mapViewPosition, graphicFactory.createMatrix(), tileSource.hasAlpha());
+		super(tileCache, mapViewPosition, graphicFactory, tileSource.hasAlpha());
 
 		this.tileCache = tileCache;
 		this.tileSource = tileSource;
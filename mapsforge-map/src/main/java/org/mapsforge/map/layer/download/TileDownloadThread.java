@@ -83,7 +83,7 @@ class TileDownloadThread extends PausableThread {
 		if (!isInterrupted() && bitmap != null) {
 			bitmap.scaleTo(this.displayModel.getTileSize(), this.displayModel.getTileSize());
 			this.tileCache.put(downloadJob, bitmap);
-			this.layer.requestRedraw();
+			this.layer.requestRedraw(downloadJob.tile.getBoundingBox());
 		}
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * A {@code Feature} is a lightweight map object which is drawn by a {@link FeatureLayer}. Unlike a {@link Marker} it
+ * is not a layer of its own, so that any number of features can share one layer and its spatial index.
+ * <p>
+ * A feature belongs to at most one {@link FeatureLayer}. Its setters synchronize on that layer and update the index,
+ * but they do not request a redraw, see {@link FeatureLayer#redrawChanges()}.
+ * <p>
+ * Geometries are kept in Mercator coordinates normalized to the range [0, 1], so that drawing at any zoom level only
+ * scales them by the map size.
+ */
+public abstract class Feature {
+	/**
+	 * The distance in pixels within which a tap hits a feature.
+	 */
+	static final int TAP_TOLERANCE = 5;
+
+	static double latitudeToY(double latitude) {
+		return MercatorProjection.latitudeToPixelY(latitude, (byte) 0, 1);
+	}
+
+	static double longitudeToX(double longitude) {
+		return MercatorProjection.longitudeToPixelX(longitude, (byte) 0, 1);
+	}
+
+	int cellMaxX;
+	int cellMaxY;
+	int cellMinX;
+	int cellMinY;
+	byte cellZoomLevel;
+	FeatureLayer featureLayer;
+	boolean indexed;
+	double maxX;
+	double maxY;
+	double minX;
+	double minY;
+	int queryStamp;
+	long sequenceNumber;
+
+	Feature() {
+		// only the features of this package can be drawn by a FeatureLayer
+	}
+
+	/**
+	 * @return the {@link FeatureLayer} this feature belongs to (may be null).
+	 */
+	public final FeatureLayer getFeatureLayer() {
+		return this.featureLayer;
+	}
+
+	/**
+	 * @param pixelX
+	 *            the absolute x coordinate in pixels.
+	 * @param pixelY
+	 *            the absolute y coordinate in pixels.
+	 * @param mapSize
+	 *            the size of the map in pixels at the current zoom level.
+	 * @return true if this feature is drawn at the given position.
+	 */
+	abstract boolean contains(double pixelX, double pixelY, double mapSize);
+
+	abstract void draw(Canvas canvas, double mapSize, Point topLeftPoint);
+
+	/**
+	 * Must be called with the lock of this feature held after its geometry or its appearance has changed.
+	 */
+	final void geometryChanged() {
+		if (this.featureLayer != null) {
+			this.featureLayer.reindex(this);
+		}
+	}
+
+	/**
+	 * @return the lock which guards the state of this feature.
+	 */
+	final Object getLock() {
+		FeatureLayer layer = this.featureLayer;
+		return layer != null ? layer : this;
+	}
+
+	/**
+	 * @return the maximum distance in pixels by which the drawing of this feature exceeds its geometry.
+	 */
+	abstract int getPixelMargin();
+
+	final boolean intersects(double otherMinX, double otherMinY, double otherMaxX, double otherMaxY) {
+		return this.maxX >= otherMinX && this.maxY >= otherMinY && this.minX <= otherMaxX && this.minY <= otherMaxY;
+	}
+
+	/**
+	 * Computes the normalized bounds of this feature.
+	 *
+	 * @return false if this feature has nothing to draw.
+	 */
+	abstract boolean updateBounds();
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.layer.Layer;
+
+/**
+ * A {@code FeatureLayer} draws a large number of {@link Feature Features} as a single layer.
+ * <p>
+ * The features are kept in a grid of cells whose size equals the tiles of a fixed zoom level, so that drawing and hit
+ * testing only visit the features near the requested area. A feature that would cover many cells is kept in the grid
+ * of the highest lower zoom level at which it covers only a few cells instead, so that large features are found
+ * through the index as well. Bulk operations request a single redraw of the changed area. Changes made through the
+ * setters of the features are collected until {@link #redrawChanges()} is called.
+ * <p>
+ * Features are drawn in the order in which they have been added, the last added feature is on top.
+ */
+public class FeatureLayer extends Layer {
+	private static final class SequenceComparator implements Comparator<Feature> {
+		static final SequenceComparator INSTANCE = new SequenceComparator();
+
+		private SequenceComparator() {
+			// do nothing
+		}
+
+		@Override
+		public int compare(Feature feature1, Feature feature2) {
+			if (feature1.sequenceNumber < feature2.sequenceNumber) {
+				return -1;
+			} else if (feature1.sequenceNumber > feature2.sequenceNumber) {
+				return 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * The default zoom level whose tiles define the grid cells.
+	 */
+	public static final byte DEFAULT_GRID_ZOOM_LEVEL = 14;
+
+	/**
+	 * Features that cover more grid cells are stored in the grid of a lower zoom level.
+	 */
+	private static final int MAX_CELLS_PER_FEATURE = 16;
+
+	private static long getCellKey(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xffffffffL);
+	}
+
+	private static int toCell(double normalized, byte zoomLevel) {
+		int cellsPerAxis = 1 << zoomLevel;
+		return (int) Math.max(0, Math.min(cellsPerAxis - 1, Math.floor(normalized * cellsPerAxis)));
+	}
+
+	/**
+	 * The occupied cells of the grids by their zoom level, from 0 up to the grid zoom level.
+	 */
+	private final List<Map<Long, List<Feature>>> cells;
+	private double dirtyMaxX;
+	private double dirtyMaxY;
+	private double dirtyMinX = Double.MAX_VALUE;
+	private double dirtyMinY = Double.MAX_VALUE;
+	private final byte gridZoomLevel;
+	private int maxPixelMargin;
+	private long nextSequenceNumber;
+	private final List<Feature> queryResult = new ArrayList<Feature>();
+	private int queryStamp;
+	private int size;
+	// features without geometry, they are not drawn but still belong to this layer
+	private final List<Feature> unindexedFeatures = new ArrayList<Feature>();
+	private byte zoomLevel = -1;
+
+	/**
+	 * Creates a new layer with a grid of the {@link #DEFAULT_GRID_ZOOM_LEVEL}.
+	 */
+	public FeatureLayer() {
+		this(DEFAULT_GRID_ZOOM_LEVEL);
+	}
+
+	/**
+	 * @param gridZoomLevel
+	 *            the zoom level whose tiles define the grid cells, higher values suit denser features.
+	 */
+	public FeatureLayer(byte gridZoomLevel) {
+		super();
+
+		if (gridZoomLevel < 0 || gridZoomLevel > 30) {
+			throw new IllegalArgumentException("invalid grid zoom level: " + gridZoomLevel);
+		}
+		this.gridZoomLevel = gridZoomLevel;
+		this.cells = new ArrayList<Map<Long, List<Feature>>>(gridZoomLevel + 1);
+		for (int i = 0; i <= gridZoomLevel; ++i) {
+			this.cells.add(new HashMap<Long, List<Feature>>());
+		}
+	}
+
+	/**
+	 * Adds the given feature on top of all other features and requests a redraw of its area.
+	 *
+	 * @param feature
+	 *            the feature to add, which must not belong to a layer.
+	 */
+	public synchronized void add(Feature feature) {
+		addInternal(feature);
+		redrawChanges();
+	}
+
+	/**
+	 * Adds the given features in their iteration order and requests a single redraw of their area.
+	 *
+	 * @param features
+	 *            the features to add, which must not belong to a layer.
+	 */
+	public synchronized void addAll(Collection<? extends Feature> features) {
+		for (Feature feature : features) {
+			addInternal(feature);
+		}
+		redrawChanges();
+	}
+
+	/**
+	 * Removes all features and requests a redraw of their area.
+	 */
+	public synchronized void clear() {
+		for (Map<Long, List<Feature>> grid : this.cells) {
+			for (List<Feature> cell : grid.values()) {
+				for (Feature feature : cell) {
+					detach(feature);
+				}
+			}
+			grid.clear();
+		}
+		for (Feature feature : this.unindexedFeatures) {
+			detach(feature);
+		}
+		this.unindexedFeatures.clear();
+		this.maxPixelMargin = 0;
+		this.size = 0;
+		redrawChanges();
+	}
+
+	@Override
+	public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+		this.zoomLevel = zoomLevel;
+		if (this.size == 0) {
+			return;
+		}
+
+		double mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
+		double margin = this.maxPixelMargin / mapSize;
+		List<Feature> features = query(Feature.longitudeToX(boundingBox.minLongitude) - margin,
+				Feature.latitudeToY(boundingBox.maxLatitude) - margin,
+				Feature.longitudeToX(boundingBox.maxLongitude) + margin,
+				Feature.latitudeToY(boundingBox.minLatitude) + margin);
+		Collections.sort(features, SequenceComparator.INSTANCE);
+		for (int i = 0, n = features.size(); i < n; ++i) {
+			features.get(i).draw(canvas, mapSize, topLeftPoint);
+		}
+		features.clear();
+	}
+
+	/**
+	 * Finds the topmost feature that is drawn at the given position at the zoom level of the last drawn frame.
+	 *
+	 * @param latLong
+	 *            the geographical position, for example of a tap.
+	 * @return the topmost feature at the given position, null if there is none or if nothing has been drawn yet.
+	 */
+	public synchronized Feature getFeature(LatLong latLong) {
+		if (this.zoomLevel < 0) {
+			return null;
+		}
+		return getFeature(latLong, this.zoomLevel);
+	}
+
+	/**
+	 * Finds the topmost feature that is drawn at the given position.
+	 *
+	 * @param latLong
+	 *            the geographical position, for example of a tap.
+	 * @param zoomLevel
+	 *            the zoom level at which the features are drawn.
+	 * @return the topmost feature at the given position, null if there is none.
+	 */
+	public synchronized Feature getFeature(LatLong latLong, byte zoomLevel) {
+		if (this.size == 0) {
+			return null;
+		}
+
+		double mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
+		double x = Feature.longitudeToX(latLong.longitude);
+		double y = Feature.latitudeToY(latLong.latitude);
+		double margin = (this.maxPixelMargin + Feature.TAP_TOLERANCE) / mapSize;
+		List<Feature> candidates = query(x - margin, y - margin, x + margin, y + margin);
+		Feature topmost = null;
+		for (int i = 0, n = candidates.size(); i < n; ++i) {
+			Feature candidate = candidates.get(i);
+			if ((topmost == null || candidate.sequenceNumber > topmost.sequenceNumber)
+					&& candidate.contains(x * mapSize, y * mapSize, mapSize)) {
+				topmost = candidate;
+			}
+		}
+		candidates.clear();
+		return topmost;
+	}
+
+	/**
+	 * @param boundingBox
+	 *            the geographical area.
+	 * @return a new list of the features whose geometry intersects the given area, in drawing order.
+	 */
+	public synchronized List<Feature> getFeatures(BoundingBox boundingBox) {
+		List<Feature> features = query(Feature.longitudeToX(boundingBox.minLongitude),
+				Feature.latitudeToY(boundingBox.maxLatitude), Feature.longitudeToX(boundingBox.maxLongitude),
+				Feature.latitudeToY(boundingBox.minLatitude));
+		List<Feature> result = new ArrayList<Feature>(features);
+		features.clear();
+		Collections.sort(result, SequenceComparator.INSTANCE);
+		return result;
+	}
+
+	@Override
+	public boolean onLongPress(LatLong tapLatLong, Point layerXY, Point tapXY) {
+		Feature feature = getFeature(tapLatLong);
+		return feature != null && onLongPress(feature, tapLatLong);
+	}
+
+	@Override
+	public boolean onTap(LatLong tapLatLong, Point layerXY, Point tapXY) {
+		Feature feature = getFeature(tapLatLong);
+		return feature != null && onTap(feature, tapLatLong);
+	}
+
+	/**
+	 * Requests a redraw of the area in which features have been changed, added or removed since the last request.
+	 * Call this after changing features through their setters.
+	 */
+	public synchronized void redrawChanges() {
+		if (this.dirtyMinX > this.dirtyMaxX) {
+			return;
+		}
+
+		double minLatitude = MercatorProjection.pixelYToLatitude(Math.min(1, this.dirtyMaxY), (byte) 0, 1);
+		double minLongitude = MercatorProjection.pixelXToLongitude(Math.max(0, this.dirtyMinX), (byte) 0, 1);
+		double maxLatitude = MercatorProjection.pixelYToLatitude(Math.max(0, this.dirtyMinY), (byte) 0, 1);
+		double maxLongitude = MercatorProjection.pixelXToLongitude(Math.min(1, this.dirtyMaxX), (byte) 0, 1);
+		this.dirtyMinX = Double.MAX_VALUE;
+		this.dirtyMinY = Double.MAX_VALUE;
+		this.dirtyMaxX = 0;
+		this.dirtyMaxY = 0;
+		requestRedraw(new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude));
+	}
+
+	/**
+	 * Removes the given feature and requests a redraw of its area.
+	 *
+	 * @param feature
+	 *            the feature to remove.
+	 * @return true if the feature belonged to this layer.
+	 */
+	public synchronized boolean remove(Feature feature) {
+		boolean removed = removeInternal(feature);
+		redrawChanges();
+		return removed;
+	}
+
+	/**
+	 * Removes the given features and requests a single redraw of their area.
+	 *
+	 * @param features
+	 *            the features to remove.
+	 */
+	public synchronized void removeAll(Collection<? extends Feature> features) {
+		for (Feature feature : features) {
+			removeInternal(feature);
+		}
+		redrawChanges();
+	}
+
+	/**
+	 * @return the number of features in this layer.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Handles a long press on a feature. The default implementation of this method does nothing and returns false.
+	 *
+	 * @param feature
+	 *            the topmost feature at the position of the long press.
+	 * @param tapLatLong
+	 *            the geographic position of the long press.
+	 * @return true if the long press event was handled, false otherwise.
+	 */
+	protected boolean onLongPress(Feature feature, LatLong tapLatLong) {
+		return false;
+	}
+
+	/**
+	 * Handles a tap on a feature. The default implementation of this method does nothing and returns false.
+	 *
+	 * @param feature
+	 *            the topmost feature at the position of the tap.
+	 * @param tapLatLong
+	 *            the geographic position of the tap.
+	 * @return true if the tap event was handled, false otherwise.
+	 */
+	protected boolean onTap(Feature feature, LatLong tapLatLong) {
+		return false;
+	}
+
+	/**
+	 * Updates the index after the geometry or the appearance of the given feature has changed.
+	 */
+	synchronized void reindex(Feature feature) {
+		if (feature.featureLayer != this) {
+			throw new IllegalStateException("feature does not belong to this layer");
+		}
+
+		if (feature.indexed) {
+			extendDirtyArea(feature);
+		}
+		int cellMinX = feature.cellMinX;
+		int cellMinY = feature.cellMinY;
+		int cellMaxX = feature.cellMaxX;
+		int cellMaxY = feature.cellMaxY;
+		byte cellZoomLevel = feature.cellZoomLevel;
+		boolean wasIndexed = feature.indexed;
+
+		boolean indexed = feature.updateBounds();
+		if (indexed && wasIndexed && getCellZoomLevel(feature) == cellZoomLevel
+				&& toCell(feature.minX, cellZoomLevel) == cellMinX && toCell(feature.minY, cellZoomLevel) == cellMinY
+				&& toCell(feature.maxX, cellZoomLevel) == cellMaxX && toCell(feature.maxY, cellZoomLevel) == cellMaxY) {
+			// the feature stays in the same cells
+			extendDirtyArea(feature);
+			this.maxPixelMargin = Math.max(this.maxPixelMargin, feature.getPixelMargin());
+			return;
+		}
+
+		if (wasIndexed) {
+			removeFromCells(feature);
+		} else {
+			this.unindexedFeatures.remove(feature);
+		}
+		feature.indexed = false;
+		if (indexed) {
+			addToCells(feature);
+		} else {
+			this.unindexedFeatures.add(feature);
+		}
+	}
+
+	private void addInternal(Feature feature) {
+		if (feature.featureLayer != null) {
+			throw new IllegalArgumentException("feature already belongs to a layer");
+		}
+
+		feature.featureLayer = this;
+		feature.sequenceNumber = this.nextSequenceNumber++;
+		feature.indexed = false;
+		if (feature.updateBounds()) {
+			addToCells(feature);
+		} else {
+			this.unindexedFeatures.add(feature);
+		}
+		++this.size;
+	}
+
+	private void addToCells(Feature feature) {
+		byte cellZoomLevel = getCellZoomLevel(feature);
+		feature.cellZoomLevel = cellZoomLevel;
+		feature.cellMinX = toCell(feature.minX, cellZoomLevel);
+		feature.cellMinY = toCell(feature.minY, cellZoomLevel);
+		feature.cellMaxX = toCell(feature.maxX, cellZoomLevel);
+		feature.cellMaxY = toCell(feature.maxY, cellZoomLevel);
+		Map<Long, List<Feature>> grid = this.cells.get(cellZoomLevel);
+		for (int cellX = feature.cellMinX; cellX <= feature.cellMaxX; ++cellX) {
+			for (int cellY = feature.cellMinY; cellY <= feature.cellMaxY; ++cellY) {
+				Long key = Long.valueOf(getCellKey(cellX, cellY));
+				List<Feature> cell = grid.get(key);
+				if (cell == null) {
+					cell = new ArrayList<Feature>();
+					grid.put(key, cell);
+				}
+				cell.add(feature);
+			}
+		}
+		feature.indexed = true;
+		this.maxPixelMargin = Math.max(this.maxPixelMargin, feature.getPixelMargin());
+		extendDirtyArea(feature);
+	}
+
+	private void collect(List<Feature> features, double minX, double minY, double maxX, double maxY) {
+		for (int i = 0, n = features.size(); i < n; ++i) {
+			Feature feature = features.get(i);
+			if (feature.queryStamp != this.queryStamp && feature.intersects(minX, minY, maxX, maxY)) {
+				feature.queryStamp = this.queryStamp;
+				this.queryResult.add(feature);
+			}
+		}
+	}
+
+	private void detach(Feature feature) {
+		if (feature.featureLayer == null) {
+			// a feature that covers several cells has already been detached
+			return;
+		}
+		if (feature.indexed) {
+			extendDirtyArea(feature);
+		}
+		feature.featureLayer = null;
+		feature.indexed = false;
+	}
+
+	private void extendDirtyArea(Feature feature) {
+		this.dirtyMinX = Math.min(this.dirtyMinX, feature.minX);
+		this.dirtyMinY = Math.min(this.dirtyMinY, feature.minY);
+		this.dirtyMaxX = Math.max(this.dirtyMaxX, feature.maxX);
+		this.dirtyMaxY = Math.max(this.dirtyMaxY, feature.maxY);
+	}
+
+	/**
+	 * @return the highest zoom level up to the grid zoom level at which the feature covers at most
+	 *         {@link #MAX_CELLS_PER_FEATURE} cells.
+	 */
+	private byte getCellZoomLevel(Feature feature) {
+		byte zoomLevel = this.gridZoomLevel;
+		while (zoomLevel > 0) {
+			long numberOfCells = (long) (toCell(feature.maxX, zoomLevel) - toCell(feature.minX, zoomLevel) + 1)
+					* (toCell(feature.maxY, zoomLevel) - toCell(feature.minY, zoomLevel) + 1);
+			if (numberOfCells <= MAX_CELLS_PER_FEATURE) {
+				break;
+			}
+			--zoomLevel;
+		}
+		return zoomLevel;
+	}
+
+	/**
+	 * @return the reused list of the indexed features which intersect the given normalized area, in no particular
+	 *         order. The caller must clear the list.
+	 */
+	private List<Feature> query(double minX, double minY, double maxX, double maxY) {
+		++this.queryStamp;
+		for (byte zoomLevel = 0; zoomLevel <= this.gridZoomLevel; ++zoomLevel) {
+			Map<Long, List<Feature>> grid = this.cells.get(zoomLevel);
+			if (grid.isEmpty()) {
+				continue;
+			}
+			int cellMinX = toCell(minX, zoomLevel);
+			int cellMinY = toCell(minY, zoomLevel);
+			int cellMaxX = toCell(maxX, zoomLevel);
+			int cellMaxY = toCell(maxY, zoomLevel);
+			long numberOfCells = (long) (cellMaxX - cellMinX + 1) * (cellMaxY - cellMinY + 1);
+			if (numberOfCells > grid.size()) {
+				// the area covers more cells than are occupied
+				for (List<Feature> cell : grid.values()) {
+					collect(cell, minX, minY, maxX, maxY);
+				}
+			} else {
+				for (int cellX = cellMinX; cellX <= cellMaxX; ++cellX) {
+					for (int cellY = cellMinY; cellY <= cellMaxY; ++cellY) {
+						List<Feature> cell = grid.get(Long.valueOf(getCellKey(cellX, cellY)));
+						if (cell != null) {
+							collect(cell, minX, minY, maxX, maxY);
+						}
+					}
+				}
+			}
+		}
+		return this.queryResult;
+	}
+
+	private void removeFromCells(Feature feature) {
+		Map<Long, List<Feature>> grid = this.cells.get(feature.cellZoomLevel);
+		for (int cellX = feature.cellMinX; cellX <= feature.cellMaxX; ++cellX) {
+			for (int cellY = feature.cellMinY; cellY <= feature.cellMaxY; ++cellY) {
+				Long key = Long.valueOf(getCellKey(cellX, cellY));
+				List<Feature> cell = grid.get(key);
+				cell.remove(feature);
+				if (cell.isEmpty()) {
+					grid.remove(key);
+				}
+			}
+		}
+	}
+
+	private boolean removeInternal(Feature feature) {
+		if (feature.featureLayer != this) {
+			return false;
+		}
+
+		if (feature.indexed) {
+			extendDirtyArea(feature);
+			removeFromCells(feature);
+		} else {
+			this.unindexedFeatures.remove(feature);
+		}
+		feature.featureLayer = null;
+		feature.indexed = false;
+		--this.size;
+		return true;
+	}
+}
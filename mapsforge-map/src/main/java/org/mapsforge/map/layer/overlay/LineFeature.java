@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Path;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+
+/**
+ * A {@code LineFeature} draws a connected series of line segments, like a {@link Polyline}.
+ * <p>
+ * The same {@link Paint} may be shared by any number of features. A changed stroke width only takes effect for hit
+ * testing and culling after the next call of {@link #setPaintStroke(Paint)}.
+ */
+public class LineFeature extends Feature {
+	private static double distanceSquared(double x, double y, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = 0;
+		if (lengthSquared > 0) {
+			t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+		}
+		double distanceX = x - (x1 + t * dx);
+		double distanceY = y - (y1 + t * dy);
+		return distanceX * distanceX + distanceY * distanceY;
+	}
+
+	private final GraphicFactory graphicFactory;
+	private List<LatLong> latLongs;
+	private Paint paintStroke;
+	private double[] xs;
+	private double[] ys;
+
+	/**
+	 * @param latLongs
+	 *            the initial points of this feature, the list is copied.
+	 * @param paintStroke
+	 *            the initial {@code Paint} used to stroke this feature (may be null).
+	 * @param graphicFactory
+	 *            the graphic factory used to create paths.
+	 */
+	public LineFeature(List<LatLong> latLongs, Paint paintStroke, GraphicFactory graphicFactory) {
+		super();
+
+		this.latLongs = Collections.unmodifiableList(new ArrayList<LatLong>(latLongs));
+		this.paintStroke = paintStroke;
+		this.graphicFactory = graphicFactory;
+	}
+
+	/**
+	 * @return a read-only list of the points of this feature.
+	 */
+	public List<LatLong> getLatLongs() {
+		synchronized (getLock()) {
+			return this.latLongs;
+		}
+	}
+
+	/**
+	 * @return the {@code Paint} used to stroke this feature (may be null).
+	 */
+	public Paint getPaintStroke() {
+		synchronized (getLock()) {
+			return this.paintStroke;
+		}
+	}
+
+	/**
+	 * @param latLongs
+	 *            the new points of this feature, the list is copied.
+	 */
+	public void setLatLongs(List<LatLong> latLongs) {
+		List<LatLong> copy = Collections.unmodifiableList(new ArrayList<LatLong>(latLongs));
+		synchronized (getLock()) {
+			this.latLongs = copy;
+			geometryChanged();
+		}
+	}
+
+	/**
+	 * @param paintStroke
+	 *            the new {@code Paint} used to stroke this feature (may be null).
+	 */
+	public void setPaintStroke(Paint paintStroke) {
+		synchronized (getLock()) {
+			this.paintStroke = paintStroke;
+			geometryChanged();
+		}
+	}
+
+	@Override
+	boolean contains(double pixelX, double pixelY, double mapSize) {
+		double x = pixelX / mapSize;
+		double y = pixelY / mapSize;
+		double tolerance = (this.paintStroke.getStrokeWidth() / 2 + TAP_TOLERANCE) / mapSize;
+		double toleranceSquared = tolerance * tolerance;
+		for (int i = 1; i < this.xs.length; ++i) {
+			if (distanceSquared(x, y, this.xs[i - 1], this.ys[i - 1], this.xs[i], this.ys[i]) <= toleranceSquared) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	void draw(Canvas canvas, double mapSize, Point topLeftPoint) {
+		Path path = this.graphicFactory.createPath();
+		path.moveTo((float) (this.xs[0] * mapSize - topLeftPoint.x), (float) (this.ys[0] * mapSize - topLeftPoint.y));
+		for (int i = 1; i < this.xs.length; ++i) {
+			float x = (float) (this.xs[i] * mapSize - topLeftPoint.x);
+			float y = (float) (this.ys[i] * mapSize - topLeftPoint.y);
+			path.lineTo(x, y);
+		}
+		canvas.drawPath(path, this.paintStroke);
+	}
+
+	@Override
+	int getPixelMargin() {
+		return (int) Math.ceil(this.paintStroke.getStrokeWidth() / 2) + 1;
+	}
+
+	@Override
+	boolean updateBounds() {
+		if (this.latLongs.size() < 2 || this.paintStroke == null) {
+			return false;
+		}
+
+		int numberOfPoints = this.latLongs.size();
+		this.xs = new double[numberOfPoints];
+		this.ys = new double[numberOfPoints];
+		this.minX = Double.MAX_VALUE;
+		this.minY = Double.MAX_VALUE;
+		this.maxX = -Double.MAX_VALUE;
+		this.maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < numberOfPoints; ++i) {
+			LatLong latLong = this.latLongs.get(i);
+			this.xs[i] = longitudeToX(latLong.longitude);
+			this.ys[i] = latitudeToY(latLong.latitude);
+			this.minX = Math.min(this.minX, this.xs[i]);
+			this.minY = Math.min(this.minY, this.ys[i]);
+			this.maxX = Math.max(this.maxX, this.xs[i]);
+			this.maxY = Math.max(this.maxY, this.ys[i]);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+
+/**
+ * A {@code PointFeature} draws a {@link Bitmap} at a given geographical position, like a {@link Marker}.
+ * <p>
+ * The same {@code Bitmap} may be shared by any number of features. Features do not change the reference count of
+ * their bitmaps, the caller keeps ownership.
+ */
+public class PointFeature extends Feature {
+	private Bitmap bitmap;
+	private int horizontalOffset;
+	private LatLong latLong;
+	private int verticalOffset;
+	private double x;
+	private double y;
+
+	/**
+	 * @param latLong
+	 *            the initial geographical coordinates of this feature (may be null).
+	 * @param bitmap
+	 *            the initial {@code Bitmap} of this feature (may be null).
+	 * @param horizontalOffset
+	 *            the horizontal bitmap offset.
+	 * @param verticalOffset
+	 *            the vertical bitmap offset.
+	 */
+	public PointFeature(LatLong latLong, Bitmap bitmap, int horizontalOffset, int verticalOffset) {
+		super();
+
+		this.latLong = latLong;
+		this.bitmap = bitmap;
+		this.horizontalOffset = horizontalOffset;
+		this.verticalOffset = verticalOffset;
+	}
+
+	/**
+	 * @return the {@code Bitmap} of this feature (may be null).
+	 */
+	public Bitmap getBitmap() {
+		synchronized (getLock()) {
+			return this.bitmap;
+		}
+	}
+
+	/**
+	 * @return the horizontal offset of this feature.
+	 */
+	public int getHorizontalOffset() {
+		synchronized (getLock()) {
+			return this.horizontalOffset;
+		}
+	}
+
+	/**
+	 * @return the geographical coordinates of this feature (may be null).
+	 */
+	public LatLong getLatLong() {
+		synchronized (getLock()) {
+			return this.latLong;
+		}
+	}
+
+	/**
+	 * @return the vertical offset of this feature.
+	 */
+	public int getVerticalOffset() {
+		synchronized (getLock()) {
+			return this.verticalOffset;
+		}
+	}
+
+	/**
+	 * @param bitmap
+	 *            the new {@code Bitmap} of this feature (may be null).
+	 */
+	public void setBitmap(Bitmap bitmap) {
+		synchronized (getLock()) {
+			this.bitmap = bitmap;
+			geometryChanged();
+		}
+	}
+
+	/**
+	 * @param latLong
+	 *            the new geographical coordinates of this feature (may be null).
+	 */
+	public void setLatLong(LatLong latLong) {
+		synchronized (getLock()) {
+			this.latLong = latLong;
+			geometryChanged();
+		}
+	}
+
+	/**
+	 * @param horizontalOffset
+	 *            the new horizontal offset of this feature.
+	 * @param verticalOffset
+	 *            the new vertical offset of this feature.
+	 */
+	public void setOffsets(int horizontalOffset, int verticalOffset) {
+		synchronized (getLock()) {
+			this.horizontalOffset = horizontalOffset;
+			this.verticalOffset = verticalOffset;
+			geometryChanged();
+		}
+	}
+
+	@Override
+	boolean contains(double pixelX, double pixelY, double mapSize) {
+		double left = this.x * mapSize - this.bitmap.getWidth() / 2 + this.horizontalOffset;
+		double top = this.y * mapSize - this.bitmap.getHeight() / 2 + this.verticalOffset;
+		return pixelX >= left - TAP_TOLERANCE && pixelX <= left + this.bitmap.getWidth() + TAP_TOLERANCE
+				&& pixelY >= top - TAP_TOLERANCE && pixelY <= top + this.bitmap.getHeight() + TAP_TOLERANCE;
+	}
+
+	@Override
+	void draw(Canvas canvas, double mapSize, Point topLeftPoint) {
+		int left = (int) (this.x * mapSize - topLeftPoint.x - this.bitmap.getWidth() / 2 + this.horizontalOffset);
+		int top = (int) (this.y * mapSize - topLeftPoint.y - this.bitmap.getHeight() / 2 + this.verticalOffset);
+		canvas.drawBitmap(this.bitmap, left, top);
+	}
+
+	@Override
+	int getPixelMargin() {
+		int marginX = (this.bitmap.getWidth() + 1) / 2 + Math.abs(this.horizontalOffset);
+		int marginY = (this.bitmap.getHeight() + 1) / 2 + Math.abs(this.verticalOffset);
+		return Math.max(marginX, marginY) + 1;
+	}
+
+	@Override
+	boolean updateBounds() {
+		if (this.latLong == null || this.bitmap == null) {
+			return false;
+		}
+
+		this.x = longitudeToX(this.latLong.longitude);
+		this.y = latitudeToY(this.latLong.latitude);
+		this.minX = this.x;
+		this.minY = this.y;
+		this.maxX = this.x;
+		this.maxY = this.y;
+		return true;
+	}
+}
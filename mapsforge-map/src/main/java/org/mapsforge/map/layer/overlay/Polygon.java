@@ -15,9 +15,7 @@
  */
 package org.mapsforge.map.layer.overlay;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.mapsforge.core.graphics.Canvas;
 import org.mapsforge.core.graphics.GraphicFactory;
@@ -35,12 +33,16 @@ import org.mapsforge.map.layer.Layer;
  * <p>
  * A {@code Polygon} holds two {@link Paint} objects to allow for different outline and filling. These paints define
  * drawing parameters such as color, stroke width, pattern and transparency.
+ * <p>
+ * The projected points are cached and only recomputed after the list of points has changed. For each zoom level the
+ * outline is simplified to the points that are visible at that zoom level.
  */
 public class Polygon extends Layer {
 	private final GraphicFactory graphicFactory;
-	private final List<LatLong> latLongs = new CopyOnWriteArrayList<LatLong>();
+	private final VersionedList<LatLong> latLongs = new VersionedList<LatLong>();
 	private Paint paintFill;
 	private Paint paintStroke;
+	private final ProjectedLatLongs projectedLatLongs = new ProjectedLatLongs();
 
 	/**
 	 * @param paintFill
@@ -58,24 +60,34 @@ public class Polygon extends Layer {
 
 	@Override
 	public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
-		if (this.latLongs.size() < 2 || (this.paintStroke == null && this.paintFill == null)) {
+		if (this.paintStroke == null && this.paintFill == null) {
 			return;
 		}
 
-		Iterator<LatLong> iterator = this.latLongs.iterator();
+		this.projectedLatLongs.update(this.latLongs);
+		if (this.projectedLatLongs.size() < 2) {
+			return;
+		}
 
-		Path path = this.graphicFactory.createPath();
-		LatLong latLong = iterator.next();
-		int tileSize = displayModel.getTileSize();
-		float x = (float) (MercatorProjection.longitudeToPixelX(latLong.longitude, zoomLevel, tileSize) - topLeftPoint.x);
-		float y = (float) (MercatorProjection.latitudeToPixelY(latLong.latitude, zoomLevel, tileSize) - topLeftPoint.y);
-		path.moveTo(x, y);
+		double mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
+		// the outline may only be cut where it does not change the filled area, so only the whole polygon is culled
+		double margin = (this.paintStroke == null ? 0 : this.paintStroke.getStrokeWidth() / 2) + 1;
+		if (this.projectedLatLongs.maxX * mapSize - topLeftPoint.x < -margin
+				|| this.projectedLatLongs.minX * mapSize - topLeftPoint.x > canvas.getWidth() + margin
+				|| this.projectedLatLongs.maxY * mapSize - topLeftPoint.y < -margin
+				|| this.projectedLatLongs.minY * mapSize - topLeftPoint.y > canvas.getHeight() + margin) {
+			return;
+		}
 
-		while (iterator.hasNext()) {
-			latLong = iterator.next();
-			x = (float) (MercatorProjection.longitudeToPixelX(latLong.longitude, zoomLevel, tileSize) - topLeftPoint.x);
-			y = (float) (MercatorProjection.latitudeToPixelY(latLong.latitude, zoomLevel, tileSize) - topLeftPoint.y);
-			path.lineTo(x, y);
+		int[] indices = this.projectedLatLongs.getIndices(zoomLevel, mapSize);
+		double[] xs = this.projectedLatLongs.xs;
+		double[] ys = this.projectedLatLongs.ys;
+		Path path = this.graphicFactory.createPath();
+		path.moveTo((float) (xs[indices[0]] * mapSize - topLeftPoint.x),
+				(float) (ys[indices[0]] * mapSize - topLeftPoint.y));
+		for (int i = 1; i < indices.length; ++i) {
+			path.lineTo((float) (xs[indices[i]] * mapSize - topLeftPoint.x),
+					(float) (ys[indices[i]] * mapSize - topLeftPoint.y));
 		}
 
 		if (this.paintStroke != null) {
@@ -15,9 +15,7 @@
  */
 package org.mapsforge.map.layer.overlay;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.mapsforge.core.graphics.Canvas;
 import org.mapsforge.core.graphics.GraphicFactory;
@@ -34,11 +32,15 @@ import org.mapsforge.map.layer.Layer;
  * <p>
  * A {@code Polyline} holds a {@link Paint} object which defines drawing parameters such as color, stroke width, pattern
  * and transparency.
+ * <p>
+ * The projected points are cached and only recomputed after the list of points has changed. For each zoom level the
+ * line is simplified to the points that are visible at that zoom level and segments outside of the canvas are skipped.
  */
 public class Polyline extends Layer {
 	private final GraphicFactory graphicFactory;
-	private final List<LatLong> latLongs = new CopyOnWriteArrayList<LatLong>();
+	private final VersionedList<LatLong> latLongs = new VersionedList<LatLong>();
 	private Paint paintStroke;
+	private final ProjectedLatLongs projectedLatLongs = new ProjectedLatLongs();
 
 	/**
 	 * @param paintStroke
@@ -53,32 +55,55 @@ public class Polyline extends Layer {
 
 	@Override
 	public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
-		if (this.latLongs.isEmpty() || this.paintStroke == null) {
+		if (this.paintStroke == null) {
 			return;
 		}
 
-		Iterator<LatLong> iterator = this.latLongs.iterator();
-		if (!iterator.hasNext()) {
+		this.projectedLatLongs.update(this.latLongs);
+		if (this.projectedLatLongs.size() < 2) {
 			return;
 		}
 
-		LatLong latLong = iterator.next();
-		int tileSize = displayModel.getTileSize();
-		float x = (float) (MercatorProjection.longitudeToPixelX(latLong.longitude, zoomLevel, tileSize) - topLeftPoint.x);
-		float y = (float) (MercatorProjection.latitudeToPixelY(latLong.latitude, zoomLevel, tileSize) - topLeftPoint.y);
-
-		Path path = this.graphicFactory.createPath();
-		path.moveTo(x, y);
+		double mapSize = MercatorProjection.getMapSize(zoomLevel, this.displayModel.getTileSize());
+		int[] indices = this.projectedLatLongs.getIndices(zoomLevel, mapSize);
+		double[] xs = this.projectedLatLongs.xs;
+		double[] ys = this.projectedLatLongs.ys;
 
-		while (iterator.hasNext()) {
-			latLong = iterator.next();
-			x = (float) (MercatorProjection.longitudeToPixelX(latLong.longitude, zoomLevel, tileSize) - topLeftPoint.x);
-			y = (float) (MercatorProjection.latitudeToPixelY(latLong.latitude, zoomLevel, tileSize) - topLeftPoint.y);
+		// segments outside of the canvas are skipped, unless that would shift the pattern of a dashed line
+		boolean cull = !this.paintStroke.isDashed();
+		double margin = this.paintStroke.getStrokeWidth() / 2 + 1;
+		double left = -margin;
+		double top = -margin;
+		double right = canvas.getWidth() + margin;
+		double bottom = canvas.getHeight() + margin;
 
-			path.lineTo(x, y);
+		Path path = null;
+		boolean connected = false;
+		double previousX = xs[indices[0]] * mapSize - topLeftPoint.x;
+		double previousY = ys[indices[0]] * mapSize - topLeftPoint.y;
+		for (int i = 1; i < indices.length; ++i) {
+			double x = xs[indices[i]] * mapSize - topLeftPoint.x;
+			double y = ys[indices[i]] * mapSize - topLeftPoint.y;
+			if (cull && (Math.max(previousX, x) < left || Math.min(previousX, x) > right
+					|| Math.max(previousY, y) < top || Math.min(previousY, y) > bottom)) {
+				connected = false;
+			} else {
+				if (path == null) {
+					path = this.graphicFactory.createPath();
+				}
+				if (!connected) {
+					path.moveTo((float) previousX, (float) previousY);
+					connected = true;
+				}
+				path.lineTo((float) x, (float) y);
+			}
+			previousX = x;
+			previousY = y;
 		}
 
-		canvas.drawPath(path, this.paintStroke);
+		if (path != null) {
+			canvas.drawPath(path, this.paintStroke);
+		}
 	}
 
 	/**
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import org.mapsforge.core.model.LatLong;
+
+/**
+ * Caches the projection of a list of {@link LatLong LatLongs} and a simplified version of it for each zoom level.
+ * <p>
+ * The points are projected once into Mercator coordinates normalized to the range [0, 1]. For each zoom level the
+ * points are simplified with the Douglas-Peucker algorithm, so that no point deviates by more than
+ * {@link #SIMPLIFICATION_TOLERANCE} pixels. The cache is only invalidated when the version of the list of points
+ * changes, so that an unchanged list is recognized without looking at its points.
+ */
+final class ProjectedLatLongs {
+	private static final LatLong[] NO_LAT_LONGS = new LatLong[0];
+
+	/**
+	 * The maximum distance in pixels by which the simplified line may deviate from the original points.
+	 */
+	static final double SIMPLIFICATION_TOLERANCE = 0.5;
+
+	private static double distanceSquared(double x, double y, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = 0;
+		if (lengthSquared > 0) {
+			t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+		}
+		double distanceX = x - (x1 + t * dx);
+		double distanceY = y - (y1 + t * dy);
+		return distanceX * distanceX + distanceY * distanceY;
+	}
+
+	/**
+	 * Simplifies the given points with the Douglas-Peucker algorithm, the first and the last point are always kept.
+	 *
+	 * @return the indices of the remaining points in ascending order.
+	 */
+	static int[] simplify(double[] xs, double[] ys, double tolerance) {
+		int numberOfPoints = xs.length;
+		boolean[] keep = new boolean[numberOfPoints];
+		int numberOfKept = Math.min(2, numberOfPoints);
+		if (numberOfPoints > 0) {
+			keep[0] = true;
+			keep[numberOfPoints - 1] = true;
+		}
+
+		double toleranceSquared = tolerance * tolerance;
+		// pairs of first and last index of the ranges that still need to be simplified
+		int[] stack = new int[64];
+		int stackSize = 0;
+		if (numberOfPoints > 2) {
+			stack[stackSize++] = 0;
+			stack[stackSize++] = numberOfPoints - 1;
+		}
+		while (stackSize > 0) {
+			int last = stack[--stackSize];
+			int first = stack[--stackSize];
+			double maxDistanceSquared = -1;
+			int farthest = -1;
+			for (int i = first + 1; i < last; ++i) {
+				double distanceSquared = distanceSquared(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+				if (distanceSquared > maxDistanceSquared) {
+					maxDistanceSquared = distanceSquared;
+					farthest = i;
+				}
+			}
+			if (maxDistanceSquared <= toleranceSquared) {
+				continue;
+			}
+
+			keep[farthest] = true;
+			++numberOfKept;
+			if (stackSize + 4 > stack.length) {
+				int[] newStack = new int[stack.length * 2];
+				System.arraycopy(stack, 0, newStack, 0, stackSize);
+				stack = newStack;
+			}
+			if (farthest - first > 1) {
+				stack[stackSize++] = first;
+				stack[stackSize++] = farthest;
+			}
+			if (last - farthest > 1) {
+				stack[stackSize++] = farthest;
+				stack[stackSize++] = last;
+			}
+		}
+
+		int[] indices = new int[numberOfKept];
+		int j = 0;
+		for (int i = 0; i < numberOfPoints; ++i) {
+			if (keep[i]) {
+				indices[j++] = i;
+			}
+		}
+		return indices;
+	}
+
+	private LatLong[] latLongs = NO_LAT_LONGS;
+	// the simplified points and the map size they have been simplified for, indexed by zoom level
+	private final int[][] simplifiedIndices = new int[Byte.MAX_VALUE + 1][];
+	private final double[] simplifiedMapSizes = new double[Byte.MAX_VALUE + 1];
+	// the version of the list of points that has been projected, -1 before the first update
+	private int version = -1;
+
+	double maxX;
+	double maxY;
+	double minX;
+	double minY;
+	double[] xs = new double[0];
+	double[] ys = new double[0];
+
+	/**
+	 * @param zoomLevel
+	 *            the zoom level.
+	 * @param mapSize
+	 *            the size of the map in pixels at the given zoom level.
+	 * @return the indices of the points which remain after simplification for the given zoom level.
+	 */
+	int[] getIndices(byte zoomLevel, double mapSize) {
+		int[] indices = this.simplifiedIndices[zoomLevel];
+		if (indices == null || this.simplifiedMapSizes[zoomLevel] != mapSize) {
+			indices = simplify(this.xs, this.ys, SIMPLIFICATION_TOLERANCE / mapSize);
+			this.simplifiedIndices[zoomLevel] = indices;
+			this.simplifiedMapSizes[zoomLevel] = mapSize;
+		}
+		return indices;
+	}
+
+	/**
+	 * @return the number of points.
+	 */
+	int size() {
+		return this.latLongs.length;
+	}
+
+	/**
+	 * Projects the given points unless the list has not been modified since the last time.
+	 *
+	 * @param latLongs
+	 *            the current points.
+	 * @return true if the points have changed.
+	 */
+	boolean update(VersionedList<LatLong> latLongs) {
+		// the version is read before the points, so that a concurrent modification is found by the next update
+		int currentVersion = latLongs.getVersion();
+		if (currentVersion == this.version) {
+			return false;
+		}
+
+		this.version = currentVersion;
+		this.latLongs = latLongs.toArray(NO_LAT_LONGS);
+		int numberOfPoints = this.latLongs.length;
+		this.xs = new double[numberOfPoints];
+		this.ys = new double[numberOfPoints];
+		this.minX = Double.MAX_VALUE;
+		this.minY = Double.MAX_VALUE;
+		this.maxX = -Double.MAX_VALUE;
+		this.maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < numberOfPoints; ++i) {
+			this.xs[i] = Feature.longitudeToX(this.latLongs[i].longitude);
+			this.ys[i] = Feature.latitudeToY(this.latLongs[i].latitude);
+			this.minX = Math.min(this.minX, this.xs[i]);
+			this.minY = Math.min(this.minY, this.ys[i]);
+			this.maxX = Math.max(this.maxX, this.xs[i]);
+			this.maxY = Math.max(this.maxY, this.ys[i]);
+		}
+		for (int i = 0; i < this.simplifiedIndices.length; ++i) {
+			this.simplifiedIndices[i] = null;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A thread-safe list backed by a {@link CopyOnWriteArrayList} that counts its modifications, so that a cache of its
+ * elements can be validated without comparing them. Like those of a {@code CopyOnWriteArrayList}, the iterators
+ * traverse a snapshot of the list and do not support modifications.
+ * <p>
+ * The version is incremented after each modification. A reader that reads the version before it reads the elements
+ * therefore never pairs a version with older elements.
+ */
+final class VersionedList<E> extends AbstractList<E> implements RandomAccess {
+	private final CopyOnWriteArrayList<E> list = new CopyOnWriteArrayList<E>();
+	private volatile int version;
+
+	@Override
+	public void add(int index, E element) {
+		this.list.add(index, element);
+		modified();
+	}
+
+	@Override
+	public boolean add(E element) {
+		this.list.add(element);
+		modified();
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> collection) {
+		boolean changed = this.list.addAll(collection);
+		modified();
+		return changed;
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends E> collection) {
+		boolean changed = this.list.addAll(index, collection);
+		modified();
+		return changed;
+	}
+
+	@Override
+	public void clear() {
+		this.list.clear();
+		modified();
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return this.list.contains(object);
+	}
+
+	@Override
+	public E get(int index) {
+		return this.list.get(index);
+	}
+
+	@Override
+	public int indexOf(Object object) {
+		return this.list.indexOf(object);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return this.list.iterator();
+	}
+
+	@Override
+	public int lastIndexOf(Object object) {
+		return this.list.lastIndexOf(object);
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		return this.list.listIterator();
+	}
+
+	@Override
+	public ListIterator<E> listIterator(int index) {
+		return this.list.listIterator(index);
+	}
+
+	@Override
+	public E remove(int index) {
+		E element = this.list.remove(index);
+		modified();
+		return element;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		boolean changed = this.list.remove(object);
+		modified();
+		return changed;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> collection) {
+		boolean changed = this.list.removeAll(collection);
+		modified();
+		return changed;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		this.list.subList(fromIndex, toIndex).clear();
+		modified();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> collection) {
+		boolean changed = this.list.retainAll(collection);
+		modified();
+		return changed;
+	}
+
+	@Override
+	public E set(int index, E element) {
+		E previous = this.list.set(index, element);
+		modified();
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return this.list.size();
+	}
+
+	@Override
+	public Object[] toArray() {
+		return this.list.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] array) {
+		return this.list.toArray(array);
+	}
+
+	/**
+	 * @return the number of modifications of this list.
+	 */
+	int getVersion() {
+		return this.version;
+	}
+
+	private synchronized void modified() {
+		++this.version;
+	}
+}
@@ -15,7 +15,6 @@
  */
 package org.mapsforge.map.layer.renderer;
 
-import java.util.List;
 import java.util.Set;
 
 import org.mapsforge.core.graphics.Bitmap;
@@ -23,12 +22,18 @@ import org.mapsforge.core.graphics.Canvas;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.GraphicUtils;
 import org.mapsforge.core.graphics.Matrix;
+import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.graphics.Path;
 import org.mapsforge.core.mapelements.MapElementContainer;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tile;
 
 class CanvasRasterer {
+	/**
+	 * Additional distance in pixels beyond the tile and the stroke at which ways are clipped.
+	 */
+	private static final double CLIP_MARGIN = 2;
+
 	private final Canvas canvas;
 	private final Path path;
 	private final Matrix symbolMatrix;
@@ -43,18 +48,24 @@ class CanvasRasterer {
 		this.canvas.destroy();
 	}
 
-	void drawWays(List<List<List<ShapePaintContainer>>> drawWays, Tile tile) {
-		int levelsPerLayer = drawWays.get(0).size();
-
-		for (int layer = 0, layers = drawWays.size(); layer < layers; ++layer) {
-			List<List<ShapePaintContainer>> shapePaintContainers = drawWays.get(layer);
-
-			for (int level = 0; level < levelsPerLayer; ++level) {
-				List<ShapePaintContainer> wayList = shapePaintContainers.get(level);
+	void drawBitmap(Bitmap bitmap, int left, int top) {
+		this.canvas.drawBitmap(bitmap, left, top);
+	}
 
-				for (int index = wayList.size() - 1; index >= 0; --index) {
-					drawShapePaintContainer(wayList.get(index), tile);
-				}
+	/**
+	 * Draws the shapes, whose coordinates are relative to the upper left corner of the canvas.
+	 */
+	void drawWays(DrawCommandBuffer drawCommands) {
+		drawCommands.sort();
+		for (int i = 0, size = drawCommands.size(); i < size; ++i) {
+			int command = drawCommands.getCommand(i);
+			Paint paint = drawCommands.getPaint(command);
+			PolylineContainer way = drawCommands.getWay(command);
+			if (way == null) {
+				this.canvas.drawCircle((int) drawCommands.getX(command), (int) drawCommands.getY(command),
+						(int) drawCommands.getRadius(command), paint);
+			} else {
+				drawPath(paint, way.getCoordinatesRelativeToTile(), drawCommands.getDy(command), way.isClosedWay());
 			}
 		}
 	}
@@ -75,46 +86,49 @@ class CanvasRasterer {
 		this.canvas.setBitmap(bitmap);
 	}
 
-	private void drawCircleContainer(ShapePaintContainer shapePaintContainer) {
-		CircleContainer circleContainer = (CircleContainer) shapePaintContainer.shapeContainer;
-		Point point = circleContainer.point;
-		this.canvas.drawCircle((int) point.x, (int) point.y, (int) circleContainer.radius, shapePaintContainer.paint);
+	private void addToPath(Point[] coordinates, float dy) {
+		if (coordinates.length < 2) {
+			return;
+		}
+		Point[] points;
+		if (dy != 0f) {
+			points = RendererUtils.parallelPath(coordinates, dy);
+		} else {
+			points = coordinates;
+		}
+		// many points of ways at low zoom levels and of clipped borders fall into the same pixel
+		points = RendererUtils.simplify(points);
+		Point point = points[0];
+		this.path.moveTo((float) point.x, (float) point.y);
+		for (int i = 1; i < points.length; ++i) {
+			point = points[i];
+			this.path.lineTo((int) point.x, (int) point.y);
+		}
 	}
 
-	private void drawPath(ShapePaintContainer shapePaintContainer, Point[][] coordinates, float dy) {
+	private void drawPath(Paint paint, Point[][] coordinates, float dy, boolean closed) {
 		this.path.clear();
 
+		// the length of a dashed path determines the dash phase, so it must not be clipped
+		boolean clip = !paint.isDashed();
+		// miter joins may extend up to twice the stroke width beyond a vertex
+		double margin = 2 * paint.getStrokeWidth() + Math.abs(dy) + CLIP_MARGIN;
+		double min = -margin;
+		double maxX = this.canvas.getWidth() + margin;
+		double maxY = this.canvas.getHeight() + margin;
+
 		for (Point[] innerList : coordinates) {
-			Point[] points;
-			if (dy != 0f) {
-				points = RendererUtils.parallelPath(innerList, dy);
+			if (!clip) {
+				addToPath(innerList, dy);
+			} else if (closed) {
+				addToPath(RendererUtils.clipPolygon(innerList, min, min, maxX, maxY), dy);
 			} else {
-				points = innerList;
-			}
-			if (points.length >= 2) {
-				Point point = points[0];
-				this.path.moveTo((float) point.x, (float) point.y);
-				for (int i = 1; i < points.length; ++i) {
-					point = points[i];
-					this.path.lineTo((int) point.x, (int) point.y);
+				for (Point[] part : RendererUtils.clipPolyline(innerList, min, min, maxX, maxY)) {
+					addToPath(part, dy);
 				}
 			}
 		}
 
-		this.canvas.drawPath(this.path, shapePaintContainer.paint);
-	}
-
-	private void drawShapePaintContainer(ShapePaintContainer shapePaintContainer, Tile tile) {
-		ShapeType shapeType = shapePaintContainer.shapeContainer.getShapeType();
-		switch (shapeType) {
-			case CIRCLE:
-				drawCircleContainer(shapePaintContainer);
-				return;
-
-			case POLYLINE:
-				PolylineContainer polylineContainer = (PolylineContainer) shapePaintContainer.shapeContainer;
-				drawPath(shapePaintContainer, polylineContainer.getCoordinatesRelativeToTile(), shapePaintContainer.dy);
-				return;
-		}
+		this.canvas.drawPath(this.path, paint);
 	}
 }
@@ -20,10 +20,12 @@ package org.mapsforge.map.layer.renderer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,11 +37,13 @@ import org.mapsforge.core.graphics.Position;
 import org.mapsforge.core.graphics.TileBitmap;
 import org.mapsforge.core.mapelements.MapElementContainer;
 import org.mapsforge.core.mapelements.SymbolContainer;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.core.util.TileProjector;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.labels.TileBasedLabelStore;
 import org.mapsforge.map.model.DisplayModel;
@@ -53,6 +57,7 @@ import org.mapsforge.map.rendertheme.XmlRenderTheme;
 import org.mapsforge.map.rendertheme.rule.RenderTheme;
 import org.mapsforge.map.rendertheme.rule.RenderThemeHandler;
 import org.mapsforge.map.util.LayerUtil;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * The DatabaseRenderer renders map tiles by reading from a {@link MapDatabase}.
@@ -73,17 +78,17 @@ public class DatabaseRenderer implements RenderCallback {
 	private static final Tag TAG_NATURAL_WATER = new Tag("natural", "water");
 	private static final byte ZOOM_MAX = 22;
 
-	private static Point[] getTilePixelCoordinates(int tileSize) {
+	private static Point[] getPixelCoordinates(int width, int height) {
 		Point[] result = new Point[5];
 		result[0] = new Point(0, 0);
-		result[1] = new Point(tileSize, 0);
-		result[2] = new Point(tileSize, tileSize);
-		result[3] = new Point(0, tileSize);
+		result[1] = new Point(width, 0);
+		result[2] = new Point(width, height);
+		result[3] = new Point(0, height);
 		result[4] = result[0];
 		return result;
 	}
 
-	private static byte getValidLayer(byte layer) {
+	static byte getValidLayer(byte layer) {
 		if (layer < 0) {
 			return 0;
 		} else if (layer >= LAYERS) {
@@ -96,14 +101,14 @@ public class DatabaseRenderer implements RenderCallback {
 	private final CanvasRasterer canvasRasterer;
 	private List<MapElementContainer> currentLabels;
 	private Set<MapElementContainer> currentWayLabels;
-	private List<List<ShapePaintContainer>> drawingLayers;
+	private final DrawCommandBuffer drawCommands = new DrawCommandBuffer();
+	private byte drawingLayer;
 	private final GraphicFactory graphicFactory;
 	private final TileBasedLabelStore labelStore;
 	private final MapDatabase mapDatabase;
 	private XmlRenderTheme previousJobTheme;
 	private final boolean renderLabels;
 	private RenderTheme renderTheme;
-	private List<List<List<ShapePaintContainer>>> ways;
 	private final TileCacheInfoProvider tileCacheInfoProvider;
 	private final TileDependencies tileDependencies;
 
@@ -129,30 +134,42 @@ public class DatabaseRenderer implements RenderCallback {
 	/**
 	 * Constructs a new DatabaseRenderer that will draw labels onto the tiles.
 	 *
-     * @param mapDatabase
-     *            the MapDatabase from which the map data will be read.
-     */
-    public DatabaseRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory,
-                            final TileCache tileCache) {
-        this(mapDatabase, graphicFactory, new TileCacheInfoProvider() {
-            @Override
-            public boolean contains(Tile tile, RendererJob rendererJob) {
-                return tileCache.containsKey(rendererJob.otherTile(tile));
-            }
-        });
-    }
+	 * @param mapDatabase
+	 *            the MapDatabase from which the map data will be read.
+	 */
+	public DatabaseRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory,
+			final TileCache tileCache) {
+		this(mapDatabase, graphicFactory, new TileCacheInfoProvider() {
+			@Override
+			public boolean contains(Tile tile, RendererJob rendererJob) {
+				return tileCache.containsKey(rendererJob.otherTile(tile));
+			}
+		});
+	}
 
-    public DatabaseRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory,
-                            final TileCacheInfoProvider tileCacheInfoProvider) {
-        this.mapDatabase = mapDatabase;
-        this.graphicFactory = graphicFactory;
+	public DatabaseRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory,
+			TileCacheInfoProvider tileCacheInfoProvider) {
+		this(mapDatabase, graphicFactory, tileCacheInfoProvider, new TileDependencies());
+	}
 
-        this.canvasRasterer = new CanvasRasterer(graphicFactory);
-        this.labelStore = null;
-        this.renderLabels = true;
-        this.tileCacheInfoProvider = tileCacheInfoProvider;
-        this.tileDependencies = new TileDependencies();
-    }
+	/**
+	 * Constructs a new DatabaseRenderer that will draw labels onto the tiles and shares the labels that overlap tile
+	 * boundaries with other renderers, so that several render threads can draw the tiles of the same map.
+	 *
+	 * @param tileDependencies
+	 *            the labels that overlap tile boundaries, shared by all renderers of the map.
+	 */
+	public DatabaseRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory,
+			TileCacheInfoProvider tileCacheInfoProvider, TileDependencies tileDependencies) {
+		this.mapDatabase = mapDatabase;
+		this.graphicFactory = graphicFactory;
+
+		this.canvasRasterer = new CanvasRasterer(graphicFactory);
+		this.labelStore = null;
+		this.renderLabels = true;
+		this.tileCacheInfoProvider = tileCacheInfoProvider;
+		this.tileDependencies = tileDependencies;
+	}
 
     public interface TileCacheInfoProvider {
         public boolean contains(Tile tile, RendererJob rendererJob);
@@ -174,25 +191,98 @@ public class DatabaseRenderer implements RenderCallback {
 	}
 
 	public TileBitmap executeJob(RendererJob rendererJob) {
-		XmlRenderTheme jobTheme = rendererJob.xmlRenderTheme;
-		if (!jobTheme.equals(this.previousJobTheme)) {
-			this.renderTheme = getRenderTheme(jobTheme, rendererJob.displayModel);
-			if (this.renderTheme == null) {
-				this.previousJobTheme = null;
-				return null;
-			}
-			this.ways = createWayLists();
-			this.previousJobTheme = jobTheme;
+		if (!prepareRenderTheme(rendererJob)) {
+			return null;
 		}
 
 		return renderTile(rendererJob.tile, rendererJob.textScale, rendererJob.labelsOnly, rendererJob.hasAlpha, rendererJob.displayModel, rendererJob);
 	}
 
-	public void setRenderTheme(RenderTheme renderTheme) {
-		if (this.renderTheme != renderTheme) {
-			this.renderTheme = renderTheme;
-			this.ways = createWayLists();
+	/**
+	 * Renders the metatile that contains the tile of the given job in one pass and stores its tiles in the tile cache.
+	 * A metatile is a block of up to metatileSize x metatileSize tiles, aligned to multiples of the metatile size. The
+	 * map data of the block is read and matched against the render theme only once, the block is drawn onto one large
+	 * canvas and labels are placed across the tile boundaries within the block, so that only the labels at the border
+	 * of the block depend on neighbouring tiles. This greatly increases the throughput of bulk rendering.
+	 *
+	 * @param rendererJob
+	 *            the job for one of the tiles of the metatile, the other tiles are stored with the same job parameters.
+	 * @param metatileSize
+	 *            the number of tiles per side of a metatile, e.g. 8.
+	 * @param tileCache
+	 *            the cache that receives the rendered tiles.
+	 * @return the area of the rendered tiles, or null if the render theme could not be loaded.
+	 * @throws IllegalArgumentException
+	 *             if the metatile size is less than one.
+	 */
+	public BoundingBox executeMetatileJob(RendererJob rendererJob, int metatileSize, TileCache tileCache) {
+		if (metatileSize < 1) {
+			throw new IllegalArgumentException("invalid metatile size: " + metatileSize);
+		} else if (!prepareRenderTheme(rendererJob)) {
+			return null;
+		}
+
+		Tile tile = rendererJob.tile;
+		int maxTileNumber = Tile.getMaxTileNumber(tile.zoomLevel);
+		int left = tile.tileX - tile.tileX % metatileSize;
+		int top = tile.tileY - tile.tileY % metatileSize;
+		int right = Math.min(left + metatileSize - 1, maxTileNumber);
+		int bottom = Math.min(top + metatileSize - 1, maxTileNumber);
+		Tile upperLeft = new Tile(left, top, tile.zoomLevel, tile.tileSize);
+		Tile lowerRight = new Tile(right, bottom, tile.zoomLevel, tile.tileSize);
+
+		Bitmap bitmap = null;
+		if (!rendererJob.labelsOnly) {
+			// a square bitmap comes from the same pool as the tile bitmaps, blocks at the map border may use only part
+			int metatileTiles = Math.max(right - left + 1, bottom - top + 1);
+			bitmap = this.graphicFactory.createTileBitmap(metatileTiles * tile.tileSize, rendererJob.hasAlpha);
+		}
+		renderTiles(upperLeft, lowerRight, bitmap, rendererJob.textScale, rendererJob.hasAlpha,
+				rendererJob.displayModel, rendererJob);
+		BoundingBox boundingBox = upperLeft.getBoundingBox().extend(lowerRight.getBoundingBox());
+		if (bitmap == null) {
+			for (int tileY = top; tileY <= bottom; ++tileY) {
+				for (int tileX = left; tileX <= right; ++tileX) {
+					removePendingTile(new Tile(tileX, tileY, tile.zoomLevel, tile.tileSize));
+				}
+			}
+			return boundingBox;
+		}
+
+		// slice the metatile into the individual tiles
+		for (int tileY = top; tileY <= bottom; ++tileY) {
+			for (int tileX = left; tileX <= right; ++tileX) {
+				TileBitmap tileBitmap = this.graphicFactory.createTileBitmap(tile.tileSize, rendererJob.hasAlpha);
+				this.canvasRasterer.setCanvasBitmap(tileBitmap);
+				this.canvasRasterer.drawBitmap(bitmap, (left - tileX) * tile.tileSize, (top - tileY) * tile.tileSize);
+				Tile currentTile = new Tile(tileX, tileY, tile.zoomLevel, tile.tileSize);
+				tileCache.put(rendererJob.otherTile(currentTile), tileBitmap);
+				tileBitmap.decrementRefCount();
+				removePendingTile(currentTile);
+			}
 		}
+		bitmap.decrementRefCount();
+		return boundingBox;
+	}
+
+	/**
+	 * Ends the pending state of a tile that has been rendered by {@link #executeJob(RendererJob)}. It must be called
+	 * after the bitmap of the tile has been put into the tile cache, or when the bitmap is discarded. Until then other
+	 * renderers treat the tile as drawn, so that they draw the labels overlapping from it. Once the pending state
+	 * has ended, the tile only counts as drawn while it is in the tile cache, so that a tile that has never been
+	 * cached or that has been evicted is drawn again together with its labels.
+	 *
+	 * @param tile
+	 *            the rendered tile.
+	 */
+	public void removePendingTile(Tile tile) {
+		if (this.tileDependencies != null) {
+			this.tileDependencies.removePendingTile(tile);
+		}
+	}
+
+	public void setRenderTheme(RenderTheme renderTheme) {
+		this.renderTheme = renderTheme;
 	}
 
 	public TileBitmap renderTile(Tile tile, float textScale, boolean labelsOnly, boolean hasAlpha, DisplayModel displayModel) {
@@ -200,114 +290,172 @@ public class DatabaseRenderer implements RenderCallback {
 	}
 
 	private TileBitmap renderTile(Tile tile, float textScale, boolean labelsOnly, boolean hasAlpha, DisplayModel displayModel, RendererJob rendererJob) {
-		final int tileSize = tile.tileSize;
-		final byte zoomLevel = tile.zoomLevel;
+		TileBitmap bitmap = null;
+		if (!labelsOnly) {
+			bitmap = this.graphicFactory.createTileBitmap(tile.tileSize, hasAlpha);
+		}
+		renderTiles(tile, tile, bitmap, textScale, hasAlpha, displayModel, rendererJob);
+		return bitmap;
+	}
+
+	/**
+	 * Renders the rectangular block of tiles from the upper left to the lower right tile onto the given bitmap, whose
+	 * origin is the origin of the upper left tile.
+	 */
+	private void renderTiles(Tile upperLeft, Tile lowerRight, Bitmap bitmap, float textScale, boolean hasAlpha,
+			DisplayModel displayModel, RendererJob rendererJob) {
+		int width = (lowerRight.tileX - upperLeft.tileX + 1) * upperLeft.tileSize;
+		int height = (lowerRight.tileY - upperLeft.tileY + 1) * upperLeft.tileSize;
 
 		this.currentLabels = new LinkedList<MapElementContainer>();
 		this.currentWayLabels = new HashSet<MapElementContainer>();
 
-		setScaleStrokeWidth(zoomLevel);
+		setScaleStrokeWidth(upperLeft.zoomLevel);
 		this.renderTheme.scaleTextSize(textScale);
 
 		if (this.mapDatabase != null) {
-			MapReadResult mapReadResult = this.mapDatabase.readMapData(tile);
-			processReadMapData(ways, mapReadResult, tile);
+			MapReadResult mapReadResult = this.mapDatabase.readMapData(upperLeft, lowerRight);
+			processReadMapData(mapReadResult, upperLeft, width, height);
 		}
 
-		TileBitmap bitmap = null;
-		if (!labelsOnly) {
-			bitmap = this.graphicFactory.createTileBitmap(tileSize, hasAlpha);
+		if (bitmap != null) {
 			this.canvasRasterer.setCanvasBitmap(bitmap);
 			if (displayModel.getBackgroundColor() != this.renderTheme.getMapBackground()) {
 				this.canvasRasterer.fill(hasAlpha ? 0 : this.renderTheme.getMapBackground());
 			}
-			this.canvasRasterer.drawWays(ways, tile);
+			this.canvasRasterer.drawWays(this.drawCommands);
+		}
+
+		Set<Tile> tiles = new HashSet<Tile>();
+		for (int tileY = upperLeft.tileY; tileY <= lowerRight.tileY; ++tileY) {
+			for (int tileX = upperLeft.tileX; tileX <= lowerRight.tileX; ++tileX) {
+				tiles.add(new Tile(tileX, tileY, upperLeft.zoomLevel, upperLeft.tileSize));
+			}
 		}
 
 		if (renderLabels) {
 			// if we are drawing the labels per tile, we need to establish which tile-overlapping
 			// elements need to be drawn.
+			Set<Tile> neighbours = new HashSet<Tile>();
+			for (Tile tile : tiles) {
+				neighbours.addAll(tile.getNeighbours());
+			}
+			neighbours.removeAll(tiles);
+
+			// the lock is only held to read and to update the dependencies, the labels are placed in between. If a
+			// neighbour has been drawn by another thread in the meantime, its labels must be respected and the
+			// placement is repeated, which can happen at most once per neighbour.
+			Set<MapElementContainer> labelsToDraw;
+			boolean committed;
+			do {
+				Set<Tile> drawnNeighbours;
+				labelsToDraw = new HashSet<MapElementContainer>();
+				synchronized (this.tileDependencies) {
+					// first we need to get the labels from the adjacent tiles if they have already been drawn
+					// as those overlapping items must also be drawn on the current tiles. They must be drawn
+					// regardless of priority clashes as a part of them has alread been drawn.
+					drawnNeighbours = getDrawnTiles(neighbours, rendererJob);
+					for (Tile neighbour : drawnNeighbours) {
+						for (Tile tile : neighbour.getNeighbours()) {
+							if (tiles.contains(tile)) {
+								labelsToDraw.addAll(this.tileDependencies.getOverlappingElements(neighbour, tile));
+							}
+						}
+					}
+				}
 
-			Set<MapElementContainer> labelsToDraw = new HashSet<MapElementContainer>();
-			// first we need to get the labels from the adjacent tiles if they have already been drawn
-			// as those overlapping items must also be drawn on the current tile. They must be drawn regardless
-			// of priority clashes as a part of them has alread been drawn.
-			Set<Tile> neighbours = tile.getNeighbours();
-			Iterator<Tile> tileIterator = neighbours.iterator();
-			Set<MapElementContainer> undrawableElements = new HashSet<MapElementContainer>();
-			while (tileIterator.hasNext()) {
-				Tile neighbour = tileIterator.next();
-				if (tileCacheInfoProvider.contains(neighbour, rendererJob)) {
-					// if a tile has already been drawn, the elements drawn that overlap onto the
-					// current tile should be in the tile dependencies, we add them to the labels that
-					// need to be drawn onto this tile.
-					labelsToDraw.addAll(tileDependencies.getOverlappingElements(neighbour, tile));
-
-					// but we need to remove the labels for this tile that overlap onto a tile that has been drawn
-					for (MapElementContainer current : currentLabels) {
+				// we need to remove the labels for these tiles that overlap onto a tile that has been drawn
+				List<MapElementContainer> drawableLabels = new ArrayList<MapElementContainer>(this.currentLabels);
+				Iterator<MapElementContainer> drawableLabelsIterator = drawableLabels.iterator();
+				while (drawableLabelsIterator.hasNext()) {
+					MapElementContainer current = drawableLabelsIterator.next();
+					for (Tile neighbour : drawnNeighbours) {
 						if (current.intersects(neighbour.getBoundaryAbsolute())) {
-							undrawableElements.add(current);
+							drawableLabelsIterator.remove();
+							break;
 						}
 					}
-					// since we already have the data from that tile, we do not need to get the data for
-					// it, so remove it from the neighbours list.
-					tileIterator.remove();
-				} else {
-					tileDependencies.removeTileData(neighbour);
 				}
-			}
 
-			// now we remove the elements that overlap onto a drawn tile from the list of labels
-			// for this tile
-			currentLabels.removeAll(undrawableElements);
-
-			// at this point we have two lists: one is the list of labels that must be drawn because
-			// they already overlap from other tiles. The second one is currentLabels that contains
-			// the elements on this tile that do not overlap onto a drawn tile. Now we sort this list and
-			// remove those elements that clash in this list already.
-			List<MapElementContainer> currentElementsOrdered = LayerUtil.collisionFreeOrdered(currentLabels);
-
-			// now we go through this list, ordered by priority, to see which can be drawn without clashing.
-			Iterator<MapElementContainer> currentMapElementsIterator = currentElementsOrdered.iterator();
-			while (currentMapElementsIterator.hasNext()) {
-				MapElementContainer current = currentMapElementsIterator.next();
-				for (MapElementContainer label : labelsToDraw) {
-					if (label.clashesWith(current)) {
-						currentMapElementsIterator.remove();
-						break;
+				// at this point we have two lists: one is the list of labels that must be drawn because
+				// they already overlap from other tiles. The second one is drawableLabels that contains
+				// the elements on these tiles that do not overlap onto a drawn tile. Now we sort this list and
+				// remove those elements that clash in this list already.
+				List<MapElementContainer> currentElementsOrdered = LayerUtil.collisionFreeOrdered(drawableLabels);
+
+				// now we go through this list, ordered by priority, to see which can be drawn without clashing.
+				Iterator<MapElementContainer> currentMapElementsIterator = currentElementsOrdered.iterator();
+				while (currentMapElementsIterator.hasNext()) {
+					MapElementContainer current = currentMapElementsIterator.next();
+					for (MapElementContainer label : labelsToDraw) {
+						if (label.clashesWith(current)) {
+							currentMapElementsIterator.remove();
+							break;
+						}
 					}
 				}
-			}
-
-			labelsToDraw.addAll(currentElementsOrdered);
 
-			// update dependencies, add to the dependencies list all the elements that overlap to the
-			// neighbouring tiles, first clearing out the cache for this relation.
-			for (Tile neighbour : neighbours) {
-				tileDependencies.removeTileData(neighbour, neighbour);
-				for (MapElementContainer element : labelsToDraw) {
-					if (element.intersects(neighbour.getBoundaryAbsolute())) {
-						tileDependencies.addOverlappingElement(neighbour, neighbour, element);
+				labelsToDraw.addAll(currentElementsOrdered);
+
+				synchronized (this.tileDependencies) {
+					committed = drawnNeighbours.equals(getDrawnTiles(neighbours, rendererJob));
+					if (committed) {
+						// update dependencies, add to the dependencies list all the elements that overlap to the
+						// neighbouring tiles that have not been drawn, first clearing out the cache for this
+						// relation. The elements are recorded for every adjacent tile of the block, so that the
+						// neighbour finds them from any of its drawn neighbours.
+						for (Tile neighbour : neighbours) {
+							if (drawnNeighbours.contains(neighbour)) {
+								continue;
+							}
+							this.tileDependencies.removeTileData(neighbour);
+							Set<Tile> adjacentTiles = neighbour.getNeighbours();
+							adjacentTiles.retainAll(tiles);
+							for (Tile tile : adjacentTiles) {
+								this.tileDependencies.removeTileData(tile, neighbour);
+							}
+							for (MapElementContainer element : labelsToDraw) {
+								if (element.intersects(neighbour.getBoundaryAbsolute())) {
+									for (Tile tile : adjacentTiles) {
+										this.tileDependencies.addOverlappingElement(tile, neighbour, element);
+									}
+								}
+							}
+						}
+						for (Tile tile : tiles) {
+							this.tileDependencies.addPendingTile(tile);
+						}
 					}
 				}
-			}
+			} while (!committed);
 			// now draw the ways and the labels
-			this.canvasRasterer.drawMapElements(currentWayLabels, tile);
-			this.canvasRasterer.drawMapElements(labelsToDraw, tile);
-		} else {
+			if (bitmap != null) {
+				this.canvasRasterer.drawMapElements(currentWayLabels, upperLeft);
+				drawLabels(labelsToDraw, upperLeft);
+			}
+		} else if (tiles.size() == 1) {
 			// store elements for this tile in the label cache
-			this.labelStore.storeMapItems(tile, this.currentLabels);
-		}
-
-		// clear way list
-		for (int i = this.ways.size() - 1; i >= 0; --i) {
-			List<List<ShapePaintContainer>> innerWayList = this.ways.get(i);
-			for (int j = innerWayList.size() - 1; j >= 0; --j) {
-				innerWayList.get(j).clear();
+			this.labelStore.storeMapItems(upperLeft, this.currentLabels);
+		} else {
+			// store every element for the tile of the block that contains its position
+			Map<Tile, List<MapElementContainer>> tileLabels = new HashMap<Tile, List<MapElementContainer>>();
+			for (Tile tile : tiles) {
+				tileLabels.put(tile, new ArrayList<MapElementContainer>());
+			}
+			for (MapElementContainer element : this.currentLabels) {
+				Point point = element.getPoint();
+				int tileX = MercatorProjection.pixelXToTileX(point.x, upperLeft.zoomLevel, upperLeft.tileSize);
+				int tileY = MercatorProjection.pixelYToTileY(point.y, upperLeft.zoomLevel, upperLeft.tileSize);
+				tileX = Math.min(Math.max(tileX, upperLeft.tileX), lowerRight.tileX);
+				tileY = Math.min(Math.max(tileY, upperLeft.tileY), lowerRight.tileY);
+				tileLabels.get(new Tile(tileX, tileY, upperLeft.zoomLevel, upperLeft.tileSize)).add(element);
+			}
+			for (Map.Entry<Tile, List<MapElementContainer>> entry : tileLabels.entrySet()) {
+				this.labelStore.storeMapItems(entry.getKey(), entry.getValue());
 			}
 		}
 
-		return bitmap;
+		this.drawCommands.clear();
 	}
 
 	public MapDatabase getMapDatabase() {
@@ -352,9 +500,8 @@ public class DatabaseRenderer implements RenderCallback {
 
 	@Override
 	public void renderArea(PolylineContainer way, Paint fill, Paint stroke, int level) {
-		List<ShapePaintContainer> list = this.drawingLayers.get(level);
-		list.add(new ShapePaintContainer(way, stroke));
-		list.add(new ShapePaintContainer(way, fill));
+		this.drawCommands.addPath(this.drawingLayer, level, stroke, way, 0);
+		this.drawCommands.addPath(this.drawingLayer, level, fill, way, 0);
 	}
 
 	@Override
@@ -382,10 +529,9 @@ public class DatabaseRenderer implements RenderCallback {
 
 	@Override
 	public void renderPointOfInterestCircle(PointOfInterest poi, float radius, Paint fill, Paint stroke, int level, Tile tile) {
-		List<ShapePaintContainer> list = this.drawingLayers.get(level);
 		Point poiPosition = MercatorProjection.getPixelRelativeToTile(poi.position, tile);
-		list.add(new ShapePaintContainer(new CircleContainer(poiPosition, radius), stroke));
-		list.add(new ShapePaintContainer(new CircleContainer(poiPosition, radius), fill));
+		this.drawCommands.addCircle(this.drawingLayer, level, stroke, poiPosition.x, poiPosition.y, radius);
+		this.drawCommands.addCircle(this.drawingLayer, level, fill, poiPosition.x, poiPosition.y, radius);
 	}
 
 	@Override
@@ -396,7 +542,7 @@ public class DatabaseRenderer implements RenderCallback {
 
 	@Override
 	public void renderWay(PolylineContainer way, Paint stroke, float dy, int level) {
-		this.drawingLayers.get(level).add(new ShapePaintContainer(way, stroke, dy));
+		this.drawCommands.addPath(this.drawingLayer, level, stroke, way, dy);
 	}
 
 	@Override
@@ -411,18 +557,30 @@ public class DatabaseRenderer implements RenderCallback {
 		WayDecorator.renderText(textKey, priority, dy, fill, stroke, way.getCoordinatesAbsolute(), this.currentWayLabels);
 	}
 
-	private List<List<List<ShapePaintContainer>>> createWayLists() {
-		List<List<List<ShapePaintContainer>>> result = new ArrayList<List<List<ShapePaintContainer>>>(LAYERS);
-		int levels = this.renderTheme.getLevels();
+	/**
+	 * Draws the labels of a block of tiles, including the labels which overlap from neighbouring tiles.
+	 *
+	 * @param upperLeft
+	 *            the upper left tile of the block, the origin of the canvas.
+	 */
+	void drawLabels(Set<MapElementContainer> labels, Tile upperLeft) {
+		this.canvasRasterer.drawMapElements(labels, upperLeft);
+	}
 
-		for (byte i = LAYERS - 1; i >= 0; --i) {
-			List<List<ShapePaintContainer>> innerWayList = new ArrayList<List<ShapePaintContainer>>(levels);
-			for (int j = levels - 1; j >= 0; --j) {
-				innerWayList.add(new ArrayList<ShapePaintContainer>(0));
+	/**
+	 * Must be called while holding the lock of the tile dependencies.
+	 *
+	 * @return the given tiles that have been drawn, i.e. that are pending or in the tile cache.
+	 */
+	private Set<Tile> getDrawnTiles(Set<Tile> tiles, RendererJob rendererJob) {
+		Set<Tile> drawnTiles = new HashSet<Tile>();
+		for (Tile tile : tiles) {
+			// a tile is pending until its bitmap has been put into the tile cache, so it is checked first
+			if (this.tileDependencies.isPendingTile(tile) || this.tileCacheInfoProvider.contains(tile, rendererJob)) {
+				drawnTiles.add(tile);
 			}
-			result.add(innerWayList);
 		}
-		return result;
+		return drawnTiles;
 	}
 
 	private RenderTheme getRenderTheme(XmlRenderTheme jobTheme, DisplayModel displayModel) {
@@ -436,38 +594,58 @@ public class DatabaseRenderer implements RenderCallback {
 		return null;
 	}
 
-	private void processReadMapData(final List<List<List<ShapePaintContainer>>> ways, MapReadResult mapReadResult, Tile tile) {
+	private boolean prepareRenderTheme(RendererJob rendererJob) {
+		XmlRenderTheme jobTheme = rendererJob.xmlRenderTheme;
+		if (!jobTheme.equals(this.previousJobTheme)) {
+			this.renderTheme = getRenderTheme(jobTheme, rendererJob.displayModel);
+			if (this.renderTheme == null) {
+				this.previousJobTheme = null;
+				return false;
+			}
+			this.previousJobTheme = jobTheme;
+		}
+		return true;
+	}
+
+	/**
+	 * @param tile
+	 *            the upper left tile of the rendered area, the coordinates are relative to its origin.
+	 */
+	private void processReadMapData(MapReadResult mapReadResult, Tile tile, int width, int height) {
 		if (mapReadResult == null) {
 			return;
 		}
 
 		for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
-			renderPointOfInterest(ways, pointOfInterest, tile);
+			renderPointOfInterest(pointOfInterest, tile);
 		}
 
+		// all ways of a tile share the scale constants and the latitude table
+		Point origin = tile.getOrigin();
+		TileProjector tileProjector = new TileProjector(tile.zoomLevel, tile.tileSize, origin.x, origin.y, height, true);
 		for (Way way : mapReadResult.ways) {
-			renderWay(ways, new PolylineContainer(way, tile));
+			renderWay(new PolylineContainer(way, tile, tileProjector));
 		}
 
 		if (mapReadResult.isWater) {
-			renderWaterBackground(ways, tile);
+			renderWaterBackground(tile, width, height);
 		}
 	}
 
-	private void renderPointOfInterest(final List<List<List<ShapePaintContainer>>> ways, PointOfInterest pointOfInterest, Tile tile) {
-		this.drawingLayers = ways.get(getValidLayer(pointOfInterest.layer));
+	private void renderPointOfInterest(PointOfInterest pointOfInterest, Tile tile) {
+		this.drawingLayer = getValidLayer(pointOfInterest.layer);
 		this.renderTheme.matchNode(this, pointOfInterest, tile);
 	}
 
-	private void renderWaterBackground(final List<List<List<ShapePaintContainer>>> ways, Tile tile) {
-		this.drawingLayers = ways.get(0);
-		Point[] coordinates = getTilePixelCoordinates(tile.tileSize);
+	private void renderWaterBackground(Tile tile, int width, int height) {
+		this.drawingLayer = 0;
+		Point[] coordinates = getPixelCoordinates(width, height);
 		PolylineContainer way = new PolylineContainer(coordinates, tile, Arrays.asList(TAG_NATURAL_WATER));
 		this.renderTheme.matchClosedWay(this, way);
 	}
 
-	private void renderWay(final List<List<List<ShapePaintContainer>>> ways, PolylineContainer way) {
-		this.drawingLayers = ways.get(getValidLayer(way.getLayer()));
+	private void renderWay(PolylineContainer way) {
+		this.drawingLayer = getValidLayer(way.getLayer());
 
 		if (way.isClosedWay()) {
 			this.renderTheme.matchClosedWay(this, way);
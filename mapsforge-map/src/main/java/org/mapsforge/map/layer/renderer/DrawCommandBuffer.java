@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.util.Arrays;
+
+import org.mapsforge.core.graphics.Paint;
+
+/**
+ * The shapes of a tile in the order in which they are drawn. The commands are stored in parallel arrays that grow as
+ * needed and are reused for every tile rendered by the same {@link DatabaseRenderer}, so that no objects are allocated
+ * per shape.
+ * <p>
+ * Commands are drawn by ascending layer and level. Within the same layer and level, the commands added last are drawn
+ * first.
+ */
+final class DrawCommandBuffer {
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAX_INDEX = Integer.MAX_VALUE;
+
+	private int[] layerLevels;
+	private Paint[] paints;
+	private int size;
+	private boolean sorted;
+	private long[] sortKeys;
+	/**
+	 * The dy of a path or the radius of a circle.
+	 */
+	private float[] values;
+	private PolylineContainer[] ways;
+	private double[] xs;
+	private double[] ys;
+
+	DrawCommandBuffer() {
+		this.layerLevels = new int[INITIAL_CAPACITY];
+		this.paints = new Paint[INITIAL_CAPACITY];
+		this.sortKeys = new long[INITIAL_CAPACITY];
+		this.values = new float[INITIAL_CAPACITY];
+		this.ways = new PolylineContainer[INITIAL_CAPACITY];
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @param x
+	 *            the x coordinate of the center relative to the tile
+	 * @param y
+	 *            the y coordinate of the center relative to the tile
+	 */
+	void addCircle(byte layer, int level, Paint paint, double x, double y, float radius) {
+		int index = add(layer, level, paint);
+		this.ways[index] = null;
+		this.xs[index] = x;
+		this.ys[index] = y;
+		this.values[index] = radius;
+	}
+
+	void addPath(byte layer, int level, Paint paint, PolylineContainer way, float dy) {
+		int index = add(layer, level, paint);
+		this.ways[index] = way;
+		this.values[index] = dy;
+	}
+
+	/**
+	 * Removes all commands, the capacity is retained.
+	 */
+	void clear() {
+		// release the ways and paints for the garbage collector
+		Arrays.fill(this.ways, 0, this.size, null);
+		Arrays.fill(this.paints, 0, this.size, null);
+		this.size = 0;
+		this.sorted = false;
+	}
+
+	/**
+	 * @param position
+	 *            the position in drawing order, from 0 to {@link #size()} - 1
+	 * @return the command at the given position, to be passed to the getters
+	 */
+	int getCommand(int position) {
+		if (!this.sorted) {
+			throw new IllegalStateException("commands have not been sorted");
+		}
+		return MAX_INDEX - (int) this.sortKeys[position];
+	}
+
+	float getDy(int command) {
+		return this.values[command];
+	}
+
+	Paint getPaint(int command) {
+		return this.paints[command];
+	}
+
+	float getRadius(int command) {
+		return this.values[command];
+	}
+
+	/**
+	 * @return the way of a path command, null for a circle command.
+	 */
+	PolylineContainer getWay(int command) {
+		return this.ways[command];
+	}
+
+	double getX(int command) {
+		return this.xs[command];
+	}
+
+	double getY(int command) {
+		return this.ys[command];
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Sorts the commands into drawing order.
+	 */
+	void sort() {
+		for (int i = 0; i < this.size; ++i) {
+			// the layer and level in the upper bits, the reversed insertion order in the lower bits
+			this.sortKeys[i] = (long) this.layerLevels[i] << 32 | (MAX_INDEX - i);
+		}
+		Arrays.sort(this.sortKeys, 0, this.size);
+		this.sorted = true;
+	}
+
+	private int add(byte layer, int level, Paint paint) {
+		if (this.size == this.paints.length) {
+			grow();
+		}
+		int index = this.size++;
+		this.layerLevels[index] = layer << 24 | level;
+		this.paints[index] = paint;
+		this.sorted = false;
+		return index;
+	}
+
+	private void grow() {
+		int capacity = this.paints.length * 2;
+		this.layerLevels = Arrays.copyOf(this.layerLevels, capacity);
+		this.paints = Arrays.copyOf(this.paints, capacity);
+		this.sortKeys = Arrays.copyOf(this.sortKeys, capacity);
+		this.values = Arrays.copyOf(this.values, capacity);
+		this.ways = Arrays.copyOf(this.ways, capacity);
+		this.xs = Arrays.copyOf(this.xs, capacity);
+		this.ys = Arrays.copyOf(this.ys, capacity);
+	}
+}
@@ -48,6 +48,36 @@ final class GeometryUtils {
 		return new Point((pointXMin + pointXMax) / 2, (pointYMax + pointYMin) / 2);
 	}
 
+	/**
+	 * Calculates the center of the minimum bounding rectangle for the given coordinates.
+	 * 
+	 * @param coordinates
+	 *            the x and y coordinates of the points in turn.
+	 * @return the center coordinates of the minimum bounding rectangle.
+	 */
+	static Point calculateCenterOfBoundingBox(double[] coordinates) {
+		double pointXMin = coordinates[0];
+		double pointXMax = coordinates[0];
+		double pointYMin = coordinates[1];
+		double pointYMax = coordinates[1];
+
+		for (int i = 2; i < coordinates.length; i += 2) {
+			if (coordinates[i] < pointXMin) {
+				pointXMin = coordinates[i];
+			} else if (coordinates[i] > pointXMax) {
+				pointXMax = coordinates[i];
+			}
+
+			if (coordinates[i + 1] < pointYMin) {
+				pointYMin = coordinates[i + 1];
+			} else if (coordinates[i + 1] > pointYMax) {
+				pointYMax = coordinates[i + 1];
+			}
+		}
+
+		return new Point((pointXMin + pointXMax) / 2, (pointYMax + pointYMin) / 2);
+	}
+
 	/**
 	 * Calculates the center of the minimum bounding rectangle for the given coordinates.
 	 *
@@ -20,6 +20,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.queue.JobQueue;
@@ -32,6 +33,7 @@ public class MapWorker extends PausableThread {
 	private final DatabaseRenderer databaseRenderer;
 	private final JobQueue<RendererJob> jobQueue;
 	private final Layer layer;
+	private volatile int metatileSize;
 	private final TileCache tileCache;
 
 	private final AtomicLong totalExecutions;
@@ -53,6 +55,20 @@ public class MapWorker extends PausableThread {
 		this.jobQueue = jobQueue;
 		this.databaseRenderer = databaseRenderer;
 		this.layer = layer;
+		this.metatileSize = 1;
+	}
+
+	/**
+	 * @param metatileSize
+	 *            the number of tiles per side of the blocks which are rendered in one pass, 1 to render single tiles.
+	 * @throws IllegalArgumentException
+	 *             if the metatile size is less than one.
+	 */
+	public void setMetatileSize(int metatileSize) {
+		if (metatileSize < 1) {
+			throw new IllegalArgumentException("invalid metatile size: " + metatileSize);
+		}
+		this.metatileSize = metatileSize;
 	}
 
 	@Override
@@ -83,7 +99,16 @@ public class MapWorker extends PausableThread {
 			start = System.currentTimeMillis();
 		}
 
-		TileBitmap bitmap = this.databaseRenderer.executeJob(rendererJob);
+		// labels only jobs retrieve the labels of a single tile that is already cached
+		TileBitmap bitmap = null;
+		BoundingBox metatileBoundingBox = null;
+		int currentMetatileSize = this.metatileSize;
+		if (currentMetatileSize > 1 && !rendererJob.labelsOnly) {
+			metatileBoundingBox = this.databaseRenderer.executeMetatileJob(rendererJob, currentMetatileSize,
+					this.tileCache);
+		} else {
+			bitmap = this.databaseRenderer.executeJob(rendererJob);
+		}
 
 		if (DEBUG_TIMING) {
 			long end = System.currentTimeMillis();
@@ -94,12 +119,18 @@ public class MapWorker extends PausableThread {
 			}
 		}
 
+		if (!isInterrupted() && metatileBoundingBox != null) {
+			// the tiles of the metatile have been stored in the tile cache by the renderer
+			this.layer.requestRedraw(metatileBoundingBox);
+		}
 		if (!isInterrupted() && bitmap != null) {
 			this.tileCache.put(rendererJob, bitmap);
-			this.layer.requestRedraw();
+			this.layer.requestRedraw(rendererJob.tile.getBoundingBox());
 		}
 		if (bitmap != null) {
 			bitmap.decrementRefCount();
 		}
+		// the tile is in the cache or has been discarded
+		this.databaseRenderer.removePendingTile(rendererJob.tile);
 	}
 }
@@ -21,7 +21,7 @@ import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
-import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.core.util.TileProjector;
 import org.mapsforge.map.reader.Way;
 
 /**
@@ -33,22 +33,26 @@ import org.mapsforge.map.reader.Way;
  * released.
  */
 
-public class PolylineContainer implements ShapeContainer {
+public class PolylineContainer {
 
 	private Point center;
 	private Point[][] coordinatesAbsolute;
 	private Point[][] coordinatesRelativeToTile;
+	// the projected coordinates relative to the tile as x and y pairs, points are created when they are requested
+	private double[][] pixels;
 	private final List<Tag> tags;
 	private final byte layer;
 	private final Tile tile;
+	private final TileProjector tileProjector;
 	private final boolean isClosedWay;
 	private Way way;
 
-	PolylineContainer(Way way, Tile tile) {
+	PolylineContainer(Way way, Tile tile, TileProjector tileProjector) {
 		this.coordinatesAbsolute = null;
 		this.coordinatesRelativeToTile = null;
 		this.tags = way.tags;
 		this.tile = tile;
+		this.tileProjector = tileProjector;
 		layer = way.layer;
 		this.way = way;
 		this.isClosedWay = isClosedWay(way.latLongs[0]);
@@ -61,35 +65,36 @@ public class PolylineContainer implements ShapeContainer {
 		System.arraycopy(coordinates, 0, coordinatesAbsolute[0], 0, coordinates.length);
 		this.tags = tags;
 		this.tile = tile;
+		this.tileProjector = null;
 		this.layer = 0;
 		isClosedWay = coordinates[0].equals(coordinates[coordinates.length-1]);
 	}
 
 	public Point getCenterAbsolute() {
 		if (null == center) {
-			this.center = GeometryUtils.calculateCenterOfBoundingBox(getCoordinatesAbsolute()[0]);
+			if (coordinatesAbsolute != null) {
+				this.center = GeometryUtils.calculateCenterOfBoundingBox(coordinatesAbsolute[0]);
+			} else {
+				Point centerRelativeToTile = GeometryUtils.calculateCenterOfBoundingBox(getPixels()[0]);
+				this.center = centerRelativeToTile.offset(tileProjector.getOriginX(), tileProjector.getOriginY());
+			}
 		}
 		return this.center;
 	}
 
 	public Point[][] getCoordinatesAbsolute() {
 		// deferred evaluation as some PolyLineContainers will never be drawn. However,
-		// to save memory, after computing the absolute coordinates, the way is released.
+		// to save memory, after computing the coordinates, the way is released.
 		if (coordinatesAbsolute == null) {
-			coordinatesAbsolute = new Point[(way.latLongs.length)][];
-			for (int i = 0; i < way.latLongs.length; ++i) {
-				coordinatesAbsolute[i] = new Point[way.latLongs[i].length];
-				for (int j = 0; j < way.latLongs[i].length; ++j) {
-					coordinatesAbsolute[i][j] = MercatorProjection.getPixelAbsolute(way.latLongs[i][j], tile.zoomLevel, tile.tileSize);
-				}
-			}
-			this.way = null;
+			coordinatesAbsolute = toPoints(getPixels(), tileProjector.getOriginX(), tileProjector.getOriginY());
 		}
 		return coordinatesAbsolute;
 	}
 
 	public Point[][] getCoordinatesRelativeToTile() {
-		if (coordinatesRelativeToTile == null) {
+		if (coordinatesRelativeToTile == null && (pixels != null || way != null)) {
+			coordinatesRelativeToTile = toPoints(getPixels(), 0, 0);
+		} else if (coordinatesRelativeToTile == null) {
 			Point tileOrigin = tile.getOrigin();
 			coordinatesRelativeToTile = new Point[getCoordinatesAbsolute().length][];
 			for (int i = 0; i < coordinatesRelativeToTile.length; ++ i) {
@@ -106,11 +111,6 @@ public class PolylineContainer implements ShapeContainer {
 		return layer;
 	}
 
-	@Override
-	public ShapeType getShapeType() {
-		return ShapeType.POLYLINE;
-	}
-
 	public List<Tag> getTags() {
 		return tags;
 	}
@@ -127,4 +127,36 @@ public class PolylineContainer implements ShapeContainer {
 		return latLongs[0].distance(latLongs[latLongs.length -1]) < 0.000000001;
 	}
 
+	private double[][] getPixels() {
+		if (pixels == null) {
+			project();
+		}
+		return pixels;
+	}
+
+	/**
+	 * Projects the way to pixel coordinates relative to the tile, the tile projector yields them without creating a
+	 * point per node.
+	 */
+	private void project() {
+		LatLong[][] latLongs = way.latLongs;
+		pixels = new double[latLongs.length][];
+		for (int i = 0; i < latLongs.length; ++i) {
+			pixels[i] = new double[latLongs[i].length * 2];
+			tileProjector.project(latLongs[i], pixels[i]);
+		}
+		this.way = null;
+	}
+
+	private static Point[][] toPoints(double[][] pixels, double offsetX, double offsetY) {
+		Point[][] points = new Point[pixels.length][];
+		for (int i = 0; i < pixels.length; ++i) {
+			points[i] = new Point[pixels[i].length / 2];
+			for (int j = 0; j < points[i].length; ++j) {
+				points[i][j] = new Point(pixels[i][2 * j] + offsetX, pixels[i][2 * j + 1] + offsetY);
+			}
+		}
+		return points;
+	}
+
 }
@@ -14,9 +14,82 @@ package org.mapsforge.map.layer.renderer;
  * You should have received a copy of the GNU Lesser General Public License along with
  * this program. If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.mapsforge.core.model.Point;
 
 class RendererUtils {
+	private static final Point[] EMPTY = new Point[0];
+
+	/**
+	 * Clips a closed ring to a rectangle with the Sutherland-Hodgman algorithm. Parts outside the rectangle are
+	 * replaced by edges along its border, which is why the rectangle must include a margin for the stroke.
+	 *
+	 * @return the clipped ring, the given ring if it lies completely inside the rectangle.
+	 */
+	static Point[] clipPolygon(Point[] ring, double minX, double minY, double maxX, double maxY) {
+		if (isInside(ring, minX, minY, maxX, maxY)) {
+			return ring;
+		}
+
+		List<Point> points = new ArrayList<Point>(ring.length);
+		Collections.addAll(points, ring);
+		points = clipPolygonEdge(points, 0, minX);
+		points = clipPolygonEdge(points, 1, maxX);
+		points = clipPolygonEdge(points, 2, minY);
+		points = clipPolygonEdge(points, 3, maxY);
+		if (points.size() < 3) {
+			return EMPTY;
+		}
+		// close the ring again if the original first point has been clipped
+		if (!points.get(0).equals(points.get(points.size() - 1))) {
+			points.add(points.get(0));
+		}
+		return points.toArray(new Point[points.size()]);
+	}
+
+	/**
+	 * Clips an open polyline to a rectangle with the Liang-Barsky algorithm. A polyline that leaves and re-enters the
+	 * rectangle is split into several parts.
+	 *
+	 * @return the parts of the polyline inside the rectangle, the given polyline if it lies completely inside.
+	 */
+	static List<Point[]> clipPolyline(Point[] points, double minX, double minY, double maxX, double maxY) {
+		if (isInside(points, minX, minY, maxX, maxY)) {
+			return Collections.singletonList(points);
+		}
+
+		List<Point[]> parts = new ArrayList<Point[]>();
+		List<Point> part = new ArrayList<Point>();
+		for (int i = 1; i < points.length; ++i) {
+			Point start = points[i - 1];
+			Point end = points[i];
+			double dx = end.x - start.x;
+			double dy = end.y - start.y;
+
+			double[] t = { 0, 1 };
+			if (!clipT(-dx, start.x - minX, t) || !clipT(dx, maxX - start.x, t) || !clipT(-dy, start.y - minY, t)
+					|| !clipT(dy, maxY - start.y, t)) {
+				addPart(parts, part);
+				continue;
+			}
+
+			Point clippedStart = t[0] > 0 ? new Point(start.x + t[0] * dx, start.y + t[0] * dy) : start;
+			Point clippedEnd = t[1] < 1 ? new Point(start.x + t[1] * dx, start.y + t[1] * dy) : end;
+			if (part.isEmpty()) {
+				part.add(clippedStart);
+			}
+			part.add(clippedEnd);
+			if (t[1] < 1) {
+				// the segment leaves the rectangle
+				addPart(parts, part);
+			}
+		}
+		addPart(parts, part);
+		return parts;
+	}
 
 	/**
 	 * Computes a polyline with distance dy parallel to given coordinates.
@@ -50,6 +123,130 @@ class RendererUtils {
 		return h;
 	}
 
+	/**
+	 * Removes points that fall into the same pixel as the previous remaining point. The path coordinates after the
+	 * first point are truncated to whole pixels, so this does not change the rendered path.
+	 *
+	 * @return the simplified points, the given points if none has been removed.
+	 */
+	static Point[] simplify(Point[] points) {
+		if (points.length < 3) {
+			return points;
+		}
+
+		Point[] simplified = new Point[points.length];
+		simplified[0] = points[0];
+		simplified[1] = points[1];
+		int size = 2;
+		int previousX = (int) points[1].x;
+		int previousY = (int) points[1].y;
+		for (int i = 2; i < points.length; ++i) {
+			int x = (int) points[i].x;
+			int y = (int) points[i].y;
+			if (x != previousX || y != previousY) {
+				simplified[size++] = points[i];
+				previousX = x;
+				previousY = y;
+			}
+		}
+
+		if (size == points.length) {
+			return points;
+		}
+		Point[] result = new Point[size];
+		System.arraycopy(simplified, 0, result, 0, size);
+		return result;
+	}
+
+	private static void addPart(List<Point[]> parts, List<Point> part) {
+		if (part.size() >= 2) {
+			parts.add(part.toArray(new Point[part.size()]));
+		}
+		part.clear();
+	}
+
+	/**
+	 * Restricts the parameter interval of a segment by one border of the clip rectangle.
+	 *
+	 * @return false if the segment lies completely outside this border.
+	 */
+	private static boolean clipT(double p, double q, double[] t) {
+		if (p == 0) {
+			// parallel to the border
+			return q >= 0;
+		}
+		double r = q / p;
+		if (p < 0) {
+			if (r > t[1]) {
+				return false;
+			} else if (r > t[0]) {
+				t[0] = r;
+			}
+		} else {
+			if (r < t[0]) {
+				return false;
+			} else if (r < t[1]) {
+				t[1] = r;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Clips a ring against one border: 0 = minimum x, 1 = maximum x, 2 = minimum y, 3 = maximum y.
+	 */
+	private static List<Point> clipPolygonEdge(List<Point> points, int border, double value) {
+		List<Point> clipped = new ArrayList<Point>(points.size() + 4);
+		if (points.isEmpty()) {
+			return clipped;
+		}
+		Point previous = points.get(points.size() - 1);
+		boolean previousInside = isInside(previous, border, value);
+		for (Point current : points) {
+			boolean currentInside = isInside(current, border, value);
+			if (currentInside != previousInside) {
+				clipped.add(intersect(previous, current, border, value));
+			}
+			if (currentInside) {
+				clipped.add(current);
+			}
+			previous = current;
+			previousInside = currentInside;
+		}
+		return clipped;
+	}
+
+	private static Point intersect(Point start, Point end, int border, double value) {
+		if (border < 2) {
+			double t = (value - start.x) / (end.x - start.x);
+			return new Point(value, start.y + t * (end.y - start.y));
+		}
+		double t = (value - start.y) / (end.y - start.y);
+		return new Point(start.x + t * (end.x - start.x), value);
+	}
+
+	private static boolean isInside(Point point, int border, double value) {
+		switch (border) {
+			case 0:
+				return point.x >= value;
+			case 1:
+				return point.x <= value;
+			case 2:
+				return point.y >= value;
+			default:
+				return point.y <= value;
+		}
+	}
+
+	private static boolean isInside(Point[] points, double minX, double minY, double maxX, double maxY) {
+		for (Point point : points) {
+			if (point.x < minX || point.x > maxX || point.y < minY || point.y > maxY) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private RendererUtils() {
 		throw new IllegalStateException();
 	}
@@ -1,5 +1,6 @@
 package org.mapsforge.map.layer.renderer;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -7,6 +8,7 @@ import java.util.Set;
 
 import org.mapsforge.core.mapelements.MapElementContainer;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.LRUCache;
 
 /**
  * The TileDependecies class tracks the dependencies between tiles for labels.
@@ -18,12 +20,43 @@ import org.mapsforge.core.model.Tile;
  * For every tile drawn we must therefore enquire which labels from neighbouring tiles
  * overlap onto it and these labels must be drawn regardless of priority as part of the
  * label has already been drawn.
+ * <p>
+ * The data is bounded by a capacity and all methods are synchronized, so that one instance can be shared by the
+ * DatabaseRenderers of several render threads. A renderer holds the lock of the instance while it reads the
+ * dependencies of the tiles it draws and again while it updates them, and places its labels again if a neighbouring
+ * tile has been drawn in between, so that neighbouring tiles drawn at the same time see each other's labels.
+ * A drawn tile stays pending until its bitmap has been put into the tile cache or has been discarded, as the bitmap
+ * is only put into the cache after the dependencies have been updated.
  */
 public class TileDependencies {
-	Map<Tile, Map<Tile, Set<MapElementContainer>>> overlapData;
+	/**
+	 * The default maximum number of tiles for which overlapping elements are stored.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
 
-	TileDependencies() {
-		overlapData = new HashMap<>();
+	private final LRUCache<Tile, Map<Tile, Set<MapElementContainer>>> overlapData;
+	private final Set<Tile> pendingTiles;
+
+	/**
+	 * Creates a TileDependencies with the {@link #DEFAULT_CAPACITY}.
+	 */
+	public TileDependencies() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * The overlapping elements are stored for at most the given number of drawn tiles, the data of the least recently
+	 * used tile is dropped first. Tiles around the visible area are queried whenever a neighbour is drawn and so stay in
+	 * the cache, a label that overlaps from an evicted tile may be cut at the tile boundary.
+	 *
+	 * @param capacity
+	 *            the maximum number of tiles for which overlapping elements are stored.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public TileDependencies(int capacity) {
+		this.overlapData = new LRUCache<Tile, Map<Tile, Set<MapElementContainer>>>(capacity);
+		this.pendingTiles = Collections.newSetFromMap(new LRUCache<Tile, Boolean>(capacity));
 	}
 
 	/**
@@ -33,46 +66,86 @@ public class TileDependencies {
 	 * @param to tile the label clashesWith to
 	 * @param element the MapElementContainer in question
 	 */
-	void addOverlappingElement(Tile from, Tile to, MapElementContainer element) {
-		if (!overlapData.containsKey(from)) {
-			overlapData.put(from, new HashMap<Tile, Set<MapElementContainer>>());
+	synchronized void addOverlappingElement(Tile from, Tile to, MapElementContainer element) {
+		Map<Tile, Set<MapElementContainer>> tileData = this.overlapData.get(from);
+		if (tileData == null) {
+			tileData = new HashMap<Tile, Set<MapElementContainer>>();
+			this.overlapData.put(from, tileData);
 		}
-		if (!overlapData.get(from).containsKey(to)) {
-			overlapData.get(from).put(to, new HashSet<MapElementContainer>());
+		Set<MapElementContainer> elements = tileData.get(to);
+		if (elements == null) {
+			elements = new HashSet<MapElementContainer>();
+			tileData.put(to, elements);
 		}
-		overlapData.get(from).get(to).add(element);
+		elements.add(element);
+	}
+
+	/**
+	 * Marks a tile as drawn while its bitmap may not be in the tile cache yet.
+	 *
+	 * @param tile
+	 *            the drawn tile.
+	 */
+	synchronized void addPendingTile(Tile tile) {
+		this.pendingTiles.add(tile);
 	}
 
 	/**
 	 * Retrieves the overlap data from the neighbouring tiles
 	 * @param from the origin tile
 	 * @param to the tile the label clashesWith to
-	 * @return a List of the elements
+	 * @return a copy of the elements
 	 */
-	Set<MapElementContainer> getOverlappingElements(Tile from, Tile to) {
-		if (overlapData.containsKey(from) && overlapData.get(from).containsKey(to)) {
-			return overlapData.get(from).get(to);
+	synchronized Set<MapElementContainer> getOverlappingElements(Tile from, Tile to) {
+		Map<Tile, Set<MapElementContainer>> tileData = this.overlapData.get(from);
+		if (tileData != null && tileData.containsKey(to)) {
+			return new HashSet<MapElementContainer>(tileData.get(to));
 		}
 		return new HashSet<>(0);
 	}
 
+	/**
+	 * @return true if the tile has been drawn but not yet been found in the tile cache, false otherwise.
+	 */
+	synchronized boolean isPendingTile(Tile tile) {
+		return this.pendingTiles.contains(tile);
+	}
+
+	/**
+	 * Removes the pending mark of a tile once its bitmap has been put into the tile cache or has been discarded.
+	 *
+	 * @param tile
+	 *            the drawn tile.
+	 */
+	synchronized void removePendingTile(Tile tile) {
+		this.pendingTiles.remove(tile);
+	}
+
 	/**
 	 * Cache maintenance operation to remove data for a tile from the cache. This should be excuted
 	 * if a tile is removed from the TileCache and will be drawn again.
 	 * @param from
 	 */
-	void removeTileData(Tile from) {
-		overlapData.remove(from);
+	synchronized void removeTileData(Tile from) {
+		this.overlapData.remove(from);
 	}
+
 	/**
 	 * Cache maintenance operation to remove data for a tile from the cache. This should be excuted
 	 * if a tile is removed from the TileCache and will be drawn again.
 	 * @param from
 	 */
-	void removeTileData(Tile from, Tile to) {
-		if (overlapData.containsKey(from)) {
-			overlapData.get(from).remove(to);
+	synchronized void removeTileData(Tile from, Tile to) {
+		Map<Tile, Set<MapElementContainer>> tileData = this.overlapData.get(from);
+		if (tileData != null) {
+			tileData.remove(to);
 		}
+	}
 
+	/**
+	 * @return the number of tiles for which overlapping elements are stored.
+	 */
+	synchronized int size() {
+		return this.overlapData.size();
 	}
 }
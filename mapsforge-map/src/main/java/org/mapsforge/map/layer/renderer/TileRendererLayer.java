@@ -34,6 +34,7 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 	private final DatabaseRenderer databaseRenderer;
 	private final MapDatabase mapDatabase;
 	private File mapFile;
+	private int metatileSize;
 	private MapWorker mapWorker;
 	private float textScale;
 	private final TileBasedLabelStore tileBasedLabelStore;
@@ -49,7 +50,7 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 	 */
 	public TileRendererLayer(TileCache tileCache, MapViewPosition mapViewPosition, boolean isTransparent,
 	                         boolean renderLabels, GraphicFactory graphicFactory) {
-		super(tileCache, mapViewPosition, graphicFactory.createMatrix(), isTransparent);
+		super(tileCache, mapViewPosition, graphicFactory, isTransparent);
 
 		this.mapDatabase = new MapDatabase();
 		if (renderLabels) {
@@ -59,6 +60,7 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 			this.tileBasedLabelStore = new TileBasedLabelStore(tileCache.getCapacityFirstLevel());
 			this.databaseRenderer = new DatabaseRenderer(this.mapDatabase, graphicFactory, tileBasedLabelStore);
 		}
+		this.metatileSize = 1;
 		this.textScale = 1;
 	}
 
@@ -79,6 +81,10 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 		return this.mapFile;
 	}
 
+	public int getMetatileSize() {
+		return this.metatileSize;
+	}
+
 	public float getTextScale() {
 		return this.textScale;
 	}
@@ -98,6 +104,7 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 		super.setDisplayModel(displayModel);
 		if (displayModel != null) {
 			this.mapWorker = new MapWorker(this.tileCache, this.jobQueue, this.databaseRenderer, this);
+			this.mapWorker.setMetatileSize(this.metatileSize);
 			this.mapWorker.start();
 		} else {
 			// if we do not have a displayModel any more we can stop rendering.
@@ -115,6 +122,27 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 		}
 	}
 
+	/**
+	 * Renders blocks of metatileSize x metatileSize tiles in one pass instead of single tiles. The map data of a block
+	 * is read and matched against the render theme only once and labels are placed across the tiles of the block,
+	 * which increases the throughput when many tiles have to be rendered, e.g. after a zoom change. The default of 1
+	 * renders single tiles.
+	 *
+	 * @param metatileSize
+	 *            the number of tiles per side of a block, e.g. 4.
+	 * @throws IllegalArgumentException
+	 *             if the metatile size is less than one.
+	 */
+	public synchronized void setMetatileSize(int metatileSize) {
+		if (metatileSize < 1) {
+			throw new IllegalArgumentException("invalid metatile size: " + metatileSize);
+		}
+		this.metatileSize = metatileSize;
+		if (this.mapWorker != null) {
+			this.mapWorker.setMetatileSize(metatileSize);
+		}
+	}
+
 	public void setTextScale(float textScale) {
 		this.textScale = textScale;
 	}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An encoded Mapbox Vector Tile as created by the {@link VectorTileRenderer}. Vector tiles are not bitmaps, they are
+ * stored in a {@link VectorTileStore} instead of a tile cache.
+ */
+public class VectorTile {
+	/**
+	 * Reads a vector tile that has been written with {@link #writeTo(OutputStream)}.
+	 *
+	 * @param inputStream
+	 *            the stream to read from, it is read to the end but not closed.
+	 * @param tileSize
+	 *            the tile size of the vector tile.
+	 * @throws IOException
+	 *             if the stream cannot be read.
+	 */
+	public static VectorTile read(InputStream inputStream, int tileSize) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = inputStream.read(buffer)) != -1) {
+			outputStream.write(buffer, 0, length);
+		}
+		return new VectorTile(outputStream.toByteArray(), tileSize);
+	}
+
+	private final byte[] data;
+	private final int tileSize;
+
+	VectorTile(byte[] data, int tileSize) {
+		this.data = data;
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * @return a copy of the encoded tile.
+	 */
+	public byte[] getData() {
+		return this.data.clone();
+	}
+
+	/**
+	 * @return the tile size of this vector tile.
+	 */
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	/**
+	 * Writes the encoded tile unchanged to the given stream.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be written.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		outputStream.write(this.data);
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mapsforge.core.model.Point;
+
+/**
+ * Encodes features with pixel coordinates relative to a tile in the Mapbox Vector Tile format, version 2. The geometry
+ * is clipped to the tile and a buffer around it and quantised to integer coordinates from 0 to the extent of the tile.
+ * The protocol buffer messages are written directly, without a generated schema.
+ * <p>
+ * Property values may be strings, integers and booleans.
+ */
+final class VectorTileEncoder {
+	static final int GEOMETRY_TYPE_LINESTRING = 2;
+	static final int GEOMETRY_TYPE_POINT = 1;
+	static final int GEOMETRY_TYPE_POLYGON = 3;
+
+	private static final int COMMAND_CLOSE_PATH = 7;
+	private static final int COMMAND_LINE_TO = 2;
+	private static final int COMMAND_MOVE_TO = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int VERSION = 2;
+	private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+	private static final int WIRE_TYPE_VARINT = 0;
+
+	private static final class Feature {
+		final int[] geometry;
+		final int[] tags;
+		final int type;
+
+		Feature(int type, int[] tags, int[] geometry) {
+			this.type = type;
+			this.tags = tags;
+			this.geometry = geometry;
+		}
+	}
+
+	/**
+	 * Collects the commands of one feature, the cursor is shared by all parts of the feature.
+	 */
+	private static final class GeometryWriter {
+		int[] commands = new int[32];
+		int cursorX;
+		int cursorY;
+		int size;
+
+		void add(int value) {
+			if (this.size == this.commands.length) {
+				this.commands = Arrays.copyOf(this.commands, this.size * 2);
+			}
+			this.commands[this.size++] = value;
+		}
+
+		void addCommand(int id, int count) {
+			add((id & 0x7) | (count << 3));
+		}
+
+		void addPoints(int[] points, int from, int to) {
+			for (int i = from; i < to; i += 2) {
+				add(zigZag(points[i] - this.cursorX));
+				add(zigZag(points[i + 1] - this.cursorY));
+				this.cursorX = points[i];
+				this.cursorY = points[i + 1];
+			}
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.commands, this.size);
+		}
+	}
+
+	private static final class Layer {
+		final List<Feature> features = new ArrayList<Feature>();
+		final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+		final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+		int[] getTags(Map<String, Object> properties) {
+			int[] tags = new int[properties.size() * 2];
+			int i = 0;
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				tags[i++] = index(this.keys, property.getKey());
+				tags[i++] = index(this.values, property.getValue());
+			}
+			return tags;
+		}
+
+		private static <T> int index(Map<T, Integer> dictionary, T entry) {
+			Integer index = dictionary.get(entry);
+			if (index == null) {
+				index = Integer.valueOf(dictionary.size());
+				dictionary.put(entry, index);
+			}
+			return index.intValue();
+		}
+	}
+
+	private static void writeBytes(ByteArrayOutputStream outputStream, int field, byte[] bytes) {
+		writeVarint(outputStream, field << 3 | WIRE_TYPE_LENGTH_DELIMITED);
+		writeVarint(outputStream, bytes.length);
+		outputStream.write(bytes, 0, bytes.length);
+	}
+
+	private static void writePacked(ByteArrayOutputStream outputStream, int field, int[] values) {
+		ByteArrayOutputStream packed = new ByteArrayOutputStream(values.length * 2);
+		for (int value : values) {
+			writeVarint(packed, value & 0xffffffffL);
+		}
+		writeBytes(outputStream, field, packed.toByteArray());
+	}
+
+	private static void writeValue(ByteArrayOutputStream outputStream, Object value) {
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		if (value instanceof Boolean) {
+			writeVarint(message, 7 << 3 | WIRE_TYPE_VARINT);
+			writeVarint(message, ((Boolean) value).booleanValue() ? 1 : 0);
+		} else if (value instanceof Number) {
+			writeVarint(message, 4 << 3 | WIRE_TYPE_VARINT);
+			writeVarint(message, ((Number) value).longValue());
+		} else {
+			writeBytes(message, 1, value.toString().getBytes(UTF_8));
+		}
+		writeBytes(outputStream, 4, message.toByteArray());
+	}
+
+	private static void writeVarint(ByteArrayOutputStream outputStream, long value) {
+		long remaining = value;
+		while ((remaining & ~0x7fL) != 0) {
+			outputStream.write((int) (remaining & 0x7f) | 0x80);
+			remaining >>>= 7;
+		}
+		outputStream.write((int) remaining);
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private final int extent;
+	private final Map<String, Layer> layers;
+	private final double margin;
+	private final double scale;
+	private final int tileSize;
+
+	/**
+	 * @param tileSize
+	 *            the size of the tile in pixels.
+	 * @param extent
+	 *            the number of integer coordinates per side of the tile, e.g. 4096.
+	 * @param buffer
+	 *            the width of the border around the tile in which geometry is retained, in integer coordinates.
+	 */
+	VectorTileEncoder(int tileSize, int extent, int buffer) {
+		this.tileSize = tileSize;
+		this.extent = extent;
+		this.scale = (double) extent / tileSize;
+		this.margin = buffer / this.scale;
+		this.layers = new LinkedHashMap<String, Layer>();
+	}
+
+	/**
+	 * Adds a line string feature, an open polyline that leaves and re-enters the tile becomes a multi line string.
+	 */
+	void addLineString(String layerName, Map<String, Object> properties, Point[][] lines) {
+		GeometryWriter geometryWriter = new GeometryWriter();
+		for (Point[] line : lines) {
+			List<Point[]> parts = RendererUtils.clipPolyline(line, -this.margin, -this.margin,
+					this.tileSize + this.margin, this.tileSize + this.margin);
+			for (Point[] part : parts) {
+				int[] points = quantise(part);
+				if (points.length >= 4) {
+					geometryWriter.addCommand(COMMAND_MOVE_TO, 1);
+					geometryWriter.addPoints(points, 0, 2);
+					geometryWriter.addCommand(COMMAND_LINE_TO, points.length / 2 - 1);
+					geometryWriter.addPoints(points, 2, points.length);
+				}
+			}
+		}
+		addFeature(layerName, properties, GEOMETRY_TYPE_LINESTRING, geometryWriter);
+	}
+
+	/**
+	 * Adds a point feature, nothing is added if the point lies outside the tile and its buffer.
+	 */
+	void addPoint(String layerName, Map<String, Object> properties, Point point) {
+		if (point.x < -this.margin || point.y < -this.margin || point.x > this.tileSize + this.margin
+				|| point.y > this.tileSize + this.margin) {
+			return;
+		}
+		GeometryWriter geometryWriter = new GeometryWriter();
+		geometryWriter.addCommand(COMMAND_MOVE_TO, 1);
+		geometryWriter.addPoints(quantise(new Point[] { point }), 0, 2);
+		addFeature(layerName, properties, GEOMETRY_TYPE_POINT, geometryWriter);
+	}
+
+	/**
+	 * Adds a polygon feature. The first ring is the outer ring, all others are holes. The winding order of the rings
+	 * is corrected as the format demands and rings that collapse during quantisation are dropped.
+	 */
+	void addPolygon(String layerName, Map<String, Object> properties, Point[][] rings) {
+		GeometryWriter geometryWriter = new GeometryWriter();
+		for (int i = 0; i < rings.length; ++i) {
+			Point[] clippedRing = RendererUtils.clipPolygon(rings[i], -this.margin, -this.margin,
+					this.tileSize + this.margin, this.tileSize + this.margin);
+			int[] points = quantise(clippedRing);
+			int length = points.length;
+			// the closing point is implied by the close path command
+			if (length >= 4 && points[0] == points[length - 2] && points[1] == points[length - 1]) {
+				length -= 2;
+			}
+			long area = length >= 6 ? getDoubleArea(points, length) : 0;
+			if (area == 0) {
+				if (i == 0) {
+					// without the outer ring the holes are meaningless
+					return;
+				}
+				continue;
+			}
+			// the outer ring must have a positive area in tile coordinates, whose y axis points down
+			if ((area > 0) != (i == 0)) {
+				reverse(points, length);
+			}
+			geometryWriter.addCommand(COMMAND_MOVE_TO, 1);
+			geometryWriter.addPoints(points, 0, 2);
+			geometryWriter.addCommand(COMMAND_LINE_TO, length / 2 - 1);
+			geometryWriter.addPoints(points, 2, length);
+			geometryWriter.addCommand(COMMAND_CLOSE_PATH, 1);
+		}
+		addFeature(layerName, properties, GEOMETRY_TYPE_POLYGON, geometryWriter);
+	}
+
+	/**
+	 * @return the encoded tile.
+	 */
+	byte[] encode() {
+		ByteArrayOutputStream tile = new ByteArrayOutputStream();
+		for (Map.Entry<String, Layer> entry : this.layers.entrySet()) {
+			Layer layer = entry.getValue();
+			ByteArrayOutputStream message = new ByteArrayOutputStream();
+			writeVarint(message, 15 << 3 | WIRE_TYPE_VARINT);
+			writeVarint(message, VERSION);
+			writeBytes(message, 1, entry.getKey().getBytes(UTF_8));
+			for (Feature feature : layer.features) {
+				ByteArrayOutputStream featureMessage = new ByteArrayOutputStream();
+				writePacked(featureMessage, 2, feature.tags);
+				writeVarint(featureMessage, 3 << 3 | WIRE_TYPE_VARINT);
+				writeVarint(featureMessage, feature.type);
+				writePacked(featureMessage, 4, feature.geometry);
+				writeBytes(message, 2, featureMessage.toByteArray());
+			}
+			for (String key : layer.keys.keySet()) {
+				writeBytes(message, 3, key.getBytes(UTF_8));
+			}
+			for (Object value : layer.values.keySet()) {
+				writeValue(message, value);
+			}
+			writeVarint(message, 5 << 3 | WIRE_TYPE_VARINT);
+			writeVarint(message, this.extent);
+			writeBytes(tile, 3, message.toByteArray());
+		}
+		return tile.toByteArray();
+	}
+
+	/**
+	 * @return true if no feature has been added.
+	 */
+	boolean isEmpty() {
+		return this.layers.isEmpty();
+	}
+
+	private void addFeature(String layerName, Map<String, Object> properties, int type,
+			GeometryWriter geometryWriter) {
+		if (geometryWriter.size == 0) {
+			return;
+		}
+		Layer layer = this.layers.get(layerName);
+		if (layer == null) {
+			layer = new Layer();
+			this.layers.put(layerName, layer);
+		}
+		layer.features.add(new Feature(type, layer.getTags(properties), geometryWriter.toArray()));
+	}
+
+	private long getDoubleArea(int[] points, int length) {
+		long area = 0;
+		for (int i = 0; i < length; i += 2) {
+			int j = (i + 2) % length;
+			area += (long) points[i] * points[j + 1] - (long) points[j] * points[i + 1];
+		}
+		return area;
+	}
+
+	/**
+	 * @return the integer coordinates as alternating x and y values, without consecutive duplicates.
+	 */
+	private int[] quantise(Point[] points) {
+		int[] result = new int[points.length * 2];
+		int length = 0;
+		for (Point point : points) {
+			int x = (int) Math.round(point.x * this.scale);
+			int y = (int) Math.round(point.y * this.scale);
+			if (length == 0 || x != result[length - 2] || y != result[length - 1]) {
+				result[length++] = x;
+				result[length++] = y;
+			}
+		}
+		return length == result.length ? result : Arrays.copyOf(result, length);
+	}
+
+	private void reverse(int[] points, int length) {
+		for (int i = 0, j = length - 2; i < j; i += 2, j -= 2) {
+			int x = points[i];
+			int y = points[i + 1];
+			points[i] = points[j];
+			points[i + 1] = points[j + 1];
+			points[j] = x;
+			points[j + 1] = y;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.layer.queue.Job;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+
+/**
+ * A job for the {@link VectorTileRenderer}. It never equals a {@link RendererJob}.
+ */
+public class VectorTileJob extends Job {
+	/**
+	 * The default number of integer coordinates per side of a vector tile.
+	 */
+	public static final int DEFAULT_EXTENT = 4096;
+
+	public final DisplayModel displayModel;
+	public final int extent;
+	public final File mapFile;
+	public final XmlRenderTheme xmlRenderTheme;
+	private final int hashCodeValue;
+
+	public VectorTileJob(Tile tile, File mapFile, XmlRenderTheme xmlRenderTheme, DisplayModel displayModel) {
+		this(tile, mapFile, xmlRenderTheme, displayModel, DEFAULT_EXTENT);
+	}
+
+	public VectorTileJob(Tile tile, File mapFile, XmlRenderTheme xmlRenderTheme, DisplayModel displayModel,
+			int extent) {
+		super(tile, false);
+
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (xmlRenderTheme == null) {
+			throw new IllegalArgumentException("xmlRenderTheme must not be null");
+		} else if (extent <= 0) {
+			throw new IllegalArgumentException("invalid extent: " + extent);
+		}
+
+		this.displayModel = displayModel;
+		this.extent = extent;
+		this.mapFile = mapFile;
+		this.xmlRenderTheme = xmlRenderTheme;
+
+		this.hashCodeValue = calculateHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!super.equals(obj)) {
+			return false;
+		} else if (!(obj instanceof VectorTileJob)) {
+			return false;
+		}
+		VectorTileJob other = (VectorTileJob) obj;
+		if (this.extent != other.extent) {
+			return false;
+		} else if (!this.mapFile.equals(other.mapFile)) {
+			return false;
+		} else if (!this.xmlRenderTheme.equals(other.xmlRenderTheme)) {
+			return false;
+		} else if (this.displayModel == null ? other.displayModel != null : !this.displayModel
+				.equals(other.displayModel)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCodeValue;
+	}
+
+	/**
+	 * @param tile
+	 *            the tile of the new job.
+	 * @return a job with the same parameters as this one for the given tile.
+	 */
+	public VectorTileJob otherTile(Tile tile) {
+		return new VectorTileJob(tile, this.mapFile, this.xmlRenderTheme, this.displayModel, this.extent);
+	}
+
+	private int calculateHashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + this.extent;
+		result = prime * result + this.mapFile.hashCode();
+		result = prime * result + this.xmlRenderTheme.hashCode();
+		result = prime * result + VectorTileJob.class.getName().hashCode();
+		return result;
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Position;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.core.util.TileProjector;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.PointOfInterest;
+import org.mapsforge.map.reader.Way;
+import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.RenderTheme;
+import org.mapsforge.map.rendertheme.rule.RenderThemeHandler;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * The VectorTileRenderer creates Mapbox Vector Tiles from a {@link MapDatabase} instead of bitmaps. The map data of a
+ * tile is matched against the render theme like in the {@link DatabaseRenderer}, but the render instructions that
+ * apply to an element emit features with the geometry of the element instead of drawing it:
+ * <ul>
+ * <li>areas are written to the layer {@value #LAYER_AREAS} and ways to the layer {@value #LAYER_WAYS},</li>
+ * <li>circles of points of interest are written to the layer {@value #LAYER_POINTS},</li>
+ * <li>captions and symbols are written to the layer {@value #LAYER_LABELS}.</li>
+ * </ul>
+ * Every feature carries the tags of the element, its drawing layer as {@value #KEY_LAYER} and, depending on the
+ * instruction, the drawing level as {@value #KEY_LEVEL}, the text as {@value #KEY_CAPTION} and the priority as
+ * {@value #KEY_PRIORITY}, so that clients can style the features with the same rules as the theme. The styling itself
+ * (paints, offsets, bitmaps) is not encoded.
+ * <p>
+ * An element is encoded at most once per layer and geometry type, even if several instructions apply to it (e.g. the
+ * casing and the core of a road). Such a feature carries the lowest level and the highest priority of the
+ * instructions, and the caption and symbol flag of all of them.
+ * <p>
+ * The resulting {@link VectorTile} can be stored in a {@link VectorTileStore}.
+ */
+public class VectorTileRenderer implements RenderCallback {
+	public static final String KEY_CAPTION = "caption";
+	public static final String KEY_LAYER = "layer";
+	public static final String KEY_LEVEL = "level";
+	public static final String KEY_PRIORITY = "priority";
+	public static final String KEY_SYMBOL = "symbol";
+	public static final String LAYER_AREAS = "areas";
+	public static final String LAYER_LABELS = "labels";
+	public static final String LAYER_POINTS = "points";
+	public static final String LAYER_WAYS = "ways";
+
+	/**
+	 * The width of the buffer around the tile is the extent divided by this value.
+	 */
+	private static final int BUFFER_DIVISOR = 16;
+	private static final Logger LOGGER = Logger.getLogger(VectorTileRenderer.class.getName());
+	private static final Tag TAG_NATURAL_WATER = new Tag("natural", "water");
+
+	private static class Feature {
+		final Point[][] coordinates;
+		final String layerName;
+		final Point point;
+		final Map<String, Object> properties;
+		final int type;
+
+		Feature(String layerName, int type, Map<String, Object> properties, Point[][] coordinates, Point point) {
+			this.layerName = layerName;
+			this.type = type;
+			this.properties = properties;
+			this.coordinates = coordinates;
+			this.point = point;
+		}
+
+		void merge(Map<String, Object> otherProperties) {
+			for (Map.Entry<String, Object> entry : otherProperties.entrySet()) {
+				String key = entry.getKey();
+				Object value = entry.getValue();
+				Object previousValue = this.properties.get(key);
+				if (previousValue == null) {
+					this.properties.put(key, value);
+				} else if (KEY_LEVEL.equals(key)) {
+					this.properties.put(key, Integer.valueOf(Math.min((Integer) previousValue, (Integer) value)));
+				} else if (KEY_PRIORITY.equals(key)) {
+					this.properties.put(key, Integer.valueOf(Math.max((Integer) previousValue, (Integer) value)));
+				}
+			}
+		}
+	}
+
+	private byte drawingLayer;
+	private VectorTileEncoder encoder;
+	/**
+	 * The features of the element that is currently matched, by layer name and geometry type.
+	 */
+	private final Map<String, Feature> features;
+	private final GraphicFactory graphicFactory;
+	private final MapDatabase mapDatabase;
+	private XmlRenderTheme previousJobTheme;
+	private RenderTheme renderTheme;
+
+	/**
+	 * @param mapDatabase
+	 *            the database from which the map data is read.
+	 * @param graphicFactory
+	 *            the graphic factory that creates the render theme.
+	 */
+	public VectorTileRenderer(MapDatabase mapDatabase, GraphicFactory graphicFactory) {
+		this.mapDatabase = mapDatabase;
+		this.graphicFactory = graphicFactory;
+		this.features = new LinkedHashMap<String, Feature>();
+	}
+
+	public void destroy() {
+		if (this.renderTheme != null) {
+			this.renderTheme.destroy();
+		}
+	}
+
+	/**
+	 * @return the encoded tile or null if the render theme of the job could not be loaded.
+	 */
+	public VectorTile executeJob(VectorTileJob vectorTileJob) {
+		if (!prepareRenderTheme(vectorTileJob)) {
+			return null;
+		}
+
+		Tile tile = vectorTileJob.tile;
+		this.encoder = new VectorTileEncoder(tile.tileSize, vectorTileJob.extent,
+				vectorTileJob.extent / BUFFER_DIVISOR);
+		try {
+			processReadMapData(this.mapDatabase.readMapData(tile), tile);
+			return new VectorTile(this.encoder.encode(), tile.tileSize);
+		} finally {
+			this.encoder = null;
+			this.features.clear();
+		}
+	}
+
+	@Override
+	public void renderArea(PolylineContainer way, Paint fill, Paint stroke, int level) {
+		addFeature(LAYER_AREAS, VectorTileEncoder.GEOMETRY_TYPE_POLYGON, createProperties(way.getTags(), level),
+				way.getCoordinatesRelativeToTile(), null);
+	}
+
+	@Override
+	public void renderAreaCaption(PolylineContainer way, int priority, String caption, float horizontalOffset,
+			float verticalOffset, Paint fill, Paint stroke, Position position, int maxTextWidth) {
+		Map<String, Object> properties = createLabelProperties(way.getTags(), priority);
+		properties.put(KEY_CAPTION, caption);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_POINT, properties, null, getCenterRelativeToTile(way));
+	}
+
+	@Override
+	public void renderAreaSymbol(PolylineContainer way, int priority, Bitmap symbol) {
+		Map<String, Object> properties = createLabelProperties(way.getTags(), priority);
+		properties.put(KEY_SYMBOL, Boolean.TRUE);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_POINT, properties, null, getCenterRelativeToTile(way));
+	}
+
+	@Override
+	public void renderPointOfInterestCaption(PointOfInterest poi, int priority, String caption,
+			float horizontalOffset, float verticalOffset, Paint fill, Paint stroke, Position position,
+			int maxTextWidth, Tile tile) {
+		Map<String, Object> properties = createLabelProperties(poi.tags, priority);
+		properties.put(KEY_CAPTION, caption);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_POINT, properties, null,
+				MercatorProjection.getPixelRelativeToTile(poi.position, tile));
+	}
+
+	@Override
+	public void renderPointOfInterestCircle(PointOfInterest poi, float radius, Paint fill, Paint stroke, int level,
+			Tile tile) {
+		addFeature(LAYER_POINTS, VectorTileEncoder.GEOMETRY_TYPE_POINT, createProperties(poi.tags, level), null,
+				MercatorProjection.getPixelRelativeToTile(poi.position, tile));
+	}
+
+	@Override
+	public void renderPointOfInterestSymbol(PointOfInterest poi, int priority, Bitmap symbol, Tile tile) {
+		Map<String, Object> properties = createLabelProperties(poi.tags, priority);
+		properties.put(KEY_SYMBOL, Boolean.TRUE);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_POINT, properties, null,
+				MercatorProjection.getPixelRelativeToTile(poi.position, tile));
+	}
+
+	@Override
+	public void renderWay(PolylineContainer way, Paint stroke, float dy, int level) {
+		addFeature(LAYER_WAYS, VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, createProperties(way.getTags(), level),
+				way.getCoordinatesRelativeToTile(), null);
+	}
+
+	@Override
+	public void renderWaySymbol(PolylineContainer way, int priority, Bitmap symbol, float dy, boolean alignCenter,
+			boolean repeat, float repeatGap, float repeatStart, boolean rotate) {
+		Map<String, Object> properties = createLabelProperties(way.getTags(), priority);
+		properties.put(KEY_SYMBOL, Boolean.TRUE);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, properties,
+				way.getCoordinatesRelativeToTile(), null);
+	}
+
+	@Override
+	public void renderWayText(PolylineContainer way, int priority, String textKey, float dy, Paint fill,
+			Paint stroke) {
+		Map<String, Object> properties = createLabelProperties(way.getTags(), priority);
+		properties.put(KEY_CAPTION, textKey);
+		addFeature(LAYER_LABELS, VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, properties,
+				way.getCoordinatesRelativeToTile(), null);
+	}
+
+	/**
+	 * Adds a feature of the current element, or merges its properties into the feature of the current element with the
+	 * same layer and geometry type.
+	 */
+	private void addFeature(String layerName, int type, Map<String, Object> properties, Point[][] coordinates,
+			Point point) {
+		String key = layerName + '/' + type;
+		Feature feature = this.features.get(key);
+		if (feature == null) {
+			this.features.put(key, new Feature(layerName, type, properties, coordinates, point));
+		} else {
+			feature.merge(properties);
+		}
+	}
+
+	private Map<String, Object> createLabelProperties(List<Tag> tags, int priority) {
+		Map<String, Object> properties = createTagProperties(tags);
+		properties.put(KEY_PRIORITY, Integer.valueOf(priority));
+		return properties;
+	}
+
+	private Map<String, Object> createProperties(List<Tag> tags, int level) {
+		Map<String, Object> properties = createTagProperties(tags);
+		properties.put(KEY_LEVEL, Integer.valueOf(level));
+		return properties;
+	}
+
+	private Map<String, Object> createTagProperties(List<Tag> tags) {
+		Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		for (Tag tag : tags) {
+			properties.put(tag.key, tag.value);
+		}
+		properties.put(KEY_LAYER, Integer.valueOf(this.drawingLayer));
+		return properties;
+	}
+
+	/**
+	 * Encodes the features of the element that has just been matched.
+	 */
+	private void flushFeatures() {
+		for (Iterator<Feature> iterator = this.features.values().iterator(); iterator.hasNext();) {
+			Feature feature = iterator.next();
+			iterator.remove();
+			if (feature.type == VectorTileEncoder.GEOMETRY_TYPE_POLYGON) {
+				this.encoder.addPolygon(feature.layerName, feature.properties, feature.coordinates);
+			} else if (feature.type == VectorTileEncoder.GEOMETRY_TYPE_LINESTRING) {
+				this.encoder.addLineString(feature.layerName, feature.properties, feature.coordinates);
+			} else {
+				this.encoder.addPoint(feature.layerName, feature.properties, feature.point);
+			}
+		}
+	}
+
+	private Point getCenterRelativeToTile(PolylineContainer way) {
+		Point origin = way.getTile().getOrigin();
+		return way.getCenterAbsolute().offset(-origin.x, -origin.y);
+	}
+
+	private boolean prepareRenderTheme(VectorTileJob vectorTileJob) {
+		XmlRenderTheme jobTheme = vectorTileJob.xmlRenderTheme;
+		if (!jobTheme.equals(this.previousJobTheme)) {
+			if (this.renderTheme != null) {
+				this.renderTheme.destroy();
+			}
+			try {
+				this.renderTheme = RenderThemeHandler.getRenderTheme(this.graphicFactory,
+						vectorTileJob.displayModel, jobTheme);
+			} catch (XmlPullParserException e) {
+				LOGGER.log(Level.SEVERE, null, e);
+				this.renderTheme = null;
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, null, e);
+				this.renderTheme = null;
+			}
+			if (this.renderTheme == null) {
+				this.previousJobTheme = null;
+				return false;
+			}
+			this.previousJobTheme = jobTheme;
+		}
+		return true;
+	}
+
+	private void processReadMapData(MapReadResult mapReadResult, Tile tile) {
+		if (mapReadResult == null) {
+			return;
+		}
+
+		for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
+			this.drawingLayer = DatabaseRenderer.getValidLayer(pointOfInterest.layer);
+			this.renderTheme.matchNode(this, pointOfInterest, tile);
+			flushFeatures();
+		}
+
+		TileProjector tileProjector = new TileProjector(tile, true);
+		for (Way way : mapReadResult.ways) {
+			PolylineContainer polylineContainer = new PolylineContainer(way, tile, tileProjector);
+			this.drawingLayer = DatabaseRenderer.getValidLayer(polylineContainer.getLayer());
+			if (polylineContainer.isClosedWay()) {
+				this.renderTheme.matchClosedWay(this, polylineContainer);
+			} else {
+				this.renderTheme.matchLinearWay(this, polylineContainer);
+			}
+			flushFeatures();
+		}
+
+		if (mapReadResult.isWater) {
+			renderWaterBackground(tile);
+		}
+	}
+
+	private void renderWaterBackground(Tile tile) {
+		this.drawingLayer = 0;
+		Point origin = tile.getOrigin();
+		Point[] coordinates = new Point[5];
+		coordinates[0] = origin;
+		coordinates[1] = origin.offset(tile.tileSize, 0);
+		coordinates[2] = origin.offset(tile.tileSize, tile.tileSize);
+		coordinates[3] = origin.offset(0, tile.tileSize);
+		coordinates[4] = origin;
+		PolylineContainer way = new PolylineContainer(coordinates, tile, Arrays.asList(TAG_NATURAL_WATER));
+		this.renderTheme.matchClosedWay(this, way);
+		flushFeatures();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.util.IOUtils;
+
+/**
+ * A thread-safe store for {@link VectorTile vector tiles} in the file system. The tiles are stored in the XYZ directory
+ * layout of zoomlevel/x/y with the suffix {@value #FILE_EXTENSION}. Like the tile numbers of mapsforge, y increases
+ * to the south, so that the tiles can be served directly to clients that request slippy map coordinates.
+ * The file names depend only on the tiles of the jobs, a store holds the tiles of one map, render theme and extent.
+ */
+public class VectorTileStore {
+	static final String FILE_EXTENSION = ".mvt";
+	private static final Logger LOGGER = Logger.getLogger(VectorTileStore.class.getName());
+
+	private final File rootDirectory;
+
+	/**
+	 * @param rootDirectory
+	 *            the directory where the vector tiles are stored, it is created if it does not exist.
+	 * @throws IllegalArgumentException
+	 *             if the directory cannot be created, read or written.
+	 */
+	public VectorTileStore(File rootDirectory) {
+		if (!rootDirectory.exists() && !rootDirectory.mkdirs()) {
+			throw new IllegalArgumentException("could not create directory: " + rootDirectory);
+		} else if (!rootDirectory.isDirectory()) {
+			throw new IllegalArgumentException("not a directory: " + rootDirectory);
+		} else if (!rootDirectory.canRead() || !rootDirectory.canWrite()) {
+			throw new IllegalArgumentException("cannot read or write directory: " + rootDirectory);
+		}
+		this.rootDirectory = rootDirectory;
+	}
+
+	/**
+	 * @return true if this store contains a vector tile for the given job, false otherwise.
+	 */
+	public synchronized boolean containsKey(VectorTileJob key) {
+		return getFile(key).isFile();
+	}
+
+	/**
+	 * @return the vector tile for the given job or null, if this store contains no vector tile for the job or it
+	 *         cannot be read.
+	 */
+	public synchronized VectorTile get(VectorTileJob key) {
+		File file = getFile(key);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		InputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			return VectorTile.read(inputStream, key.tile.tileSize);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "could not read file: " + file, e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	/**
+	 * Stores the vector tile for the given job, an existing tile is overwritten.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is {@code null}.
+	 * @throws IOException
+	 *             if the vector tile cannot be written.
+	 */
+	public synchronized void put(VectorTileJob key, VectorTile vectorTile) throws IOException {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (vectorTile == null) {
+			throw new IllegalArgumentException("vectorTile must not be null");
+		}
+
+		File file = getFile(key);
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("could not create directory: " + directory);
+		}
+
+		OutputStream outputStream = null;
+		try {
+			outputStream = new FileOutputStream(file);
+			vectorTile.writeTo(outputStream);
+		} finally {
+			IOUtils.closeQuietly(outputStream);
+		}
+	}
+
+	private File getFile(VectorTileJob key) {
+		File zoomLevelDirectory = new File(this.rootDirectory, Byte.toString(key.tile.zoomLevel));
+		File tileXDirectory = new File(zoomLevelDirectory, Long.toString(key.tile.tileX));
+		return new File(tileXDirectory, Long.toString(key.tile.tileY) + FILE_EXTENSION);
+	}
+}
@@ -25,7 +25,7 @@ import org.mapsforge.map.model.MapViewPosition;
 public class TileStoreLayer extends TileLayer<Job> {
 
 	public TileStoreLayer(TileCache tileCache, MapViewPosition mapViewPosition, GraphicFactory graphicFactory, boolean isTransparent) {
-		super(tileCache, mapViewPosition, graphicFactory.createMatrix(), isTransparent, false);
+		super(tileCache, mapViewPosition, graphicFactory, isTransparent, false);
 	}
 
 	@Override
@@ -15,6 +15,9 @@
  */
 package org.mapsforge.map.model;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.MapPosition;
@@ -25,9 +28,23 @@ import org.mapsforge.map.model.common.Persistable;
 import org.mapsforge.map.model.common.PreferencesFacade;
 import org.mapsforge.map.util.PausableThread;
 
+/**
+ * The position of the map: its center, zoom level, scale factor and limits.
+ * <p>
+ * All values are kept together in an immutable {@link MapViewPositionSnapshot}, which is replaced atomically on every
+ * change, so that the getters never block and {@link #getSnapshot()} returns values which fit together. Changes are
+ * serialized by the monitor of this object.
+ * <p>
+ * Observers are not called by the thread which changes the position. Changes are collected and the observers are
+ * notified at most once per animation frame, after which they see the latest position. Many calls of
+ * {@link #moveCenter(double, double)} during a fling therefore result in a single notification per frame.
+ */
 public class MapViewPosition extends Observable implements Persistable {
 
-	class ZoomAnimator extends PausableThread {
+	/**
+	 * Runs the zoom animation and notifies the observers of changes, both at most once per frame.
+	 */
+	class Animator extends PausableThread {
 
 		// debugging tip: for investigating what happens during the zoom animation
 		// just make the times longer for duration and frame length
@@ -36,19 +53,25 @@ public class MapViewPosition extends Observable implements Persistable {
 
 		double scaleDifference;
 		double startScaleFactor;
+		private final AtomicBoolean changed = new AtomicBoolean();
 		private boolean executeAnimation;
 		private long timeEnd;
 		private long timeStart;
 
 		@Override
 		protected void doWork() throws InterruptedException {
-			if (System.currentTimeMillis() >= this.timeEnd) {
-				this.executeAnimation = false;
-				MapViewPosition.this.setScaleFactor(calculateScaleFactor(1));
-				MapViewPosition.this.setPivot(null);
-			} else {
-				float timeElapsedRatio = (System.currentTimeMillis() - this.timeStart) / (1f * DEFAULT_DURATION);
-				MapViewPosition.this.setScaleFactor(calculateScaleFactor(timeElapsedRatio));
+			if (this.executeAnimation) {
+				if (System.currentTimeMillis() >= this.timeEnd) {
+					this.executeAnimation = false;
+					MapViewPosition.this.setScaleFactor(calculateScaleFactor(1));
+					MapViewPosition.this.setPivot(null);
+				} else {
+					float timeElapsedRatio = (System.currentTimeMillis() - this.timeStart) / (1f * DEFAULT_DURATION);
+					MapViewPosition.this.setScaleFactor(calculateScaleFactor(timeElapsedRatio));
+				}
+			}
+			if (this.changed.getAndSet(false)) {
+				MapViewPosition.this.notifyObservers();
 			}
 			sleep(FRAME_LENGTH_IN_MS);
 		}
@@ -60,7 +83,18 @@ public class MapViewPosition extends Observable implements Persistable {
 
 		@Override
 		protected boolean hasWork() {
-			return this.executeAnimation;
+			return this.executeAnimation || this.changed.get();
+		}
+
+		/**
+		 * Schedules a notification of the observers, further changes before it happens are coalesced.
+		 */
+		void onChange() {
+			if (this.changed.compareAndSet(false, true)) {
+				synchronized (this) {
+					notify();
+				}
+			}
 		}
 
 		void startAnimation(double startScaleFactor, double targetScaleFactor) {
@@ -100,23 +134,18 @@ public class MapViewPosition extends Observable implements Persistable {
 		return false;
 	}
 
+	// package-private for tests, which pause it to control when the observers are notified
+	final Animator animator;
 	private final DisplayModel displayModel;
-	private double latitude;
-	private double longitude;
-	private BoundingBox mapLimit;
-	private LatLong pivot;
-	private double scaleFactor;
-	private final ZoomAnimator zoomAnimator;
-	private byte zoomLevel;
-	private byte zoomLevelMax;
-	private byte zoomLevelMin;
+	private final AtomicReference<MapViewPositionSnapshot> snapshot;
 
 	public MapViewPosition(DisplayModel displayModel) {
 		super();
 		this.displayModel = displayModel;
-		this.zoomLevelMax = Byte.MAX_VALUE;
-		this.zoomAnimator = new ZoomAnimator();
-		this.zoomAnimator.start();
+		this.snapshot = new AtomicReference<MapViewPositionSnapshot>(new MapViewPositionSnapshot(new LatLong(0, 0),
+				null, null, 0, (byte) 0, Byte.MAX_VALUE, (byte) 0));
+		this.animator = new Animator();
+		this.animator.start();
 	}
 
 	/**
@@ -135,8 +164,11 @@ public class MapViewPosition extends Observable implements Persistable {
 						tileSize);
 				final double targetPixelY = MercatorProjection.latitudeToPixelY(pos.latitude, getZoomLevel(), tileSize);
 
-				final double currentPixelX = MercatorProjection.longitudeToPixelX(longitude, getZoomLevel(), tileSize);
-				final double currentPixelY = MercatorProjection.latitudeToPixelY(latitude, getZoomLevel(), tileSize);
+				LatLong center = getCenter();
+				final double currentPixelX = MercatorProjection.longitudeToPixelX(center.longitude, getZoomLevel(),
+						tileSize);
+				final double currentPixelY = MercatorProjection.latitudeToPixelY(center.latitude, getZoomLevel(),
+						tileSize);
 
 				final double stepSizeX = Math.abs(targetPixelX - currentPixelX) / totalSteps;
 				final double stepSizeY = Math.abs(targetPixelY - currentPixelY) / totalSteps;
@@ -164,32 +196,32 @@ public class MapViewPosition extends Observable implements Persistable {
 	}
 
 	public boolean animationInProgress() {
-		return this.scaleFactor != MercatorProjection.zoomLevelToScaleFactor(this.zoomLevel);
+		return this.snapshot.get().animationInProgress();
 	}
 
 	public void destroy() {
-		this.zoomAnimator.interrupt();
+		this.animator.interrupt();
 	}
 
 	/**
 	 * @return the current center position of the map.
 	 */
-	public synchronized LatLong getCenter() {
-		return new LatLong(this.latitude, this.longitude);
+	public LatLong getCenter() {
+		return this.snapshot.get().center;
 	}
 
 	/**
 	 * @return the current limit of the map (might be null).
 	 */
-	public synchronized BoundingBox getMapLimit() {
-		return this.mapLimit;
+	public BoundingBox getMapLimit() {
+		return this.snapshot.get().mapLimit;
 	}
 
 	/**
 	 * @return the current center position and zoom level of the map.
 	 */
-	public synchronized MapPosition getMapPosition() {
-		return new MapPosition(getCenter(), this.zoomLevel);
+	public MapPosition getMapPosition() {
+		return this.snapshot.get().getMapPosition();
 	}
 
 	/**
@@ -198,8 +230,8 @@ public class MapViewPosition extends Observable implements Persistable {
 	 * @return the lat/long coordinates of the map pivot point if set or null otherwise.
 	 */
 
-	public synchronized LatLong getPivot() {
-		return this.pivot;
+	public LatLong getPivot() {
+		return this.snapshot.get().pivot;
 	}
 
 	/**
@@ -211,52 +243,60 @@ public class MapViewPosition extends Observable implements Persistable {
 	 * @return the x/y coordinates of the map pivot point if set or null otherwise.
 	 */
 
-	public synchronized Point getPivotXY(byte zoomLevel) {
-		if (this.pivot != null) {
-			return MercatorProjection.getPixel(this.pivot, zoomLevel, displayModel.getTileSize());
+	public Point getPivotXY(byte zoomLevel) {
+		LatLong pivot = getPivot();
+		if (pivot != null) {
+			return MercatorProjection.getPixel(pivot, zoomLevel, displayModel.getTileSize());
 		}
 		return null;
 	}
 
-	public synchronized double getScaleFactor() {
-		return this.scaleFactor;
+	public double getScaleFactor() {
+		return this.snapshot.get().scaleFactor;
+	}
+
+	/**
+	 * @return all current values of this position, which never change.
+	 */
+	public MapViewPositionSnapshot getSnapshot() {
+		return this.snapshot.get();
 	}
 
 	/**
 	 * @return the current zoom level of the map.
 	 */
-	public synchronized byte getZoomLevel() {
-		return this.zoomLevel;
+	public byte getZoomLevel() {
+		return this.snapshot.get().zoomLevel;
 	}
 
-	public synchronized byte getZoomLevelMax() {
-		return this.zoomLevelMax;
+	public byte getZoomLevelMax() {
+		return this.snapshot.get().zoomLevelMax;
 	}
 
-	public synchronized byte getZoomLevelMin() {
-		return this.zoomLevelMin;
+	public byte getZoomLevelMin() {
+		return this.snapshot.get().zoomLevelMin;
 	}
 
 	@Override
 	public synchronized void init(PreferencesFacade preferencesFacade) {
-		this.latitude = preferencesFacade.getDouble(LATITUDE, 0);
-		this.longitude = preferencesFacade.getDouble(LONGITUDE, 0);
+		double latitude = preferencesFacade.getDouble(LATITUDE, 0);
+		double longitude = preferencesFacade.getDouble(LONGITUDE, 0);
 
 		double maxLatitude = preferencesFacade.getDouble(LATITUDE_MAX, Double.NaN);
 		double minLatitude = preferencesFacade.getDouble(LATITUDE_MIN, Double.NaN);
 		double maxLongitude = preferencesFacade.getDouble(LONGITUDE_MAX, Double.NaN);
 		double minLongitude = preferencesFacade.getDouble(LONGITUDE_MIN, Double.NaN);
 
-		if (isNan(maxLatitude, minLatitude, maxLongitude, minLongitude)) {
-			this.mapLimit = null;
-		} else {
-			this.mapLimit = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+		BoundingBox mapLimit = null;
+		if (!isNan(maxLatitude, minLatitude, maxLongitude, minLongitude)) {
+			mapLimit = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
 		}
 
-		this.zoomLevel = preferencesFacade.getByte(ZOOM_LEVEL, (byte) 0);
-		this.zoomLevelMax = preferencesFacade.getByte(ZOOM_LEVEL_MAX, Byte.MAX_VALUE);
-		this.zoomLevelMin = preferencesFacade.getByte(ZOOM_LEVEL_MIN, (byte) 0);
-		this.scaleFactor = Math.pow(2, this.zoomLevel);
+		byte zoomLevel = preferencesFacade.getByte(ZOOM_LEVEL, (byte) 0);
+		byte zoomLevelMax = preferencesFacade.getByte(ZOOM_LEVEL_MAX, Byte.MAX_VALUE);
+		byte zoomLevelMin = preferencesFacade.getByte(ZOOM_LEVEL_MIN, (byte) 0);
+		this.snapshot.set(new MapViewPositionSnapshot(new LatLong(latitude, longitude), mapLimit, getPivot(),
+				Math.pow(2, zoomLevel), zoomLevel, zoomLevelMax, zoomLevelMin));
 	}
 
 	/**
@@ -281,43 +321,48 @@ public class MapViewPosition extends Observable implements Persistable {
 	 */
 	public void moveCenterAndZoom(double moveHorizontal, double moveVertical, byte zoomLevelDiff) {
 		synchronized (this) {
+			MapViewPositionSnapshot current = this.snapshot.get();
 			int tileSize = this.displayModel.getTileSize();
-			double pixelX = MercatorProjection.longitudeToPixelX(this.longitude, this.zoomLevel, tileSize)
+			double pixelX = MercatorProjection.longitudeToPixelX(current.center.longitude, current.zoomLevel, tileSize)
 					- moveHorizontal;
-			double pixelY = MercatorProjection.latitudeToPixelY(this.latitude, this.zoomLevel, tileSize) - moveVertical;
+			double pixelY = MercatorProjection.latitudeToPixelY(current.center.latitude, current.zoomLevel, tileSize)
+					- moveVertical;
 
-			long mapSize = MercatorProjection.getMapSize(this.zoomLevel, tileSize);
+			long mapSize = MercatorProjection.getMapSize(current.zoomLevel, tileSize);
 			pixelX = Math.min(Math.max(0, pixelX), mapSize);
 			pixelY = Math.min(Math.max(0, pixelY), mapSize);
 
-			double newLatitude = MercatorProjection.pixelYToLatitude(pixelY, this.zoomLevel, tileSize);
-			double newLongitude = MercatorProjection.pixelXToLongitude(pixelX, this.zoomLevel, tileSize);
+			double newLatitude = MercatorProjection.pixelYToLatitude(pixelY, current.zoomLevel, tileSize);
+			double newLongitude = MercatorProjection.pixelXToLongitude(pixelX, current.zoomLevel, tileSize);
 			setCenterInternal(new LatLong(newLatitude, newLongitude));
-			setZoomLevelInternal(this.zoomLevel + zoomLevelDiff);
+			if (zoomLevelDiff != 0) {
+				setZoomLevelInternal(current.zoomLevel + zoomLevelDiff);
+			}
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	@Override
-	public synchronized void save(PreferencesFacade preferencesFacade) {
-		preferencesFacade.putDouble(LATITUDE, this.latitude);
-		preferencesFacade.putDouble(LONGITUDE, this.longitude);
+	public void save(PreferencesFacade preferencesFacade) {
+		MapViewPositionSnapshot current = this.snapshot.get();
+		preferencesFacade.putDouble(LATITUDE, current.center.latitude);
+		preferencesFacade.putDouble(LONGITUDE, current.center.longitude);
 
-		if (this.mapLimit == null) {
+		if (current.mapLimit == null) {
 			preferencesFacade.putDouble(LATITUDE_MAX, Double.NaN);
 			preferencesFacade.putDouble(LATITUDE_MIN, Double.NaN);
 			preferencesFacade.putDouble(LONGITUDE_MAX, Double.NaN);
 			preferencesFacade.putDouble(LONGITUDE_MIN, Double.NaN);
 		} else {
-			preferencesFacade.putDouble(LATITUDE_MAX, this.mapLimit.maxLatitude);
-			preferencesFacade.putDouble(LATITUDE_MIN, this.mapLimit.minLatitude);
-			preferencesFacade.putDouble(LONGITUDE_MAX, this.mapLimit.maxLongitude);
-			preferencesFacade.putDouble(LONGITUDE_MIN, this.mapLimit.minLongitude);
+			preferencesFacade.putDouble(LATITUDE_MAX, current.mapLimit.maxLatitude);
+			preferencesFacade.putDouble(LATITUDE_MIN, current.mapLimit.minLatitude);
+			preferencesFacade.putDouble(LONGITUDE_MAX, current.mapLimit.maxLongitude);
+			preferencesFacade.putDouble(LONGITUDE_MIN, current.mapLimit.minLongitude);
 		}
 
-		preferencesFacade.putByte(ZOOM_LEVEL, this.zoomLevel);
-		preferencesFacade.putByte(ZOOM_LEVEL_MAX, this.zoomLevelMax);
-		preferencesFacade.putByte(ZOOM_LEVEL_MIN, this.zoomLevelMin);
+		preferencesFacade.putByte(ZOOM_LEVEL, current.zoomLevel);
+		preferencesFacade.putByte(ZOOM_LEVEL_MAX, current.zoomLevelMax);
+		preferencesFacade.putByte(ZOOM_LEVEL_MIN, current.zoomLevelMin);
 	}
 
 	/**
@@ -327,7 +372,7 @@ public class MapViewPosition extends Observable implements Persistable {
 		synchronized (this) {
 			setCenterInternal(latLong);
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -335,9 +380,9 @@ public class MapViewPosition extends Observable implements Persistable {
 	 */
 	public void setMapLimit(BoundingBox mapLimit) {
 		synchronized (this) {
-			this.mapLimit = mapLimit;
+			this.snapshot.set(this.snapshot.get().withMapLimit(mapLimit));
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -348,7 +393,7 @@ public class MapViewPosition extends Observable implements Persistable {
 			setCenterInternal(mapPosition.latLong);
 			setZoomLevelInternal(mapPosition.zoomLevel);
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -362,7 +407,7 @@ public class MapViewPosition extends Observable implements Persistable {
 	 */
 	public void setPivot(LatLong pivot) {
 		synchronized (this) {
-			this.pivot = pivot;
+			this.snapshot.set(this.snapshot.get().withPivot(pivot));
 		}
 	}
 
@@ -371,16 +416,17 @@ public class MapViewPosition extends Observable implements Persistable {
 	 */
 	public void setScaleFactor(double scaleFactor) {
 		synchronized (this) {
-			this.scaleFactor = scaleFactor;
+			this.snapshot.set(this.snapshot.get().withScaleFactor(scaleFactor));
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	public void setScaleFactorAdjustment(double adjustment) {
 		synchronized (this) {
-			this.setScaleFactor(Math.pow(2, zoomLevel) * adjustment);
+			MapViewPositionSnapshot current = this.snapshot.get();
+			this.snapshot.set(current.withScaleFactor(Math.pow(2, current.zoomLevel) * adjustment));
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -396,7 +442,7 @@ public class MapViewPosition extends Observable implements Persistable {
 		synchronized (this) {
 			setZoomLevelInternal(zoomLevel);
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	public void setZoomLevelMax(byte zoomLevelMax) {
@@ -404,12 +450,13 @@ public class MapViewPosition extends Observable implements Persistable {
 			throw new IllegalArgumentException("zoomLevelMax must not be negative: " + zoomLevelMax);
 		}
 		synchronized (this) {
-			if (zoomLevelMax < this.zoomLevelMin) {
+			MapViewPositionSnapshot current = this.snapshot.get();
+			if (zoomLevelMax < current.zoomLevelMin) {
 				throw new IllegalArgumentException("zoomLevelMax must be >= zoomLevelMin: " + zoomLevelMax);
 			}
-			this.zoomLevelMax = zoomLevelMax;
+			this.snapshot.set(current.withZoomLevelLimits(zoomLevelMax, current.zoomLevelMin));
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	public void setZoomLevelMin(byte zoomLevelMin) {
@@ -417,12 +464,13 @@ public class MapViewPosition extends Observable implements Persistable {
 			throw new IllegalArgumentException("zoomLevelMin must not be negative: " + zoomLevelMin);
 		}
 		synchronized (this) {
-			if (zoomLevelMin > this.zoomLevelMax) {
+			MapViewPositionSnapshot current = this.snapshot.get();
+			if (zoomLevelMin > current.zoomLevelMax) {
 				throw new IllegalArgumentException("zoomLevelMin must be <= zoomLevelMax: " + zoomLevelMin);
 			}
-			this.zoomLevelMin = zoomLevelMin;
+			this.snapshot.set(current.withZoomLevelLimits(current.zoomLevelMax, zoomLevelMin));
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -430,9 +478,9 @@ public class MapViewPosition extends Observable implements Persistable {
 	 */
 	public void zoom(byte zoomLevelDiff) {
 		synchronized (this) {
-			setZoomLevelInternal(this.zoomLevel + zoomLevelDiff);
+			setZoomLevelInternal(getZoomLevel() + zoomLevelDiff);
 		}
-		notifyObservers();
+		this.animator.onChange();
 	}
 
 	/**
@@ -450,19 +498,22 @@ public class MapViewPosition extends Observable implements Persistable {
 	}
 
 	private void setCenterInternal(LatLong latLong) {
-		if (this.mapLimit == null) {
-			this.latitude = latLong.latitude;
-			this.longitude = latLong.longitude;
-		} else {
-			this.latitude = Math.max(Math.min(latLong.latitude, this.mapLimit.maxLatitude), this.mapLimit.minLatitude);
-			this.longitude = Math.max(Math.min(latLong.longitude, this.mapLimit.maxLongitude),
-					this.mapLimit.minLongitude);
+		MapViewPositionSnapshot current = this.snapshot.get();
+		BoundingBox mapLimit = current.mapLimit;
+		LatLong center = latLong;
+		if (mapLimit != null) {
+			double latitude = Math.max(Math.min(latLong.latitude, mapLimit.maxLatitude), mapLimit.minLatitude);
+			double longitude = Math.max(Math.min(latLong.longitude, mapLimit.maxLongitude), mapLimit.minLongitude);
+			center = new LatLong(latitude, longitude);
 		}
+		this.snapshot.set(current.withCenter(center));
 	}
 
 	private void setZoomLevelInternal(int zoomLevel) {
-		this.zoomLevel = (byte) Math.max(Math.min(zoomLevel, this.zoomLevelMax), this.zoomLevelMin);
-		this.zoomAnimator.startAnimation(this.getScaleFactor(), Math.pow(2, this.zoomLevel));
+		MapViewPositionSnapshot current = this.snapshot.get();
+		byte newZoomLevel = (byte) Math.max(Math.min(zoomLevel, current.zoomLevelMax), current.zoomLevelMin);
+		this.snapshot.set(current.withZoomLevel(newZoomLevel));
+		this.animator.startAnimation(current.scaleFactor, Math.pow(2, newZoomLevel));
 	}
 
 }
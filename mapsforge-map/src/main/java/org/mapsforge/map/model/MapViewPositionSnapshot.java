@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.model;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * An immutable snapshot of all values of a {@link MapViewPosition} at one point in time.
+ * <p>
+ * Code that needs several values which must fit together, e.g. the center and the scale factor while drawing a frame,
+ * should read them from one snapshot instead of calling the getters of {@code MapViewPosition} one after another.
+ */
+public final class MapViewPositionSnapshot {
+	/**
+	 * The center of the map.
+	 */
+	public final LatLong center;
+
+	/**
+	 * The limit of the map (may be null).
+	 */
+	public final BoundingBox mapLimit;
+
+	/**
+	 * The point the map is scaled around, null for the map center.
+	 */
+	public final LatLong pivot;
+
+	/**
+	 * The current scale factor, which differs from the one of the zoom level while a zoom animation is in progress.
+	 */
+	public final double scaleFactor;
+
+	/**
+	 * The zoom level of the map.
+	 */
+	public final byte zoomLevel;
+
+	/**
+	 * The maximum zoom level of the map.
+	 */
+	public final byte zoomLevelMax;
+
+	/**
+	 * The minimum zoom level of the map.
+	 */
+	public final byte zoomLevelMin;
+
+	private final MapPosition mapPosition;
+
+	MapViewPositionSnapshot(LatLong center, BoundingBox mapLimit, LatLong pivot, double scaleFactor, byte zoomLevel,
+			byte zoomLevelMax, byte zoomLevelMin) {
+		this.center = center;
+		this.mapLimit = mapLimit;
+		this.pivot = pivot;
+		this.scaleFactor = scaleFactor;
+		this.zoomLevel = zoomLevel;
+		this.zoomLevelMax = zoomLevelMax;
+		this.zoomLevelMin = zoomLevelMin;
+		this.mapPosition = new MapPosition(center, zoomLevel);
+	}
+
+	/**
+	 * @return true if a zoom animation is in progress, false otherwise.
+	 */
+	public boolean animationInProgress() {
+		return this.scaleFactor != MercatorProjection.zoomLevelToScaleFactor(this.zoomLevel);
+	}
+
+	/**
+	 * @return the center position and zoom level of the map.
+	 */
+	public MapPosition getMapPosition() {
+		return this.mapPosition;
+	}
+
+	MapViewPositionSnapshot withCenter(LatLong newCenter) {
+		return new MapViewPositionSnapshot(newCenter, this.mapLimit, this.pivot, this.scaleFactor, this.zoomLevel,
+				this.zoomLevelMax, this.zoomLevelMin);
+	}
+
+	MapViewPositionSnapshot withMapLimit(BoundingBox newMapLimit) {
+		return new MapViewPositionSnapshot(this.center, newMapLimit, this.pivot, this.scaleFactor, this.zoomLevel,
+				this.zoomLevelMax, this.zoomLevelMin);
+	}
+
+	MapViewPositionSnapshot withPivot(LatLong newPivot) {
+		return new MapViewPositionSnapshot(this.center, this.mapLimit, newPivot, this.scaleFactor, this.zoomLevel,
+				this.zoomLevelMax, this.zoomLevelMin);
+	}
+
+	MapViewPositionSnapshot withScaleFactor(double newScaleFactor) {
+		return new MapViewPositionSnapshot(this.center, this.mapLimit, this.pivot, newScaleFactor, this.zoomLevel,
+				this.zoomLevelMax, this.zoomLevelMin);
+	}
+
+	MapViewPositionSnapshot withZoomLevel(byte newZoomLevel) {
+		return new MapViewPositionSnapshot(this.center, this.mapLimit, this.pivot, this.scaleFactor, newZoomLevel,
+				this.zoomLevelMax, this.zoomLevelMin);
+	}
+
+	MapViewPositionSnapshot withZoomLevelLimits(byte newZoomLevelMax, byte newZoomLevelMin) {
+		return new MapViewPositionSnapshot(this.center, this.mapLimit, this.pivot, this.scaleFactor, this.zoomLevel,
+				newZoomLevelMax, newZoomLevelMin);
+	}
+}
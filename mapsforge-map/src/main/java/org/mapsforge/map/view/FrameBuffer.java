@@ -16,6 +16,8 @@
 package org.mapsforge.map.view;
 
 import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
 import org.mapsforge.core.graphics.GraphicContext;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.Matrix;
@@ -75,10 +77,8 @@ public class FrameBuffer {
 			// swap both bitmap references
 			Bitmap bitmapTemp = this.bitmap1;
 			this.bitmap1 = this.bitmap2;
+			// the drawing bitmap keeps the frame before the last one, the LayerManager only redraws what has changed
 			this.bitmap2 = bitmapTemp;
-			if (this.bitmap2 != null) {
-				this.bitmap2.setBackgroundColor(this.displayModel.getBackgroundColor());
-			}
 		}
 		// taking this out of the synchronized region removes a deadlock potential
 		// at the small risk of an inconsistent zoom
@@ -96,6 +96,26 @@ public class FrameBuffer {
 		return this.bitmap2;
 	}
 
+	/**
+	 * Copies the last finished frame into the drawing bitmap, moved by the given number of pixels. The parts of the
+	 * drawing bitmap that the moved frame does not cover are cleared.
+	 *
+	 * @param scrollX
+	 *            the horizontal offset in pixels.
+	 * @param scrollY
+	 *            the vertical offset in pixels.
+	 */
+	public synchronized void scrollFrame(int scrollX, int scrollY) {
+		if (this.bitmap1 == null || this.bitmap2 == null) {
+			return;
+		}
+		Canvas canvas = this.graphicFactory.createCanvas();
+		canvas.setBitmap(this.bitmap2);
+		canvas.fillColor(Color.TRANSPARENT);
+		canvas.drawBitmap(this.bitmap1, scrollX, scrollY);
+		canvas.destroy();
+	}
+
 	public synchronized void setDimension(Dimension dimension) {
 		if (this.dimension != null && this.dimension.equals(dimension)) {
 			return;
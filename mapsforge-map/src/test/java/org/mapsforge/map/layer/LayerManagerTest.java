@@ -0,0 +1,376 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Dimension;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.controller.DummyMapView;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.queue.Job;
+import org.mapsforge.map.model.Model;
+import org.mapsforge.map.util.MapPositionUtil;
+import org.mapsforge.map.view.FrameBuffer;
+
+public class LayerManagerTest {
+	private abstract static class TestLayer extends Layer {
+		final List<BoundingBox> boundingBoxes = new ArrayList<BoundingBox>();
+		Point topLeftPoint;
+
+		@Override
+		public void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+			this.boundingBoxes.add(boundingBox);
+			this.topLeftPoint = topLeftPoint;
+			drawContent(zoomLevel, canvas, topLeftPoint);
+		}
+
+		abstract void drawContent(byte zoomLevel, Canvas canvas, Point topLeftPoint);
+	}
+
+	private static class CircleLayer extends TestLayer {
+		LatLong latLong;
+		private final Paint paint;
+		private final int tileSize;
+
+		CircleLayer(LatLong latLong, int tileSize) {
+			this.latLong = latLong;
+			this.tileSize = tileSize;
+			this.paint = GRAPHIC_FACTORY.createPaint();
+			this.paint.setColor(Color.RED);
+		}
+
+		@Override
+		void drawContent(byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+			double x = MercatorProjection.longitudeToPixelX(this.latLong.longitude, zoomLevel, this.tileSize);
+			double y = MercatorProjection.latitudeToPixelY(this.latLong.latitude, zoomLevel, this.tileSize);
+			canvas.drawCircle((int) (x - topLeftPoint.x), (int) (y - topLeftPoint.y), 10, this.paint);
+		}
+
+		/**
+		 * Moves the circle and reports the old and the new position as changed.
+		 */
+		void move(LatLong newLatLong) {
+			requestRedraw(new BoundingBox(this.latLong.latitude, this.latLong.longitude, this.latLong.latitude,
+					this.latLong.longitude));
+			this.latLong = newLatLong;
+			requestRedraw(new BoundingBox(newLatLong.latitude, newLatLong.longitude, newLatLong.latitude,
+					newLatLong.longitude));
+		}
+	}
+
+	/**
+	 * Draws antialiased diagonal lines across the whole map, so that they cross the edges of every redrawn area.
+	 */
+	private static class LinesLayer extends TestLayer {
+		private final Paint paint;
+
+		LinesLayer() {
+			this.paint = GRAPHIC_FACTORY.createPaint();
+			this.paint.setColor(Color.BLUE);
+			this.paint.setStrokeWidth(3);
+			this.paint.setStyle(Style.STROKE);
+		}
+
+		@Override
+		void drawContent(byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+			int width = canvas.getWidth();
+			int height = canvas.getHeight();
+			double offset = (topLeftPoint.x + topLeftPoint.y) % 300;
+			for (double x = -offset - height; x < width + height; x += 300) {
+				int left = (int) Math.floor(x);
+				// the lines end outside of the canvas, so that they do not depend on its position
+				canvas.drawLine(left - 10, height + 10, left + height + 10, -10, this.paint);
+			}
+		}
+	}
+
+	/**
+	 * Draws the tiles of its cache, each of them in a different color.
+	 */
+	private static class TestTileLayer extends TileLayer<Job> {
+		TestTileLayer(TileCache tileCache, Model model) {
+			super(tileCache, model.mapViewPosition, GRAPHIC_FACTORY, false, false);
+		}
+
+		@Override
+		protected Job createJob(Tile tile) {
+			return new Job(tile, false);
+		}
+	}
+
+	private static final LatLong CENTER = new LatLong(52.5, 13.4);
+	private static final Dimension DIMENSION = new Dimension(2048, 1536);
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final byte ZOOM_LEVEL = 14;
+
+	private static DummyMapView createMapView(final Model model, final FrameBuffer frameBuffer) {
+		return new DummyMapView() {
+			@Override
+			public FrameBuffer getFrameBuffer() {
+				return frameBuffer;
+			}
+
+			@Override
+			public Model getModel() {
+				return model;
+			}
+		};
+	}
+
+	private static Model createModel() throws InterruptedException {
+		Model model = new Model();
+		model.mapViewPosition.setMapPosition(new MapPosition(CENTER, ZOOM_LEVEL));
+		// frames are only finished after the zoom animation
+		while (model.mapViewPosition.animationInProgress()) {
+			Thread.sleep(10);
+		}
+		return model;
+	}
+
+	/**
+	 * Puts every tile of the frame and of a margin of one tile around it into the cache.
+	 */
+	private static TileCache createTileCache(Model model) {
+		int tileSize = model.displayModel.getTileSize();
+		BoundingBox boundingBox = MapPositionUtil.getBoundingBox(model.mapViewPosition.getMapPosition(), DIMENSION,
+				tileSize);
+		int left = MercatorProjection.longitudeToTileX(boundingBox.minLongitude, ZOOM_LEVEL) - 1;
+		int top = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude, ZOOM_LEVEL) - 1;
+		int right = MercatorProjection.longitudeToTileX(boundingBox.maxLongitude, ZOOM_LEVEL) + 1;
+		int bottom = MercatorProjection.latitudeToTileY(boundingBox.minLatitude, ZOOM_LEVEL) + 1;
+
+		TileCache tileCache = new InMemoryTileCache((right - left + 1) * (bottom - top + 1));
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		for (int tileY = top; tileY <= bottom; ++tileY) {
+			for (int tileX = left; tileX <= right; ++tileX) {
+				TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(tileSize, false);
+				canvas.setBitmap(bitmap);
+				canvas.fillColor(0xFF000000 | (tileX * 47 & 0xFF) << 16 | (tileY * 83 & 0xFF) << 8);
+				tileCache.put(new Job(new Tile(tileX, tileY, ZOOM_LEVEL, tileSize), false), bitmap);
+				bitmap.decrementRefCount();
+			}
+		}
+		canvas.destroy();
+		return tileCache;
+	}
+
+	private static Point getTopLeftPoint(Model model) {
+		return MapPositionUtil.getTopLeftPoint(model.mapViewPosition.getMapPosition(), DIMENSION,
+				model.displayModel.getTileSize());
+	}
+
+	private static void verifyFrame(FrameBuffer frameBuffer, Model model, Point topLeftPoint, TestLayer... layers) {
+		verifyFrame(frameBuffer, model, topLeftPoint, null, layers);
+	}
+
+	private static void verifyFrame(FrameBuffer frameBuffer, Model model, Point topLeftPoint, TileLayer<?> tileLayer,
+			TestLayer... layers) {
+		// the frame that is shown
+		Bitmap actual = GRAPHIC_FACTORY.createBitmap(DIMENSION.width, DIMENSION.height, false);
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		canvas.setBitmap(actual);
+		frameBuffer.draw(canvas);
+
+		// the same frame drawn from scratch
+		Bitmap frame = GRAPHIC_FACTORY.createBitmap(DIMENSION.width, DIMENSION.height, false);
+		canvas.setBitmap(frame);
+		canvas.fillColor(Color.TRANSPARENT);
+		byte zoomLevel = model.mapViewPosition.getZoomLevel();
+		if (tileLayer != null) {
+			tileLayer.draw(MapPositionUtil.getBoundingBox(model.mapViewPosition.getMapPosition(), DIMENSION,
+					model.displayModel.getTileSize()), zoomLevel, canvas, topLeftPoint);
+		}
+		for (TestLayer layer : layers) {
+			layer.drawContent(zoomLevel, canvas, topLeftPoint);
+		}
+		Bitmap expected = GRAPHIC_FACTORY.createBitmap(DIMENSION.width, DIMENSION.height, false);
+		canvas.setBitmap(expected);
+		canvas.fillColor(model.displayModel.getBackgroundColor());
+		canvas.drawBitmap(frame, GRAPHIC_FACTORY.createMatrix());
+		canvas.destroy();
+
+		BufferedImage actualImage = AwtGraphicFactory.getBitmap(actual);
+		BufferedImage expectedImage = AwtGraphicFactory.getBitmap(expected);
+		for (int y = 0; y < DIMENSION.height; ++y) {
+			for (int x = 0; x < DIMENSION.width; ++x) {
+				Assert.assertEquals("x: " + x + ", y: " + y, expectedImage.getRGB(x, y), actualImage.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void dirtyAreaTest() throws InterruptedException {
+		Model model = createModel();
+		FrameBuffer frameBuffer = new FrameBuffer(model.frameBufferModel, model.displayModel, GRAPHIC_FACTORY);
+		frameBuffer.setDimension(DIMENSION);
+		DummyMapView mapView = createMapView(model, frameBuffer);
+		LayerManager layerManager = new LayerManager(mapView, model.mapViewPosition, GRAPHIC_FACTORY);
+		int tileSize = model.displayModel.getTileSize();
+		CircleLayer circleLayer = new CircleLayer(CENTER, tileSize);
+		layerManager.getLayers().add(circleLayer);
+		BoundingBox fullBoundingBox = MapPositionUtil.getBoundingBox(model.mapViewPosition.getMapPosition(),
+				DIMENSION, tileSize);
+
+		layerManager.doWork();
+		Assert.assertEquals(fullBoundingBox, circleLayer.boundingBoxes.get(0));
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+
+		// the drawing bitmap does not contain a frame at this position yet
+		circleLayer.move(new LatLong(52.5, 13.41));
+		layerManager.doWork();
+		Assert.assertEquals(fullBoundingBox, circleLayer.boundingBoxes.get(1));
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+
+		for (int i = 2; i < 5; ++i) {
+			circleLayer.move(new LatLong(52.5 - i * 0.003, 13.41));
+			layerManager.doWork();
+			BoundingBox boundingBox = circleLayer.boundingBoxes.get(i);
+			Assert.assertTrue(boundingBox.getLongitudeSpan() < fullBoundingBox.getLongitudeSpan());
+			Assert.assertTrue(boundingBox.getLatitudeSpan() < fullBoundingBox.getLatitudeSpan());
+			verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+		}
+		Assert.assertEquals(5, mapView.repaintCounter);
+
+		// a change outside of the visible area: the changes of the last frame are redrawn, then nothing at all
+		BoundingBox outside = new BoundingBox(10, 10, 11, 11);
+		circleLayer.requestRedraw(outside);
+		layerManager.doWork();
+		Assert.assertEquals(6, circleLayer.boundingBoxes.size());
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+		circleLayer.requestRedraw(outside);
+		layerManager.doWork();
+		Assert.assertEquals(6, circleLayer.boundingBoxes.size());
+		Assert.assertEquals(6, mapView.repaintCounter);
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+
+		// a new position that does not overlap the last frame is drawn completely
+		model.mapViewPosition.setCenter(new LatLong(52.4, 13.4));
+		circleLayer.move(new LatLong(52.4, 13.4));
+		layerManager.doWork();
+		Assert.assertEquals(7, circleLayer.boundingBoxes.size());
+		Assert.assertFalse(fullBoundingBox.equals(circleLayer.boundingBoxes.get(6)));
+		Assert.assertEquals(fullBoundingBox.getLongitudeSpan(), circleLayer.boundingBoxes.get(6).getLongitudeSpan(),
+				1e-9);
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), circleLayer);
+		model.mapViewPosition.destroy();
+	}
+
+	@Test
+	public void dirtyAreaTileLayerTest() throws InterruptedException {
+		Model model = createModel();
+		FrameBuffer frameBuffer = new FrameBuffer(model.frameBufferModel, model.displayModel, GRAPHIC_FACTORY);
+		frameBuffer.setDimension(DIMENSION);
+		LayerManager layerManager = new LayerManager(createMapView(model, frameBuffer), model.mapViewPosition,
+				GRAPHIC_FACTORY);
+		int tileSize = model.displayModel.getTileSize();
+		TileLayer<Job> tileLayer = new TestTileLayer(createTileCache(model), model);
+		CircleLayer circleLayer = new CircleLayer(CENTER, tileSize);
+		layerManager.getLayers().add(tileLayer);
+		layerManager.getLayers().add(circleLayer);
+		BoundingBox fullBoundingBox = MapPositionUtil.getBoundingBox(model.mapViewPosition.getMapPosition(),
+				DIMENSION, tileSize);
+
+		// the first two frames fill both bitmaps
+		layerManager.doWork();
+		circleLayer.move(new LatLong(52.5, 13.41));
+		layerManager.doWork();
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), tileLayer, circleLayer);
+
+		// the tile layer must neither clear nor draw outside of the redrawn area
+		for (int i = 2; i < 5; ++i) {
+			circleLayer.move(new LatLong(52.5 - i * 0.003, 13.41));
+			layerManager.doWork();
+			BoundingBox boundingBox = circleLayer.boundingBoxes.get(i);
+			Assert.assertTrue(boundingBox.getLongitudeSpan() < fullBoundingBox.getLongitudeSpan());
+			Assert.assertTrue(boundingBox.getLatitudeSpan() < fullBoundingBox.getLatitudeSpan());
+			verifyFrame(frameBuffer, model, getTopLeftPoint(model), tileLayer, circleLayer);
+		}
+		tileLayer.onDestroy();
+		model.mapViewPosition.destroy();
+	}
+
+	@Test
+	public void scrollTest() throws InterruptedException {
+		Model model = createModel();
+		FrameBuffer frameBuffer = new FrameBuffer(model.frameBufferModel, model.displayModel, GRAPHIC_FACTORY);
+		frameBuffer.setDimension(DIMENSION);
+		LayerManager layerManager = new LayerManager(createMapView(model, frameBuffer), model.mapViewPosition,
+				GRAPHIC_FACTORY);
+		int tileSize = model.displayModel.getTileSize();
+		LinesLayer linesLayer = new LinesLayer();
+		CircleLayer circleLayer = new CircleLayer(CENTER, tileSize);
+		layerManager.getLayers().add(linesLayer);
+		layerManager.getLayers().add(circleLayer);
+		BoundingBox fullBoundingBox = MapPositionUtil.getBoundingBox(model.mapViewPosition.getMapPosition(),
+				DIMENSION, tileSize);
+
+		// the first two frames fill both bitmaps
+		layerManager.doWork();
+		layerManager.doWork();
+		Assert.assertEquals(2, linesLayer.boundingBoxes.size());
+		verifyFrame(frameBuffer, model, getTopLeftPoint(model), linesLayer, circleLayer);
+
+		double[][] moves = { { 37.3, -12.6 }, { -100.5, 0 }, { 0, 250.2 }, { -3, -7 }, { 0, 0 }, { 3000, 1 } };
+		for (int i = 0; i < moves.length; ++i) {
+			model.mapViewPosition.moveCenter(moves[i][0], moves[i][1]);
+			if (i == 3) {
+				// a change during scrolling
+				circleLayer.move(model.mapViewPosition.getCenter());
+			}
+			int drawCount = linesLayer.boundingBoxes.size();
+			layerManager.doWork();
+			List<BoundingBox> boundingBoxes = linesLayer.boundingBoxes.subList(drawCount,
+					linesLayer.boundingBoxes.size());
+
+			if (i == moves.length - 1) {
+				// the last frame is moved out of the canvas
+				Assert.assertEquals(1, boundingBoxes.size());
+				Assert.assertEquals(fullBoundingBox.getLongitudeSpan(), boundingBoxes.get(0).getLongitudeSpan(), 1e-9);
+			} else {
+				// only the exposed strips and the changed area are redrawn
+				for (BoundingBox boundingBox : boundingBoxes) {
+					Assert.assertTrue(boundingBox.getLongitudeSpan() < fullBoundingBox.getLongitudeSpan()
+							|| boundingBox.getLatitudeSpan() < fullBoundingBox.getLatitudeSpan());
+				}
+			}
+
+			// the position of the frame is at most half a pixel away from the map position
+			Point topLeftPoint = linesLayer.topLeftPoint;
+			Assert.assertEquals(getTopLeftPoint(model).x, topLeftPoint.x, 0.5);
+			Assert.assertEquals(getTopLeftPoint(model).y, topLeftPoint.y, 0.5);
+			verifyFrame(frameBuffer, model, topLeftPoint, linesLayer, circleLayer);
+		}
+		model.mapViewPosition.destroy();
+	}
+}
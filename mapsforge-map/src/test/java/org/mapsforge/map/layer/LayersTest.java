@@ -17,6 +17,7 @@ package org.mapsforge.map.layer;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.map.model.DisplayModel;
 
 public class LayersTest {
@@ -25,6 +26,11 @@ public class LayersTest {
 		public void redrawLayers() {
 			// do nothing
 		}
+
+		@Override
+		public void redrawLayers(BoundingBox boundingBox) {
+			// do nothing
+		}
 	}
 
 	private static void checkCallbacks(DummyLayer dummyLayer, int expectedAddCalls, int expectedRemoveCalls) {
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.cache.TwoLevelTileCache;
+import org.mapsforge.map.layer.queue.Job;
+import org.mapsforge.map.model.FixedTileSizeDisplayModel;
+import org.mapsforge.map.model.MapViewPosition;
+
+public class TilePlaceholdersTest {
+	private static class TestTileLayer extends TileLayer<Job> {
+		TestTileLayer(TileCache tileCache) {
+			super(tileCache, new MapViewPosition(new FixedTileSizeDisplayModel(TILE_SIZE)), GRAPHIC_FACTORY, false,
+					false);
+			setDisplayModel(new FixedTileSizeDisplayModel(TILE_SIZE));
+		}
+
+		@Override
+		protected Job createJob(Tile tile) {
+			return new Job(tile, false);
+		}
+	}
+
+	private static final int BLUE = 0xFF0000FF;
+	private static final int GREEN = 0xFF00FF00;
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int RED = 0xFFFF0000;
+	private static final int TILE_SIZE = 256;
+	private static final int YELLOW = 0xFFFFFF00;
+
+	/**
+	 * Puts a tile into the cache whose quadrants have the given colors.
+	 */
+	private static void putTile(TileCache tileCache, Tile tile, int topLeft, int topRight, int bottomLeft,
+			int bottomRight) {
+		TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false);
+		BufferedImage image = AwtGraphicFactory.getBitmap(bitmap);
+		int half = TILE_SIZE / 2;
+		for (int y = 0; y < TILE_SIZE; ++y) {
+			for (int x = 0; x < TILE_SIZE; ++x) {
+				int color = y < half ? (x < half ? topLeft : topRight) : (x < half ? bottomLeft : bottomRight);
+				image.setRGB(x, y, color);
+			}
+		}
+		tileCache.put(new Job(tile, false), bitmap);
+	}
+
+	private static void verifyQuadrants(Bitmap bitmap, int topLeft, int topRight, int bottomLeft, int bottomRight) {
+		BufferedImage image = AwtGraphicFactory.getBitmap(bitmap);
+		int quarter = TILE_SIZE / 4;
+		Assert.assertEquals(topLeft, image.getRGB(quarter, quarter));
+		Assert.assertEquals(topRight, image.getRGB(3 * quarter, quarter));
+		Assert.assertEquals(bottomLeft, image.getRGB(quarter, 3 * quarter));
+		Assert.assertEquals(bottomRight, image.getRGB(3 * quarter, 3 * quarter));
+	}
+
+	@Test
+	public void capacityTest() {
+		TileCache tileCache = new InMemoryTileCache(10);
+		TilePlaceholders tilePlaceholders = new TilePlaceholders(new TestTileLayer(tileCache), GRAPHIC_FACTORY, false);
+		putTile(tileCache, new Tile(0, 0, (byte) 4, TILE_SIZE), RED, GREEN, BLUE, YELLOW);
+		for (int i = 0; i < 10; ++i) {
+			tilePlaceholders.get(new Job(new Tile(i % 4, i / 4, (byte) 6, TILE_SIZE), false)).decrementRefCount();
+		}
+		Assert.assertEquals(4, tilePlaceholders.size());
+
+		tilePlaceholders.setMinimumCapacity(8);
+		for (int i = 0; i < 10; ++i) {
+			tilePlaceholders.get(new Job(new Tile(i % 4, i / 4, (byte) 6, TILE_SIZE), false)).decrementRefCount();
+		}
+		Assert.assertEquals(8, tilePlaceholders.size());
+		tilePlaceholders.clear();
+		Assert.assertEquals(0, tilePlaceholders.size());
+	}
+
+	@Test
+	public void childrenTest() {
+		TileCache tileCache = new InMemoryTileCache(10);
+		TilePlaceholders tilePlaceholders = new TilePlaceholders(new TestTileLayer(tileCache), GRAPHIC_FACTORY, false);
+		Tile tile = new Tile(3, 5, (byte) 10, TILE_SIZE);
+		Job job = new Job(tile, false);
+		putTile(tileCache, new Tile(6, 10, (byte) 11, TILE_SIZE), RED, RED, RED, RED);
+		putTile(tileCache, new Tile(7, 10, (byte) 11, TILE_SIZE), GREEN, GREEN, GREEN, GREEN);
+		putTile(tileCache, new Tile(6, 11, (byte) 11, TILE_SIZE), BLUE, BLUE, BLUE, BLUE);
+		Assert.assertNull(tilePlaceholders.get(job));
+
+		putTile(tileCache, new Tile(7, 11, (byte) 11, TILE_SIZE), YELLOW, YELLOW, YELLOW, YELLOW);
+		Bitmap placeholder = tilePlaceholders.get(job);
+		verifyQuadrants(placeholder, RED, GREEN, BLUE, YELLOW);
+		placeholder.decrementRefCount();
+		tilePlaceholders.clear();
+	}
+
+	@Test
+	public void parentTest() {
+		TileCache tileCache = new InMemoryTileCache(10);
+		TilePlaceholders tilePlaceholders = new TilePlaceholders(new TestTileLayer(tileCache), GRAPHIC_FACTORY, false);
+		Tile tile = new Tile(5, 2, (byte) 10, TILE_SIZE);
+		Job job = new Job(tile, false);
+		Assert.assertNull(tilePlaceholders.get(job));
+
+		// the tile is the second of four columns and the third of four rows of its grandparent
+		putTile(tileCache, new Tile(1, 0, (byte) 8, TILE_SIZE), RED, GREEN, BLUE, YELLOW);
+		Bitmap placeholder = tilePlaceholders.get(job);
+		verifyQuadrants(placeholder, BLUE, BLUE, BLUE, BLUE);
+		placeholder.decrementRefCount();
+
+		// the placeholder is cached
+		Bitmap cachedPlaceholder = tilePlaceholders.get(job);
+		Assert.assertSame(placeholder, cachedPlaceholder);
+		cachedPlaceholder.decrementRefCount();
+		Assert.assertEquals(1, tilePlaceholders.size());
+
+		// a closer parent is preferred
+		putTile(tileCache, new Tile(2, 1, (byte) 9, TILE_SIZE), RED, GREEN, BLUE, YELLOW);
+		Bitmap betterPlaceholder = tilePlaceholders.get(job);
+		Assert.assertNotSame(placeholder, betterPlaceholder);
+		verifyQuadrants(betterPlaceholder, GREEN, GREEN, GREEN, GREEN);
+		betterPlaceholder.decrementRefCount();
+		Assert.assertEquals(1, tilePlaceholders.size());
+
+		// parents too far away are not used
+		Tile farTile = new Tile(tile.tileX * 64, tile.tileY * 64, (byte) 16, TILE_SIZE);
+		Assert.assertNull(tilePlaceholders.get(new Job(farTile, false)));
+
+		tilePlaceholders.remove(job);
+		Assert.assertEquals(0, tilePlaceholders.size());
+	}
+
+	@Test
+	public void secondLevelTest() {
+		// the children are only in the second level, the parent is in memory
+		InMemoryTileCache firstLevelTileCache = new InMemoryTileCache(10);
+		TileCache tileCache = new TwoLevelTileCache(firstLevelTileCache, new InMemoryTileCache(10));
+		TilePlaceholders tilePlaceholders = new TilePlaceholders(new TestTileLayer(tileCache), GRAPHIC_FACTORY, false);
+		Tile tile = new Tile(3, 5, (byte) 10, TILE_SIZE);
+		Job job = new Job(tile, false);
+		putTile(tileCache, new Tile(6, 10, (byte) 11, TILE_SIZE), RED, RED, RED, RED);
+		putTile(tileCache, new Tile(7, 10, (byte) 11, TILE_SIZE), RED, RED, RED, RED);
+		putTile(tileCache, new Tile(6, 11, (byte) 11, TILE_SIZE), RED, RED, RED, RED);
+		putTile(tileCache, new Tile(7, 11, (byte) 11, TILE_SIZE), RED, RED, RED, RED);
+		putTile(firstLevelTileCache, tile.getParent(), GREEN, BLUE, YELLOW, GREEN);
+		Assert.assertTrue(tileCache.containsKey(new Job(new Tile(6, 10, (byte) 11, TILE_SIZE), false)));
+
+		// the tile is the second column and the second row of its parent
+		Bitmap placeholder = tilePlaceholders.get(job);
+		Assert.assertNotNull(placeholder);
+		verifyQuadrants(placeholder, GREEN, GREEN, GREEN, GREEN);
+		placeholder.decrementRefCount();
+
+		// the children replace the parent once they are in memory
+		for (Tile child : new Tile[] { new Tile(6, 10, (byte) 11, TILE_SIZE), new Tile(7, 10, (byte) 11, TILE_SIZE),
+				new Tile(6, 11, (byte) 11, TILE_SIZE), new Tile(7, 11, (byte) 11, TILE_SIZE) }) {
+			putTile(firstLevelTileCache, child, RED, RED, RED, RED);
+		}
+		placeholder = tilePlaceholders.get(job);
+		verifyQuadrants(placeholder, RED, RED, RED, RED);
+		placeholder.decrementRefCount();
+
+		// a placeholder is kept when its source has been evicted from memory
+		firstLevelTileCache.destroy();
+		placeholder = tilePlaceholders.get(job);
+		verifyQuadrants(placeholder, RED, RED, RED, RED);
+		placeholder.decrementRefCount();
+		tilePlaceholders.clear();
+	}
+}
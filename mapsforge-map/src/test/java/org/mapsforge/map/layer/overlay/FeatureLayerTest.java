@@ -0,0 +1,273 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.controller.DummyMapView;
+import org.mapsforge.map.layer.LayerManager;
+import org.mapsforge.map.model.FixedTileSizeDisplayModel;
+import org.mapsforge.map.model.Model;
+
+public class FeatureLayerTest {
+	private static class CountingLayerManager extends LayerManager {
+		int redraws;
+
+		CountingLayerManager(final Model model) {
+			super(new DummyMapView() {
+				@Override
+				public Model getModel() {
+					return model;
+				}
+			}, model.mapViewPosition, GRAPHIC_FACTORY);
+		}
+
+		@Override
+		public void redrawLayers(BoundingBox boundingBox) {
+			++this.redraws;
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int TILE_SIZE = 256;
+	private static final byte ZOOM_LEVEL = 14;
+
+	private static Bitmap createBitmap(Color color) {
+		Bitmap bitmap = GRAPHIC_FACTORY.createBitmap(10, 10);
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		canvas.setBitmap(bitmap);
+		canvas.fillColor(color);
+		canvas.destroy();
+		return bitmap;
+	}
+
+	private static FeatureLayer createFeatureLayer(byte gridZoomLevel) {
+		FeatureLayer featureLayer = new FeatureLayer(gridZoomLevel);
+		featureLayer.setDisplayModel(new FixedTileSizeDisplayModel(TILE_SIZE));
+		return featureLayer;
+	}
+
+	private static Paint createPaint() {
+		Paint paint = GRAPHIC_FACTORY.createPaint();
+		paint.setStyle(Style.STROKE);
+		paint.setStrokeWidth(4);
+		return paint;
+	}
+
+	private static List<Feature> getFeaturesSlowly(List<PointFeature> features, BoundingBox boundingBox) {
+		List<Feature> result = new ArrayList<Feature>();
+		for (PointFeature feature : features) {
+			if (feature.getFeatureLayer() != null && boundingBox.contains(feature.getLatLong())) {
+				result.add(feature);
+			}
+		}
+		return result;
+	}
+
+	private static List<LatLong> randomLine(Random random) {
+		// up to ten degrees long, which covers dozens of cells of the grid of zoom level 10
+		LatLong start = new LatLong(40 + 20 * random.nextDouble(), 30 * random.nextDouble());
+		LatLong end = new LatLong(start.latitude + 10 * random.nextDouble() - 5, start.longitude + 10
+				* random.nextDouble() - 5);
+		return Arrays.asList(start, end);
+	}
+
+	private static LatLong randomLatLong(Random random) {
+		return new LatLong(52 + random.nextDouble(), 13 + random.nextDouble());
+	}
+
+	@Test
+	public void drawTest() {
+		FeatureLayer featureLayer = createFeatureLayer(FeatureLayer.DEFAULT_GRID_ZOOM_LEVEL);
+		LatLong latLong = new LatLong(52.5, 13.4);
+		Bitmap red = createBitmap(Color.RED);
+		Bitmap blue = createBitmap(Color.BLUE);
+		featureLayer.add(new PointFeature(latLong, red, 0, 0));
+		featureLayer.add(new PointFeature(latLong, blue, 5, 0));
+		// a feature far away and a feature without geometry are not drawn
+		featureLayer.add(new PointFeature(new LatLong(10, 10), red, 0, 0));
+		featureLayer.add(new PointFeature(null, red, 0, 0));
+
+		double pixelX = MercatorProjection.longitudeToPixelX(latLong.longitude, ZOOM_LEVEL, TILE_SIZE);
+		double pixelY = MercatorProjection.latitudeToPixelY(latLong.latitude, ZOOM_LEVEL, TILE_SIZE);
+		Point topLeftPoint = new Point(pixelX - 50, pixelY - 50);
+		LatLong topLeft = MercatorProjection.fromPixels(topLeftPoint.x, topLeftPoint.y, ZOOM_LEVEL, TILE_SIZE);
+		LatLong bottomRight = MercatorProjection.fromPixels(topLeftPoint.x + 100, topLeftPoint.y + 100, ZOOM_LEVEL,
+				TILE_SIZE);
+		BoundingBox boundingBox = new BoundingBox(bottomRight.latitude, topLeft.longitude, topLeft.latitude,
+				bottomRight.longitude);
+
+		Bitmap bitmap = GRAPHIC_FACTORY.createBitmap(100, 100);
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		canvas.setBitmap(bitmap);
+		canvas.fillColor(Color.WHITE);
+		featureLayer.draw(boundingBox, ZOOM_LEVEL, canvas, topLeftPoint);
+		canvas.destroy();
+
+		int white = GRAPHIC_FACTORY.createColor(Color.WHITE);
+		int redColor = GRAPHIC_FACTORY.createColor(Color.RED);
+		int blueColor = GRAPHIC_FACTORY.createColor(Color.BLUE);
+		Assert.assertEquals(white, AwtGraphicFactory.getBitmap(bitmap).getRGB(40, 50));
+		Assert.assertEquals(redColor, AwtGraphicFactory.getBitmap(bitmap).getRGB(46, 50));
+		// the feature added last is on top
+		Assert.assertEquals(blueColor, AwtGraphicFactory.getBitmap(bitmap).getRGB(52, 50));
+		Assert.assertEquals(4, featureLayer.size());
+	}
+
+	@Test
+	public void hitTest() {
+		FeatureLayer featureLayer = createFeatureLayer((byte) 10);
+		LatLong latLong = new LatLong(52.5, 13.4);
+		Bitmap bitmap = createBitmap(Color.RED);
+		PointFeature bottom = new PointFeature(latLong, bitmap, 0, 0);
+		PointFeature top = new PointFeature(latLong, bitmap, 0, 0);
+		LineFeature line = new LineFeature(Arrays.asList(new LatLong(52.4, 13.3), new LatLong(52.4, 13.5)),
+				createPaint(), GRAPHIC_FACTORY);
+		featureLayer.addAll(Arrays.asList(bottom, top, line));
+
+		Assert.assertNull(featureLayer.getFeature(latLong));
+		Assert.assertSame(top, featureLayer.getFeature(latLong, ZOOM_LEVEL));
+		featureLayer.remove(top);
+		Assert.assertSame(bottom, featureLayer.getFeature(latLong, ZOOM_LEVEL));
+
+		Assert.assertSame(line, featureLayer.getFeature(new LatLong(52.40001, 13.45), ZOOM_LEVEL));
+		Assert.assertNull(featureLayer.getFeature(new LatLong(52.41, 13.45), ZOOM_LEVEL));
+		Assert.assertNull(featureLayer.getFeature(new LatLong(52.4, 13.55), ZOOM_LEVEL));
+	}
+
+	@Test
+	public void indexTest() {
+		FeatureLayer featureLayer = createFeatureLayer((byte) 10);
+		Random random = new Random(42);
+		Bitmap bitmap = createBitmap(Color.RED);
+		List<PointFeature> features = new ArrayList<PointFeature>();
+		for (int i = 0; i < 2000; ++i) {
+			features.add(new PointFeature(randomLatLong(random), bitmap, 0, 0));
+		}
+		featureLayer.addAll(features);
+		// a line that covers too many cells for the grid
+		LineFeature line = new LineFeature(Arrays.asList(new LatLong(52, 13), new LatLong(53, 14)), createPaint(),
+				GRAPHIC_FACTORY);
+		featureLayer.add(line);
+		Assert.assertEquals(2001, featureLayer.size());
+
+		for (int i = 0; i < 20; ++i) {
+			features.get(i).setLatLong(randomLatLong(random));
+			featureLayer.remove(features.get(i + 20));
+		}
+
+		BoundingBox[] boundingBoxes = { new BoundingBox(52.2, 13.2, 52.3, 13.4), new BoundingBox(52, 13, 53, 14),
+				new BoundingBox(52.9, 13.9, 54, 15), new BoundingBox(50, 10, 51, 11) };
+		for (BoundingBox boundingBox : boundingBoxes) {
+			List<Feature> expected = getFeaturesSlowly(features, boundingBox);
+			List<Feature> actual = featureLayer.getFeatures(boundingBox);
+			Assert.assertEquals(boundingBox.intersects(new BoundingBox(52, 13, 53, 14)), actual.remove(line));
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertTrue(actual.containsAll(expected));
+		}
+
+		featureLayer.clear();
+		Assert.assertEquals(0, featureLayer.size());
+		Assert.assertNull(features.get(0).getFeatureLayer());
+		Assert.assertTrue(featureLayer.getFeatures(boundingBoxes[1]).isEmpty());
+	}
+
+	@Test
+	public void largeFeaturesTest() {
+		FeatureLayer featureLayer = createFeatureLayer((byte) 10);
+		Random random = new Random(42);
+		List<LineFeature> lines = new ArrayList<LineFeature>();
+		for (int i = 0; i < 200; ++i) {
+			lines.add(new LineFeature(randomLine(random), createPaint(), GRAPHIC_FACTORY));
+		}
+		featureLayer.addAll(lines);
+		// moved lines change the zoom level of their grid
+		for (int i = 0; i < 100; ++i) {
+			lines.get(i).setLatLongs(randomLine(random));
+		}
+
+		for (int i = 0; i < 50; ++i) {
+			LatLong latLong = new LatLong(40 + 20 * random.nextDouble(), 30 * random.nextDouble());
+			double size = i % 2 == 0 ? 0.01 : 3;
+			BoundingBox boundingBox = new BoundingBox(latLong.latitude, latLong.longitude, latLong.latitude + size,
+					latLong.longitude + size);
+			List<Feature> expected = new ArrayList<Feature>();
+			for (LineFeature line : lines) {
+				LatLong start = line.getLatLongs().get(0);
+				LatLong end = line.getLatLongs().get(1);
+				BoundingBox lineBoundingBox = new BoundingBox(Math.min(start.latitude, end.latitude), Math.min(
+						start.longitude, end.longitude), Math.max(start.latitude, end.latitude), Math.max(
+						start.longitude, end.longitude));
+				if (lineBoundingBox.intersects(boundingBox)) {
+					expected.add(line);
+				}
+			}
+			List<Feature> actual = featureLayer.getFeatures(boundingBox);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertTrue(actual.containsAll(expected));
+		}
+
+		featureLayer.removeAll(lines);
+		Assert.assertEquals(0, featureLayer.size());
+		Assert.assertTrue(featureLayer.getFeatures(new BoundingBox(40, 0, 60, 30)).isEmpty());
+	}
+
+	@Test
+	public void redrawTest() {
+		Model model = new Model();
+		CountingLayerManager layerManager = new CountingLayerManager(model);
+		FeatureLayer featureLayer = new FeatureLayer();
+		layerManager.getLayers().add(featureLayer);
+
+		Random random = new Random(42);
+		Bitmap bitmap = createBitmap(Color.RED);
+		List<PointFeature> features = new ArrayList<PointFeature>();
+		for (int i = 0; i < 100; ++i) {
+			features.add(new PointFeature(randomLatLong(random), bitmap, 0, 0));
+		}
+		featureLayer.addAll(features);
+		Assert.assertEquals(1, layerManager.redraws);
+
+		for (PointFeature feature : features) {
+			feature.setLatLong(randomLatLong(random));
+		}
+		Assert.assertEquals(1, layerManager.redraws);
+		featureLayer.redrawChanges();
+		Assert.assertEquals(2, layerManager.redraws);
+		featureLayer.redrawChanges();
+		Assert.assertEquals(2, layerManager.redraws);
+
+		featureLayer.removeAll(features.subList(0, 50));
+		Assert.assertEquals(3, layerManager.redraws);
+		Assert.assertEquals(50, featureLayer.size());
+		model.mapViewPosition.destroy();
+	}
+}
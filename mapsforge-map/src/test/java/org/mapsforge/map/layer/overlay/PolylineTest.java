@@ -19,12 +19,16 @@ import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Color;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
 import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.awt.AwtGraphicFactory;
 import org.mapsforge.map.model.FixedTileSizeDisplayModel;
 
@@ -62,6 +66,46 @@ public class PolylineTest {
 		}
 	}
 
+	@Test
+	public void pixelTest() {
+		Paint paintStroke = GRAPHIC_FACTORY.createPaint();
+		paintStroke.setColor(Color.RED);
+		paintStroke.setStrokeWidth(3);
+		paintStroke.setStyle(Style.STROKE);
+		Polyline polyline = new Polyline(paintStroke, GRAPHIC_FACTORY);
+		polyline.setDisplayModel(new FixedTileSizeDisplayModel(256));
+
+		// a horizontal line with many points, most of them outside of the canvas
+		byte zoomLevel = 14;
+		double latitude = 52.5;
+		for (int i = 0; i <= 1000; ++i) {
+			polyline.getLatLongs().add(new LatLong(latitude, 13 + i / 1000.0));
+		}
+		double y = MercatorProjection.latitudeToPixelY(latitude, zoomLevel, 256);
+		double x = MercatorProjection.longitudeToPixelX(13.5, zoomLevel, 256);
+		Point topLeftPoint = new Point(x - 50, y - 50);
+
+		Bitmap bitmap = GRAPHIC_FACTORY.createBitmap(100, 100);
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		canvas.setBitmap(bitmap);
+		canvas.fillColor(Color.WHITE);
+		polyline.draw(null, zoomLevel, canvas, topLeftPoint);
+
+		int red = GRAPHIC_FACTORY.createColor(Color.RED);
+		int white = GRAPHIC_FACTORY.createColor(Color.WHITE);
+		Assert.assertEquals(red, AwtGraphicFactory.getBitmap(bitmap).getRGB(0, 50));
+		Assert.assertEquals(red, AwtGraphicFactory.getBitmap(bitmap).getRGB(99, 50));
+		Assert.assertEquals(white, AwtGraphicFactory.getBitmap(bitmap).getRGB(50, 60));
+
+		// a changed point is drawn at its new position
+		double newLatitude = MercatorProjection.pixelYToLatitude(y + 10, zoomLevel, 256);
+		polyline.getLatLongs().set(500, new LatLong(newLatitude, 13.5));
+		canvas.fillColor(Color.WHITE);
+		polyline.draw(null, zoomLevel, canvas, topLeftPoint);
+		Assert.assertEquals(red, AwtGraphicFactory.getBitmap(bitmap).getRGB(50, 60));
+		canvas.destroy();
+	}
+
 	@Test
 	public void setterTest() {
 		LatLong latLong = new LatLong(0, 0, true);
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.util.MercatorProjection;
+
+public class ProjectedLatLongsTest {
+	private static final int TILE_SIZE = 256;
+
+	private static double distance(ProjectedLatLongs projectedLatLongs, int index, int first, int last) {
+		double x = projectedLatLongs.xs[index];
+		double y = projectedLatLongs.ys[index];
+		double x1 = projectedLatLongs.xs[first];
+		double y1 = projectedLatLongs.ys[first];
+		double dx = projectedLatLongs.xs[last] - x1;
+		double dy = projectedLatLongs.ys[last] - y1;
+		double t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy)));
+		return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+	}
+
+	private static double getMapSize(byte zoomLevel) {
+		return MercatorProjection.getMapSize(zoomLevel, TILE_SIZE);
+	}
+
+	@Test
+	public void simplifyTest() {
+		double[] xs = { 0, 1, 2, 3, 4, 5, 6 };
+		double[] ys = { 0, 0.1, -0.1, 0, 2, 0, 0 };
+		Assert.assertArrayEquals(new int[] { 0, 3, 4, 5, 6 }, ProjectedLatLongs.simplify(xs, ys, 0.5));
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6 }, ProjectedLatLongs.simplify(xs, ys, 0.05));
+		Assert.assertArrayEquals(new int[] { 0, 6 }, ProjectedLatLongs.simplify(xs, ys, 3));
+
+		Assert.assertArrayEquals(new int[0], ProjectedLatLongs.simplify(new double[0], new double[0], 1));
+		Assert.assertArrayEquals(new int[] { 0 }, ProjectedLatLongs.simplify(new double[1], new double[1], 1));
+		// a closed ring keeps its shape although the first and the last point are the same
+		double[] ringXs = { 0, 1, 1, 0, 0 };
+		double[] ringYs = { 0, 0, 1, 1, 0 };
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, ProjectedLatLongs.simplify(ringXs, ringYs, 0.1));
+	}
+
+	@Test
+	public void updateTest() {
+		VersionedList<LatLong> latLongs = new VersionedList<LatLong>();
+		for (int i = 0; i <= 10000; ++i) {
+			latLongs.add(new LatLong(52 + Math.sin(i / 1000.0) / 10, 13 + i / 10000.0));
+		}
+
+		ProjectedLatLongs projectedLatLongs = new ProjectedLatLongs();
+		Assert.assertTrue(projectedLatLongs.update(latLongs));
+		Assert.assertFalse(projectedLatLongs.update(latLongs));
+		Assert.assertEquals(10001, projectedLatLongs.size());
+
+		int[] coarse = projectedLatLongs.getIndices((byte) 4, getMapSize((byte) 4));
+		int[] fine = projectedLatLongs.getIndices((byte) 18, getMapSize((byte) 18));
+		Assert.assertTrue(coarse.length < 10);
+		Assert.assertTrue(coarse.length < fine.length);
+		Assert.assertTrue(fine.length < 10001);
+		Assert.assertSame(coarse, projectedLatLongs.getIndices((byte) 4, getMapSize((byte) 4)));
+		Assert.assertNotSame(coarse, projectedLatLongs.getIndices((byte) 4, 2 * getMapSize((byte) 4)));
+
+		// no point of the original line is farther from the simplified line than the tolerance
+		double mapSize = getMapSize((byte) 18);
+		for (int i = 1; i < fine.length; ++i) {
+			for (int j = fine[i - 1]; j < fine[i]; ++j) {
+				Assert.assertTrue(distance(projectedLatLongs, j, fine[i - 1], fine[i]) * mapSize
+						<= ProjectedLatLongs.SIMPLIFICATION_TOLERANCE);
+			}
+		}
+
+		// each modification of the list is found, even if it restores the previous points
+		LatLong latLong = latLongs.get(5000);
+		latLongs.set(5000, latLong);
+		Assert.assertTrue(projectedLatLongs.update(latLongs));
+		Assert.assertFalse(projectedLatLongs.update(latLongs));
+		latLongs.set(5000, new LatLong(53, 13.5));
+		Assert.assertTrue(projectedLatLongs.update(latLongs));
+		Assert.assertNotSame(coarse, projectedLatLongs.getIndices((byte) 4, getMapSize((byte) 4)));
+		latLongs.remove(10000);
+		Assert.assertTrue(projectedLatLongs.update(latLongs));
+		Assert.assertEquals(10000, projectedLatLongs.size());
+		latLongs.clear();
+		Assert.assertTrue(projectedLatLongs.update(latLongs));
+		Assert.assertEquals(0, projectedLatLongs.size());
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.overlay;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionedListTest {
+	private static void verifyModified(VersionedList<String> versionedList, int previousVersion) {
+		Assert.assertTrue(versionedList.getVersion() > previousVersion);
+	}
+
+	@Test
+	public void iteratorTest() {
+		VersionedList<String> versionedList = new VersionedList<String>();
+		versionedList.addAll(Arrays.asList("a", "b"));
+		Iterator<String> iterator = versionedList.iterator();
+		versionedList.add("c");
+
+		// the iterator traverses a snapshot
+		Assert.assertEquals("a", iterator.next());
+		Assert.assertEquals("b", iterator.next());
+		Assert.assertFalse(iterator.hasNext());
+		try {
+			iterator.remove();
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void versionTest() {
+		VersionedList<String> versionedList = new VersionedList<String>();
+		Assert.assertEquals(0, versionedList.getVersion());
+
+		int version = versionedList.getVersion();
+		versionedList.add("a");
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.add(0, "b");
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.addAll(Arrays.asList("c", "d", "e"));
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.addAll(1, Arrays.asList("f"));
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.set(0, "b");
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.remove(0);
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.remove("f");
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.removeAll(Collections.singleton("e"));
+		verifyModified(versionedList, version);
+
+		version = versionedList.getVersion();
+		versionedList.retainAll(Arrays.asList("a", "c", "d"));
+		verifyModified(versionedList, version);
+		Assert.assertEquals(Arrays.asList("a", "c", "d"), versionedList);
+
+		version = versionedList.getVersion();
+		versionedList.subList(1, 2).clear();
+		verifyModified(versionedList, version);
+		Assert.assertEquals(Arrays.asList("a", "d"), versionedList);
+
+		version = versionedList.getVersion();
+		versionedList.clear();
+		verifyModified(versionedList, version);
+		Assert.assertTrue(versionedList.isEmpty());
+
+		// reading the list does not change the version
+		version = versionedList.getVersion();
+		versionedList.contains("a");
+		versionedList.toArray();
+		Assert.assertEquals(version, versionedList.getVersion());
+	}
+}
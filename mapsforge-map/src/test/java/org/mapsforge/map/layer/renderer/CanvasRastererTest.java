@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Path;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+
+public class CanvasRastererTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	/**
+	 * Maximum difference of a color channel, caused by the anti-aliasing of fewer stroke joins.
+	 */
+	private static final int MAX_CHANNEL_DIFFERENCE = 16;
+	private static final Tile TILE = new Tile(3, 5, (byte) 4, 256);
+
+	private static Point[] createPolygon(double radius) {
+		// a circle with many vertices closer than a pixel
+		Point center = TILE.getOrigin().offset(100, 120);
+		int vertices = 20000;
+		Point[] points = new Point[vertices + 1];
+		for (int i = 0; i < vertices; ++i) {
+			double angle = 2 * Math.PI * i / vertices;
+			points[i] = center.offset(radius * Math.cos(angle), radius * Math.sin(angle));
+		}
+		points[vertices] = points[0];
+		return points;
+	}
+
+	private static Point[] createPolyline() {
+		// a wave that crosses the tile several times and extends far beyond it
+		Point origin = TILE.getOrigin();
+		List<Point> points = new ArrayList<Point>();
+		for (double x = -2000; x <= 2000; x += 0.3) {
+			points.add(origin.offset(128 + x, 128 + 200 * Math.sin(x / 40)));
+		}
+		return points.toArray(new Point[points.size()]);
+	}
+
+	private static Paint createStroke(float strokeWidth) {
+		Paint paint = GRAPHIC_FACTORY.createPaint();
+		paint.setStyle(Style.STROKE);
+		paint.setColor(0xff336699);
+		paint.setStrokeWidth(strokeWidth);
+		return paint;
+	}
+
+	private static BufferedImage render(PolylineContainer way, Paint paint, float dy) {
+		DrawCommandBuffer drawCommands = new DrawCommandBuffer();
+		drawCommands.addPath((byte) 0, 0, paint, way, dy);
+
+		TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(TILE.tileSize, true);
+		CanvasRasterer canvasRasterer = new CanvasRasterer(GRAPHIC_FACTORY);
+		canvasRasterer.setCanvasBitmap(bitmap);
+		canvasRasterer.drawWays(drawCommands);
+		return AwtGraphicFactory.getBitmap(bitmap);
+	}
+
+	private static BufferedImage renderUnclipped(Point[] coordinates, Paint paint, float dy) {
+		Point origin = TILE.getOrigin();
+		Point[] points = new Point[coordinates.length];
+		for (int i = 0; i < coordinates.length; ++i) {
+			points[i] = coordinates[i].offset(-origin.x, -origin.y);
+		}
+		if (dy != 0) {
+			points = RendererUtils.parallelPath(points, dy);
+		}
+
+		Path path = GRAPHIC_FACTORY.createPath();
+		path.moveTo((float) points[0].x, (float) points[0].y);
+		for (int i = 1; i < points.length; ++i) {
+			path.lineTo((int) points[i].x, (int) points[i].y);
+		}
+
+		TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(TILE.tileSize, true);
+		Canvas canvas = GRAPHIC_FACTORY.createCanvas();
+		canvas.setBitmap(bitmap);
+		canvas.drawPath(path, paint);
+		return AwtGraphicFactory.getBitmap(bitmap);
+	}
+
+	private static void verifySimilar(BufferedImage expected, BufferedImage actual) {
+		int paintedPixels = 0;
+		for (int y = 0; y < expected.getHeight(); ++y) {
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				int expectedPixel = expected.getRGB(x, y);
+				int actualPixel = actual.getRGB(x, y);
+				if (expectedPixel != 0) {
+					++paintedPixels;
+				}
+				for (int shift = 0; shift < 32; shift += 8) {
+					int difference = Math.abs((expectedPixel >>> shift & 0xff) - (actualPixel >>> shift & 0xff));
+					Assert.assertTrue("pixel " + x + "," + y, difference <= MAX_CHANNEL_DIFFERENCE);
+				}
+			}
+		}
+		// the test is pointless if nothing is drawn
+		Assert.assertTrue(paintedPixels > 1000);
+	}
+
+	@Test
+	public void polygonTest() {
+		// covers the whole tile
+		Point[] coordinates = createPolygon(600);
+		Paint fill = GRAPHIC_FACTORY.createPaint();
+		fill.setColor(0x80aa3300);
+		PolylineContainer polygon = new PolylineContainer(coordinates, TILE, Collections.<Tag> emptyList());
+		Assert.assertTrue(polygon.isClosedWay());
+		verifySimilar(renderUnclipped(coordinates, fill, 0), render(polygon, fill, 0));
+
+		// crosses the tile border
+		coordinates = createPolygon(150);
+		Paint stroke = createStroke(8);
+		polygon = new PolylineContainer(coordinates, TILE, Collections.<Tag> emptyList());
+		verifySimilar(renderUnclipped(coordinates, stroke, 0), render(polygon, stroke, 0));
+	}
+
+	@Test
+	public void polylineTest() {
+		Point[] coordinates = createPolyline();
+		for (float dy : new float[] { 0, 6 }) {
+			Paint stroke = createStroke(12);
+			PolylineContainer polyline = new PolylineContainer(coordinates, TILE, Collections.<Tag> emptyList());
+			Assert.assertFalse(polyline.isClosedWay());
+			verifySimilar(renderUnclipped(coordinates, stroke, dy), render(polyline, stroke, dy));
+		}
+	}
+}
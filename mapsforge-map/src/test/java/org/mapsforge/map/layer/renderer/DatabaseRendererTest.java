@@ -0,0 +1,291 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.mapelements.MapElementContainer;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.labels.TileBasedLabelStore;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+
+public class DatabaseRendererTest {
+	/**
+	 * Keeps the labels drawn by the last job.
+	 */
+	private static final class LabelRecordingRenderer extends DatabaseRenderer {
+		Set<MapElementContainer> drawnLabels;
+
+		LabelRecordingRenderer(TileCache tileCache) {
+			super(openMapDatabase(), GRAPHIC_FACTORY, tileCache);
+		}
+
+		LabelRecordingRenderer(TileCacheInfoProvider tileCacheInfoProvider, TileDependencies tileDependencies) {
+			super(openMapDatabase(), GRAPHIC_FACTORY, tileCacheInfoProvider, tileDependencies);
+		}
+
+		@Override
+		void drawLabels(Set<MapElementContainer> labels, Tile upperLeft) {
+			this.drawnLabels = new HashSet<MapElementContainer>(labels);
+			super.drawLabels(labels, upperLeft);
+		}
+	}
+
+	private static final DisplayModel DISPLAY_MODEL = new DisplayModel();
+	private static final DatabaseRenderer.TileCacheInfoProvider EMPTY_TILE_CACHE =
+			new DatabaseRenderer.TileCacheInfoProvider() {
+				@Override
+				public boolean contains(Tile tile, RendererJob rendererJob) {
+					return false;
+				}
+			};
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final byte LABEL_ZOOM_LEVEL = 6;
+	private static final File MAP_FILE = new File("../mapsforge-map-reader/src/test/resources/with_data/output.map");
+	private static final int MAX_CHANNEL_DIFFERENCE = 16;
+	private static final int MAX_DIFFERENT_PIXELS = 1000;
+	private static final int METATILE_SIZE = 2;
+	private static final int TILE_SIZE = 256;
+	private static final byte ZOOM_LEVEL = 13;
+
+	private static DatabaseRenderer createDatabaseRenderer() {
+		// the labels are placed by a label layer, so that the tiles only contain the ways
+		return new DatabaseRenderer(openMapDatabase(), GRAPHIC_FACTORY, new TileBasedLabelStore(16));
+	}
+
+	private static RendererJob createRendererJob(Tile tile) {
+		return new RendererJob(tile, MAP_FILE, InternalRenderTheme.OSMARENDER, DISPLAY_MODEL, 1, false, false);
+	}
+
+	private static Tile getLabelTile() {
+		// the caption of the POI lies across the left and lower boundary of its tile
+		int tileX = MercatorProjection.longitudeToTileX(0.08, LABEL_ZOOM_LEVEL);
+		int tileY = MercatorProjection.latitudeToTileY(0.04, LABEL_ZOOM_LEVEL);
+		return new Tile(tileX, tileY, LABEL_ZOOM_LEVEL, TILE_SIZE);
+	}
+
+	private static MapDatabase openMapDatabase() {
+		MapDatabase mapDatabase = new MapDatabase();
+		Assert.assertTrue(mapDatabase.openFile(MAP_FILE).isSuccess());
+		return mapDatabase;
+	}
+
+	/**
+	 * Verifies that no label is drawn twice at different positions or over another label.
+	 */
+	private static void verifyCollisionFree(Set<MapElementContainer> labels) {
+		for (MapElementContainer label : labels) {
+			for (MapElementContainer other : labels) {
+				// a caption clashes with itself and with captions of the same text nearby
+				if (!label.equals(other)) {
+					Assert.assertFalse(label + " clashes with " + other, label.clashesWith(other));
+				}
+			}
+		}
+	}
+
+	private static void verifySimilar(BufferedImage expected, BufferedImage actual) {
+		Set<Integer> colors = new HashSet<Integer>();
+		int differentPixels = 0;
+		for (int y = 0; y < expected.getHeight(); ++y) {
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				int expectedPixel = expected.getRGB(x, y);
+				int actualPixel = actual.getRGB(x, y);
+				colors.add(Integer.valueOf(expectedPixel));
+				for (int shift = 0; shift < 32; shift += 8) {
+					int difference = Math.abs((expectedPixel >>> shift & 0xff) - (actualPixel >>> shift & 0xff));
+					if (difference > MAX_CHANNEL_DIFFERENCE) {
+						++differentPixels;
+						break;
+					}
+				}
+			}
+		}
+		// the test is pointless if nothing is drawn
+		Assert.assertTrue(colors.size() > 2);
+		// the vertices are snapped to whole pixels, a different origin may move some of them by one pixel
+		Assert.assertTrue("different pixels: " + differentPixels, differentPixels < MAX_DIFFERENT_PIXELS);
+	}
+
+	@Test
+	public void concurrentNeighboursTest() {
+		// all neighbours are put into the tile cache by other threads while the labels of the tile are placed
+		final Tile tile = getLabelTile();
+		DatabaseRenderer.TileCacheInfoProvider tileCache = new DatabaseRenderer.TileCacheInfoProvider() {
+			private int lookups;
+
+			@Override
+			public boolean contains(Tile neighbour, RendererJob rendererJob) {
+				return ++this.lookups > tile.getNeighbours().size();
+			}
+		};
+		TileDependencies tileDependencies = new TileDependencies();
+		LabelRecordingRenderer databaseRenderer = new LabelRecordingRenderer(tileCache, tileDependencies);
+		databaseRenderer.executeJob(createRendererJob(tile)).decrementRefCount();
+
+		// the labels are placed again, so that none of them is cut at the boundary of a drawn neighbour
+		for (Tile neighbour : tile.getNeighbours()) {
+			for (MapElementContainer label : databaseRenderer.drawnLabels) {
+				Assert.assertFalse(label.toString(), label.intersects(neighbour.getBoundaryAbsolute()));
+			}
+			Assert.assertTrue(tileDependencies.getOverlappingElements(tile, neighbour).isEmpty());
+		}
+		Assert.assertTrue(tileDependencies.isPendingTile(tile));
+	}
+
+	@Test
+	public void discardedTileLabelsTest() {
+		// the bitmap of the tile is discarded instead of being put into the tile cache
+		TileDependencies tileDependencies = new TileDependencies();
+		Tile tile = getLabelTile();
+		LabelRecordingRenderer databaseRenderer = new LabelRecordingRenderer(EMPTY_TILE_CACHE, tileDependencies);
+		databaseRenderer.executeJob(createRendererJob(tile)).decrementRefCount();
+		Assert.assertTrue(tileDependencies.isPendingTile(tile));
+		databaseRenderer.removePendingTile(tile);
+		Assert.assertFalse(tileDependencies.isPendingTile(tile));
+
+		// the neighbours do not take the labels of the tile as drawn, they record their own labels for it instead
+		int crossingLabels = 0;
+		for (Tile neighbour : tile.getNeighbours()) {
+			LabelRecordingRenderer neighbourRenderer = new LabelRecordingRenderer(EMPTY_TILE_CACHE, tileDependencies);
+			neighbourRenderer.executeJob(createRendererJob(neighbour)).decrementRefCount();
+			neighbourRenderer.removePendingTile(neighbour);
+			for (MapElementContainer label : databaseRenderer.drawnLabels) {
+				if (label.intersects(neighbour.getBoundaryAbsolute())) {
+					Assert.assertFalse(label.toString(), neighbourRenderer.drawnLabels.contains(label));
+				}
+			}
+			crossingLabels += tileDependencies.getOverlappingElements(neighbour, tile).size();
+		}
+		// the test is pointless if no label crosses the boundary of the tile
+		Assert.assertTrue(crossingLabels > 0);
+	}
+
+	@Test
+	public void metatileLabelsTest() {
+		// the caption of the POI lies across the left and lower boundary of its metatile
+		int tileX = MercatorProjection.longitudeToTileX(0.08, LABEL_ZOOM_LEVEL);
+		int tileY = MercatorProjection.latitudeToTileY(0.04, LABEL_ZOOM_LEVEL);
+		Tile tile = new Tile(tileX, tileY, LABEL_ZOOM_LEVEL, TILE_SIZE);
+
+		InMemoryTileCache tileCache = new InMemoryTileCache(16);
+		LabelRecordingRenderer databaseRenderer = new LabelRecordingRenderer(tileCache);
+		databaseRenderer.executeMetatileJob(createRendererJob(tile), METATILE_SIZE, tileCache);
+		Set<MapElementContainer> metatileLabels = databaseRenderer.drawnLabels;
+		verifyCollisionFree(metatileLabels);
+
+		Set<Tile> metatile = new HashSet<Tile>();
+		Set<Tile> neighbours = new HashSet<Tile>();
+		int left = tileX - tileX % METATILE_SIZE;
+		int top = tileY - tileY % METATILE_SIZE;
+		for (int y = top; y < top + METATILE_SIZE; ++y) {
+			for (int x = left; x < left + METATILE_SIZE; ++x) {
+				Tile metatileTile = new Tile(x, y, LABEL_ZOOM_LEVEL, TILE_SIZE);
+				Assert.assertNotNull(tileCache.get(createRendererJob(metatileTile)));
+				metatile.add(metatileTile);
+				neighbours.addAll(metatileTile.getNeighbours());
+			}
+		}
+		neighbours.removeAll(metatile);
+
+		// each tile next to the metatile is drawn after the metatile, as by the map worker
+		int crossingLabels = 0;
+		for (Tile neighbour : neighbours) {
+			TileBitmap tileBitmap = databaseRenderer.executeJob(createRendererJob(neighbour));
+			Assert.assertNotNull(tileBitmap);
+			tileBitmap.decrementRefCount();
+			Set<MapElementContainer> neighbourLabels = databaseRenderer.drawnLabels;
+			verifyCollisionFree(neighbourLabels);
+
+			// a label across the boundary is drawn on both sides, otherwise it would be cut
+			for (MapElementContainer label : metatileLabels) {
+				if (label.intersects(neighbour.getBoundaryAbsolute())) {
+					Assert.assertTrue(label.toString(), neighbourLabels.contains(label));
+					++crossingLabels;
+				}
+			}
+			for (MapElementContainer label : neighbourLabels) {
+				for (Tile metatileTile : metatile) {
+					if (label.intersects(metatileTile.getBoundaryAbsolute())) {
+						Assert.assertTrue(label.toString(), metatileLabels.contains(label));
+					}
+				}
+			}
+		}
+		// the test is pointless if no label crosses the boundary of the metatile
+		Assert.assertTrue(crossingLabels > 0);
+	}
+
+	@Test
+	public void metatileTest() {
+		int tileX = MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL);
+		int tileY = MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL);
+		Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL, TILE_SIZE);
+
+		InMemoryTileCache tileCache = new InMemoryTileCache(16);
+		DatabaseRenderer metatileRenderer = createDatabaseRenderer();
+		metatileRenderer.executeMetatileJob(createRendererJob(tile), METATILE_SIZE, tileCache);
+
+		DatabaseRenderer tileRenderer = createDatabaseRenderer();
+		int left = tileX - tileX % METATILE_SIZE;
+		int top = tileY - tileY % METATILE_SIZE;
+		for (int y = top; y < top + METATILE_SIZE; ++y) {
+			for (int x = left; x < left + METATILE_SIZE; ++x) {
+				RendererJob rendererJob = createRendererJob(new Tile(x, y, ZOOM_LEVEL, TILE_SIZE));
+				TileBitmap expected = tileRenderer.executeJob(rendererJob);
+				TileBitmap actual = tileCache.get(rendererJob);
+				Assert.assertNotNull(actual);
+				verifySimilar(AwtGraphicFactory.getBitmap(expected), AwtGraphicFactory.getBitmap(actual));
+			}
+		}
+	}
+
+	@Test
+	public void pendingTileLabelsTest() {
+		// the tiles are drawn by different renderers and none of them is in the tile cache yet
+		TileDependencies tileDependencies = new TileDependencies();
+		Tile tile = getLabelTile();
+		LabelRecordingRenderer databaseRenderer = new LabelRecordingRenderer(EMPTY_TILE_CACHE, tileDependencies);
+		databaseRenderer.executeJob(createRendererJob(tile)).decrementRefCount();
+		Set<MapElementContainer> tileLabels = databaseRenderer.drawnLabels;
+
+		int crossingLabels = 0;
+		for (Tile neighbour : tile.getNeighbours()) {
+			LabelRecordingRenderer neighbourRenderer = new LabelRecordingRenderer(EMPTY_TILE_CACHE, tileDependencies);
+			neighbourRenderer.executeJob(createRendererJob(neighbour)).decrementRefCount();
+			for (MapElementContainer label : tileLabels) {
+				if (label.intersects(neighbour.getBoundaryAbsolute())) {
+					Assert.assertTrue(label.toString(), neighbourRenderer.drawnLabels.contains(label));
+					++crossingLabels;
+				}
+			}
+		}
+		// the test is pointless if no label crosses the boundary of the tile
+		Assert.assertTrue(crossingLabels > 0);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+
+public class DrawCommandBufferTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+
+	@Test
+	public void clearTest() {
+		DrawCommandBuffer drawCommands = new DrawCommandBuffer();
+		Paint paint = GRAPHIC_FACTORY.createPaint();
+		for (int i = 0; i < 1000; ++i) {
+			drawCommands.addCircle((byte) 0, i % 7, paint, i, i, 1);
+		}
+		Assert.assertEquals(1000, drawCommands.size());
+
+		drawCommands.clear();
+		Assert.assertEquals(0, drawCommands.size());
+
+		drawCommands.addCircle((byte) 1, 2, paint, 3, 4, 5);
+		drawCommands.sort();
+		Assert.assertEquals(1, drawCommands.size());
+		int command = drawCommands.getCommand(0);
+		Assert.assertNull(drawCommands.getWay(command));
+		Assert.assertEquals(3, drawCommands.getX(command), 0);
+		Assert.assertEquals(4, drawCommands.getY(command), 0);
+		Assert.assertEquals(5, drawCommands.getRadius(command), 0);
+	}
+
+	@Test
+	public void sortTest() {
+		DrawCommandBuffer drawCommands = new DrawCommandBuffer();
+		Paint[] paints = new Paint[6];
+		for (int i = 0; i < paints.length; ++i) {
+			paints[i] = GRAPHIC_FACTORY.createPaint();
+		}
+
+		drawCommands.addCircle((byte) 1, 0, paints[0], 0, 0, 1);
+		drawCommands.addCircle((byte) 0, 3, paints[1], 0, 0, 1);
+		drawCommands.addCircle((byte) 0, 3, paints[2], 0, 0, 1);
+		drawCommands.addCircle((byte) 10, 0, paints[3], 0, 0, 1);
+		drawCommands.addCircle((byte) 0, 0, paints[4], 0, 0, 1);
+		drawCommands.addCircle((byte) 1, 0, paints[5], 0, 0, 1);
+		drawCommands.sort();
+
+		// ascending layer and level, the last added command first within the same layer and level
+		Paint[] expected = { paints[4], paints[2], paints[1], paints[5], paints[0], paints[3] };
+		Assert.assertEquals(expected.length, drawCommands.size());
+		for (int i = 0; i < expected.length; ++i) {
+			Assert.assertSame(expected[i], drawCommands.getPaint(drawCommands.getCommand(i)));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unsortedTest() {
+		DrawCommandBuffer drawCommands = new DrawCommandBuffer();
+		drawCommands.addCircle((byte) 0, 0, GRAPHIC_FACTORY.createPaint(), 0, 0, 1);
+		drawCommands.getCommand(0);
+	}
+}
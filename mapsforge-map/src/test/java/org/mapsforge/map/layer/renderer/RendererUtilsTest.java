@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Point;
+
+public class RendererUtilsTest {
+	@Test
+	public void clipPolygonTest() {
+		Point[] inside = { new Point(1, 1), new Point(9, 1), new Point(9, 9), new Point(1, 1) };
+		Assert.assertSame(inside, RendererUtils.clipPolygon(inside, 0, 0, 10, 10));
+
+		Point[] outside = { new Point(20, 20), new Point(30, 20), new Point(30, 30), new Point(20, 20) };
+		Assert.assertEquals(0, RendererUtils.clipPolygon(outside, 0, 0, 10, 10).length);
+
+		// a square larger than the clip rectangle becomes the clip rectangle
+		Point[] square = { new Point(-50, -50), new Point(50, -50), new Point(50, 50), new Point(-50, 50),
+				new Point(-50, -50) };
+		Point[] clipped = RendererUtils.clipPolygon(square, 0, 0, 10, 10);
+		Assert.assertEquals(clipped[0], clipped[clipped.length - 1]);
+		for (Point point : clipped) {
+			Assert.assertTrue(point.x == 0 || point.x == 10);
+			Assert.assertTrue(point.y == 0 || point.y == 10);
+		}
+	}
+
+	@Test
+	public void clipPolylineTest() {
+		Point[] inside = { new Point(1, 1), new Point(9, 1), new Point(9, 9) };
+		List<Point[]> parts = RendererUtils.clipPolyline(inside, 0, 0, 10, 10);
+		Assert.assertEquals(1, parts.size());
+		Assert.assertSame(inside, parts.get(0));
+
+		// enters, leaves and enters again
+		Point[] points = { new Point(-10, 5), new Point(5, 5), new Point(5, 20), new Point(8, 20), new Point(8, 5) };
+		parts = RendererUtils.clipPolyline(points, 0, 0, 10, 10);
+		Assert.assertEquals(2, parts.size());
+		Assert.assertArrayEquals(new Point[] { new Point(0, 5), new Point(5, 5), new Point(5, 10) }, parts.get(0));
+		Assert.assertArrayEquals(new Point[] { new Point(8, 10), new Point(8, 5) }, parts.get(1));
+
+		// crosses a corner without touching the rectangle
+		Point[] outside = { new Point(-5, 4), new Point(4, -5) };
+		Assert.assertTrue(RendererUtils.clipPolyline(outside, 0, 0, 10, 10).isEmpty());
+	}
+
+	@Test
+	public void simplifyTest() {
+		Point[] points = { new Point(0.5, 0.5), new Point(0.7, 0.2), new Point(1.2, 0.1), new Point(1.9, 0.9),
+				new Point(2.1, 0), new Point(2.2, 0.3) };
+		Point[] simplified = RendererUtils.simplify(points);
+		Assert.assertArrayEquals(new Point[] { new Point(0.5, 0.5), new Point(0.7, 0.2), new Point(1.2, 0.1),
+				new Point(2.1, 0) }, simplified);
+
+		Point[] unchanged = { new Point(0, 0), new Point(5, 0), new Point(5, 5) };
+		Assert.assertSame(unchanged, RendererUtils.simplify(unchanged));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.mapelements.MapElementContainer;
+import org.mapsforge.core.mapelements.SymbolContainer;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+
+public class TileDependenciesTest {
+	private static final Bitmap SYMBOL = AwtGraphicFactory.INSTANCE.createBitmap(10, 10);
+	private static final byte ZOOM_LEVEL = 10;
+
+	private static MapElementContainer createElement(int x) {
+		return new SymbolContainer(new Point(x, 0), 0, SYMBOL);
+	}
+
+	private static Tile createTile(int tileX) {
+		return new Tile(tileX, 0, ZOOM_LEVEL, 256);
+	}
+
+	@Test
+	public void capacityTest() {
+		TileDependencies tileDependencies = new TileDependencies(3);
+		MapElementContainer element = createElement(0);
+		for (int i = 0; i < 3; ++i) {
+			tileDependencies.addOverlappingElement(createTile(i), createTile(i + 1), element);
+		}
+		Assert.assertEquals(3, tileDependencies.size());
+
+		// the first tile has been used recently, so the second tile is evicted
+		Assert.assertEquals(1, tileDependencies.getOverlappingElements(createTile(0), createTile(1)).size());
+		tileDependencies.addOverlappingElement(createTile(3), createTile(4), element);
+		Assert.assertEquals(3, tileDependencies.size());
+		Assert.assertEquals(1, tileDependencies.getOverlappingElements(createTile(0), createTile(1)).size());
+		Assert.assertTrue(tileDependencies.getOverlappingElements(createTile(1), createTile(2)).isEmpty());
+		Assert.assertEquals(1, tileDependencies.getOverlappingElements(createTile(3), createTile(4)).size());
+
+		tileDependencies.removeTileData(createTile(0), createTile(1));
+		Assert.assertTrue(tileDependencies.getOverlappingElements(createTile(0), createTile(1)).isEmpty());
+		tileDependencies.removeTileData(createTile(3));
+		Assert.assertEquals(2, tileDependencies.size());
+	}
+
+	@Test
+	public void concurrencyTest() throws InterruptedException {
+		final TileDependencies tileDependencies = new TileDependencies(16);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; ++t) {
+			final int offset = t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 2000; ++i) {
+							Tile from = createTile((i + offset) % 32);
+							Tile to = createTile((i + offset + 1) % 32);
+							tileDependencies.addOverlappingElement(from, to, createElement(i));
+							for (MapElementContainer element : tileDependencies.getOverlappingElements(to, from)) {
+								Assert.assertNotNull(element);
+							}
+							if (i % 7 == 0) {
+								tileDependencies.removeTileData(to);
+							}
+						}
+					} catch (Throwable throwable) {
+						synchronized (errors) {
+							errors.add(throwable);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertTrue(errors.toString(), errors.isEmpty());
+		Assert.assertTrue(tileDependencies.size() <= 16);
+	}
+
+	@Test
+	public void copyTest() {
+		TileDependencies tileDependencies = new TileDependencies();
+		tileDependencies.addOverlappingElement(createTile(0), createTile(1), createElement(0));
+		Set<MapElementContainer> elements = tileDependencies.getOverlappingElements(createTile(0), createTile(1));
+		elements.clear();
+		Assert.assertEquals(1, tileDependencies.getOverlappingElements(createTile(0), createTile(1)).size());
+	}
+
+	@Test
+	public void pendingTileTest() {
+		TileDependencies tileDependencies = new TileDependencies(2);
+		Assert.assertFalse(tileDependencies.isPendingTile(createTile(0)));
+		tileDependencies.addPendingTile(createTile(0));
+		Assert.assertTrue(tileDependencies.isPendingTile(createTile(0)));
+		tileDependencies.removePendingTile(createTile(0));
+		Assert.assertFalse(tileDependencies.isPendingTile(createTile(0)));
+
+		// the pending tiles are bounded by the capacity
+		for (int i = 0; i < 3; ++i) {
+			tileDependencies.addPendingTile(createTile(i));
+		}
+		Assert.assertFalse(tileDependencies.isPendingTile(createTile(0)));
+		Assert.assertTrue(tileDependencies.isPendingTile(createTile(2)));
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+
+/**
+ * Decodes the subset of the Mapbox Vector Tile format that is written by the {@link VectorTileEncoder}.
+ */
+final class VectorTileDecoder {
+	static final class Feature {
+		final List<Integer> geometry = new ArrayList<Integer>();
+		final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		int type;
+	}
+
+	static final class Layer {
+		int extent;
+		final List<Feature> features = new ArrayList<Feature>();
+		int version;
+	}
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	static Map<String, Layer> decode(byte[] data) {
+		Map<String, Layer> layers = new LinkedHashMap<String, Layer>();
+		VectorTileDecoder tile = new VectorTileDecoder(data, 0, data.length);
+		while (tile.hasRemaining()) {
+			Assert.assertEquals(3 << 3 | 2, tile.readVarint());
+			VectorTileDecoder layerMessage = tile.readMessage();
+			String name = null;
+			Layer layer = new Layer();
+			List<String> keys = new ArrayList<String>();
+			List<Object> values = new ArrayList<Object>();
+			List<List<Integer>> tags = new ArrayList<List<Integer>>();
+			while (layerMessage.hasRemaining()) {
+				int key = (int) layerMessage.readVarint();
+				switch (key >> 3) {
+					case 1:
+						name = layerMessage.readString();
+						break;
+					case 2:
+						tags.add(readFeature(layerMessage.readMessage(), layer));
+						break;
+					case 3:
+						keys.add(layerMessage.readString());
+						break;
+					case 4:
+						values.add(readValue(layerMessage.readMessage()));
+						break;
+					case 5:
+						layer.extent = (int) layerMessage.readVarint();
+						break;
+					case 15:
+						layer.version = (int) layerMessage.readVarint();
+						break;
+					default:
+						Assert.fail("unexpected field: " + key);
+				}
+			}
+			for (int i = 0; i < tags.size(); ++i) {
+				List<Integer> featureTags = tags.get(i);
+				for (int j = 0; j < featureTags.size(); j += 2) {
+					layer.features.get(i).properties.put(keys.get(featureTags.get(j).intValue()),
+							values.get(featureTags.get(j + 1).intValue()));
+				}
+			}
+			Assert.assertNotNull(name);
+			layers.put(name, layer);
+		}
+		return layers;
+	}
+
+	private static List<Integer> readFeature(VectorTileDecoder message, Layer layer) {
+		Feature feature = new Feature();
+		List<Integer> tags = new ArrayList<Integer>();
+		while (message.hasRemaining()) {
+			int key = (int) message.readVarint();
+			switch (key >> 3) {
+				case 2:
+					message.readPacked(tags);
+					break;
+				case 3:
+					feature.type = (int) message.readVarint();
+					break;
+				case 4:
+					message.readPacked(feature.geometry);
+					break;
+				default:
+					Assert.fail("unexpected field: " + key);
+			}
+		}
+		layer.features.add(feature);
+		return tags;
+	}
+
+	private static Object readValue(VectorTileDecoder message) {
+		int key = (int) message.readVarint();
+		switch (key >> 3) {
+			case 1:
+				return message.readString();
+			case 4:
+				return Long.valueOf(message.readVarint());
+			case 7:
+				return Boolean.valueOf(message.readVarint() != 0);
+			default:
+				Assert.fail("unexpected field: " + key);
+				return null;
+		}
+	}
+
+	private final byte[] data;
+	private final int end;
+	private int position;
+
+	private VectorTileDecoder(byte[] data, int position, int end) {
+		this.data = data;
+		this.position = position;
+		this.end = end;
+	}
+
+	private boolean hasRemaining() {
+		return this.position < this.end;
+	}
+
+	private VectorTileDecoder readMessage() {
+		int length = (int) readVarint();
+		VectorTileDecoder message = new VectorTileDecoder(this.data, this.position, this.position + length);
+		this.position += length;
+		return message;
+	}
+
+	private void readPacked(List<Integer> values) {
+		VectorTileDecoder packed = readMessage();
+		while (packed.hasRemaining()) {
+			values.add(Integer.valueOf((int) packed.readVarint()));
+		}
+	}
+
+	private String readString() {
+		int length = (int) readVarint();
+		String string = new String(this.data, this.position, length, UTF_8);
+		this.position += length;
+		return string;
+	}
+
+	private long readVarint() {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = this.data[this.position++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+}
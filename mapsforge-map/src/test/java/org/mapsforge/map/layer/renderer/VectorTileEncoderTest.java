@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Point;
+
+public class VectorTileEncoderTest {
+	private static final Map<String, Object> NO_PROPERTIES = Collections.emptyMap();
+
+	private static void verifyGeometry(VectorTileEncoder encoder, int type, Integer... expected) {
+		List<VectorTileDecoder.Feature> features = VectorTileDecoder.decode(encoder.encode()).get("test").features;
+		Assert.assertEquals(1, features.size());
+		Assert.assertEquals(type, features.get(0).type);
+		Assert.assertEquals(Arrays.asList(expected), features.get(0).geometry);
+	}
+
+	@Test
+	public void clipTest() {
+		// 256 pixels are mapped to 4096 units, the buffer of 64 units is 4 pixels wide
+		VectorTileEncoder encoder = new VectorTileEncoder(256, 4096, 64);
+		Point[] line = { new Point(-100, 10), new Point(100, 10), new Point(100.01, 10.01), new Point(100, 300) };
+		encoder.addLineString("test", NO_PROPERTIES, new Point[][] { line });
+		// (-64, 160), (1600, 160), (1600, 4160), the duplicate point is removed
+		verifyGeometry(encoder, VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, 9, 127, 320, 2 << 3 | 2, 3328, 0, 0, 8000);
+
+		encoder = new VectorTileEncoder(256, 4096, 64);
+		encoder.addPoint("test", NO_PROPERTIES, new Point(-5, 10));
+		encoder.addLineString("test", NO_PROPERTIES, new Point[][] { { new Point(300, 0), new Point(300, 10) } });
+		encoder.addPolygon("test", NO_PROPERTIES, new Point[][] { { new Point(0, -10), new Point(10, -10),
+				new Point(10, -20), new Point(0, -10) } });
+		Assert.assertTrue(encoder.isEmpty());
+		Assert.assertEquals(0, encoder.encode().length);
+	}
+
+	@Test
+	public void geometryTest() {
+		// the examples of the specification
+		VectorTileEncoder encoder = new VectorTileEncoder(256, 256, 0);
+		encoder.addPoint("test", NO_PROPERTIES, new Point(25, 17));
+		verifyGeometry(encoder, VectorTileEncoder.GEOMETRY_TYPE_POINT, 9, 50, 34);
+
+		encoder = new VectorTileEncoder(256, 256, 0);
+		Point[] line = { new Point(2, 2), new Point(2, 10), new Point(10, 10) };
+		encoder.addLineString("test", NO_PROPERTIES, new Point[][] { line });
+		verifyGeometry(encoder, VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, 9, 4, 4, 18, 0, 16, 16, 0);
+
+		encoder = new VectorTileEncoder(256, 256, 0);
+		Point[] ring = { new Point(3, 6), new Point(8, 12), new Point(20, 34), new Point(3, 6) };
+		encoder.addPolygon("test", NO_PROPERTIES, new Point[][] { ring });
+		verifyGeometry(encoder, VectorTileEncoder.GEOMETRY_TYPE_POLYGON, 9, 6, 12, 18, 10, 12, 24, 44, 15);
+	}
+
+	@Test
+	public void propertiesTest() {
+		VectorTileEncoder encoder = new VectorTileEncoder(256, 4096, 0);
+		Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		properties.put("highway", "primary");
+		properties.put("level", Integer.valueOf(-3));
+		properties.put("symbol", Boolean.TRUE);
+		encoder.addPoint("points", properties, new Point(1, 1));
+		properties.put("name", "Straße");
+		encoder.addPoint("points", properties, new Point(2, 2));
+		encoder.addPoint("labels", NO_PROPERTIES, new Point(3, 3));
+
+		Map<String, VectorTileDecoder.Layer> layers = VectorTileDecoder.decode(encoder.encode());
+		Assert.assertEquals(Arrays.asList("points", "labels"), Arrays.asList(layers.keySet().toArray()));
+		VectorTileDecoder.Layer points = layers.get("points");
+		Assert.assertEquals(2, points.version);
+		Assert.assertEquals(4096, points.extent);
+		Assert.assertEquals(2, points.features.size());
+		Map<String, Object> decoded = points.features.get(1).properties;
+		Assert.assertEquals("primary", decoded.get("highway"));
+		Assert.assertEquals(Long.valueOf(-3), decoded.get("level"));
+		Assert.assertEquals(Boolean.TRUE, decoded.get("symbol"));
+		Assert.assertEquals("Straße", decoded.get("name"));
+		Assert.assertEquals(3, points.features.get(0).properties.size());
+		Assert.assertTrue(layers.get("labels").features.get(0).properties.isEmpty());
+	}
+
+	@Test
+	public void windingTest() {
+		VectorTileEncoder encoder = new VectorTileEncoder(256, 256, 0);
+		// a counterclockwise outer ring with a clockwise hole and a hole that collapses to a line
+		Point[] outer = { new Point(0, 0), new Point(0, 10), new Point(10, 10), new Point(10, 0), new Point(0, 0) };
+		Point[] hole = { new Point(2, 2), new Point(4, 2), new Point(4, 4), new Point(2, 4), new Point(2, 2) };
+		Point[] collapsed = { new Point(5, 5), new Point(5.1, 5.1), new Point(6, 6), new Point(5, 5) };
+		encoder.addPolygon("test", NO_PROPERTIES, new Point[][] { outer, hole, collapsed });
+		verifyGeometry(encoder, VectorTileEncoder.GEOMETRY_TYPE_POLYGON,
+				// (10, 0), (10, 10), (0, 10), (0, 0)
+				9, 20, 0, 3 << 3 | 2, 0, 20, 19, 0, 0, 19, 15,
+				// (2, 4), (4, 4), (4, 2), (2, 2)
+				9, 4, 8, 3 << 3 | 2, 4, 0, 0, 3, 3, 0, 15);
+	}
+}
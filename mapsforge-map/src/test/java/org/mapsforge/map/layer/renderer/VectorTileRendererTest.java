@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+
+public class VectorTileRendererTest {
+	private static final DisplayModel DISPLAY_MODEL = new DisplayModel();
+	private static final File MAP_FILE = new File("../mapsforge-map-reader/src/test/resources/with_data/output.map");
+	private static final int TILE_SIZE = 256;
+	private static final byte ZOOM_LEVEL = 13;
+
+	private static VectorTileJob createVectorTileJob(Tile tile) {
+		return new VectorTileJob(tile, MAP_FILE, InternalRenderTheme.OSMARENDER, DISPLAY_MODEL);
+	}
+
+	private static VectorTileRenderer createVectorTileRenderer() {
+		MapDatabase mapDatabase = new MapDatabase();
+		Assert.assertTrue(mapDatabase.openFile(MAP_FILE).isSuccess());
+		return new VectorTileRenderer(mapDatabase, AwtGraphicFactory.INSTANCE);
+	}
+
+	private static void verifyCoordinates(VectorTileDecoder.Feature feature) {
+		int min = -VectorTileJob.DEFAULT_EXTENT / 16;
+		int max = VectorTileJob.DEFAULT_EXTENT - min;
+		int x = 0;
+		int y = 0;
+		int i = 0;
+		while (i < feature.geometry.size()) {
+			int command = feature.geometry.get(i++).intValue();
+			int id = command & 0x7;
+			int count = command >>> 3;
+			if (id == 7) {
+				continue;
+			}
+			for (int j = 0; j < count; ++j) {
+				int dx = feature.geometry.get(i++).intValue();
+				int dy = feature.geometry.get(i++).intValue();
+				x += (dx >>> 1) ^ -(dx & 1);
+				y += (dy >>> 1) ^ -(dy & 1);
+				Assert.assertTrue(x >= min && x <= max);
+				Assert.assertTrue(y >= min && y <= max);
+			}
+		}
+	}
+
+	@Test
+	public void equalsTest() {
+		Tile tile = new Tile(0, 0, ZOOM_LEVEL, TILE_SIZE);
+		VectorTileJob vectorTileJob = createVectorTileJob(tile);
+		RendererJob rendererJob = new RendererJob(tile, MAP_FILE, InternalRenderTheme.OSMARENDER, DISPLAY_MODEL, 1,
+				false, false);
+		Assert.assertFalse(vectorTileJob.equals(rendererJob));
+		Assert.assertFalse(rendererJob.equals(vectorTileJob));
+		Assert.assertEquals(vectorTileJob, vectorTileJob.otherTile(tile));
+		Assert.assertFalse(vectorTileJob.equals(new VectorTileJob(tile, MAP_FILE, InternalRenderTheme.OSMARENDER,
+				DISPLAY_MODEL, 256)));
+
+		VectorTileJob withoutDisplayModel = new VectorTileJob(tile, MAP_FILE, InternalRenderTheme.OSMARENDER, null);
+		Assert.assertEquals(withoutDisplayModel, withoutDisplayModel.otherTile(tile));
+		Assert.assertFalse(withoutDisplayModel.equals(vectorTileJob));
+		Assert.assertFalse(vectorTileJob.equals(withoutDisplayModel));
+	}
+
+	@Test
+	public void executeJobTest() {
+		int tileX = MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL);
+		int tileY = MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL);
+		VectorTileJob vectorTileJob = createVectorTileJob(new Tile(tileX, tileY, ZOOM_LEVEL, TILE_SIZE));
+		VectorTile vectorTile = createVectorTileRenderer().executeJob(vectorTileJob);
+		Assert.assertEquals(TILE_SIZE, vectorTile.getTileSize());
+
+		Map<String, VectorTileDecoder.Layer> layers = VectorTileDecoder.decode(vectorTile.getData());
+		VectorTileDecoder.Layer ways = layers.get(VectorTileRenderer.LAYER_WAYS);
+		Assert.assertNotNull(ways);
+		Assert.assertEquals(VectorTileJob.DEFAULT_EXTENT, ways.extent);
+		for (VectorTileDecoder.Layer layer : layers.values()) {
+			// several instructions for the same element must not emit the same geometry twice
+			Set<String> elements = new HashSet<String>();
+			for (VectorTileDecoder.Feature feature : layer.features) {
+				Assert.assertTrue(feature.properties.containsKey(VectorTileRenderer.KEY_LAYER));
+				verifyCoordinates(feature);
+
+				Map<String, Object> tags = new LinkedHashMap<String, Object>(feature.properties);
+				tags.remove(VectorTileRenderer.KEY_LEVEL);
+				tags.remove(VectorTileRenderer.KEY_PRIORITY);
+				Assert.assertTrue(elements.add(feature.type + " " + feature.geometry + " " + tags));
+			}
+		}
+		for (VectorTileDecoder.Feature feature : ways.features) {
+			Assert.assertEquals(VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, feature.type);
+			Assert.assertTrue(feature.properties.containsKey(VectorTileRenderer.KEY_LEVEL));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+
+public class VectorTileStoreTest {
+	private static final File MAP_FILE = new File("map.file");
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		if (file.exists() && !file.delete()) {
+			throw new IllegalStateException("could not delete file: " + file);
+		}
+	}
+
+	private static VectorTileJob createVectorTileJob(int tileX, int tileY) {
+		return new VectorTileJob(new Tile(tileX, tileY, (byte) 2, 256), MAP_FILE, InternalRenderTheme.OSMARENDER,
+				new DisplayModel());
+	}
+
+	private final File rootDirectory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+
+	@After
+	public void afterTest() {
+		delete(this.rootDirectory);
+	}
+
+	@Test
+	public void invalidPutTest() throws IOException {
+		VectorTileStore vectorTileStore = new VectorTileStore(this.rootDirectory);
+		try {
+			vectorTileStore.put(null, new VectorTile(new byte[0], 256));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		try {
+			vectorTileStore.put(createVectorTileJob(0, 0), null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void putAndGetTest() throws IOException {
+		VectorTileStore vectorTileStore = new VectorTileStore(this.rootDirectory);
+		VectorTileJob vectorTileJob1 = createVectorTileJob(1, 3);
+		VectorTileJob vectorTileJob2 = createVectorTileJob(3, 1);
+		Assert.assertFalse(vectorTileStore.containsKey(vectorTileJob1));
+		Assert.assertNull(vectorTileStore.get(vectorTileJob1));
+
+		byte[] data = { 0x1a, 0x02, 0x78, 0x02 };
+		vectorTileStore.put(vectorTileJob1, new VectorTile(data, 256));
+		Assert.assertTrue(vectorTileStore.containsKey(vectorTileJob1));
+		Assert.assertFalse(vectorTileStore.containsKey(vectorTileJob2));
+		Assert.assertTrue(new File(this.rootDirectory, "2/1/3" + VectorTileStore.FILE_EXTENSION).isFile());
+
+		VectorTile vectorTile = vectorTileStore.get(vectorTileJob1);
+		Assert.assertArrayEquals(data, vectorTile.getData());
+		Assert.assertEquals(256, vectorTile.getTileSize());
+
+		// a new store reads the tiles of an existing directory
+		Assert.assertArrayEquals(data, new VectorTileStore(this.rootDirectory).get(vectorTileJob1).getData());
+	}
+}
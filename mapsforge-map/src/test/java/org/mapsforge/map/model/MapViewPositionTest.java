@@ -15,6 +15,10 @@
  */
 package org.mapsforge.map.model;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.mapsforge.core.model.BoundingBox;
@@ -22,6 +26,7 @@ import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.model.common.DummyObserver;
+import org.mapsforge.map.model.common.Observer;
 
 public class MapViewPositionTest {
 	private static void verifyInvalidSetZoomLevel(MapViewPosition mapViewPosition, byte zoomLevel) {
@@ -51,6 +56,34 @@ public class MapViewPositionTest {
 		}
 	}
 
+	@Test
+	public void coalescedNotificationTest() throws InterruptedException {
+		final AtomicInteger callbacks = new AtomicInteger();
+		final CountDownLatch notified = new CountDownLatch(1);
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		mapViewPosition.addObserver(new Observer() {
+			@Override
+			public void onChange() {
+				callbacks.incrementAndGet();
+				notified.countDown();
+			}
+		});
+
+		// the observers are notified by the animator, which is held until all changes have been made
+		mapViewPosition.animator.pause();
+		mapViewPosition.animator.awaitPausing();
+		for (int i = 0; i < 1000; ++i) {
+			mapViewPosition.moveCenter(0.1, 0.1);
+		}
+		Assert.assertEquals(0, callbacks.get());
+		mapViewPosition.animator.proceed();
+
+		// all changes before the next frame result in a single notification
+		Assert.assertTrue(notified.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, callbacks.get());
+		mapViewPosition.destroy();
+	}
+
 	@Test
 	public void mapLimitTest() {
 		MapViewPosition mapViewPosition = new MapViewPosition(new DisplayModel());
@@ -108,6 +141,27 @@ public class MapViewPositionTest {
 		// Assert.assertEquals(6, dummyObserver.getCallbacks());
 	}
 
+	@Test
+	public void snapshotTest() {
+		MapViewPosition mapViewPosition = new MapViewPosition(new DisplayModel());
+		LatLong latLong = new LatLong(10, 20, true);
+		mapViewPosition.setMapPosition(new MapPosition(latLong, (byte) 0));
+		MapViewPositionSnapshot snapshot = mapViewPosition.getSnapshot();
+		Assert.assertEquals(latLong, snapshot.center);
+		Assert.assertEquals(new MapPosition(latLong, (byte) 0), snapshot.getMapPosition());
+		Assert.assertSame(snapshot, mapViewPosition.getSnapshot());
+
+		// a snapshot is not affected by later changes
+		mapViewPosition.setCenter(new LatLong(30, 40, true));
+		mapViewPosition.setZoomLevelMax((byte) 10);
+		Assert.assertEquals(latLong, snapshot.center);
+		Assert.assertEquals(Byte.MAX_VALUE, snapshot.zoomLevelMax);
+		Assert.assertNotSame(snapshot, mapViewPosition.getSnapshot());
+		Assert.assertEquals(new LatLong(30, 40, true), mapViewPosition.getSnapshot().center);
+		Assert.assertEquals(10, mapViewPosition.getSnapshot().zoomLevelMax);
+		mapViewPosition.destroy();
+	}
+
 	@Test
 	public void zoomInTest() {
 		MapViewPosition mapViewPosition = new MapViewPosition(new DisplayModel());